@@ -0,0 +1,100 @@
+package stokos.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import stokos.model.DadosDoSistema;
+import stokos.persistence.ArmazenamentoEmArquivo;
+
+/**
+ * Mede a gravação e a leitura dos dados em arquivo (`ArmazenamentoEmArquivo`).
+ *
+ * - `salvarCompleto`: a primeira gravação de um serviço novo, que grava o
+ * arquivo principal e o histórico de vendas inteiros.
+ * - `salvarAposUmaVenda`: a gravação depois de uma única venda, que acrescenta
+ * a venda ao histórico e regrava apenas o arquivo principal.
+ * - `carregar`: a leitura dos arquivos já gravados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ArmazenamentoBenchmark {
+
+    @Param({"1000", "10000"})
+    public int produtos;
+
+    @Param({"4"})
+    public int lotesPorProduto;
+
+    @Param({"100000"})
+    public int vendas;
+
+    private DadosDoSistema dados;
+    private Path pasta;
+    private ArmazenamentoEmArquivo armazenamentoGravado;
+    private int gravacoes;
+    private int vendaAtual;
+
+    @Setup(Level.Trial)
+    public void montarCenario() throws Exception {
+        dados = Cenario.criar(produtos, lotesPorProduto, vendas);
+        pasta = Files.createTempDirectory("stokos-benchmark");
+        armazenamentoGravado = new ArmazenamentoEmArquivo(pasta.resolve("gravado.stk").toString());
+        armazenamentoGravado.salvarDados(dados);
+    }
+
+    @TearDown(Level.Trial)
+    public void apagarArquivos() throws IOException {
+        armazenamentoGravado.fechar();
+        try (Stream<Path> arquivos = Files.walk(pasta)) {
+            arquivos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void salvarCompleto() throws Exception {
+        // Um arquivo novo a cada chamada: nada do que já foi gravado é aproveitado.
+        ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(pasta.resolve("completo-" + (gravacoes++ % 4) + ".stk").toString());
+        try {
+            armazenamento.salvarDados(dados);
+        } finally {
+            armazenamento.fechar();
+        }
+    }
+
+    @Benchmark
+    public void salvarAposUmaVenda() throws Exception {
+        dados.estoque.registrarVenda(Cenario.codigoDoProduto(vendaAtual++ % produtos), 1, dados.historicoDeVendas, Cenario.HOJE);
+        armazenamentoGravado.salvarDados(dados);
+    }
+
+    @Benchmark
+    public DadosDoSistema carregar() throws Exception {
+        ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(pasta.resolve("gravado.stk").toString());
+        try {
+            return armazenamento.carregarDados();
+        } finally {
+            armazenamento.fechar();
+        }
+    }
+}
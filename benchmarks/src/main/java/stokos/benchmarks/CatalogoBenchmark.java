@@ -0,0 +1,70 @@
+package stokos.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import stokos.model.DadosDoSistema;
+import stokos.model.Produto;
+
+/**
+ * Mede as buscas do `CatalogoDeProdutos`: por código de barras (a cada venda e
+ * entrada de lote) e por nome (a cada tecla digitada na tela de busca).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogoBenchmark {
+
+    // Quantos produtos a tela de busca mostra de cada vez.
+    private static final int LIMITE_DA_BUSCA = 50;
+
+    @Param({"1000", "100000"})
+    public int produtos;
+
+    private DadosDoSistema dados;
+    private String[] codigos;
+    private String[] termos;
+
+    @Setup(Level.Trial)
+    public void montarCenario() {
+        dados = Cenario.criar(produtos, 0, 0);
+        codigos = new String[produtos];
+        for (int i = 0; i < produtos; i++) {
+            codigos[i] = Cenario.codigoDoProduto(i);
+        }
+        // Termos como os digitados pelo usuário: começo de um tipo, uma marca
+        // inteira e um trecho do meio de uma palavra.
+        termos = new String[Cenario.TIPOS.length + Cenario.MARCAS.length];
+        for (int i = 0; i < Cenario.TIPOS.length; i++) {
+            String tipo = Cenario.TIPOS[i].toLowerCase();
+            termos[i] = i % 2 == 0 ? tipo.substring(0, 3) : tipo.substring(1, 4);
+        }
+        for (int i = 0; i < Cenario.MARCAS.length; i++) {
+            termos[Cenario.TIPOS.length + i] = Cenario.MARCAS[i];
+        }
+    }
+
+    @Benchmark
+    public Produto buscarProdutoPorCodigo(Sorteio sorteio) {
+        return dados.catalogo.buscarProduto(codigos[sorteio.proximo(produtos)]);
+    }
+
+    @Benchmark
+    public List<Produto> buscarProdutosPorNome(Sorteio sorteio) {
+        return dados.catalogo.buscarProdutosPorNome(termos[sorteio.proximo(termos.length)], LIMITE_DA_BUSCA);
+    }
+}
@@ -0,0 +1,101 @@
+package stokos.benchmarks;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import stokos.model.DadosDoSistema;
+import stokos.model.Grandeza;
+import stokos.model.Lote;
+import stokos.model.LoteNaoPerecivel;
+import stokos.model.LotePerecivel;
+import stokos.model.Produto;
+import stokos.model.ProdutoComum;
+import stokos.model.RegistroDeVenda;
+
+/**
+ * Monta os dados usados pelos benchmarks: um catálogo, um estoque e um
+ * histórico de vendas com os tamanhos pedidos.
+ *
+ * Os dados são gerados a partir de uma semente fixa, de modo que duas execuções
+ * (ex: antes e depois de uma otimização) medem exatamente o mesmo cenário.
+ */
+final class Cenario {
+
+    /** Semente usada por todos os benchmarks. */
+    static final long SEMENTE = 42;
+
+    /** Data de referência das vendas e das validades. */
+    static final LocalDate HOJE = LocalDate.of(2024, 6, 30);
+
+    // Quantidade de cada lote: grande o bastante para que as vendas dos
+    // benchmarks nunca esgotem o estoque de um produto.
+    static final double QUANTIDADE_POR_LOTE = 1_000_000;
+
+    // Palavras usadas para compor os nomes dos produtos, para que a busca por
+    // nome encontre vários produtos, como em um catálogo real.
+    static final String[] TIPOS = {
+        "Arroz", "Feijão", "Café", "Açúcar", "Leite", "Iogurte", "Queijo", "Biscoito",
+        "Macarrão", "Farinha", "Óleo", "Sabonete", "Detergente", "Refrigerante", "Suco", "Chocolate"
+    };
+    static final String[] MARCAS = {
+        "Bom Dia", "Da Fazenda", "Primavera", "Sol Nascente", "Tradição", "Vale Verde", "Estrela", "Aurora"
+    };
+
+    private Cenario() {
+    }
+
+    /**
+     * Retorna o código de barras do produto de número `i` (começando em 0).
+     */
+    static String codigoDoProduto(int i) {
+        return String.valueOf(7_890_000_000_000L + i);
+    }
+
+    /**
+     * Cria os dados do sistema.
+     *
+     * @param produtos Quantos produtos cadastrar no catálogo.
+     * @param lotesPorProduto Quantos lotes de cada produto colocar no estoque
+     *                        (metade perecíveis, com validades espalhadas pelo próximo ano).
+     * @param vendas Quantas vendas colocar no histórico (espalhadas pelo último ano).
+     * @return Os dados montados.
+     */
+    static DadosDoSistema criar(int produtos, int lotesPorProduto, int vendas) {
+        SplittableRandom aleatorio = new SplittableRandom(SEMENTE);
+        DadosDoSistema dados = new DadosDoSistema();
+        Produto[] catalogo = new Produto[produtos];
+        try {
+            for (int i = 0; i < produtos; i++) {
+                String nome = TIPOS[i % TIPOS.length] + " " + MARCAS[(i / TIPOS.length) % MARCAS.length] + " " + i;
+                Produto produto = new ProdutoComum(codigoDoProduto(i), nome, 1 + aleatorio.nextInt(5000) / 100.0, Grandeza.UNIDADE);
+                produto.setEstoqueMinimo(aleatorio.nextInt(50));
+                dados.catalogo.cadastrarProduto(produto);
+                catalogo[i] = produto;
+            }
+            for (int i = 0; i < produtos; i++) {
+                for (int l = 0; l < lotesPorProduto; l++) {
+                    dados.estoque.adicionarLote(criarLote(catalogo[i], l, aleatorio));
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Falha ao montar o cenário: " + e.getMessage(), e);
+        }
+        for (int v = 0; v < vendas; v++) {
+            Produto produto = catalogo[aleatorio.nextInt(produtos)];
+            double quantidade = 1 + aleatorio.nextInt(5);
+            LocalDate data = HOJE.minusDays(aleatorio.nextInt(365));
+            dados.historicoDeVendas.adicionarRegistro(new RegistroDeVenda(produto, quantidade, quantidade * 0.5, data));
+        }
+        return dados;
+    }
+
+    /**
+     * Cria um lote do produto: os de posição par são perecíveis.
+     */
+    static Lote criarLote(Produto produto, int posicao, SplittableRandom aleatorio) {
+        Lote lote = posicao % 2 == 0
+                ? new LotePerecivel(produto, QUANTIDADE_POR_LOTE, HOJE.plusDays(1 + aleatorio.nextInt(365)))
+                : new LoteNaoPerecivel(produto, QUANTIDADE_POR_LOTE);
+        lote.setCustoDoLote(QUANTIDADE_POR_LOTE * 0.5);
+        return lote;
+    }
+}
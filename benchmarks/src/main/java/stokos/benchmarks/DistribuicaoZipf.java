@@ -0,0 +1,110 @@
+package stokos.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Sorteia posições de 0 a `n - 1` com a distribuição de Zipf: a posição 0 é a
+ * mais sorteada, a posição 1 é sorteada cerca de 2^s vezes menos, a posição 2
+ * cerca de 3^s vezes menos, e assim por diante. É o padrão de popularidade dos
+ * produtos de uma loja real: poucos produtos respondem pela maior parte das vendas.
+ *
+ * CONCEITO DE DESIGN: SORTEIO POR REJEIÇÃO E INVERSÃO
+ * Sortear a partir de uma tabela com a probabilidade acumulada de cada posição
+ * exigiria uma tabela do tamanho do catálogo. Aqui, usa-se o método de
+ * rejeição e inversão de Hörmann e Derflinger: a distribuição discreta é
+ * coberta por uma função contínua cuja integral tem inversa conhecida; sorteia-se
+ * um ponto dessa função e ele é aceito ou rejeitado (rejeições são raras). Cada
+ * sorteio custa poucas operações, sem memória extra, para qualquer `n`.
+ *
+ * O sorteio é determinístico para uma mesma semente.
+ */
+public class DistribuicaoZipf {
+
+    private final int n;
+    private final double expoente;
+    private final SplittableRandom aleatorio;
+
+    // Constantes do método, calculadas uma única vez.
+    private final double integralDeX1;
+    private final double integralDeN;
+    private final double s;
+
+    /**
+     * Construtor da DistribuicaoZipf.
+     *
+     * @param n Quantas posições podem ser sorteadas (ex: o número de produtos).
+     * @param expoente O expoente da distribuição (maior que zero). Com 1, o
+     *                 clássico da popularidade de produtos; quanto maior, mais concentrado.
+     * @param semente A semente do gerador de números aleatórios.
+     */
+    public DistribuicaoZipf(int n, double expoente, long semente) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("O número de posições deve ser maior que zero.");
+        }
+        if (expoente <= 0) {
+            throw new IllegalArgumentException("O expoente deve ser maior que zero.");
+        }
+        this.n = n;
+        this.expoente = expoente;
+        this.aleatorio = new SplittableRandom(semente);
+        this.integralDeX1 = integral(1.5) - 1.0;
+        this.integralDeN = integral(n + 0.5);
+        this.s = 2.0 - inversaDaIntegral(integral(2.5) - h(2));
+    }
+
+    /**
+     * Sorteia uma posição, de 0 (a mais provável) a `n - 1`.
+     */
+    public int sortear() {
+        while (true) {
+            double u = integralDeN + aleatorio.nextDouble() * (integralDeX1 - integralDeN);
+            double x = inversaDaIntegral(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            // Aceita de imediato quando `k` está perto de `x`; senão, compara com a área exata.
+            if (k - x <= s || u >= integral(k + 0.5) - h(k)) {
+                return k - 1;
+            }
+        }
+    }
+
+    // A função contínua que cobre a distribuição: h(x) = x^(-expoente).
+    private double h(double x) {
+        return Math.exp(-expoente * Math.log(x));
+    }
+
+    // A integral de h, a menos de uma constante: (x^(1 - expoente) - 1) / (1 - expoente).
+    private double integral(double x) {
+        double logX = Math.log(x);
+        return auxiliarDaExponencial((1.0 - expoente) * logX) * logX;
+    }
+
+    // A inversa de `integral`.
+    private double inversaDaIntegral(double x) {
+        double t = x * (1.0 - expoente);
+        if (t < -1.0) {
+            t = -1.0; // Evita o logaritmo de número negativo por erro de arredondamento.
+        }
+        return Math.exp(auxiliarDoLogaritmo(t) * x);
+    }
+
+    // (e^x - 1) / x, calculado com precisão também para x perto de zero.
+    private static double auxiliarDaExponencial(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1.0 + x * 0.5 * (1.0 + x / 3.0 * (1.0 + 0.25 * x));
+    }
+
+    // ln(1 + x) / x, calculado com precisão também para x perto de zero.
+    private static double auxiliarDoLogaritmo(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+}
@@ -0,0 +1,64 @@
+package stokos.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import stokos.model.DadosDoSistema;
+import stokos.model.Produto;
+
+/**
+ * Mede a entrada de lotes no estoque (`Estoque.adicionarLote`).
+ *
+ * Cada entrada aumenta o estoque, então o cenário é montado de novo a cada
+ * iteração, e cada iteração mede um bloco fixo de `LOTES_POR_ITERACAO` entradas
+ * (modo `SingleShotTime`): o tempo informado é o do bloco inteiro.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = EntradaDeLotesBenchmark.LOTES_POR_ITERACAO)
+@Measurement(iterations = 10, batchSize = EntradaDeLotesBenchmark.LOTES_POR_ITERACAO)
+@Fork(1)
+public class EntradaDeLotesBenchmark {
+
+    static final int LOTES_POR_ITERACAO = 10_000;
+
+    @Param({"1000", "100000"})
+    public int produtos;
+
+    @Param({"1", "16"})
+    public int lotesPorProduto;
+
+    private DadosDoSistema dados;
+    private Produto[] catalogo;
+    private SplittableRandom aleatorio;
+    private int proximoLote;
+
+    @Setup(Level.Iteration)
+    public void montarCenario() {
+        dados = Cenario.criar(produtos, lotesPorProduto, 0);
+        catalogo = new Produto[produtos];
+        for (int i = 0; i < produtos; i++) {
+            catalogo[i] = dados.catalogo.buscarProduto(Cenario.codigoDoProduto(i));
+        }
+        aleatorio = new SplittableRandom(Cenario.SEMENTE);
+        proximoLote = 0;
+    }
+
+    @Benchmark
+    public void adicionarLote() throws Exception {
+        Produto produto = catalogo[aleatorio.nextInt(produtos)];
+        dados.estoque.adicionarLote(Cenario.criarLote(produto, proximoLote++, aleatorio));
+    }
+}
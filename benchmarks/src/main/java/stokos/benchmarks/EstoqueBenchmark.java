@@ -0,0 +1,68 @@
+package stokos.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import stokos.model.DadosDoSistema;
+import stokos.model.HistoricoDeVendas;
+
+/**
+ * Mede as operações do `Estoque` feitas a cada passagem no caixa: a venda
+ * (`registrarVenda`) e a consulta da quantidade disponível de um produto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EstoqueBenchmark {
+
+    @Param({"1000", "100000"})
+    public int produtos;
+
+    @Param({"1", "16"})
+    public int lotesPorProduto;
+
+    private DadosDoSistema dados;
+    private String[] codigos;
+    private HistoricoDeVendas historico;
+
+    @Setup(Level.Trial)
+    public void montarCenario() {
+        dados = Cenario.criar(produtos, lotesPorProduto, 0);
+        codigos = new String[produtos];
+        for (int i = 0; i < produtos; i++) {
+            codigos[i] = Cenario.codigoDoProduto(i);
+        }
+    }
+
+    /**
+     * As vendas de cada iteração vão para um histórico novo, para que o
+     * histórico não cresça sem limite ao longo da medição.
+     */
+    @Setup(Level.Iteration)
+    public void novoHistorico() {
+        historico = new HistoricoDeVendas();
+    }
+
+    @Benchmark
+    public void registrarVenda(Sorteio sorteio) throws Exception {
+        dados.estoque.registrarVenda(codigos[sorteio.proximo(produtos)], 1, historico, Cenario.HOJE);
+    }
+
+    @Benchmark
+    public double getQuantidadeDisponivel(Sorteio sorteio) {
+        return dados.estoque.getQuantidadeDisponivel(codigos[sorteio.proximo(produtos)]);
+    }
+}
@@ -0,0 +1,281 @@
+package stokos.benchmarks;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import stokos.model.DadosDoSistema;
+import stokos.model.Grandeza;
+import stokos.model.Lote;
+import stokos.model.LoteNaoPerecivel;
+import stokos.model.LotePerecivel;
+import stokos.model.PontoFixo;
+import stokos.model.Produto;
+import stokos.model.ProdutoComImposto;
+import stokos.model.ProdutoComum;
+import stokos.model.RegistroDeVenda;
+import stokos.persistence.ArmazenamentoEmArquivo;
+import stokos.service.ServicoDeArmazenamento;
+
+/**
+ * Gera os dados de uma loja grande, para testes de carga e benchmarks com a
+ * escala da produção: um catálogo com produtos comuns e com ICMS de todas as
+ * grandezas, lotes perecíveis e não perecíveis com validades variadas e um
+ * histórico de vendas em que poucos produtos concentram a maior parte das
+ * vendas (distribuição de Zipf; ver `DistribuicaoZipf`).
+ *
+ * Os dados dependem apenas da semente e dos parâmetros: a mesma configuração
+ * gera sempre os mesmos produtos, lotes e vendas. Por isso, os IDs de produtos
+ * e lotes são atribuídos pelo gerador (de 1 em diante) e as datas são contadas
+ * a partir de uma data de referência fixa, e não do dia em que o gerador roda.
+ *
+ * CONCEITO DE DESIGN: GERAÇÃO EM FLUXO
+ * As vendas são geradas uma a uma, em ordem cronológica, e entram direto no
+ * `HistoricoDeVendas`, que as guarda em colunas (cerca de 40 bytes por venda).
+ * Nenhuma lista intermediária de registros é montada; a gravação
+ * (`gerarEm`) lê as vendas do próprio histórico. Assim, um histórico de
+ * 10 milhões de vendas ocupa a memória uma única vez.
+ *
+ * Também pode ser executado pela linha de comando para gravar um arquivo de
+ * dados (ver `main`).
+ */
+public class GeradorDeDados {
+
+    /** Data de referência padrão ("hoje" nos dados gerados). */
+    public static final LocalDate DATA_DE_REFERENCIA_PADRAO = LocalDate.of(2024, 6, 30);
+
+    private static final String[] TIPOS = {
+        "Arroz", "Feijão", "Café", "Açúcar", "Leite", "Iogurte", "Queijo", "Biscoito", "Macarrão",
+        "Farinha", "Óleo", "Sabonete", "Detergente", "Refrigerante", "Suco", "Chocolate", "Carne",
+        "Frango", "Presunto", "Pão", "Manteiga", "Água", "Cerveja", "Vinho", "Shampoo", "Papel Toalha"
+    };
+    private static final String[] CATEGORIAS = {
+        "Mercearia", "Mercearia", "Mercearia", "Mercearia", "Laticínios", "Laticínios", "Laticínios", "Mercearia", "Mercearia",
+        "Mercearia", "Mercearia", "Higiene", "Limpeza", "Bebidas", "Bebidas", "Doces", "Açougue",
+        "Açougue", "Frios", "Padaria", "Laticínios", "Bebidas", "Bebidas", "Bebidas", "Higiene", "Limpeza"
+    };
+    private static final String[] MARCAS = {
+        "Bom Dia", "Da Fazenda", "Primavera", "Sol Nascente", "Tradição", "Vale Verde", "Estrela",
+        "Aurora", "Boa Safra", "Serra Azul", "Campo Belo", "Rio Claro"
+    };
+    private static final String[] EMBALAGENS = { "Pequeno", "Médio", "Grande", "Família", "Econômico", "Premium" };
+    private static final String[] FORNECEDORES = {
+        "Distribuidora Central", "Atacado Paulista", "Comercial Norte", "Laticínios Reunidos", "Frigorífico Sul"
+    };
+    private static final double[] ALIQUOTAS_DE_ICMS = { 0.07, 0.12, 0.17, 0.18 };
+
+    private final long semente;
+    private final int produtos;
+    private final int lotes;
+    private final long vendas;
+    private double expoenteZipf = 1.0;
+    private LocalDate dataDeReferencia = DATA_DE_REFERENCIA_PADRAO;
+    private int diasDeHistorico = 365;
+
+    /**
+     * Construtor do GeradorDeDados.
+     *
+     * @param semente A semente dos sorteios; a mesma semente gera os mesmos dados.
+     * @param produtos Quantos produtos cadastrar no catálogo.
+     * @param lotes Quantos lotes colocar no estoque (se houver pelo menos um por
+     *              produto, todo produto recebe um lote; os demais seguem a popularidade).
+     * @param vendas Quantas vendas colocar no histórico.
+     */
+    public GeradorDeDados(long semente, int produtos, int lotes, long vendas) {
+        if (produtos <= 0 || lotes < 0 || vendas < 0) {
+            throw new IllegalArgumentException("Quantidades inválidas para a geração dos dados.");
+        }
+        this.semente = semente;
+        this.produtos = produtos;
+        this.lotes = lotes;
+        this.vendas = vendas;
+    }
+
+    /**
+     * Define o expoente da distribuição de popularidade dos produtos (padrão: 1,0).
+     */
+    public void setExpoenteZipf(double expoenteZipf) {
+        this.expoenteZipf = expoenteZipf;
+    }
+
+    /**
+     * Define a data de referência ("hoje" nos dados gerados): as vendas terminam
+     * nela, e as validades dos lotes são espalhadas em torno dela.
+     */
+    public void setDataDeReferencia(LocalDate dataDeReferencia) {
+        this.dataDeReferencia = dataDeReferencia;
+    }
+
+    /**
+     * Define por quantos dias, até a data de referência, as vendas são espalhadas (padrão: 365).
+     */
+    public void setDiasDeHistorico(int diasDeHistorico) {
+        if (diasDeHistorico <= 0) {
+            throw new IllegalArgumentException("O histórico deve ter pelo menos um dia.");
+        }
+        this.diasDeHistorico = diasDeHistorico;
+    }
+
+    /**
+     * Gera os dados e os grava pelo serviço de armazenamento informado.
+     *
+     * @param servico O serviço que grava os dados (ex: `ArmazenamentoEmArquivo`).
+     * @return Os dados gerados e gravados.
+     * @throws Exception Se ocorrer um erro na gravação.
+     */
+    public DadosDoSistema gerarEm(ServicoDeArmazenamento servico) throws Exception {
+        DadosDoSistema dados = gerar();
+        servico.salvarDados(dados);
+        return dados;
+    }
+
+    /**
+     * Gera os dados em memória.
+     *
+     * @return Os dados gerados.
+     */
+    public DadosDoSistema gerar() {
+        // Cada etapa tem o seu próprio gerador, derivado da semente: mudar, por
+        // exemplo, o número de vendas não altera os produtos nem os lotes.
+        SplittableRandom raiz = new SplittableRandom(semente);
+        SplittableRandom aleatorioDosProdutos = raiz.split();
+        SplittableRandom aleatorioDosLotes = raiz.split();
+        SplittableRandom aleatorioDasVendas = raiz.split();
+        long sementeDaPopularidade = raiz.nextLong();
+
+        DadosDoSistema dados = new DadosDoSistema();
+        Produto[] catalogo = new Produto[produtos];
+        // Custo unitário de cada produto, em centavos (uma fração do preço de venda).
+        long[] custoUnitario = new long[produtos];
+        try {
+            for (int i = 0; i < produtos; i++) {
+                catalogo[i] = criarProduto(i, aleatorioDosProdutos);
+                custoUnitario[i] = Math.round(catalogo[i].getPrecoUnitarioEmCentavos() * (0.45 + 0.35 * aleatorioDosProdutos.nextDouble()));
+                dados.catalogo.cadastrarProduto(catalogo[i]);
+            }
+
+            DistribuicaoZipf popularidadeDosLotes = new DistribuicaoZipf(produtos, expoenteZipf, sementeDaPopularidade);
+            for (int l = 0; l < lotes; l++) {
+                // Um lote para cada produto; os lotes restantes vão para os mais populares.
+                int posicao = l < produtos ? l : popularidadeDosLotes.sortear();
+                dados.estoque.adicionarLote(criarLote(l + 1, catalogo[posicao], custoUnitario[posicao], aleatorioDosLotes));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Falha ao gerar os dados: " + e.getMessage(), e);
+        }
+
+        // Vendas em ordem cronológica, distribuídas igualmente entre os dias.
+        DistribuicaoZipf popularidadeDasVendas = new DistribuicaoZipf(produtos, expoenteZipf, sementeDaPopularidade + 1);
+        LocalDate primeiroDia = dataDeReferencia.minusDays(diasDeHistorico - 1);
+        for (long v = 0; v < vendas; v++) {
+            LocalDate data = primeiroDia.plusDays(v * diasDeHistorico / vendas);
+            int posicao = popularidadeDasVendas.sortear();
+            Produto produto = catalogo[posicao];
+            double quantidade = sortearQuantidadeVendida(produto.getGrandeza(), aleatorioDasVendas);
+            double custo = PontoFixo.deCentavos(PontoFixo.valorDe(custoUnitario[posicao], PontoFixo.paraMilesimos(quantidade)));
+            produto.registrarVenda(quantidade);
+            dados.historicoDeVendas.adicionarRegistro(new RegistroDeVenda(produto, quantidade, custo, data));
+        }
+        return dados;
+    }
+
+    /**
+     * Cria o produto de número `i`: 70% vendidos por unidade, 20% por peso e 10%
+     * por volume; 30% com ICMS.
+     */
+    private Produto criarProduto(int i, SplittableRandom aleatorio) {
+        int tipo = aleatorio.nextInt(TIPOS.length);
+        String nome = TIPOS[tipo] + " " + MARCAS[aleatorio.nextInt(MARCAS.length)] + " "
+                + EMBALAGENS[aleatorio.nextInt(EMBALAGENS.length)] + " " + (i + 1);
+        int sorteio = aleatorio.nextInt(10);
+        Grandeza grandeza = sorteio < 7 ? Grandeza.UNIDADE : sorteio < 9 ? Grandeza.PESO : Grandeza.VOLUME;
+        // Preço entre R$ 1,00 e R$ 80,00, com mais produtos baratos do que caros.
+        double preco = PontoFixo.deCentavos(100 + (long) (7900 * Math.pow(aleatorio.nextDouble(), 2)));
+
+        Produto produto = aleatorio.nextInt(10) < 3
+                ? new ProdutoComImposto(i + 1, codigoDeBarras(i), nome, preco, grandeza, ALIQUOTAS_DE_ICMS[aleatorio.nextInt(ALIQUOTAS_DE_ICMS.length)])
+                : new ProdutoComum(i + 1, codigoDeBarras(i), nome, preco, grandeza);
+        produto.setCategoria(CATEGORIAS[tipo]);
+        produto.setEstoqueMinimo(grandeza == Grandeza.UNIDADE ? aleatorio.nextInt(50) : aleatorio.nextInt(20));
+        return produto;
+    }
+
+    /**
+     * Cria um lote do produto. Produtos vendidos por peso ou volume são quase
+     * sempre perecíveis; os vendidos por unidade, em 30% dos casos. Das validades,
+     * 5% já venceram, 10% vencem na próxima semana e as demais se espalham pelos
+     * próximos dois anos. Parte da quantidade de cada lote já foi consumida.
+     */
+    private Lote criarLote(int id, Produto produto, long custoUnitario, SplittableRandom aleatorio) {
+        boolean porUnidade = produto.getGrandeza() == Grandeza.UNIDADE;
+        double quantidadeInicial = porUnidade
+                ? 10 + aleatorio.nextInt(491)
+                : PontoFixo.deMilesimos(1_000 + aleatorio.nextInt(199_001));
+        double fracaoRestante = 0.2 + 0.8 * aleatorio.nextDouble();
+        double quantidade = porUnidade
+                ? Math.max(1, Math.floor(quantidadeInicial * fracaoRestante))
+                : PontoFixo.deMilesimos(Math.max(1, PontoFixo.paraMilesimos(quantidadeInicial * fracaoRestante)));
+
+        Lote lote;
+        if (aleatorio.nextInt(10) < (porUnidade ? 3 : 9)) {
+            int faixa = aleatorio.nextInt(100);
+            long dias = faixa < 5 ? -1 - aleatorio.nextInt(30) : faixa < 15 ? aleatorio.nextInt(8) : 8 + aleatorio.nextInt(713);
+            lote = new LotePerecivel(id, produto, quantidadeInicial, quantidade, dataDeReferencia.plusDays(dias));
+        } else {
+            lote = new LoteNaoPerecivel(id, produto, quantidadeInicial, quantidade);
+        }
+        lote.setFornecedor(FORNECEDORES[aleatorio.nextInt(FORNECEDORES.length)]);
+        lote.setCustoDoLote(PontoFixo.deCentavos(PontoFixo.valorDe(custoUnitario, PontoFixo.paraMilesimos(quantidadeInicial))));
+        return lote;
+    }
+
+    /**
+     * Sorteia a quantidade de uma venda: de 1 a 5 unidades, ou de 0,1 a 3 kg (ou litros)
+     * em múltiplos de 5 gramas (ou mililitros).
+     */
+    private static double sortearQuantidadeVendida(Grandeza grandeza, SplittableRandom aleatorio) {
+        if (grandeza == Grandeza.UNIDADE) {
+            return 1 + aleatorio.nextInt(5);
+        }
+        return PontoFixo.deMilesimos(100 + 5L * aleatorio.nextInt(581));
+    }
+
+    /**
+     * Retorna um código de barras EAN-13 válido (prefixo 789, do Brasil) para o
+     * produto de número `i`.
+     */
+    static String codigoDeBarras(int i) {
+        String semDigito = "789" + String.format("%09d", i + 1);
+        int soma = 0;
+        for (int p = 0; p < 12; p++) {
+            int digito = semDigito.charAt(p) - '0';
+            soma += p % 2 == 0 ? digito : 3 * digito;
+        }
+        return semDigito + (10 - soma % 10) % 10;
+    }
+
+    /**
+     * Gera e grava um arquivo de dados.
+     * Uso: `GeradorDeDados <arquivo> <produtos> <lotes> <vendas> [semente] [expoente]`
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Uso: GeradorDeDados <arquivo> <produtos> <lotes> <vendas> [semente] [expoente]");
+            System.exit(1);
+        }
+        GeradorDeDados gerador = new GeradorDeDados(args.length > 4 ? Long.parseLong(args[4]) : 42,
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]));
+        if (args.length > 5) {
+            gerador.setExpoenteZipf(Double.parseDouble(args[5]));
+        }
+
+        long inicio = System.nanoTime();
+        ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(args[0]);
+        try {
+            DadosDoSistema dados = gerador.gerarEm(armazenamento);
+            System.out.printf("Gerados %d produtos, %d lotes e %d vendas em %s (%.1f s).%n",
+                    dados.catalogo.getListaDeProdutos().size(), dados.estoque.getLotes().size(),
+                    dados.historicoDeVendas.getRegistros().size(), args[0], (System.nanoTime() - inicio) / 1e9);
+        } finally {
+            armazenamento.fechar();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package stokos.benchmarks;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import stokos.model.DadosDoSistema;
+import stokos.model.Produto;
+import stokos.model.RegistroDeVenda;
+import stokos.model.TotaisDeVendas;
+
+/**
+ * Mede o `HistoricoDeVendas`: a inclusão de uma venda e as consultas usadas
+ * pelos relatórios (totais por produto, totais e vendas de um período).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HistoricoBenchmark {
+
+    @Param({"1000"})
+    public int produtos;
+
+    @Param({"10000", "1000000"})
+    public int vendas;
+
+    private DadosDoSistema dados;
+    private String[] codigos;
+    private Produto[] catalogo;
+
+    /**
+     * O histórico é montado de novo a cada iteração, porque `adicionarRegistro`
+     * o faz crescer durante a medição.
+     */
+    @Setup(Level.Iteration)
+    public void montarCenario() {
+        dados = Cenario.criar(produtos, 0, vendas);
+        codigos = new String[produtos];
+        catalogo = new Produto[produtos];
+        for (int i = 0; i < produtos; i++) {
+            codigos[i] = Cenario.codigoDoProduto(i);
+            catalogo[i] = dados.catalogo.buscarProduto(codigos[i]);
+        }
+        // A primeira consulta monta os totais; ela não deve entrar na medição.
+        dados.historicoDeVendas.getTotaisPorProduto(codigos[0]);
+    }
+
+    @Benchmark
+    public void adicionarRegistro(Sorteio sorteio) {
+        Produto produto = catalogo[sorteio.proximo(produtos)];
+        dados.historicoDeVendas.adicionarRegistro(new RegistroDeVenda(produto, 1, 0.5, Cenario.HOJE));
+    }
+
+    @Benchmark
+    public TotaisDeVendas getTotaisPorProduto(Sorteio sorteio) {
+        return dados.historicoDeVendas.getTotaisPorProduto(codigos[sorteio.proximo(produtos)]);
+    }
+
+    @Benchmark
+    public TotaisDeVendas getTotaisDoTrimestre(Sorteio sorteio) {
+        LocalDate fim = Cenario.HOJE.minusDays(sorteio.proximo(270));
+        return dados.historicoDeVendas.getTotaisPorPeriodo(codigos[sorteio.proximo(produtos)], fim.minusDays(89), fim);
+    }
+
+    @Benchmark
+    public List<RegistroDeVenda> getRegistrosDoMes(Sorteio sorteio) {
+        LocalDate fim = Cenario.HOJE.minusDays(sorteio.proximo(330));
+        return dados.historicoDeVendas.getRegistrosPorPeriodo(codigos[sorteio.proximo(produtos)], fim.minusDays(29), fim);
+    }
+}
@@ -0,0 +1,557 @@
+package stokos.benchmarks;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import stokos.AppContext;
+import stokos.exception.QuantidadeInsuficienteException;
+import stokos.metricas.Contador;
+import stokos.metricas.HistogramaDeLatencias;
+import stokos.model.DadosDoSistema;
+import stokos.model.Grandeza;
+import stokos.model.ItemVenda;
+import stokos.model.Lote;
+import stokos.model.LoteNaoPerecivel;
+import stokos.model.LotePerecivel;
+import stokos.model.PontoFixo;
+import stokos.model.Produto;
+import stokos.model.RelogioDoNegocio;
+import stokos.persistence.ArmazenamentoEmArquivo;
+
+/**
+ * Teste de carga: simula vários caixas (terminais) operando ao mesmo tempo
+ * sobre um `AppContext`, como em um horário de pico, e mede quantas operações
+ * por segundo o sistema atende e em quanto tempo cada uma responde.
+ *
+ * Cada terminal repete, até o fim do tempo da simulação, uma mistura de
+ * operações parecida com a de uma loja: consultas de preço e estoque, vendas
+ * avulsas e em cesta, relatórios (avisos e vendas do último mês), descartes e
+ * entradas de lotes. Os produtos são escolhidos pela popularidade
+ * (`DistribuicaoZipf`), então os mais vendidos disputam as mesmas travas.
+ *
+ * CONCEITO DE DESIGN: UMA THREAD POR TERMINAL
+ * Cada terminal roda na sua própria thread, como um caixa real, que espera a
+ * resposta de uma operação antes de fazer a próxima. Com milhares de
+ * terminais, threads comuns do sistema operacional pesariam mais que o
+ * próprio sistema medido; por isso, quando a JVM oferece threads virtuais
+ * (Java 21 ou mais recente), elas são usadas. Como o projeto compila para o
+ * Java 11, elas são obtidas por reflexão; em JVMs mais antigas, a simulação
+ * usa um conjunto de threads comuns, uma por terminal.
+ *
+ * CONCEITO DE DESIGN: VERIFICAÇÃO DE INVARIANTES
+ * A carga também serve para achar erros de concorrência. Durante a simulação,
+ * cada terminal confere se a quantidade disponível de um produto ficou
+ * negativa depois de uma venda. No fim, para cada produto, a quantidade
+ * inicial mais o que entrou menos o que foi vendido e descartado (segundo os
+ * próprios terminais) deve ser igual à quantidade final do estoque, e as
+ * vendas do histórico devem bater com as vendas feitas: uma diferença indica
+ * venda além do estoque ou alteração perdida. Por fim, são executadas as
+ * verificações de consistência do `Estoque` e do `HistoricoDeVendas`.
+ *
+ * A simulação trabalha sobre uma cópia do arquivo de dados, que não é alterado.
+ */
+public class SimuladorDeCaixas {
+
+    /** Os tipos de operação de um terminal e o peso de cada um na mistura. */
+    public enum Operacao {
+        CONSULTA("Consulta de preço", 25),
+        VENDA("Venda avulsa", 45),
+        VENDA_EM_CESTA("Venda em cesta", 15),
+        RELATORIO("Relatório", 10),
+        DESCARTE("Descarte", 3),
+        ENTRADA_DE_LOTE("Entrada de lote", 2);
+
+        private final String descricao;
+        private final int peso;
+
+        Operacao(String descricao, int peso) {
+            this.descricao = descricao;
+            this.peso = peso;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+
+    private static final Operacao[] OPERACOES = Operacao.values();
+    private static final int SOMA_DOS_PESOS;
+
+    static {
+        int soma = 0;
+        for (Operacao operacao : OPERACOES) {
+            soma += operacao.peso;
+        }
+        SOMA_DOS_PESOS = soma;
+    }
+
+    // Quantas violações de invariantes são descritas no relatório (as demais só são contadas).
+    private static final int VIOLACOES_DESCRITAS = 20;
+
+    private final int terminais;
+    private final int segundos;
+    private final long pausaEmMilissegundos;
+    private final long semente;
+    private double expoenteZipf = 1.0;
+
+    /**
+     * Construtor do SimuladorDeCaixas.
+     *
+     * @param terminais Quantos terminais operam ao mesmo tempo.
+     * @param segundos Por quanto tempo a simulação roda.
+     * @param pausaEmMilissegundos A pausa de cada terminal entre duas operações
+     *                             (o tempo de atendimento do cliente); 0 para carga máxima.
+     * @param semente A semente dos sorteios dos terminais.
+     */
+    public SimuladorDeCaixas(int terminais, int segundos, long pausaEmMilissegundos, long semente) {
+        if (terminais <= 0 || segundos <= 0 || pausaEmMilissegundos < 0) {
+            throw new IllegalArgumentException("Parâmetros inválidos para a simulação.");
+        }
+        this.terminais = terminais;
+        this.segundos = segundos;
+        this.pausaEmMilissegundos = pausaEmMilissegundos;
+        this.semente = semente;
+    }
+
+    /**
+     * Define o expoente da popularidade dos produtos (padrão: 1,0).
+     */
+    public void setExpoenteZipf(double expoenteZipf) {
+        this.expoenteZipf = expoenteZipf;
+    }
+
+    /**
+     * O resultado de uma simulação: as medições de cada tipo de operação e as
+     * violações de invariantes encontradas.
+     */
+    public static class Resultado {
+        // Compartilhados por todos os terminais (ver as parcelas do `HistogramaDeLatencias`).
+        private final HistogramaDeLatencias[] latencias = new HistogramaDeLatencias[OPERACOES.length];
+        private final Contador[] recusadas = new Contador[OPERACOES.length];
+        private final List<String> violacoes = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger quantidadeDeViolacoes = new AtomicInteger();
+        private boolean threadsVirtuais;
+        private long duracaoEmNanossegundos;
+
+        Resultado() {
+            for (int i = 0; i < OPERACOES.length; i++) {
+                latencias[i] = new HistogramaDeLatencias();
+                recusadas[i] = new Contador();
+            }
+        }
+
+        void registrarViolacao(String descricao) {
+            if (quantidadeDeViolacoes.incrementAndGet() <= VIOLACOES_DESCRITAS) {
+                violacoes.add(descricao);
+            }
+        }
+
+        /** Retorna as latências (em nanossegundos) de um tipo de operação. */
+        public HistogramaDeLatencias.Fotografia getLatencias(Operacao operacao) {
+            return latencias[operacao.ordinal()].fotografar();
+        }
+
+        /** Retorna quantas operações do tipo foram recusadas pelas regras de negócio (ex: estoque insuficiente). */
+        public long getRecusadas(Operacao operacao) {
+            return recusadas[operacao.ordinal()].getValor();
+        }
+
+        /** Retorna quantas violações de invariantes foram encontradas. */
+        public int getQuantidadeDeViolacoes() {
+            return quantidadeDeViolacoes.get();
+        }
+
+        /** Retorna a descrição das primeiras violações encontradas. */
+        public List<String> getViolacoes() {
+            return new ArrayList<>(violacoes);
+        }
+
+        /** Retorna o total de operações por segundo, de todos os terminais. */
+        public double getOperacoesPorSegundo() {
+            long total = 0;
+            for (Operacao operacao : OPERACOES) {
+                total += getLatencias(operacao).getTotal();
+            }
+            return total / (duracaoEmNanossegundos / 1e9);
+        }
+
+        /**
+         * Imprime a tabela de vazão e latências e as violações encontradas.
+         */
+        public void imprimir(PrintStream saida) {
+            double duracao = duracaoEmNanossegundos / 1e9;
+            saida.printf("Threads %s; duração medida: %.1f s.%n", threadsVirtuais ? "virtuais" : "do sistema (sem threads virtuais nesta JVM)", duracao);
+            saida.printf("%-18s %11s %10s %10s %10s %10s %10s %10s%n",
+                    "Operação", "Total", "Recusadas", "Op/s", "p50 (µs)", "p99 (µs)", "p99,9 (µs)", "Máx (µs)");
+            for (Operacao operacao : OPERACOES) {
+                HistogramaDeLatencias.Fotografia histograma = getLatencias(operacao);
+                saida.printf("%-18s %11d %10d %10.0f %10.1f %10.1f %10.1f %10.1f%n",
+                        operacao.getDescricao(), histograma.getTotal(), getRecusadas(operacao), histograma.getTotal() / duracao,
+                        histograma.getPercentil(0.50) / 1e3, histograma.getPercentil(0.99) / 1e3,
+                        histograma.getPercentil(0.999) / 1e3, histograma.getMaximo() / 1e3);
+            }
+            saida.printf("Total: %.0f operações por segundo.%n", getOperacoesPorSegundo());
+            if (getQuantidadeDeViolacoes() == 0) {
+                saida.println("Nenhuma violação de invariantes.");
+            } else {
+                saida.println(getQuantidadeDeViolacoes() + " violação(ões) de invariantes:");
+                for (String violacao : getViolacoes()) {
+                    saida.println("  - " + violacao);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executa a simulação sobre os dados de um contexto da aplicação.
+     *
+     * @param app O contexto, já com os dados carregados.
+     * @return O resultado da simulação.
+     * @throws InterruptedException Se a thread for interrompida enquanto espera os terminais.
+     */
+    public Resultado executar(AppContext app) throws InterruptedException {
+        DadosDoSistema dados = app.getDados();
+        Produto[] produtos = dados.catalogo.getListaDeProdutos().toArray(new Produto[0]);
+        if (produtos.length == 0) {
+            throw new IllegalArgumentException("O catálogo está vazio.");
+        }
+
+        // Situação inicial de cada produto, para a conferência final.
+        long[] quantidadeInicial = new long[produtos.length];
+        long[] vendidoNoHistoricoInicial = new long[produtos.length];
+        for (int i = 0; i < produtos.length; i++) {
+            quantidadeInicial[i] = PontoFixo.paraMilesimos(dados.estoque.getQuantidadeDisponivel(produtos[i].getCodigoDeBarras()));
+            vendidoNoHistoricoInicial[i] = dados.historicoDeVendas.getTotaisPorProduto(produtos[i].getCodigoDeBarras()).getQuantidadeEmMilesimos();
+        }
+        // O que cada produto vendeu, descartou e recebeu, em milésimos, segundo os terminais.
+        Movimentos movimentos = new Movimentos(produtos.length);
+
+        Resultado resultado = new Resultado();
+        Terminal[] terminaisDaSimulacao = new Terminal[terminais];
+        SplittableRandom raiz = new SplittableRandom(semente);
+        for (int t = 0; t < terminais; t++) {
+            terminaisDaSimulacao[t] = new Terminal(dados, produtos, movimentos, resultado,
+                    raiz.split(), new DistribuicaoZipf(produtos.length, expoenteZipf, raiz.nextLong()));
+        }
+
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = criarExecutor(terminais);
+        resultado.threadsVirtuais = !(executor instanceof ThreadPoolExecutor);
+        List<Future<?>> execucoes = new ArrayList<>();
+        long inicio;
+        try {
+            for (Terminal terminal : terminaisDaSimulacao) {
+                execucoes.add(executor.submit(() -> {
+                    largada.await();
+                    terminal.operar();
+                    return null;
+                }));
+            }
+            inicio = System.nanoTime();
+            for (Terminal terminal : terminaisDaSimulacao) {
+                terminal.fim = inicio + TimeUnit.SECONDS.toNanos(segundos);
+            }
+            largada.countDown();
+            for (Future<?> execucao : execucoes) {
+                try {
+                    execucao.get();
+                } catch (ExecutionException e) {
+                    resultado.registrarViolacao("Terminal interrompido por erro inesperado: " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        resultado.duracaoEmNanossegundos = System.nanoTime() - inicio;
+        conferirInvariantes(dados, produtos, quantidadeInicial, vendidoNoHistoricoInicial, movimentos, resultado);
+        return resultado;
+    }
+
+    /**
+     * Confere, com todos os terminais parados, se o estoque e o histórico
+     * refletem exatamente as operações que os terminais concluíram.
+     */
+    private static void conferirInvariantes(DadosDoSistema dados, Produto[] produtos, long[] quantidadeInicial,
+                                            long[] vendidoNoHistoricoInicial, Movimentos movimentos, Resultado resultado) {
+        for (int i = 0; i < produtos.length; i++) {
+            String codigo = produtos[i].getCodigoDeBarras();
+            long esperado = quantidadeInicial[i] + movimentos.recebido.get(i) - movimentos.vendido.get(i) - movimentos.descartado.get(i);
+            long atual = PontoFixo.paraMilesimos(dados.estoque.getQuantidadeDisponivel(codigo));
+            if (atual < 0) {
+                resultado.registrarViolacao("Estoque negativo no fim: " + codigo + " com " + PontoFixo.deMilesimos(atual));
+            } else if (atual != esperado) {
+                resultado.registrarViolacao("Quantidade divergente: " + codigo + " tem " + PontoFixo.deMilesimos(atual)
+                        + ", mas as operações concluídas deixariam " + PontoFixo.deMilesimos(esperado));
+            }
+            long vendidoNoHistorico = dados.historicoDeVendas.getTotaisPorProduto(codigo).getQuantidadeEmMilesimos() - vendidoNoHistoricoInicial[i];
+            if (vendidoNoHistorico != movimentos.vendido.get(i)) {
+                resultado.registrarViolacao("Histórico divergente: " + codigo + " registrou " + PontoFixo.deMilesimos(vendidoNoHistorico)
+                        + " vendidos, mas os terminais venderam " + PontoFixo.deMilesimos(movimentos.vendido.get(i)));
+            }
+        }
+        if (!dados.estoque.verificarConsistencia()) {
+            resultado.registrarViolacao("Os totais por produto do estoque não conferem com os lotes.");
+        }
+        if (!dados.historicoDeVendas.verificarTotais()) {
+            resultado.registrarViolacao("Os totais do histórico de vendas não conferem com os registros.");
+        }
+    }
+
+    /**
+     * Cria o executor dos terminais: uma thread virtual por terminal, se a JVM
+     * oferecer (Java 21 ou mais recente), ou uma thread comum por terminal.
+     */
+    static ExecutorService criarExecutor(int terminais) {
+        try {
+            Method virtuais = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuais.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Sem threads virtuais (ou com elas desativadas, como no Java 19 e 20 sem --enable-preview).
+            AtomicInteger numero = new AtomicInteger();
+            return Executors.newFixedThreadPool(terminais, tarefa -> {
+                Thread thread = new Thread(tarefa, "caixa-" + numero.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** As quantidades movimentadas de cada produto (pela posição no catálogo), em milésimos. */
+    private static final class Movimentos {
+        final AtomicLongArray vendido;
+        final AtomicLongArray descartado;
+        final AtomicLongArray recebido;
+
+        Movimentos(int produtos) {
+            vendido = new AtomicLongArray(produtos);
+            descartado = new AtomicLongArray(produtos);
+            recebido = new AtomicLongArray(produtos);
+        }
+    }
+
+    /**
+     * Um caixa: sorteia e executa operações até o fim da simulação, medindo cada uma.
+     */
+    private final class Terminal {
+        private final DadosDoSistema dados;
+        private final Produto[] produtos;
+        private final Movimentos movimentos;
+        private final Resultado resultado;
+        private final SplittableRandom aleatorio;
+        private final DistribuicaoZipf popularidade;
+        volatile long fim;
+
+        Terminal(DadosDoSistema dados, Produto[] produtos, Movimentos movimentos, Resultado resultado,
+                 SplittableRandom aleatorio, DistribuicaoZipf popularidade) {
+            this.dados = dados;
+            this.produtos = produtos;
+            this.movimentos = movimentos;
+            this.resultado = resultado;
+            this.aleatorio = aleatorio;
+            this.popularidade = popularidade;
+        }
+
+        void operar() throws InterruptedException {
+            while (System.nanoTime() < fim) {
+                Operacao operacao = sortearOperacao();
+                HistogramaDeLatencias latencias = resultado.latencias[operacao.ordinal()];
+                long inicio = latencias.iniciar();
+                boolean atendida;
+                try {
+                    atendida = executar(operacao);
+                } catch (RuntimeException | Error e) {
+                    resultado.registrarViolacao(operacao.getDescricao() + " falhou com erro inesperado: " + e);
+                    atendida = false;
+                } catch (Exception e) {
+                    resultado.registrarViolacao(operacao.getDescricao() + " falhou: " + e.getMessage());
+                    atendida = false;
+                }
+                latencias.registrarDesde(inicio);
+                if (!atendida) {
+                    resultado.recusadas[operacao.ordinal()].incrementar();
+                }
+                if (pausaEmMilissegundos > 0) {
+                    Thread.sleep(pausaEmMilissegundos);
+                }
+            }
+        }
+
+        private Operacao sortearOperacao() {
+            int sorteio = aleatorio.nextInt(SOMA_DOS_PESOS);
+            for (Operacao operacao : OPERACOES) {
+                sorteio -= operacao.peso;
+                if (sorteio < 0) {
+                    return operacao;
+                }
+            }
+            return Operacao.CONSULTA;
+        }
+
+        /**
+         * Executa uma operação.
+         * @return `false` se ela foi recusada pelas regras de negócio (estoque insuficiente).
+         */
+        private boolean executar(Operacao operacao) throws Exception {
+            int posicao = popularidade.sortear();
+            Produto produto = produtos[posicao];
+            String codigo = produto.getCodigoDeBarras();
+            try {
+                switch (operacao) {
+                    case CONSULTA:
+                        dados.catalogo.buscarProduto(codigo).getPrecoUnitario();
+                        dados.estoque.getQuantidadeDisponivel(codigo);
+                        return true;
+                    case VENDA:
+                        long quantidade = sortearQuantidade(produto, 3, 2_000);
+                        dados.estoque.registrarVenda(codigo, PontoFixo.deMilesimos(quantidade), dados.historicoDeVendas);
+                        movimentos.vendido.addAndGet(posicao, quantidade);
+                        if (dados.estoque.getQuantidadeDisponivel(codigo) < 0) {
+                            resultado.registrarViolacao("Estoque negativo após uma venda: " + codigo);
+                        }
+                        return true;
+                    case VENDA_EM_CESTA:
+                        venderCesta(posicao);
+                        return true;
+                    case RELATORIO:
+                        if (aleatorio.nextBoolean()) {
+                            dados.estoque.getAvisos();
+                        } else {
+                            LocalDate hoje = RelogioDoNegocio.getInstance().getHoje();
+                            dados.historicoDeVendas.getTotaisPorPeriodo(codigo, hoje.minusDays(30), hoje);
+                        }
+                        return true;
+                    case DESCARTE:
+                        long descartada = sortearQuantidade(produto, 2, 1_000);
+                        dados.estoque.registrarDescarte(codigo, PontoFixo.deMilesimos(descartada));
+                        movimentos.descartado.addAndGet(posicao, descartada);
+                        return true;
+                    case ENTRADA_DE_LOTE:
+                        long recebida = sortearQuantidade(produto, 200, 50_000);
+                        dados.estoque.adicionarLote(criarLote(produto, recebida));
+                        movimentos.recebido.addAndGet(posicao, recebida);
+                        return true;
+                    default:
+                        throw new IllegalStateException("Operação desconhecida: " + operacao);
+                }
+            } catch (QuantidadeInsuficienteException e) {
+                return false;
+            }
+        }
+
+        /** Vende de 2 a 6 produtos de uma vez (tudo ou nada). */
+        private void venderCesta(int primeiraPosicao) throws Exception {
+            int linhas = 2 + aleatorio.nextInt(5);
+            int[] posicoes = new int[linhas];
+            long[] quantidades = new long[linhas];
+            List<ItemVenda> itens = new ArrayList<>(linhas);
+            for (int i = 0; i < linhas; i++) {
+                posicoes[i] = i == 0 ? primeiraPosicao : popularidade.sortear();
+                quantidades[i] = sortearQuantidade(produtos[posicoes[i]], 3, 2_000);
+                itens.add(new ItemVenda(produtos[posicoes[i]].getCodigoDeBarras(), PontoFixo.deMilesimos(quantidades[i])));
+            }
+            dados.estoque.registrarVendas(itens, dados.historicoDeVendas);
+            for (int i = 0; i < linhas; i++) {
+                movimentos.vendido.addAndGet(posicoes[i], quantidades[i]);
+            }
+        }
+
+        /**
+         * Sorteia uma quantidade, em milésimos: de 1 ao máximo de unidades, ou
+         * de 0,1 ao máximo de milésimos (em múltiplos de 5) para peso e volume.
+         */
+        private long sortearQuantidade(Produto produto, int maximoDeUnidades, int maximoDeMilesimos) {
+            if (produto.getGrandeza() == Grandeza.UNIDADE) {
+                return 1_000L * (1 + aleatorio.nextInt(maximoDeUnidades));
+            }
+            return 100 + 5L * aleatorio.nextInt((maximoDeMilesimos - 100) / 5 + 1);
+        }
+
+        private Lote criarLote(Produto produto, long quantidade) {
+            Lote lote = produto.getGrandeza() == Grandeza.UNIDADE && aleatorio.nextBoolean()
+                    ? new LoteNaoPerecivel(produto, PontoFixo.deMilesimos(quantidade))
+                    : new LotePerecivel(produto, PontoFixo.deMilesimos(quantidade),
+                            RelogioDoNegocio.getInstance().getHoje().plusDays(30 + aleatorio.nextInt(336)));
+            lote.setFornecedor("Simulação de carga");
+            lote.setCustoDoLote(PontoFixo.deCentavos(PontoFixo.valorDe(produto.getPrecoUnitarioEmCentavos() / 2, quantidade)));
+            return lote;
+        }
+    }
+
+    /**
+     * Executa a simulação pela linha de comando.
+     * Uso: `SimuladorDeCaixas <arquivo> [terminais] [segundos] [pausaEmMs] [semente]`
+     *
+     * Se o arquivo de dados não existir, a simulação usa os dados de uma loja
+     * gerados pelo `GeradorDeDados`. A saída termina com o código 2 se alguma
+     * invariante for violada.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Uso: SimuladorDeCaixas <arquivo> [terminais] [segundos] [pausaEmMs] [semente]");
+            System.exit(1);
+        }
+        int terminais = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        long pausa = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        long semente = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        // Trabalha em uma cópia, para não alterar o arquivo (nem o seu diário de operações).
+        Path pasta = Files.createTempDirectory("stokos-carga");
+        int violacoes;
+        String copia = pasta.resolve("dados.stk").toString();
+        try {
+            Path original = Paths.get(args[0]);
+            if (Files.exists(original)) {
+                for (String extensao : new String[] { "", ".vendas", ".diario" }) {
+                    Path arquivo = Paths.get(args[0] + extensao);
+                    if (Files.exists(arquivo)) {
+                        Files.copy(arquivo, Paths.get(copia + extensao), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            } else {
+                System.out.println("Arquivo " + args[0] + " não encontrado: gerando os dados de uma loja (5.000 produtos).");
+                ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(copia);
+                try {
+                    new GeradorDeDados(semente, 5_000, 20_000, 1_000_000).gerarEm(armazenamento);
+                } finally {
+                    armazenamento.fechar();
+                }
+            }
+
+            AppContext app = new AppContext(copia);
+            // As métricas do próprio sistema ficam visíveis no JMX durante a simulação.
+            app.registrarMetricas();
+            System.out.printf("Simulando %d terminais por %d s (pausa de %d ms), sobre %d produtos e %d lotes...%n",
+                    terminais, segundos, pausa, app.getDados().catalogo.getListaDeProdutos().size(),
+                    app.getDados().estoque.getLotes().size());
+            Resultado resultado = new SimuladorDeCaixas(terminais, segundos, pausa, semente).executar(app);
+            resultado.imprimir(System.out);
+            violacoes = resultado.getQuantidadeDeViolacoes();
+        } finally {
+            try (Stream<Path> arquivos = Files.list(pasta)) {
+                arquivos.forEach(arquivo -> arquivo.toFile().delete());
+            }
+            Files.deleteIfExists(pasta);
+        }
+        // O diário da cópia não precisa ser fechado: a JVM termina aqui.
+        System.exit(violacoes > 0 ? 2 : 0);
+    }
+}
@@ -0,0 +1,29 @@
+package stokos.benchmarks;
+
+import java.util.SplittableRandom;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Sorteia os produtos usados em cada chamada de um benchmark.
+ * Cada thread do benchmark tem o seu próprio sorteio (`Scope.Thread`), para que
+ * vários caixas simulados (opção `-t` do JMH) não disputem o mesmo gerador.
+ */
+@State(Scope.Thread)
+public class Sorteio {
+
+    private SplittableRandom aleatorio;
+
+    @Setup
+    public void preparar() {
+        aleatorio = new SplittableRandom(Cenario.SEMENTE + Thread.currentThread().getId());
+    }
+
+    /**
+     * Retorna um número entre 0 (inclusive) e `limite` (exclusive).
+     */
+    public int proximo(int limite) {
+        return aleatorio.nextInt(limite);
+    }
+}
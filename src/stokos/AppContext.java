@@ -3,6 +3,7 @@ package stokos;
 import stokos.service.*;
 import stokos.model.*;
 import stokos.persistence.*;
+import stokos.metricas.Metricas;
 
 /**
  * A classe AppContext implementa o padrão de projeto Singleton.
@@ -21,6 +22,8 @@ public class AppContext {
     private ServicoDeAutenticacao servicoDeAutenticacao;
     private DadosDoSistema dados;
     private Usuario usuarioLogado; // Guarda o usuário da sessão atual.
+    // Aviso a ser mostrado ao usuário sobre o último carregamento (ou `null` se tudo correu bem).
+    private String avisoDoCarregamento;
 
 
 
@@ -32,7 +35,14 @@ public class AppContext {
     public AppContext(String caminhoArquivo) {
         this.servicoDeAutenticacao = new ServicoDeAutenticacao();
         // Usa o caminho fornecido para criar o serviço de armazenamento
-        this.servicoDeArmazenamento = new ArmazenamentoEmArquivo(caminhoArquivo);
+        // (arquivos comprimidos não podem ser mapeados em memória).
+        if (Config.COMPRIMIR_ARQUIVOS_DE_DADOS) {
+            this.servicoDeArmazenamento = new ArmazenamentoEmArquivo(caminhoArquivo, new CodecDeflate());
+        } else if (Config.USAR_ARQUIVO_MAPEADO_EM_MEMORIA) {
+            this.servicoDeArmazenamento = new ArmazenamentoMapeado(caminhoArquivo);
+        } else {
+            this.servicoDeArmazenamento = new ArmazenamentoEmArquivo(caminhoArquivo);
+        }
         carregarDados();
     }
 
@@ -55,13 +65,25 @@ public class AppContext {
      * ausência de um arquivo de dados, a aplicação inicie com um estado válido.
      */
     public void carregarDados() {
+        this.avisoDoCarregamento = null;
         try {
             this.dados = servicoDeArmazenamento.carregarDados();
             if (this.dados == null) { // Se o arquivo de dados não existe...
                 this.dados = new DadosDoSistema(); // ...cria um novo objeto de dados vazio.
             }
+            // Operações do diário que não puderam ser refeitas: os dados abriram,
+            // mas sem elas. O usuário precisa saber para conferir o estoque.
+            if (servicoDeArmazenamento instanceof ArmazenamentoEmArquivo) {
+                int naoReaplicadas = ((ArmazenamentoEmArquivo) servicoDeArmazenamento).getOperacoesNaoReaplicadas();
+                if (naoReaplicadas > 0) {
+                    this.avisoDoCarregamento = naoReaplicadas + " operação(ões) registrada(s) desde o último salvamento"
+                            + " não puderam ser recuperadas. Confira o estoque e as vendas recentes.";
+                    System.err.println(this.avisoDoCarregamento);
+                }
+            }
         } catch (Exception e) {
-            System.err.println("Falha ao carregar dados, iniciando com sistema novo.");
+            Metricas.getInstance().contador("aplicacao.falhasAoCarregar").incrementar();
+            System.err.println("Falha ao carregar dados, iniciando com sistema novo: " + e.getMessage());
             this.dados = new DadosDoSistema(); // Em caso de erro, também inicia um sistema novo.
         }
 
@@ -75,6 +97,14 @@ public class AppContext {
         sincronizarContadorProdutos();
     }
 
+    /**
+     * Retorna o aviso sobre o último carregamento dos dados, a ser mostrado ao
+     * usuário, ou `null` se os dados foram carregados por completo.
+     */
+    public String getAvisoDoCarregamento() {
+        return avisoDoCarregamento;
+    }
+
     /**
      * Delega a tarefa de salvar os dados do sistema para o serviço de armazenamento.
      * É chamado pelo "Shutdown Hook" na classe Main.
@@ -83,10 +113,38 @@ public class AppContext {
         try {
             servicoDeArmazenamento.salvarDados(this.dados);
         } catch (Exception e) {
-            System.err.println("Falha crítica ao salvar os dados.");
+            Metricas.getInstance().contador("aplicacao.falhasAoSalvar").incrementar();
+            System.err.println("Falha crítica ao salvar os dados: " + e.getMessage());
         }
     }
+
+    /**
+     * Registra, nas métricas do sistema (`Metricas`), os medidores do tamanho
+     * dos dados deste contexto (lotes, produtos e vendas) e publica as métricas
+     * no JMX. É chamado pela classe Main, apenas para a aplicação principal;
+     * os medidores sempre leem os dados atuais, mesmo que eles sejam recarregados.
+     */
+    public void registrarMetricas() {
+        Metricas metricas = Metricas.getInstance();
+        metricas.registrarMedidor("estoque.lotes", () -> dados.estoque.getQuantidadeDeLotes());
+        metricas.registrarMedidor("catalogo.produtos", () -> dados.catalogo.getListaDeProdutos().size());
+        metricas.registrarMedidor("historico.vendas", () -> dados.historicoDeVendas.getQuantidadeDeVendas());
+        metricas.registrarNoJmx();
+    }
     
+    /**
+     * Inicia a compactação periódica do diário de operações em segundo plano,
+     * quando o serviço de armazenamento a oferece. É chamado pela classe Main,
+     * apenas para a aplicação principal.
+     */
+    public void iniciarCompactacaoPeriodica() {
+        if (servicoDeArmazenamento instanceof ArmazenamentoEmArquivo) {
+            ((ArmazenamentoEmArquivo) servicoDeArmazenamento).iniciarCompactacaoPeriodica(
+                    Config.INTERVALO_DE_COMPACTACAO_DO_DIARIO_EM_SEGUNDOS,
+                    Config.TAMANHO_MAXIMO_DO_DIARIO_EM_BYTES);
+        }
+    }
+
     /**
      * Sincroniza o contador estático de Lotes.
      * Após carregar os dados, este método percorre os lotes existentes, encontra o
@@ -95,8 +153,9 @@ public class AppContext {
      */
     private void sincronizarContadorDeLotes() {
         int maxId = 0;
-        if (this.dados.estoque != null && this.dados.estoque.getLotes() != null) {
-            for (Lote lote : this.dados.estoque.getLotes()) {
+        if (this.dados.estoque != null) {
+            // Ainda no carregamento, antes de qualquer venda: os lotes não precisam ser copiados.
+            for (Lote lote : this.dados.estoque.getLotesSemCopia()) {
                 if (lote.getId() > maxId) {
                     maxId = lote.getId();
                 }
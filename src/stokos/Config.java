@@ -49,4 +49,66 @@ public final class Config {
      * Usado pelo `ServicoDeExportacao`.
      */
     public static final String CAMINHO_SAIDA_ARQUIVO_CSV = "./relatorio_stokos.csv";
-}
\ No newline at end of file
+
+    /**
+     * Define o número máximo de produtos exibidos em uma busca por nome.
+     * Usado pela `TelaProdutos`.
+     */
+    public static final int LIMITE_DE_RESULTADOS_DA_BUSCA = 50;
+
+    /**
+     * Define se cada operação gravada no diário de operações deve ser forçada
+     * fisicamente no disco (fsync) antes de prosseguir. Com `true`, nenhuma
+     * operação concluída se perde nem em uma queda de energia; com `false`, a
+     * gravação é mais rápida e só está protegida contra o encerramento do programa.
+     * Usado pelo `ArmazenamentoEmArquivo`.
+     */
+    public static final boolean SINCRONIZAR_DIARIO_A_CADA_OPERACAO = true;
+
+    /**
+     * Define o intervalo, em segundos, entre as compactações do diário de
+     * operações feitas em segundo plano (uma nova fotografia completa dos dados
+     * é gravada e o diário é esvaziado).
+     * Usado pelo `ArmazenamentoEmArquivo`.
+     */
+    public static final long INTERVALO_DE_COMPACTACAO_DO_DIARIO_EM_SEGUNDOS = 300;
+
+    /**
+     * Define o tamanho, em bytes, a partir do qual o diário de operações é
+     * compactado imediatamente, sem esperar o intervalo acima.
+     */
+    public static final long TAMANHO_MAXIMO_DO_DIARIO_EM_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Define se o arquivo de dados deve ser lido por mapeamento em memória
+     * (`ArmazenamentoMapeado`), que não carrega o histórico de vendas ao iniciar.
+     * Fica desativado no Windows, que não permite substituir um arquivo mapeado
+     * ao salvar. Usado pelo `AppContext`.
+     */
+    public static final boolean USAR_ARQUIVO_MAPEADO_EM_MEMORIA =
+            !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
+    /**
+     * Define se os arquivos de dados devem ser gravados comprimidos (Deflate, em
+     * blocos). Reduz várias vezes o tamanho dos arquivos e o tempo de cópias de
+     * segurança, ao custo de um pouco de processamento ao salvar e carregar, e
+     * desativa o mapeamento em memória. Arquivos já gravados são lidos com ou sem
+     * compressão. Usado pelo `AppContext`.
+     */
+    public static final boolean COMPRIMIR_ARQUIVOS_DE_DADOS = false;
+
+    /**
+     * Define o caminho do arquivo em que as métricas de funcionamento (tempos
+     * das vendas, salvamentos, tamanho do estoque etc.) são gravadas quando a
+     * aplicação é encerrada. Usado pela classe `Main`.
+     */
+    public static final String CAMINHO_DAS_METRICAS = "./stokos_metricas.txt";
+
+    /**
+     * Define de quantas em quantas chamadas das operações mais frequentes
+     * (vendas e buscas de produto por código) uma tem o tempo medido para as
+     * métricas; todas são contadas. Deve ser uma potência de 2 (1 para medir todas).
+     * Usado pelo `Estoque` e pelo `CatalogoDeProdutos`.
+     */
+    public static final int AMOSTRAGEM_DAS_OPERACOES_FREQUENTES = 16;
+}
@@ -1,10 +1,13 @@
 package stokos;
 
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import java.io.IOException;
 
 
 import stokos.gui.TelaLogin;
+import stokos.metricas.Metricas;
 
 /**
  * Ponto de entrada da aplicação Stokos.
@@ -38,12 +41,25 @@ public class Main {
         // A primeira chamada a `getInstance()` carrega os dados e inicializa os serviços.
         final AppContext app = AppContext.getInstance();
 
+        // Compacta o diário de operações periodicamente, em uma thread de segundo
+        // plano, para que ele não cresça indefinidamente entre execuções longas.
+        app.iniciarCompactacaoPeriodica();
+
+        // Publica as métricas de funcionamento (tempos das operações, tamanho dos
+        // dados) no JMX, para acompanhamento pelo JConsole ou VisualVM.
+        app.registrarMetricas();
+
         // 2. CONFIGURAÇÃO DO SALVAMENTO AUTOMÁTICO
         // Registra um "Shutdown Hook": uma thread que é executada automaticamente
         // antes de a aplicação fechar. Isto garante que os dados serão salvos.
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Desligando o sistema... salvando dados.");
             app.salvarDados();
+            try {
+                Metricas.getInstance().gravarEm(Config.CAMINHO_DAS_METRICAS);
+            } catch (IOException e) {
+                System.err.println("Falha ao gravar as métricas: " + e.getMessage());
+            }
             System.out.println("Dados salvos. Até logo!");
         }));
 
@@ -51,6 +67,11 @@ public class Main {
         // `SwingUtilities.invokeLater` agenda a criação da GUI na Event Dispatch Thread (EDT).
         // Esta é a forma correta e segura de iniciar aplicações Swing, evitando problemas de concorrência.
         SwingUtilities.invokeLater(() -> {
+            // Se parte das operações da sessão anterior não pôde ser recuperada, avisa antes de tudo.
+            if (app.getAvisoDoCarregamento() != null) {
+                JOptionPane.showMessageDialog(null, app.getAvisoDoCarregamento(),
+                        "Dados incompletos", JOptionPane.WARNING_MESSAGE);
+            }
             // Cria e torna visível a tela de login inicial.
             new TelaLogin().setVisible(true);
         });
@@ -3,13 +3,28 @@ package stokos;
 import stokos.model.*;
 import stokos.service.ServicoDeAutenticacao;
 import stokos.service.ServicoDeExportacao;
+import stokos.persistence.ArmazenamentoEmArquivo;
+import stokos.persistence.ArmazenamentoMapeado;
+import stokos.persistence.CodecDeflate;
+import stokos.persistence.DiarioDeOperacoes;
+import stokos.metricas.Metricas;
 import stokos.exception.*;
 import javax.swing.table.DefaultTableModel;
 import java.io.File; // Importe a classe File
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Classe dedicada a realizar testes funcionais na lógica de negócio do sistema Stokos.
@@ -61,6 +76,78 @@ public class TesteFuncionalidades {
             limparDados(appTeste);
             testePersistencia(appTeste);
 
+            System.out.println("\n[9. TESTE: ORDEM DE CONSUMO DOS LOTES (FEFO)]");
+            limparDados(appTeste);
+            testeOrdemDeConsumoFEFO(appTeste);
+
+            System.out.println("\n[10. TESTE: RECUPERAÇÃO PELO DIÁRIO DE OPERAÇÕES]");
+            limparDados(appTeste);
+            testeDiarioDeOperacoes(appTeste);
+
+            System.out.println("\n[11. TESTE: COMPACTAÇÃO DO DIÁRIO DE OPERAÇÕES]");
+            limparDados(appTeste);
+            testeCompactacaoDoDiario(appTeste);
+
+            System.out.println("\n[12. TESTE: SALVAMENTO INCREMENTAL]");
+            limparDados(appTeste);
+            testeSalvamentoIncremental(appTeste);
+
+            System.out.println("\n[13. TESTE: ARQUIVOS DE DADOS COMPRIMIDOS]");
+            limparDados(appTeste);
+            testeArquivosComprimidos(appTeste);
+
+            System.out.println("\n[14. TESTE: VENDAS SIMULTÂNEAS EM VÁRIOS CAIXAS]");
+            limparDados(appTeste);
+            testeVendasSimultaneas(appTeste);
+
+            System.out.println("\n[15. TESTE: FOTOGRAFIA DO ESTOQUE DURANTE AS VENDAS]");
+            limparDados(appTeste);
+            testeFotografiaDuranteVendas(appTeste);
+
+            System.out.println("\n[16. TESTE: VENDA DE UMA CESTA DE COMPRAS]");
+            limparDados(appTeste);
+            testeVendaDeCesta(appTeste);
+
+            System.out.println("\n[17. TESTE: TOTAIS DE VENDAS POR PERÍODO]");
+            limparDados(appTeste);
+            testeTotaisPorPeriodo(appTeste);
+
+            System.out.println("\n[18. TESTE: VENDAS FRACIONADAS SEM RESÍDUOS]");
+            limparDados(appTeste);
+            testeVendasFracionadas(appTeste);
+
+            System.out.println("\n[19. TESTE: RELÓGIO DO NEGÓCIO COM DATA FIXA]");
+            limparDados(appTeste);
+            testeRelogioDoNegocio(appTeste);
+
+            System.out.println("\n[20. TESTE: MÉTRICAS DE FUNCIONAMENTO]");
+            limparDados(appTeste);
+            testeMetricas(appTeste);
+
+            System.out.println("\n[21. TESTE: LEITURA MAPEADA DO ARQUIVO DE DADOS]");
+            limparDados(appTeste);
+            testeLeituraMapeada(appTeste);
+
+            System.out.println("\n[22. TESTE: HISTÓRICO DE VENDAS EM COLUNAS]");
+            limparDados(appTeste);
+            testeHistoricoEmColunas();
+
+            System.out.println("\n[23. TESTE: COMPACTAÇÃO DURANTE VENDAS SIMULTÂNEAS]");
+            limparDados(appTeste);
+            testeCompactacaoDuranteVendas(appTeste);
+
+            System.out.println("\n[24. TESTE: AVISO DE OPERAÇÕES NÃO RECUPERADAS]");
+            limparDados(appTeste);
+            testeOperacoesNaoRecuperadas(appTeste);
+
+            System.out.println("\n[25. TESTE: QUANTIDADES MENORES QUE UM MILÉSIMO]");
+            limparDados(appTeste);
+            testeQuantidadesMenoresQueUmMilesimo(appTeste);
+
+            System.out.println("\n[26. TESTE: SALVAMENTO INCREMENTAL APÓS A COMPACTAÇÃO]");
+            limparDados(appTeste);
+            testeSalvamentoAposCompactacao(appTeste);
+
         } finally {
             // PASSO FINAL E CRUCIAL: Limpar o arquivo de dados de teste.
             // Este bloco é executado mesmo que um teste falhe.
@@ -72,6 +159,14 @@ public class TesteFuncionalidades {
                     System.err.println("\n-> Falha ao limpar o arquivo de dados de teste.");
                 }
             }
+            File diarioDeTeste = new File(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".diario");
+            if (diarioDeTeste.exists() && !diarioDeTeste.delete()) {
+                System.err.println("-> Falha ao limpar o diário de operações de teste.");
+            }
+            File historicoDeTeste = new File(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".vendas");
+            if (historicoDeTeste.exists() && !historicoDeTeste.delete()) {
+                System.err.println("-> Falha ao limpar o histórico de vendas de teste.");
+            }
         }
 
         System.out.println("\n--- FIM DOS TESTES ---");
@@ -166,6 +261,22 @@ public class TesteFuncionalidades {
                 System.err.println("FALHA: A quantidade em estoque não reflete a adição do lote.");
             }
 
+            // Índice de lotes por produto: após alterar o código de barras, os lotes
+            // continuam encontrados pelo novo código, sem misturar com outro produto.
+            Produto sabao = new ProdutoComum("789002", "Sabão em Pó", 12.00, Grandeza.UNIDADE);
+            app.getDados().catalogo.cadastrarProduto(sabao);
+            app.getDados().estoque.adicionarLote(new LoteNaoPerecivel(sabao, 40));
+            detergente.setCodigoDeBarras("789091");
+            app.getDados().estoque.registrarVenda("789091", 30, app.getDados().historicoDeVendas);
+            if (app.getDados().estoque.getQuantidadeDisponivel("789091") == 70
+                    && app.getDados().estoque.getQuantidadeDisponivel("789001") == 0
+                    && app.getDados().estoque.getQuantidadeDisponivel("789002") == 40
+                    && lote1.getQuantidade() == 70) {
+                System.out.println("SUCESSO: Os lotes continuam indexados pelo produto após a troca do código de barras.");
+            } else {
+                System.err.println("FALHA: O índice de lotes não acompanhou a troca do código de barras.");
+            }
+
         } catch (Exception e) {
             System.err.println("ERRO INESPERADO NO TESTE: " + e.getMessage());
         }
@@ -195,6 +306,11 @@ public class TesteFuncionalidades {
             } else {
                  System.err.println("FALHA: O estoque não foi atualizado corretamente após a venda.");
             }
+            if (estoque.verificarConsistencia()) {
+                System.out.println("SUCESSO: Totais mantidos do estoque conferem com a soma dos lotes.");
+            } else {
+                System.err.println("FALHA: Totais mantidos do estoque divergem da soma dos lotes.");
+            }
             
             // Teste de falha
             System.out.println("\n-> Testando falha esperada (quantidade insuficiente)...");
@@ -209,7 +325,8 @@ public class TesteFuncionalidades {
     }
 
     /**
-     * Testa a lógica de geração de alertas de estoque baixo e de vencimento próximo.
+     * Testa a lógica de geração de alertas de estoque baixo e de vencimento próximo,
+     * e se os alertas acompanham as vendas.
      */
     public static void testeAlertasDeEstoque(AppContext app) {
         try {
@@ -222,24 +339,20 @@ public class TesteFuncionalidades {
             Lote loteIogurte = new LotePerecivel(iogurte, 5, java.time.LocalDate.now().plusDays(2)); // Vence em 2 dias
             app.getDados().estoque.adicionarLote(loteIogurte);
 
-            // Lógica de geração de alertas (simulando a da TelaAvisos)
+            // Ação de teste 1: consulta os avisos mantidos pelo motor de alertas (os mesmos da TelaAvisos).
             ArrayList<String> alertas = new ArrayList<>();
-            // Verificação de estoque mínimo
-            for (Produto p : app.getDados().catalogo.getListaDeProdutos()) {
-                double qtdDisponivel = app.getDados().estoque.getQuantidadeDisponivel(p.getCodigoDeBarras());
-                if (p.getEstoqueMinimo() > 0 && qtdDisponivel <= p.getEstoqueMinimo()) {
-                    alertas.add("ESTOQUE BAIXO: " + p.getNomeDoProduto());
-                }
-            }
-            // Verificação de vencimento
-            for (Lote l : app.getDados().estoque.getLotes()) {
-                if (l.estaPertoDeVencer()) {
-                    alertas.add("VENCIMENTO PRÓXIMO: " + l.getProduto().getNomeDoProduto());
-                }
+            for (Aviso aviso : app.getDados().estoque.getAvisos()) {
+                alertas.add(aviso.getTipo() + ": " + aviso.getProduto().getNomeDoProduto());
             }
 
+            // Ação de teste 2: vende o lote inteiro; o aviso de validade some e o de estoque vira "zerado".
+            app.getDados().estoque.registrarVenda("789003", 5, app.getDados().historicoDeVendas);
+            List<Aviso> depoisDaVenda = app.getDados().estoque.getAvisos();
+
             // Verificação
-            if (alertas.contains("ESTOQUE BAIXO: Iogurte Natural") && alertas.contains("VENCIMENTO PRÓXIMO: Iogurte Natural")) {
+            if (alertas.contains("ESTOQUE_BAIXO: Iogurte Natural") && alertas.contains("VENCIMENTO_PROXIMO: Iogurte Natural")
+                    && depoisDaVenda.size() == 1
+                    && depoisDaVenda.get(0).getTipo() == Aviso.Tipo.ESTOQUE_ZERADO) {
                 System.out.println("SUCESSO: Alertas de estoque baixo e vencimento próximo foram gerados corretamente.");
             } else {
                 System.err.println("FALHA: Os alertas esperados não foram gerados. Alertas recebidos: " + alertas);
@@ -271,6 +384,23 @@ public class TesteFuncionalidades {
             } else {
                 System.err.println("FALHA: A modificação do produto não foi refletida.");
             }
+
+            // Busca por nome após a renomeação, ignorando maiúsculas e acentos.
+            ArrayList<Produto> encontrados = catalogo.buscarProdutosPorNome("ype sup", 10);
+            if (encontrados.size() == 1 && encontrados.get(0) == pModificado
+                    && catalogo.buscarProdutosPorNome("Ypê Limpol").isEmpty()) {
+                System.out.println("SUCESSO: Busca por nome encontrou o produto renomeado, ignorando acentos.");
+            } else {
+                System.err.println("FALHA: A busca por nome não refletiu a renomeação do produto.");
+            }
+
+            // Alteração do código de barras: o catálogo deve encontrar o produto pelo novo código.
+            pModificado.setCodigoDeBarras("789099");
+            if (catalogo.buscarProduto("789099") == pModificado && catalogo.buscarProduto("789001") == null) {
+                System.out.println("SUCESSO: Código de barras alterado e refletido nas buscas do catálogo.");
+            } else {
+                System.err.println("FALHA: A busca pelo código de barras alterado não foi atualizada.");
+            }
         } catch (Exception e) {
              System.err.println("FALHA: Produto para modificação não encontrado ou erro inesperado.");
         }
@@ -319,6 +449,14 @@ public class TesteFuncionalidades {
             // 1. Adicionar um produto único para o teste
             Produto produtoTeste = new ProdutoComum("999999", "Produto de Teste Persistencia", 99.99, Grandeza.UNIDADE);
             app.getDados().catalogo.cadastrarProduto(produtoTeste);
+            // Um produto com imposto, com um lote parcialmente vendido.
+            Produto vinho = new ProdutoComImposto("999998", "Vinho Tinto", 40.00, Grandeza.VOLUME, 18.0);
+            app.getDados().catalogo.cadastrarProduto(vinho);
+            Lote loteDeVinho = new LotePerecivel(vinho, 12, java.time.LocalDate.now().plusYears(2));
+            loteDeVinho.setCustoDoLote(240.0);
+            app.getDados().estoque.adicionarLote(loteDeVinho);
+            app.getDados().estoque.registrarVenda("999998", 5, app.getDados().historicoDeVendas);
+            double lucroEsperado = app.getDados().historicoDeVendas.getLucroTotalPorProduto("999998");
 
             // 2. Salvar os dados no arquivo de TESTE
             app.salvarDados();
@@ -338,9 +476,958 @@ public class TesteFuncionalidades {
                 System.err.println("FALHA: O produto de teste não foi encontrado após carregar os dados.");
             }
 
+            // 5. Verificar o estoque, os totais do produto e o histórico de vendas
+            DadosDoSistema recarregados = appRecarregado.getDados();
+            Produto vinhoCarregado = recarregados.catalogo.buscarProduto("999998");
+            if (vinhoCarregado instanceof ProdutoComImposto
+                    && ((ProdutoComImposto) vinhoCarregado).getPercentualIcms() == 18.0
+                    && vinhoCarregado.getQuantidadeVendida() == 5
+                    && recarregados.estoque.getQuantidadeDisponivel("999998") == 7
+                    && recarregados.historicoDeVendas.getLucroTotalPorProduto("999998") == lucroEsperado) {
+                System.out.println("SUCESSO: Lotes e vendas foram salvos e carregados corretamente.");
+            } else {
+                System.err.println("FALHA: Lotes ou vendas não foram restaurados corretamente.");
+            }
+
         } catch(Exception e) {
             System.err.println("FALHA: Ocorreu um erro no teste de persistência: " + e.getMessage());
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Testa se a venda consome primeiro o lote que vence antes (FEFO),
+     * mesmo que ele tenha sido adicionado ao estoque depois.
+     */
+    public static void testeOrdemDeConsumoFEFO(AppContext app) {
+        try {
+            // Setup: o lote que vence mais tarde entra primeiro no estoque.
+            Produto leite = new ProdutoComum("789004", "Leite Integral", 5.00, Grandeza.VOLUME);
+            app.getDados().catalogo.cadastrarProduto(leite);
+            Lote loteTardio = new LotePerecivel(leite, 10, java.time.LocalDate.now().plusDays(20));
+            Lote loteProximo = new LotePerecivel(leite, 10, java.time.LocalDate.now().plusDays(5));
+            app.getDados().estoque.adicionarLote(loteTardio);
+            app.getDados().estoque.adicionarLote(loteProximo);
+
+            // Ação de teste
+            app.getDados().estoque.registrarVenda("789004", 12, app.getDados().historicoDeVendas);
+
+            // Verificação: o lote mais próximo do vencimento foi esgotado e o outro perdeu 2 unidades.
+            if (loteProximo.getQuantidade() == 0 && loteTardio.getQuantidade() == 8
+                    && app.getDados().estoque.getQuantidadeDisponivel("789004") == 8) {
+                System.out.println("SUCESSO: A venda consumiu os lotes na ordem FEFO.");
+            } else {
+                System.err.println("FALHA: A venda não seguiu a ordem FEFO.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE FEFO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se as operações feitas depois do último salvamento são recuperadas
+     * pelo diário de operações, simulando o encerramento do programa sem salvar.
+     */
+    public static void testeDiarioDeOperacoes(AppContext app) {
+        try {
+            // Setup: grava um arquivo de dados vazio e abre uma nova sessão sobre ele.
+            app.salvarDados();
+            AppContext sessao = new AppContext(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = sessao.getDados();
+
+            // Ação de teste: operações registradas no diário, mas nunca salvas.
+            Produto cafe = new ProdutoComum("789005", "Café Torrado", 18.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(cafe);
+            cafe.setPrecoUnitario(19.50);
+            Lote lote = new LoteNaoPerecivel(cafe, 10);
+            lote.setCustoDoLote(100.0);
+            dados.estoque.adicionarLote(lote);
+            dados.estoque.registrarVenda("789005", 4, dados.historicoDeVendas);
+            List<ItemVenda> cesta = new ArrayList<>();
+            cesta.add(new ItemVenda("789005", 1));
+            cesta.add(new ItemVenda("789005", 2));
+            dados.estoque.registrarVendas(cesta, dados.historicoDeVendas);
+
+            // Verificação: uma nova sessão, carregada do mesmo arquivo, vê as operações.
+            System.out.println("-> Simulando reinicialização do sistema sem salvar...");
+            DadosDoSistema recuperados = new AppContext(Config.CAMINHO_TESTE_ARMAZENAMENTO).getDados();
+            Produto cafeRecuperado = recuperados.catalogo.buscarProduto("789005");
+            if (cafeRecuperado != null && cafeRecuperado.getPrecoUnitario() == 19.50
+                    && recuperados.estoque.getQuantidadeDisponivel("789005") == 3
+                    && recuperados.historicoDeVendas.getRegistros().size() == 3
+                    && recuperados.historicoDeVendas.getQuantidadeTotalVendida("789005") == 7
+                    && cafeRecuperado.getQuantidadeVendida() == 7) {
+                System.out.println("SUCESSO: As operações não salvas foram recuperadas pelo diário.");
+            } else {
+                System.err.println("FALHA: As operações do diário não foram reaplicadas corretamente.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DO DIÁRIO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se a compactação grava as operações do diário no arquivo principal
+     * e esvazia o diário, sem perder nenhuma operação.
+     */
+    public static void testeCompactacaoDoDiario(AppContext app) {
+        try {
+            // Setup: arquivo de dados vazio e operações registradas apenas no diário.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            Produto arroz = new ProdutoComum("789006", "Arroz Agulhinha", 6.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(arroz);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(arroz, 50));
+            dados.estoque.registrarVenda("789006", 5, dados.historicoDeVendas);
+
+            // Ação de teste
+            armazenamento.compactarDiario();
+            armazenamento.fechar();
+
+            // Verificação: o diário ficou vazio e os dados continuam completos.
+            File diario = new File(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".diario");
+            DadosDoSistema recarregados = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO).carregarDados();
+            if (diario.length() == 0 && recarregados.estoque.getQuantidadeDisponivel("789006") == 45) {
+                System.out.println("SUCESSO: O diário foi compactado no arquivo principal sem perda de operações.");
+            } else {
+                System.err.println("FALHA: A compactação do diário perdeu operações ou não esvaziou o diário.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE COMPACTAÇÃO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se as vendas de dois produtos feitas em caixas diferentes enquanto o
+     * diário é compactado chegam ao arquivo sem vendas repetidas nem perdidas.
+     */
+    public static void testeCompactacaoDuranteVendas(AppContext app) {
+        try {
+            // Setup: dois produtos e uma primeira venda de cada já salvas.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            Produto cafe = new ProdutoComum("789015", "Café Torrado", 15.00, Grandeza.UNIDADE);
+            Produto acucar = new ProdutoComum("789016", "Açúcar Cristal", 4.00, Grandeza.UNIDADE);
+            dados.catalogo.cadastrarProduto(cafe);
+            dados.catalogo.cadastrarProduto(acucar);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(cafe, 1000));
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(acucar, 1000));
+            dados.estoque.registrarVenda("789015", 1, dados.historicoDeVendas);
+            dados.estoque.registrarVenda("789016", 2, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+
+            // Ação de teste: um caixa vende café, outro vende açúcar, e o diário é
+            // compactado várias vezes enquanto isso.
+            Thread caixaDoCafe = new Thread(() -> venderVariasVezes(dados, "789015", 1));
+            Thread caixaDoAcucar = new Thread(() -> venderVariasVezes(dados, "789016", 2));
+            caixaDoCafe.start();
+            caixaDoAcucar.start();
+            while (caixaDoCafe.isAlive() || caixaDoAcucar.isAlive()) {
+                armazenamento.compactarDiario();
+            }
+            caixaDoCafe.join();
+            caixaDoAcucar.join();
+            dados.estoque.registrarVenda("789015", 1, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+            armazenamento.fechar();
+
+            // Verificação: 202 vendas de café (1 unidade) e 201 de açúcar (2 unidades).
+            DadosDoSistema recarregados = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO).carregarDados();
+            if (recarregados.historicoDeVendas.getRegistros().size() == 403
+                    && recarregados.historicoDeVendas.getQuantidadeTotalVendida("789015") == 202
+                    && recarregados.historicoDeVendas.getQuantidadeTotalVendida("789016") == 402
+                    && recarregados.estoque.getQuantidadeDisponivel("789015") == 798
+                    && recarregados.estoque.getQuantidadeDisponivel("789016") == 598) {
+                System.out.println("SUCESSO: A compactação durante as vendas não repetiu nem perdeu vendas.");
+            } else {
+                System.err.println("FALHA: O histórico gravado após a compactação tem vendas repetidas ou perdidas ("
+                        + recarregados.historicoDeVendas.getRegistros().size() + " vendas).");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE COMPACTAÇÃO DURANTE VENDAS: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se o salvamento feito depois de uma compactação do diário continua
+     * apenas acrescentando as vendas novas ao histórico, em vez de regravá-lo.
+     */
+    public static void testeSalvamentoAposCompactacao(AppContext app) {
+        try {
+            // Setup: um produto, um lote e duas vendas já salvas.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            Produto lentilha = new ProdutoComum("789017", "Lentilha", 9.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(lentilha);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(lentilha, 30));
+            dados.estoque.registrarVenda("789017", 1, dados.historicoDeVendas);
+            dados.estoque.registrarVenda("789017", 2, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+
+            Path historico = Paths.get(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".vendas");
+            long tamanhoAntes = Files.size(historico);
+            Object arquivoAntes = Files.readAttributes(historico, BasicFileAttributes.class).fileKey();
+
+            // Ação de teste: venda, compactação, outra venda e salvamento.
+            dados.estoque.registrarVenda("789017", 3, dados.historicoDeVendas);
+            armazenamento.compactarDiario();
+            long tamanhoAposCompactar = Files.size(historico);
+            dados.estoque.registrarVenda("789017", 4, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+            long tamanhoAposSalvar = Files.size(historico);
+            Object arquivoDepois = Files.readAttributes(historico, BasicFileAttributes.class).fileKey();
+            armazenamento.fechar();
+
+            // Verificação: cada etapa acrescentou exatamente uma venda ao mesmo arquivo.
+            DadosDoSistema recarregados = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO).carregarDados();
+            long umaVenda = tamanhoAposCompactar - tamanhoAntes;
+            boolean semRegravacao = arquivoAntes == null || Objects.equals(arquivoAntes, arquivoDepois);
+            if (semRegravacao && umaVenda > 0
+                    && tamanhoAposSalvar - tamanhoAposCompactar == umaVenda
+                    && recarregados.historicoDeVendas.getRegistros().size() == 4
+                    && recarregados.historicoDeVendas.getQuantidadeTotalVendida("789017") == 10
+                    && recarregados.estoque.getQuantidadeDisponivel("789017") == 20) {
+                System.out.println("SUCESSO: Após a compactação, o salvamento acrescentou apenas a venda nova.");
+            } else {
+                System.err.println("FALHA: O salvamento após a compactação regravou o histórico ou repetiu vendas ("
+                        + recarregados.historicoDeVendas.getRegistros().size() + " vendas).");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE SALVAMENTO APÓS A COMPACTAÇÃO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se uma operação do diário que não pode ser reaplicada (uma venda de
+     * um produto que a fotografia não tem) é informada a quem carrega os dados,
+     * em vez de ser apenas ignorada.
+     */
+    public static void testeOperacoesNaoRecuperadas(AppContext app) {
+        try {
+            // Setup: arquivo de dados vazio e, no diário, uma venda de um produto inexistente.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            armazenamento.fechar();
+            DiarioDeOperacoes diario = new DiarioDeOperacoes(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".diario", false);
+            diario.reaplicar(dados);
+            diario.vendaRegistrada("789099", 1, LocalDate.now());
+            diario.fechar();
+
+            // Ação de teste
+            System.out.println("-> Carregando um diário que não combina com a fotografia...");
+            AppContext sessao = new AppContext(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+
+            // Verificação
+            if (sessao.getAvisoDoCarregamento() != null
+                    && sessao.getAvisoDoCarregamento().startsWith("1 operação")) {
+                System.out.println("SUCESSO: A operação não recuperada foi informada ao carregar os dados.");
+            } else {
+                System.err.println("FALHA: A operação não recuperada do diário passou sem aviso.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE OPERAÇÕES NÃO RECUPERADAS: " + e.getMessage());
+        }
+    }
+
+    private static void venderVariasVezes(DadosDoSistema dados, String codigoDeBarras, double quantidade) {
+        for (int i = 0; i < 200; i++) {
+            try {
+                dados.estoque.registrarVenda(codigoDeBarras, quantidade, dados.historicoDeVendas);
+            } catch (ProdutoNaoCadastradoException | QuantidadeInsuficienteException e) {
+                System.err.println("FALHA: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Testa se um novo salvamento apenas acrescenta as vendas novas ao histórico
+     * e se o arquivo principal deixa de ser regravado quando nada mudou.
+     */
+    public static void testeSalvamentoIncremental(AppContext app) {
+        try {
+            // Setup: um produto, um lote e duas vendas já salvos.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            Produto feijao = new ProdutoComum("789007", "Feijão Carioca", 8.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(feijao);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(feijao, 30));
+            dados.estoque.registrarVenda("789007", 2, dados.historicoDeVendas);
+            dados.estoque.registrarVenda("789007", 3, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+
+            Path principal = Paths.get(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            Path historico = Paths.get(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".vendas");
+            long historicoComDuasVendas = Files.size(historico);
+
+            // Ação de teste 1: salvar de novo sem nenhuma alteração.
+            Object arquivoAntes = Files.readAttributes(principal, BasicFileAttributes.class).fileKey();
+            armazenamento.salvarDados(dados);
+            Object arquivoDepois = Files.readAttributes(principal, BasicFileAttributes.class).fileKey();
+
+            // Ação de teste 2: mais uma venda e um novo salvamento.
+            dados.estoque.registrarVenda("789007", 4, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+            long historicoComTresVendas = Files.size(historico);
+            armazenamento.fechar();
+
+            // Verificação
+            DadosDoSistema recarregados = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO).carregarDados();
+            boolean semRegravacao = arquivoAntes == null || Objects.equals(arquivoAntes, arquivoDepois);
+            boolean acrescentou = historicoComTresVendas > historicoComDuasVendas
+                    && historicoComTresVendas - historicoComDuasVendas < historicoComDuasVendas;
+            if (semRegravacao && acrescentou
+                    && recarregados.historicoDeVendas.getRegistros().size() == 3
+                    && recarregados.historicoDeVendas.getQuantidadeTotalVendida("789007") == 9
+                    && recarregados.estoque.getQuantidadeDisponivel("789007") == 21) {
+                System.out.println("SUCESSO: O salvamento acrescentou apenas as vendas novas ao histórico.");
+            } else {
+                System.err.println("FALHA: O salvamento incremental regravou dados sem necessidade ou perdeu vendas.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE SALVAMENTO INCREMENTAL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se os dados gravados com compressão são carregados corretamente,
+     * inclusive depois de novas vendas acrescentadas ao histórico comprimido.
+     */
+    public static void testeArquivosComprimidos(AppContext app) {
+        try {
+            // Setup: muitas vendas parecidas, gravadas sem e com compressão.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            Produto acucar = new ProdutoComum("789008", "Açúcar Refinado", 4.50, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(acucar);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(acucar, 5000));
+            for (int i = 0; i < 2000; i++) {
+                dados.estoque.registrarVenda("789008", 1, dados.historicoDeVendas);
+            }
+            armazenamento.salvarDados(dados);
+            armazenamento.fechar();
+            File historico = new File(Config.CAMINHO_TESTE_ARMAZENAMENTO + ".vendas");
+            long tamanhoSemCompressao = historico.length();
+
+            // Ação de teste: regrava comprimido, acrescenta uma venda e salva de novo.
+            ArmazenamentoEmArquivo comprimido = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO, new CodecDeflate());
+            DadosDoSistema lidos = comprimido.carregarDados();
+            comprimido.salvarDados(lidos);
+            long tamanhoComprimido = historico.length();
+            lidos.estoque.registrarVenda("789008", 3, lidos.historicoDeVendas);
+            comprimido.salvarDados(lidos);
+            comprimido.fechar();
+
+            // Verificação: o arquivo encolheu e todas as vendas continuam lá.
+            DadosDoSistema recarregados = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO).carregarDados();
+            if (tamanhoComprimido * 3 < tamanhoSemCompressao
+                    && recarregados.historicoDeVendas.getRegistros().size() == 2001
+                    && recarregados.historicoDeVendas.getQuantidadeTotalVendida("789008") == 2003
+                    && recarregados.historicoDeVendas.verificarTotais()
+                    && recarregados.estoque.getQuantidadeDisponivel("789008") == 2997) {
+                System.out.println("SUCESSO: Os dados comprimidos foram gravados e carregados corretamente.");
+            } else {
+                System.err.println("FALHA: Os dados comprimidos não foram gravados ou carregados corretamente.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE COMPRESSÃO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se vários caixas vendendo ao mesmo tempo nunca vendem mais do que
+     * há em estoque, nem perdem vendas.
+     */
+    public static void testeVendasSimultaneas(AppContext app) {
+        try {
+            // Setup: 500 unidades disputadas por 8 caixas, cada um tentando vender 100.
+            DadosDoSistema dados = app.getDados();
+            Produto leite = new ProdutoComum("789009", "Leite Integral", 5.00, Grandeza.UNIDADE);
+            Produto pao = new ProdutoComum("789010", "Pão de Forma", 9.00, Grandeza.UNIDADE);
+            dados.catalogo.cadastrarProduto(leite);
+            dados.catalogo.cadastrarProduto(pao);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(leite, 200));
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(leite, 300));
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(pao, 1000));
+            // A primeira consulta calcula os totais; daí em diante, cada venda os atualiza.
+            dados.historicoDeVendas.getTotaisPorProduto("789009");
+
+            // Ação de teste
+            AtomicInteger recusadas = new AtomicInteger();
+            Thread[] caixas = new Thread[8];
+            for (int i = 0; i < caixas.length; i++) {
+                caixas[i] = new Thread(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        try {
+                            dados.estoque.registrarVenda("789009", 1, dados.historicoDeVendas);
+                            dados.estoque.registrarVenda("789010", 1, dados.historicoDeVendas);
+                        } catch (QuantidadeInsuficienteException e) {
+                            recusadas.incrementAndGet();
+                        } catch (ProdutoNaoCadastradoException e) {
+                            System.err.println("FALHA: " + e.getMessage());
+                        }
+                    }
+                });
+                caixas[i].start();
+            }
+            for (Thread caixa : caixas) {
+                caixa.join();
+            }
+
+            // Verificação: exatamente 500 unidades de leite vendidas, 300 vendas recusadas.
+            if (recusadas.get() == 300
+                    && dados.estoque.getQuantidadeDisponivel("789009") == 0
+                    && leite.getQuantidadeVendida() == 500
+                    && dados.historicoDeVendas.getQuantidadeTotalVendida("789009") == 500
+                    && dados.historicoDeVendas.getTotaisPorProduto("789009").getReceita() == 500 * 5.00
+                    && dados.historicoDeVendas.verificarTotais()
+                    && dados.estoque.verificarConsistencia()) {
+                System.out.println("SUCESSO: As vendas simultâneas não venderam além do estoque.");
+            } else {
+                System.err.println("FALHA: Vendas simultâneas deixaram o estoque inconsistente (recusadas: "
+                        + recusadas.get() + ", disponível: " + dados.estoque.getQuantidadeDisponivel("789009") + ").");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE VENDAS SIMULTÂNEAS: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se as fotografias do estoque e do histórico, tiradas enquanto os
+     * caixas vendem, ficam congeladas no instante em que foram tiradas.
+     */
+    public static void testeFotografiaDuranteVendas(AppContext app) {
+        try {
+            // Setup: 4 caixas vendendo, uma a uma, 4000 unidades espalhadas em 40 lotes.
+            DadosDoSistema dados = app.getDados();
+            Produto arroz = new ProdutoComum("789011", "Arroz 1kg", 6.00, Grandeza.UNIDADE);
+            dados.catalogo.cadastrarProduto(arroz);
+            for (int i = 0; i < 40; i++) {
+                dados.estoque.adicionarLote(new LoteNaoPerecivel(arroz, 100));
+            }
+            // `getLotes` também entrega uma fotografia, somente leitura.
+            List<Lote> lotesAntesDasVendas = dados.estoque.getLotes();
+
+            Thread[] caixas = new Thread[4];
+            for (int i = 0; i < caixas.length; i++) {
+                caixas[i] = new Thread(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        try {
+                            dados.estoque.registrarVenda("789011", 1, dados.historicoDeVendas);
+                        } catch (Exception e) {
+                            System.err.println("FALHA: " + e.getMessage());
+                        }
+                    }
+                });
+                caixas[i].start();
+            }
+
+            // Ação de teste: fotografa o estoque e o histórico enquanto as vendas acontecem.
+            boolean consistente = true;
+            double disponivelAnterior = Double.MAX_VALUE;
+            ArrayList<Lote> primeiraFotografia = null;
+            double disponivelNaPrimeira = 0;
+            List<RegistroDeVenda> primeiroHistorico = null;
+            int vendasNoPrimeiro = 0;
+            for (int i = 0; i < 200; i++) {
+                ArrayList<Lote> lotes = dados.estoque.fotografarLotes();
+                double disponivel = 0;
+                for (Lote lote : lotes) {
+                    disponivel += lote.getQuantidade();
+                }
+                // O estoque só diminui e cada fotografia mostra unidades inteiras.
+                if (disponivel > disponivelAnterior || disponivel != Math.floor(disponivel)) {
+                    consistente = false;
+                }
+                disponivelAnterior = disponivel;
+                if (primeiraFotografia == null) {
+                    primeiraFotografia = lotes;
+                    disponivelNaPrimeira = disponivel;
+                    primeiroHistorico = dados.historicoDeVendas.getRegistros();
+                    vendasNoPrimeiro = primeiroHistorico.size();
+                }
+            }
+            for (Thread caixa : caixas) {
+                caixa.join();
+            }
+
+            // Verificação: as primeiras fotografias não mudaram com as vendas seguintes.
+            double disponivelAgora = 0;
+            for (Lote lote : primeiraFotografia) {
+                disponivelAgora += lote.getQuantidade();
+            }
+            double disponivelAntesDasVendas = 0;
+            for (Lote lote : lotesAntesDasVendas) {
+                disponivelAntesDasVendas += lote.getQuantidade();
+            }
+            boolean somenteLeitura = false;
+            try {
+                lotesAntesDasVendas.clear();
+            } catch (UnsupportedOperationException e) {
+                somenteLeitura = true;
+            }
+            if (consistente
+                    && disponivelAntesDasVendas == 4000 && somenteLeitura
+                    && disponivelAgora == disponivelNaPrimeira
+                    && primeiroHistorico.size() == vendasNoPrimeiro
+                    && dados.historicoDeVendas.getRegistros().size() == 4000
+                    && dados.estoque.getQuantidadeDisponivel("789011") == 0
+                    && dados.estoque.verificarConsistencia()) {
+                System.out.println("SUCESSO: As fotografias ficaram estáveis enquanto os caixas vendiam.");
+            } else {
+                System.err.println("FALHA: Uma fotografia do estoque ou do histórico mudou depois de tirada.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE FOTOGRAFIA DO ESTOQUE: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa a venda de uma cesta inteira: ou todas as linhas são vendidas, ou nenhuma.
+     */
+    public static void testeVendaDeCesta(AppContext app) {
+        try {
+            // Setup
+            DadosDoSistema dados = app.getDados();
+            Produto cafe = new ProdutoComum("789012", "Café 500g", 15.00, Grandeza.UNIDADE);
+            Produto acucar = new ProdutoComum("789013", "Açúcar 1kg", 4.00, Grandeza.UNIDADE);
+            dados.catalogo.cadastrarProduto(cafe);
+            dados.catalogo.cadastrarProduto(acucar);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(cafe, 10));
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(acucar, 5));
+
+            // Ação de teste 1: a segunda linha de açúcar passa do estoque, então nada é vendido.
+            ArrayList<ItemVenda> cestaInvalida = new ArrayList<>();
+            cestaInvalida.add(new ItemVenda("789012", 2));
+            cestaInvalida.add(new ItemVenda("789013", 3));
+            cestaInvalida.add(new ItemVenda("789013", 3));
+            boolean recusada = false;
+            try {
+                dados.estoque.registrarVendas(cestaInvalida, dados.historicoDeVendas);
+            } catch (QuantidadeInsuficienteException e) {
+                recusada = true;
+            }
+
+            // Ação de teste 2: uma cesta válida, que esgota o açúcar.
+            ArrayList<ItemVenda> cesta = new ArrayList<>();
+            cesta.add(new ItemVenda("789012", 2));
+            cesta.add(new ItemVenda("789013", 3));
+            cesta.add(new ItemVenda("789013", 2));
+            dados.estoque.registrarVendas(cesta, dados.historicoDeVendas);
+
+            // Verificação
+            if (recusada
+                    && dados.historicoDeVendas.getRegistros().size() == 3
+                    && dados.estoque.getQuantidadeDisponivel("789012") == 8
+                    && dados.estoque.getQuantidadeDisponivel("789013") == 0
+                    && acucar.getQuantidadeVendida() == 5
+                    // O lote de açúcar esgotado some das consultas mesmo antes da compactação.
+                    && dados.estoque.fotografarLotes().size() == 1
+                    && dados.estoque.getLotes().size() == 1
+                    && dados.estoque.verificarConsistencia()) {
+                System.out.println("SUCESSO: A cesta foi vendida por inteiro, e a cesta inválida não alterou nada.");
+            } else {
+                System.err.println("FALHA: A venda da cesta deixou o estoque ou o histórico incorretos.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE VENDA DE CESTA: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se os totais por período (somados por mês, semana e dia) conferem
+     * com a soma das vendas individuais de cada período.
+     */
+    public static void testeTotaisPorPeriodo(AppContext app) {
+        try {
+            // Setup: uma venda por dia, de 1 a 7 unidades, ao longo de 400 dias.
+            DadosDoSistema dados = app.getDados();
+            Produto feijao = new ProdutoComum("789014", "Feijão 1kg", 8.00, Grandeza.UNIDADE);
+            dados.catalogo.cadastrarProduto(feijao);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(feijao, 5000));
+            LocalDate primeiroDia = LocalDate.of(2024, 1, 10);
+            for (int dia = 0; dia < 400; dia++) {
+                dados.estoque.registrarVenda("789014", 1 + dia % 7, dados.historicoDeVendas, primeiroDia.plusDays(dia));
+            }
+
+            // Ação de teste e verificação: compara vários períodos com a soma das vendas individuais.
+            boolean confere = true;
+            int[][] periodos = { {0, 399}, {21, 21}, {5, 40}, {52, 113}, {100, 366}, {-30, 10}, {390, 450} };
+            for (int[] periodo : periodos) {
+                LocalDate inicio = primeiroDia.plusDays(periodo[0]);
+                LocalDate fim = primeiroDia.plusDays(periodo[1]);
+                double esperado = 0;
+                for (RegistroDeVenda registro : dados.historicoDeVendas.getRegistrosPorPeriodo("789014", inicio, fim)) {
+                    esperado += registro.getQuantidadeVendida();
+                }
+                TotaisDeVendas totais = dados.historicoDeVendas.getTotaisPorPeriodo("789014", inicio, fim);
+                if (totais.getQuantidade() != esperado || totais.getReceita() != esperado * 8.00) {
+                    confere = false;
+                    System.err.println("-> Período de " + inicio + " a " + fim + ": esperado " + esperado + ", obtido " + totais.getQuantidade());
+                }
+            }
+
+            // Um intervalo sem limites é reduzido aos dias com vendas e responde na hora.
+            TotaisDeVendas semLimites = dados.historicoDeVendas.getTotaisPorPeriodo("789014", LocalDate.MIN, LocalDate.MAX);
+            TotaisDeVendas tudo = dados.historicoDeVendas.getTotaisPorPeriodo("789014", primeiroDia, primeiroDia.plusDays(399));
+            if (semLimites.getQuantidade() != tudo.getQuantidade() || semLimites.getReceita() != tudo.getReceita()) {
+                confere = false;
+                System.err.println("-> Intervalo sem limites: esperado " + tudo.getQuantidade() + ", obtido " + semLimites.getQuantidade());
+            }
+
+            if (confere) {
+                System.out.println("SUCESSO: Os totais por período conferem com as vendas individuais.");
+            } else {
+                System.err.println("FALHA: Os totais por período não conferem com as vendas individuais.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE TOTAIS POR PERÍODO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se vendas fracionadas (0,1 kg de cada vez) esvaziam um lote por
+     * completo, sem deixar resíduos de arredondamento na quantidade ou no custo.
+     */
+    public static void testeVendasFracionadas(AppContext app) {
+        try {
+            // Setup: um lote de 1 kg que custou R$ 10,00.
+            DadosDoSistema dados = app.getDados();
+            Produto castanha = new ProdutoComum("789015", "Castanha (kg)", 60.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(castanha);
+            Lote lote = new LoteNaoPerecivel(castanha, 1.0);
+            lote.setCustoDoLote(10.00);
+            dados.estoque.adicionarLote(lote);
+
+            // Ação de teste: dez vendas de 0,1 kg.
+            for (int i = 0; i < 10; i++) {
+                dados.estoque.registrarVenda("789015", 0.1, dados.historicoDeVendas);
+            }
+
+            // Verificação: com `double`, sobraria algo como 1e-16 kg no lote.
+            TotaisDeVendas totais = dados.historicoDeVendas.getTotaisPorProduto("789015");
+            if (lote.getQuantidadeEmMilesimos() == 0
+                    && dados.estoque.getQuantidadeDisponivel("789015") == 0
+                    && dados.estoque.getLotes().isEmpty()
+                    && castanha.getQuantidadeVendida() == 1.0
+                    && totais.getCustoEmCentavos() == 1000
+                    && totais.getReceitaEmCentavos() == 6000
+                    && dados.estoque.verificarConsistencia()) {
+                System.out.println("SUCESSO: As vendas fracionadas esvaziaram o lote sem deixar resíduos.");
+            } else {
+                System.err.println("FALHA: As vendas fracionadas deixaram resíduos no lote ou nos totais.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE VENDAS FRACIONADAS: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se vendas e descartes com quantidade que arredonda para zero
+     * milésimos (ou negativa) são recusados, em vez de virar um registro
+     * que não retira nada do estoque.
+     */
+    public static void testeQuantidadesMenoresQueUmMilesimo(AppContext app) {
+        try {
+            // Setup: um lote de 1 kg.
+            DadosDoSistema dados = app.getDados();
+            Produto castanha = new ProdutoComum("789015", "Castanha (kg)", 60.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(castanha);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(castanha, 1.0));
+
+            // Ação de teste: cada tentativa deve ser recusada.
+            int recusadas = 0;
+            double[] quantidades = {0.0004, -1.0};
+            for (double quantidade : quantidades) {
+                try {
+                    dados.estoque.registrarVenda("789015", quantidade, dados.historicoDeVendas);
+                } catch (IllegalArgumentException e) {
+                    recusadas++;
+                }
+                try {
+                    List<ItemVenda> cesta = new ArrayList<>();
+                    cesta.add(new ItemVenda("789015", quantidade));
+                    dados.estoque.registrarVendas(cesta, dados.historicoDeVendas);
+                } catch (IllegalArgumentException e) {
+                    recusadas++;
+                }
+                try {
+                    dados.estoque.registrarDescarte("789015", quantidade);
+                } catch (IllegalArgumentException e) {
+                    recusadas++;
+                }
+            }
+
+            // Verificação: nada foi registrado e o lote continua com 1 kg.
+            if (recusadas == 6
+                    && dados.historicoDeVendas.getQuantidadeDeVendas() == 0
+                    && dados.estoque.getQuantidadeDisponivel("789015") == 1.0
+                    && castanha.getQuantidadeVendida() == 0
+                    && castanha.getQuantidadeDescartada() == 0) {
+                System.out.println("SUCESSO: Quantidades menores que um milésimo foram recusadas.");
+            } else {
+                System.err.println("FALHA: Uma quantidade menor que um milésimo foi aceita (" + recusadas + " de 6 recusadas).");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE QUANTIDADES MENORES QUE UM MILÉSIMO: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se a validade dos lotes, os avisos e a data das vendas seguem o
+     * relógio do negócio, fixando a data em vez de depender do dia em que o
+     * teste é executado.
+     */
+    public static void testeRelogioDoNegocio(AppContext app) {
+        RelogioDoNegocio relogioOriginal = RelogioDoNegocio.getInstance();
+        try {
+            // Setup: um lote que vence em 10/03/2024.
+            DadosDoSistema dados = app.getDados();
+            Produto presunto = new ProdutoComum("789016", "Presunto (kg)", 40.00, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(presunto);
+            LotePerecivel lote = new LotePerecivel(presunto, 3.0, LocalDate.of(2024, 3, 10));
+            dados.estoque.adicionarLote(lote);
+
+            // Ação de teste 1: dois dias antes do vencimento.
+            RelogioDoNegocio.setInstance(RelogioDoNegocio.fixo(LocalDate.of(2024, 3, 8)));
+            boolean pertoDeVencer = lote.estaPertoDeVencer() && !lote.loteVencido() && lote.diasAteVencer() == 2;
+            List<Aviso> avisosAntes = dados.estoque.getAvisos();
+            dados.estoque.registrarVenda("789016", 1.0, dados.historicoDeVendas);
+            LocalDate dataDaVenda = dados.historicoDeVendas.getRegistros().get(0).getDataDaVenda();
+
+            // Ação de teste 2: um dia depois do vencimento.
+            RelogioDoNegocio.setInstance(RelogioDoNegocio.fixo(LocalDate.of(2024, 3, 11)));
+            boolean vencido = lote.loteVencido() && !lote.estaPertoDeVencer();
+            List<Aviso> avisosDepois = dados.estoque.getAvisos();
+
+            // Verificação
+            if (pertoDeVencer && vencido
+                    && avisosAntes.size() == 1 && avisosAntes.get(0).getTipo() == Aviso.Tipo.VENCIMENTO_PROXIMO
+                    && avisosAntes.get(0).getDiasAteVencer() == 2
+                    && avisosDepois.size() == 1 && avisosDepois.get(0).getTipo() == Aviso.Tipo.LOTE_VENCIDO
+                    && dataDaVenda.equals(LocalDate.of(2024, 3, 8))) {
+                System.out.println("SUCESSO: Validade, avisos e data da venda seguiram a data fixada no relógio.");
+            } else {
+                System.err.println("FALHA: A validade, os avisos ou a data da venda não seguiram o relógio do negócio.");
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DO RELÓGIO DO NEGÓCIO: " + e.getMessage());
+        } finally {
+            RelogioDoNegocio.setInstance(relogioOriginal);
+        }
+    }
+
+    /**
+     * Testa se o `ArmazenamentoMapeado` carrega os mesmos dados que a leitura
+     * tradicional, decodificando as vendas do arquivo mapeado, e se acrescenta
+     * novas vendas depois das já gravadas.
+     */
+    public static void testeLeituraMapeada(AppContext app) {
+        try {
+            // Setup: um produto, um lote e três vendas gravados pela leitura tradicional.
+            app.salvarDados();
+            ArmazenamentoEmArquivo armazenamento = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema dados = armazenamento.carregarDados();
+            Produto farinha = new ProdutoComum("789018", "Farinha de Trigo", 5.20, Grandeza.PESO);
+            dados.catalogo.cadastrarProduto(farinha);
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(farinha, 50));
+            dados.estoque.registrarVenda("789018", 2, dados.historicoDeVendas);
+            dados.estoque.registrarVenda("789018", 3, dados.historicoDeVendas);
+            dados.estoque.registrarVenda("789018", 4, dados.historicoDeVendas);
+            armazenamento.salvarDados(dados);
+            armazenamento.fechar();
+
+            // Ação de teste: carrega pelo arquivo mapeado, vende mais uma vez e salva.
+            ArmazenamentoMapeado mapeado = new ArmazenamentoMapeado(Config.CAMINHO_TESTE_ARMAZENAMENTO);
+            DadosDoSistema lidos = mapeado.carregarDados();
+            List<RegistroDeVenda> vendasLidas = lidos.historicoDeVendas.getRegistros();
+            boolean leituraCorreta = vendasLidas.size() == 3
+                    && vendasLidas.get(1).getQuantidadeVendida() == 3
+                    && "Farinha de Trigo".equals(vendasLidas.get(2).getNomeDoProduto())
+                    && lidos.historicoDeVendas.getQuantidadeTotalVendida("789018") == 9
+                    && lidos.estoque.getQuantidadeDisponivel("789018") == 41;
+            lidos.estoque.registrarVenda("789018", 1, lidos.historicoDeVendas);
+            mapeado.salvarDados(lidos);
+            mapeado.fechar();
+
+            // Verificação: a leitura tradicional vê as quatro vendas.
+            DadosDoSistema recarregados = new ArmazenamentoEmArquivo(Config.CAMINHO_TESTE_ARMAZENAMENTO).carregarDados();
+            if (leituraCorreta
+                    && recarregados.historicoDeVendas.getRegistros().size() == 4
+                    && recarregados.historicoDeVendas.getQuantidadeTotalVendida("789018") == 10
+                    && recarregados.historicoDeVendas.verificarTotais()
+                    && recarregados.estoque.getQuantidadeDisponivel("789018") == 40) {
+                System.out.println("SUCESSO: O arquivo mapeado foi lido e as novas vendas foram acrescentadas ao histórico.");
+            } else {
+                System.err.println("FALHA: A leitura mapeada divergiu da tradicional ou perdeu vendas. Leitura: " + leituraCorreta);
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE LEITURA MAPEADA: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa se o histórico guardado em colunas devolve exatamente os registros
+     * incluídos, comparando-o com uma lista comum de `RegistroDeVenda`: os
+     * registros um a um, o nome de cada produto na data da venda (tabela de
+     * produtos) e os totais, com vendas suficientes para ocupar vários segmentos.
+     */
+    public static void testeHistoricoEmColunas() {
+        try {
+            // Setup: três produtos; o primeiro é renomeado no meio das vendas.
+            HistoricoDeVendas historico = new HistoricoDeVendas();
+            List<RegistroDeVenda> esperados = new ArrayList<>();
+            String[] codigos = { "789019", "789020", "789021" };
+            LocalDate primeiroDia = LocalDate.of(2024, 3, 1);
+
+            // Ação de teste: 2.500 vendas, mais de dois segmentos de colunas.
+            for (int i = 0; i < 2500; i++) {
+                int produto = i % 3;
+                String nome = produto == 0 && i >= 1500 ? "Azeite Extra Virgem" : "Produto " + produto;
+                double quantidade = 1 + (i % 5) * 0.25;
+                RegistroDeVenda registro = new RegistroDeVenda(codigos[produto], nome, quantidade, 4.90,
+                        quantidade * 3.00, quantidade * 2.00, primeiroDia.plusDays(i / 10));
+                historico.adicionarRegistro(registro);
+                esperados.add(registro);
+            }
+
+            // Verificação 1: cada registro volta igual ao incluído.
+            List<RegistroDeVenda> lidos = historico.getRegistros();
+            boolean registrosIguais = lidos.size() == esperados.size();
+            for (int i = 0; registrosIguais && i < esperados.size(); i++) {
+                RegistroDeVenda lido = lidos.get(i);
+                RegistroDeVenda esperado = esperados.get(i);
+                registrosIguais = lido.getCodigoDeBarrasProduto().equals(esperado.getCodigoDeBarrasProduto())
+                        && lido.getNomeDoProduto().equals(esperado.getNomeDoProduto())
+                        && lido.getQuantidadeVendida() == esperado.getQuantidadeVendida()
+                        && lido.getPrecoUnitarioNaVenda() == esperado.getPrecoUnitarioNaVenda()
+                        && lido.getCustoTotalDaVenda() == esperado.getCustoTotalDaVenda()
+                        && lido.getLucroDaVenda() == esperado.getLucroDaVenda()
+                        && lido.getDataDaVenda().equals(esperado.getDataDaVenda());
+            }
+
+            // Verificação 2: totais e consultas por período conferem com a lista comum.
+            boolean totaisIguais = historico.verificarTotais();
+            for (String codigo : codigos) {
+                double quantidade = 0;
+                double lucro = 0;
+                int noPeriodo = 0;
+                for (RegistroDeVenda registro : esperados) {
+                    if (registro.getCodigoDeBarrasProduto().equals(codigo)) {
+                        quantidade += registro.getQuantidadeVendida();
+                        lucro += registro.getLucroDaVenda();
+                        if (!registro.getDataDaVenda().isBefore(primeiroDia.plusDays(100))
+                                && !registro.getDataDaVenda().isAfter(primeiroDia.plusDays(180))) {
+                            noPeriodo++;
+                        }
+                    }
+                }
+                totaisIguais &= historico.getQuantidadeTotalVendida(codigo) == quantidade
+                        && Math.abs(historico.getLucroTotalPorProduto(codigo) - lucro) < 0.005
+                        && historico.getRegistrosPorPeriodo(codigo, primeiroDia.plusDays(100), primeiroDia.plusDays(180)).size() == noPeriodo;
+            }
+
+            if (registrosIguais && totaisIguais) {
+                System.out.println("SUCESSO: O histórico em colunas confere com a lista de registros, inclusive após renomear um produto.");
+            } else {
+                System.err.println("FALHA: O histórico em colunas divergiu da lista de registros. Registros: " + registrosIguais
+                        + ", totais: " + totaisIguais);
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DO HISTÓRICO EM COLUNAS: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testa as métricas de funcionamento: contagem e latências das operações do
+     * estoque, medidores do tamanho dos dados, gravação em arquivo e leitura pelo JMX.
+     */
+    public static void testeMetricas(AppContext app) {
+        Path arquivoDeMetricas = null;
+        try {
+            // Setup: métricas zeradas e medidores ligados a este contexto.
+            Metricas metricas = Metricas.getInstance();
+            metricas.zerar();
+            app.registrarMetricas();
+            DadosDoSistema dados = app.getDados();
+            dados.catalogo.cadastrarProduto(new ProdutoComum("789017", "Biscoito Recheado", 3.50, Grandeza.UNIDADE));
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(dados.catalogo.buscarProduto("789017"), 10));
+            dados.estoque.adicionarLote(new LoteNaoPerecivel(dados.catalogo.buscarProduto("789017"), 5));
+
+            // Ação de teste: três vendas, uma venda recusada, um descarte, uma busca e um salvamento.
+            for (int i = 0; i < 3; i++) {
+                dados.estoque.registrarVenda("789017", 1, dados.historicoDeVendas);
+            }
+            try {
+                dados.estoque.registrarVenda("789017", 100, dados.historicoDeVendas);
+            } catch (QuantidadeInsuficienteException e) {
+                // Esperado: a venda recusada também é medida e contada.
+            }
+            dados.estoque.registrarDescarte("789017", 1);
+            dados.catalogo.buscarProdutosPorNome("biscoito");
+            app.salvarDados();
+
+            arquivoDeMetricas = Files.createTempFile("stokos_metricas", ".txt");
+            metricas.gravarEm(arquivoDeMetricas.toString());
+            String conteudo = new String(Files.readAllBytes(arquivoDeMetricas), java.nio.charset.StandardCharsets.UTF_8);
+            Object recusadasNoJmx = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(Metricas.NOME_NO_JMX), "estoque.vendasRecusadas");
+
+            // Verificação
+            boolean operacoesMedidas = metricas.getHistograma("estoque.registrarVenda").getTotal() == 4
+                    && metricas.getContador("estoque.vendasRecusadas") == 1
+                    && metricas.getHistograma("estoque.adicionarLote").getTotal() == 2
+                    && metricas.getHistograma("estoque.registrarDescarte").getTotal() == 1
+                    && metricas.getHistograma("catalogo.buscarProdutosPorNome").getTotal() == 1
+                    // Só as duas buscas do setup; as feitas pelo estoque nas vendas não contam.
+                    && metricas.getHistograma("catalogo.buscarProduto").getTotal() == 2
+                    && metricas.getHistograma("armazenamento.salvarDados").getTotal() == 1
+                    && metricas.getContador("armazenamento.bytesGravados") > 0;
+            boolean percentisCoerentes = metricas.getHistograma("estoque.registrarVenda").getPercentil(0.5) > 0
+                    && metricas.getHistograma("estoque.registrarVenda").getPercentil(0.99)
+                            <= metricas.getHistograma("estoque.registrarVenda").getMaximo();
+            boolean medidoresCorretos = metricas.getMedidor("estoque.lotes") == 2
+                    && metricas.getMedidor("catalogo.produtos") == 1
+                    && metricas.getMedidor("historico.vendas") == 3;
+            boolean publicadas = conteudo.contains("estoque.registrarVenda.p99EmMicrossegundos = ")
+                    && conteudo.contains("historico.vendas = 3")
+                    && Long.valueOf(1).equals(recusadasNoJmx);
+
+            if (operacoesMedidas && percentisCoerentes && medidoresCorretos && publicadas) {
+                System.out.println("SUCESSO: Operações medidas, medidores corretos e métricas publicadas em arquivo e no JMX.");
+            } else {
+                System.err.println("FALHA: As métricas não refletiram as operações realizadas. Medidas: " + operacoesMedidas
+                        + ", percentis: " + percentisCoerentes + ", medidores: " + medidoresCorretos + ", publicadas: " + publicadas);
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERRO INESPERADO NO TESTE DE MÉTRICAS: " + e.getMessage());
+        } finally {
+            if (arquivoDeMetricas != null) {
+                new File(arquivoDeMetricas.toString()).delete();
+            }
+        }
+    }
+}
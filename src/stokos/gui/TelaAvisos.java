@@ -2,12 +2,9 @@ package stokos.gui;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
 import stokos.AppContext;
-import stokos.model.CatalogoDeProdutos;
-import stokos.model.Lote;
+import stokos.model.Aviso;
 import stokos.model.Produto;
-import stokos.model.LotePerecivel;
 import stokos.model.Estoque;
 
 /**
@@ -89,60 +86,40 @@ public class TelaAvisos extends JFrame {
     }
 
     /**
-     * Carrega os avisos do sistema, processando a lógica de negócio para
-     * identificar alertas de estoque e validade.
+     * Carrega os avisos do sistema. A lógica de negócio que identifica os
+     * alertas de estoque e validade fica no modelo (`MotorDeAlertas`), que os
+     * mantém atualizados a cada entrada, venda e descarte; aqui, apenas
+     * transformamos cada aviso em uma mensagem.
      */
     private void carregarAvisos() {
         listModel.clear(); // Limpa a lista para garantir que os avisos não se acumulem.
 
         // Acessa os dados do sistema através do AppContext.
-        AppContext app = AppContext.getInstance();
-        Estoque estoque = app.getDados().estoque;
-        CatalogoDeProdutos catalogo = app.getDados().catalogo;
-
-        // Listas auxiliares para evitar alertas duplicados para o mesmo produto.
-        ArrayList<String> produtosComAvisoVencido = new ArrayList<>();
-        ArrayList<String> produtosComAvisoProximo = new ArrayList<>();
-
-        // 1. VERIFICAÇÃO DE VALIDADE DOS LOTES
-        for (Lote lote : estoque.getLotes()) {
-            Produto produtoDoLote = lote.getProduto();
-            String nomeProduto = produtoDoLote.getNomeDoProduto();
-
-            // POLIMORFISMO: O método `loteVencido()` é chamado. O Java executa a
-            // implementação correta dependendo se o lote é Perecivel ou NaoPerecivel.
-            if (lote.loteVencido()) {
-                if (!produtosComAvisoVencido.contains(nomeProduto)) {
+        Estoque estoque = AppContext.getInstance().getDados().estoque;
+
+        // Os avisos já chegam sem repetições e na ordem de exibição: primeiro os de
+        // validade (vencidos e próximos do vencimento), depois os de estoque.
+        for (Aviso aviso : estoque.getAvisos()) {
+            Produto produto = aviso.getProduto();
+            String nomeProduto = produto.getNomeDoProduto();
+            switch (aviso.getTipo()) {
+                case LOTE_VENCIDO:
                     listModel.addElement("ALERTA: Há um ou mais lotes do produto '" + nomeProduto + "' vencidos no estoque.");
-                    produtosComAvisoVencido.add(nomeProduto); // Marca o produto para não repetir o aviso.
-                }
-            } else if (lote.estaPertoDeVencer()) { // Outro exemplo de polimorfismo.
-                if (!produtosComAvisoProximo.contains(nomeProduto)) {
-                    // Casting para LotePerecivel é necessário para acessar o método diasAteVencer().
-                    int dias = ((LotePerecivel) lote).diasAteVencer();
-                    listModel.addElement("AVISO: O produto '" + nomeProduto + "' tem um lote que vence em " + dias + " dia(s).");
-                    produtosComAvisoProximo.add(nomeProduto);
-                }
-            }
-        }
-
-        // 2. VERIFICAÇÃO DE ESTOQUE MÍNIMO E ZERADO
-        for (Produto produto : catalogo.getListaDeProdutos()) {
-            double estoqueMinimo = produto.getEstoqueMinimo();
-            double quantidadeAtual = estoque.getQuantidadeDisponivel(produto.getCodigoDeBarras());
-
-            // Verifica primeiro a condição mais crítica: estoque zerado.
-            if (quantidadeAtual == 0) {
-                listModel.addElement("ESTOQUE ZERADO: O produto '" + produto.getNomeDoProduto() + "' acabou.");
-            
-            // Se não estiver zerado, verifica se está abaixo do mínimo configurado.
-            } else if (estoqueMinimo > 0 && quantidadeAtual <= estoqueMinimo) {
-                listModel.addElement("ESTOQUE: O produto '" + produto.getNomeDoProduto() + "' está com estoque baixo (" + quantidadeAtual + " / " + estoqueMinimo + " " + produto.getGrandeza().toString().toLowerCase() + ").");
+                    break;
+                case VENCIMENTO_PROXIMO:
+                    listModel.addElement("AVISO: O produto '" + nomeProduto + "' tem um lote que vence em " + aviso.getDiasAteVencer() + " dia(s).");
+                    break;
+                case ESTOQUE_ZERADO:
+                    listModel.addElement("ESTOQUE ZERADO: O produto '" + nomeProduto + "' acabou.");
+                    break;
+                case ESTOQUE_BAIXO:
+                    listModel.addElement("ESTOQUE: O produto '" + nomeProduto + "' está com estoque baixo (" + aviso.getQuantidade() + " / " + produto.getEstoqueMinimo() + " " + produto.getGrandeza().toString().toLowerCase() + ").");
+                    break;
             }
         }
 
-        // 3. MENSAGEM PADRÃO SE NÃO HOUVER AVISOS
-        // Se, após todas as verificações, a lista continuar vazia, exibe uma mensagem informativa.
+        // MENSAGEM PADRÃO SE NÃO HOUVER AVISOS
+        // Se não houver nenhum aviso, exibe uma mensagem informativa.
         if (listModel.isEmpty()) {
             listModel.addElement("Nenhum aviso ou alerta no momento.");
         }
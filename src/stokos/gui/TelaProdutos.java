@@ -3,6 +3,7 @@ package stokos.gui;
 import javax.swing.*;
 import java.awt.*;
 import stokos.AppContext;
+import stokos.Config;
 import stokos.model.Cargo;
 import stokos.model.Produto;
 import stokos.model.CatalogoDeProdutos;
@@ -137,7 +138,7 @@ public class TelaProdutos extends JFrame {
             }
         } else {
             // Busca por Nome (nova lógica)
-            ArrayList<Produto> produtosEncontrados = catalogo.buscarProdutosPorNome(termoBusca);
+            ArrayList<Produto> produtosEncontrados = catalogo.buscarProdutosPorNome(termoBusca, Config.LIMITE_DE_RESULTADOS_DA_BUSCA);
 
             if (produtosEncontrados.isEmpty()) {
                 limparCampos();
@@ -278,6 +279,9 @@ public class TelaProdutos extends JFrame {
                 habilitarModoEdicao(false); // Desativa o modo de edição.
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "O preço deve ser um número válido.", "Erro de Formato", JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException ex) {
+                // Ex: código de barras já usado por outro produto ou preço negativo.
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
             }
         });
 
@@ -152,7 +152,7 @@ public class TelaRegistrarDescarte extends JFrame {
 
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "A quantidade deve ser um número válido.", "Erro de Formato", JOptionPane.ERROR_MESSAGE);
-            } catch (ProdutoNaoCadastradoException | QuantidadeInsuficienteException ex) {
+            } catch (ProdutoNaoCadastradoException | QuantidadeInsuficienteException | IllegalArgumentException ex) {
                 JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro de Lógica", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Ocorreu um erro inesperado: " + ex.getMessage(), "Erro Crítico", JOptionPane.ERROR_MESSAGE);
@@ -150,7 +150,7 @@ public class TelaRegistrarSaida extends JFrame {
             } catch (NumberFormatException ex) {
                 // Trata erros de conversão de texto para número.
                 JOptionPane.showMessageDialog(this, "A quantidade deve ser um número válido.", "Erro de Formato", JOptionPane.ERROR_MESSAGE);
-            } catch (ProdutoNaoCadastradoException | QuantidadeInsuficienteException ex) {
+            } catch (ProdutoNaoCadastradoException | QuantidadeInsuficienteException | IllegalArgumentException ex) {
                 // Trata exceções de regra de negócio de forma unificada, exibindo a mensagem específica da exceção.
                 JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro de Lógica", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
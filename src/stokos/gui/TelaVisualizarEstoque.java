@@ -8,6 +8,7 @@ import java.util.Comparator;
 import stokos.AppContext;
 import stokos.model.Lote;
 import stokos.model.LotePerecivel;
+import stokos.model.RelogioDoNegocio;
 
 /**
  * Representa a tela de visualização que exibe todos os lotes atualmente
@@ -101,12 +102,17 @@ public class TelaVisualizarEstoque extends JFrame {
     private void carregarDadosDaTabela() {
         // Acessa os dados do estoque através do AppContext.
         AppContext app = AppContext.getInstance();
-        ArrayList<Lote> lotes = app.getDados().estoque.getLotes();
+        // Uma fotografia do estoque: os caixas continuam vendendo enquanto a
+        // tabela é montada, e a ordenação abaixo não mexe na lista do estoque.
+        ArrayList<Lote> lotes = app.getDados().estoque.fotografarLotes();
 
         // Ordena a lista de lotes pelo ID. Isso garante que a exibição
         // seja consistente e previsível toda vez que a tela é aberta.
         lotes.sort(Comparator.comparingInt(Lote::getId));
 
+        // A data de hoje é consultada uma única vez; cada lote só compara números.
+        long diaDeHoje = RelogioDoNegocio.getInstance().getDiaDeHoje();
+
         // Itera sobre cada lote para criar uma linha correspondente na tabela.
         for (Lote lote : lotes) {
             // Cria um array de Object para representar os dados de uma única linha.
@@ -126,7 +132,7 @@ public class TelaVisualizarEstoque extends JFrame {
                 LotePerecivel loteP = (LotePerecivel) lote;
                 linha[5] = "Sim";
                 // Usa um operador ternário para exibir "VENCIDO" ou o número de dias restantes.
-                linha[6] = loteP.loteVencido() ? "VENCIDO" : String.valueOf(loteP.diasAteVencer());
+                linha[6] = loteP.loteVencido(diaDeHoje) ? "VENCIDO" : String.valueOf(loteP.diasAteVencer(diaDeHoje));
             } else {
                 // Se for um LoteNaoPerecivel, preenche as colunas com informações padrão.
                 linha[5] = "Não";
@@ -0,0 +1,35 @@
+package stokos.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Um contador de eventos (ex: vendas recusadas, bytes gravados).
+ *
+ * Usa um `LongAdder`, que distribui as somas de threads diferentes por células
+ * separadas: vários caixas incrementam o mesmo contador sem disputar a mesma
+ * variável. A leitura soma as células.
+ */
+public final class Contador {
+
+    private final LongAdder valor = new LongAdder();
+
+    /** Soma 1 ao contador. */
+    public void incrementar() {
+        valor.increment();
+    }
+
+    /** Soma uma quantidade ao contador. */
+    public void somar(long quantidade) {
+        valor.add(quantidade);
+    }
+
+    /** Retorna o valor atual. */
+    public long getValor() {
+        return valor.sum();
+    }
+
+    /** Volta o contador a zero. */
+    public void zerar() {
+        valor.reset();
+    }
+}
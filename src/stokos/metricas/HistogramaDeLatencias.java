@@ -0,0 +1,249 @@
+package stokos.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Conta tempos de resposta (em nanossegundos) em faixas, para calcular
+ * percentis (mediana, p99, p99,9) sem guardar cada medição.
+ *
+ * CONCEITO DE DESIGN: FAIXAS LOGARÍTMICAS
+ * Até 127 ns, cada valor tem a sua faixa. Acima disso, cada potência de 2 é
+ * dividida em 64 faixas iguais, de modo que o erro de um percentil é sempre
+ * menor que 1/64 (cerca de 1,6%) do valor, de nanossegundos a mais de uma hora,
+ * com um vetor fixo de contadores. É a mesma ideia do HdrHistogram.
+ *
+ * CONCEITO DE DESIGN: PARCELAS POR THREAD
+ * Os caixas registram as suas vendas ao mesmo tempo. Se todos somassem nos
+ * mesmos contadores, cada registro disputaria a mesma linha de cache com os
+ * outros processadores. Por isso, o histograma é dividido em parcelas (até uma
+ * por processador), e cada thread registra sempre na mesma parcela, escolhida
+ * pelo seu ID. As parcelas só são somadas na leitura (`fotografar`), que é rara.
+ * Uma parcela só ocupa memória depois do seu primeiro registro.
+ *
+ * CONCEITO DE DESIGN: AMOSTRAGEM
+ * Ler o relógio (`System.nanoTime`) custa dezenas de nanossegundos, o que
+ * pesa em operações muito rápidas, como uma venda sem diário de operações.
+ * Por isso, o histograma pode medir apenas uma a cada N chamadas (`amostragem`):
+ * todas as chamadas são contadas, mas só as amostradas leem o relógio. Os
+ * percentis ficam praticamente iguais, pois as chamadas amostradas são
+ * distribuídas ao longo do tempo, e o custo por chamada cai a um incremento.
+ *
+ * Uso: `long inicio = histograma.iniciar();` antes da operação e
+ * `histograma.registrarDesde(inicio);` depois dela (em um `finally`).
+ */
+public final class HistogramaDeLatencias {
+
+    // Bits de precisão abaixo do bit mais alto de cada valor (2^6 = 64 faixas).
+    private static final int BITS_DE_PRECISAO = 6;
+    private static final int FAIXAS_POR_POTENCIA = 1 << BITS_DE_PRECISAO;
+
+    // Maior valor distinguido: 2^42 ns (cerca de 73 minutos). Os maiores contam na última faixa.
+    private static final long MAIOR_VALOR = (1L << 42) - 1;
+    private static final int QUANTIDADE_DE_FAIXAS = faixaDe(MAIOR_VALOR) + 1;
+
+    // Potência de 2 maior ou igual ao número de processadores (no máximo 16).
+    private static final int QUANTIDADE_DE_PARCELAS =
+            Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    /** Valor de `iniciar` para uma chamada que não foi amostrada. */
+    public static final long NAO_MEDIDA = Long.MIN_VALUE;
+
+    /** Os contadores de uma parcela. */
+    private static final class Parcela {
+        final AtomicLong chamadas = new AtomicLong();
+        final AtomicLongArray contagens = new AtomicLongArray(QUANTIDADE_DE_FAIXAS);
+        final AtomicLong soma = new AtomicLong();
+        final AtomicLong maximo = new AtomicLong();
+    }
+
+    private final AtomicReferenceArray<Parcela> parcelas = new AtomicReferenceArray<>(QUANTIDADE_DE_PARCELAS);
+    // Amostragem menos 1 (a amostragem é uma potência de 2).
+    private final int mascaraDaAmostragem;
+
+    /**
+     * Construtor de um histograma que mede todas as chamadas.
+     */
+    public HistogramaDeLatencias() {
+        this(1);
+    }
+
+    /**
+     * Construtor de um histograma que mede uma a cada `amostragem` chamadas.
+     * @param amostragem Potência de 2 (1 para medir todas).
+     */
+    public HistogramaDeLatencias(int amostragem) {
+        if (amostragem <= 0 || Integer.bitCount(amostragem) != 1) {
+            throw new IllegalArgumentException("A amostragem deve ser uma potência de 2: " + amostragem);
+        }
+        this.mascaraDaAmostragem = amostragem - 1;
+    }
+
+    /**
+     * Conta uma chamada e, se ela for amostrada, lê o relógio.
+     * @return O instante do início (`System.nanoTime`), ou `NAO_MEDIDA`.
+     */
+    public long iniciar() {
+        long chamada = parcelaDaThread().chamadas.getAndIncrement();
+        return (chamada & mascaraDaAmostragem) == 0 ? System.nanoTime() : NAO_MEDIDA;
+    }
+
+    /**
+     * Conclui uma chamada iniciada por `iniciar`, registrando o tempo decorrido
+     * se ela foi amostrada.
+     */
+    public void registrarDesde(long inicio) {
+        if (inicio != NAO_MEDIDA) {
+            medir(parcelaDaThread(), System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Conta uma chamada cujo tempo foi medido por quem chama (sem amostragem).
+     * @param nanossegundos O tempo medido (valores negativos contam como zero).
+     */
+    public void registrar(long nanossegundos) {
+        Parcela parcela = parcelaDaThread();
+        parcela.chamadas.getAndIncrement();
+        medir(parcela, nanossegundos);
+    }
+
+    private static void medir(Parcela parcela, long nanossegundos) {
+        long valor = Math.min(Math.max(0, nanossegundos), MAIOR_VALOR);
+        parcela.contagens.getAndIncrement(faixaDe(valor));
+        parcela.soma.getAndAdd(valor);
+        long maximo = parcela.maximo.get();
+        while (valor > maximo && !parcela.maximo.compareAndSet(maximo, valor)) {
+            maximo = parcela.maximo.get();
+        }
+    }
+
+    /**
+     * Retorna uma cópia das medições até agora, somando as parcelas.
+     * Os registros feitos durante a cópia podem ou não entrar nela.
+     */
+    public Fotografia fotografar() {
+        long[] contagens = new long[QUANTIDADE_DE_FAIXAS];
+        long chamadas = 0;
+        long soma = 0;
+        long maximo = 0;
+        for (int p = 0; p < QUANTIDADE_DE_PARCELAS; p++) {
+            Parcela parcela = parcelas.get(p);
+            if (parcela != null) {
+                chamadas += parcela.chamadas.get();
+                for (int i = 0; i < QUANTIDADE_DE_FAIXAS; i++) {
+                    contagens[i] += parcela.contagens.get(i);
+                }
+                soma += parcela.soma.get();
+                maximo = Math.max(maximo, parcela.maximo.get());
+            }
+        }
+        return new Fotografia(chamadas, contagens, soma, maximo);
+    }
+
+    /**
+     * Descarta todas as medições.
+     */
+    public void zerar() {
+        for (int p = 0; p < QUANTIDADE_DE_PARCELAS; p++) {
+            parcelas.set(p, null);
+        }
+    }
+
+    private Parcela parcelaDaThread() {
+        // O ID da thread é espalhado (multiplicação de Fibonacci) para que threads
+        // criadas em sequência caiam em parcelas diferentes.
+        long id = Thread.currentThread().getId();
+        int indice = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (QUANTIDADE_DE_PARCELAS - 1);
+        Parcela parcela = parcelas.get(indice);
+        if (parcela == null) {
+            parcelas.compareAndSet(indice, null, new Parcela());
+            parcela = parcelas.get(indice);
+        }
+        return parcela;
+    }
+
+    // Valores menores que 2 * FAIXAS_POR_POTENCIA ficam na faixa de mesmo número;
+    // os demais, pela posição do bit mais alto e pelos 6 bits seguintes.
+    private static int faixaDe(long valor) {
+        if (valor < 2 * FAIXAS_POR_POTENCIA) {
+            return (int) valor;
+        }
+        int deslocamento = 63 - Long.numberOfLeadingZeros(valor) - BITS_DE_PRECISAO;
+        return FAIXAS_POR_POTENCIA * deslocamento + (int) (valor >>> deslocamento);
+    }
+
+    private static long limiteSuperiorDa(int faixa) {
+        if (faixa < 2 * FAIXAS_POR_POTENCIA) {
+            return faixa;
+        }
+        int deslocamento = faixa / FAIXAS_POR_POTENCIA - 1;
+        long inicio = (long) (faixa - FAIXAS_POR_POTENCIA * deslocamento) << deslocamento;
+        return inicio + (1L << deslocamento) - 1;
+    }
+
+    /**
+     * As medições de um histograma em um momento. Imutável.
+     */
+    public static final class Fotografia {
+        private final long chamadas;
+        private final long[] contagens;
+        private final long medicoes;
+        private final long soma;
+        private final long maximo;
+
+        private Fotografia(long chamadas, long[] contagens, long soma, long maximo) {
+            long medicoes = 0;
+            for (long contagem : contagens) {
+                medicoes += contagem;
+            }
+            this.chamadas = chamadas;
+            this.contagens = contagens;
+            this.medicoes = medicoes;
+            this.soma = soma;
+            this.maximo = maximo;
+        }
+
+        /** Retorna quantas chamadas foram contadas (amostradas ou não). */
+        public long getTotal() {
+            return chamadas;
+        }
+
+        /** Retorna quantas chamadas tiveram o tempo medido. */
+        public long getMedicoes() {
+            return medicoes;
+        }
+
+        /** Retorna o maior tempo registrado, em nanossegundos. */
+        public long getMaximo() {
+            return maximo;
+        }
+
+        /** Retorna o tempo médio, em nanossegundos (0 se não houver medições). */
+        public double getMedia() {
+            return medicoes == 0 ? 0 : (double) soma / medicoes;
+        }
+
+        /**
+         * Retorna o tempo abaixo do qual está a fração pedida das medições.
+         *
+         * @param fracao A fração, de 0 a 1 (ex: 0.99 para o p99).
+         * @return O tempo em nanossegundos (o limite superior da faixa), ou 0 se não houver medições.
+         */
+        public long getPercentil(double fracao) {
+            if (medicoes == 0) {
+                return 0;
+            }
+            long posicao = Math.max(1, (long) Math.ceil(fracao * medicoes));
+            long acumulado = 0;
+            for (int i = 0; i < contagens.length; i++) {
+                acumulado += contagens[i];
+                if (acumulado >= posicao) {
+                    return Math.min(limiteSuperiorDa(i), maximo);
+                }
+            }
+            return maximo;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package stokos.metricas;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro das métricas de funcionamento do sistema: quantas vezes cada
+ * operação foi executada, quanto tempo levou (`HistogramaDeLatencias`),
+ * contadores (`Contador`, ex: bytes gravados, falhas ao salvar) e medidores
+ * (valores lidos na hora, ex: número de lotes no estoque).
+ *
+ * As métricas podem ser consultadas pelo código (`getValores`), gravadas em
+ * um arquivo de texto (`gravarEm`) ou acompanhadas por uma ferramenta JMX,
+ * como o JConsole ou o VisualVM (`registrarNoJmx`).
+ *
+ * CONCEITO DE DESIGN: REGISTRO ÚNICO, MÉTRICAS GUARDADAS POR QUEM MEDE
+ * Como o `AppContext`, o registro tem uma instância única (`getInstance`).
+ * Cada classe medida obtém as suas métricas uma única vez, pelo nome, e as
+ * guarda em constantes (ex: `Estoque.LATENCIA_DAS_VENDAS`). Assim, medir uma
+ * venda não passa por nenhuma busca no registro. As operações mais frequentes
+ * (vendas e buscas por código) têm o tempo medido por amostragem
+ * (`Config.AMOSTRAGEM_DAS_OPERACOES_FREQUENTES`): na maioria das chamadas, a
+ * medição custa apenas um incremento.
+ *
+ * Os nomes seguem o padrão `<componente>.<operação>` (ex: `estoque.registrarVenda`).
+ */
+public final class Metricas {
+
+    /** O nome do MBean registrado por `registrarNoJmx`. */
+    public static final String NOME_NO_JMX = "stokos:type=Metricas";
+
+    private static final Metricas instance = new Metricas();
+
+    private final Map<String, Contador> contadores = new ConcurrentHashMap<>();
+    private final Map<String, HistogramaDeLatencias> histogramas = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> medidores = new ConcurrentHashMap<>();
+
+    private Metricas() {
+    }
+
+    /**
+     * Retorna o registro de métricas do sistema.
+     */
+    public static Metricas getInstance() {
+        return instance;
+    }
+
+    /**
+     * Retorna o contador com o nome informado, criando-o se ainda não existir.
+     */
+    public Contador contador(String nome) {
+        return contadores.computeIfAbsent(nome, n -> new Contador());
+    }
+
+    /**
+     * Retorna o histograma de latências com o nome informado, criando-o se ainda
+     * não existir (medindo todas as chamadas).
+     */
+    public HistogramaDeLatencias histograma(String nome) {
+        return histograma(nome, 1);
+    }
+
+    /**
+     * Retorna o histograma de latências com o nome informado, criando-o se ainda
+     * não existir com a amostragem informada (ver `HistogramaDeLatencias`).
+     */
+    public HistogramaDeLatencias histograma(String nome, int amostragem) {
+        return histogramas.computeIfAbsent(nome, n -> new HistogramaDeLatencias(amostragem));
+    }
+
+    /**
+     * Registra um medidor: um valor lido no momento da consulta (ex: o número
+     * de lotes no estoque). Um medidor com o mesmo nome é substituído.
+     *
+     * @param nome O nome do medidor.
+     * @param leitura A função que lê o valor atual. Deve ser rápida e thread-safe.
+     */
+    public void registrarMedidor(String nome, LongSupplier leitura) {
+        medidores.put(nome, leitura);
+    }
+
+    /**
+     * Retorna o valor de um contador (0 se ele não existir).
+     */
+    public long getContador(String nome) {
+        Contador contador = contadores.get(nome);
+        return contador != null ? contador.getValor() : 0;
+    }
+
+    /**
+     * Retorna as medições atuais de um histograma (vazias se ele não existir).
+     */
+    public HistogramaDeLatencias.Fotografia getHistograma(String nome) {
+        HistogramaDeLatencias histograma = histogramas.get(nome);
+        return (histograma != null ? histograma : new HistogramaDeLatencias()).fotografar();
+    }
+
+    /**
+     * Retorna o valor atual de um medidor (0 se ele não existir).
+     */
+    public long getMedidor(String nome) {
+        LongSupplier leitura = medidores.get(nome);
+        return leitura != null ? leitura.getAsLong() : 0;
+    }
+
+    /**
+     * Retorna todas as métricas, em ordem alfabética, como pares nome e valor.
+     * Cada histograma é resumido em vários valores: `<nome>.quantidade` (de chamadas),
+     * `<nome>.mediaEmMicrossegundos`, `<nome>.p50EmMicrossegundos`,
+     * `<nome>.p90EmMicrossegundos`, `<nome>.p99EmMicrossegundos`,
+     * `<nome>.p999EmMicrossegundos` e `<nome>.maximoEmMicrossegundos`.
+     *
+     * @return Um novo mapa com os valores (`Long` ou `Double`).
+     */
+    public SortedMap<String, Number> getValores() {
+        SortedMap<String, Number> valores = new TreeMap<>();
+        for (Map.Entry<String, Contador> contador : contadores.entrySet()) {
+            valores.put(contador.getKey(), contador.getValue().getValor());
+        }
+        for (Map.Entry<String, LongSupplier> medidor : medidores.entrySet()) {
+            try {
+                valores.put(medidor.getKey(), medidor.getValue().getAsLong());
+            } catch (RuntimeException e) {
+                // Um medidor com defeito não impede a leitura dos demais.
+                System.err.println("Falha ao ler o medidor " + medidor.getKey() + ": " + e.getMessage());
+            }
+        }
+        for (Map.Entry<String, HistogramaDeLatencias> histograma : histogramas.entrySet()) {
+            String nome = histograma.getKey();
+            HistogramaDeLatencias.Fotografia medicoes = histograma.getValue().fotografar();
+            valores.put(nome + ".quantidade", medicoes.getTotal());
+            valores.put(nome + ".mediaEmMicrossegundos", medicoes.getMedia() / 1e3);
+            valores.put(nome + ".p50EmMicrossegundos", medicoes.getPercentil(0.50) / 1e3);
+            valores.put(nome + ".p90EmMicrossegundos", medicoes.getPercentil(0.90) / 1e3);
+            valores.put(nome + ".p99EmMicrossegundos", medicoes.getPercentil(0.99) / 1e3);
+            valores.put(nome + ".p999EmMicrossegundos", medicoes.getPercentil(0.999) / 1e3);
+            valores.put(nome + ".maximoEmMicrossegundos", medicoes.getMaximo() / 1e3);
+        }
+        return valores;
+    }
+
+    /**
+     * Grava todas as métricas em um arquivo de texto, uma por linha (`nome = valor`).
+     *
+     * @param caminhoDoArquivo O caminho do arquivo (substituído, se já existir).
+     * @throws IOException Se ocorrer um erro na gravação.
+     */
+    public void gravarEm(String caminhoDoArquivo) throws IOException {
+        List<String> linhas = new ArrayList<>();
+        linhas.add("# Métricas do Stokos em " + LocalDateTime.now().withNano(0));
+        for (Map.Entry<String, Number> valor : getValores().entrySet()) {
+            linhas.add(valor.getKey() + " = " + valor.getValue());
+        }
+        Files.write(Paths.get(caminhoDoArquivo), linhas, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Publica as métricas como um MBean (`NOME_NO_JMX`) no servidor JMX da JVM,
+     * para que ferramentas como o JConsole as acompanhem. Chamadas repetidas
+     * não têm efeito.
+     */
+    public synchronized void registrarNoJmx() {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nome = new ObjectName(NOME_NO_JMX);
+            if (!servidor.isRegistered(nome)) {
+                servidor.registerMBean(new MetricasJmx(this), nome);
+            }
+        } catch (JMException e) {
+            // Sem JMX, as métricas continuam disponíveis pelo código e pelo arquivo.
+            System.err.println("Não foi possível publicar as métricas no JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Zera todos os contadores e histogramas (os medidores não guardam valores).
+     * Útil para testes e para medir um intervalo específico.
+     */
+    public void zerar() {
+        for (Contador contador : contadores.values()) {
+            contador.zerar();
+        }
+        for (HistogramaDeLatencias histograma : histogramas.values()) {
+            histograma.zerar();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package stokos.metricas;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Expõe as métricas ao JMX: cada valor de `Metricas.getValores` é um atributo
+ * somente leitura do MBean, e as operações `zerar` e `gravarEm` podem ser
+ * chamadas pelo JConsole.
+ *
+ * É um MBean dinâmico porque os nomes dos atributos não são fixos: novas
+ * métricas aparecem conforme as classes do sistema são usadas. A lista de
+ * atributos é lida a cada consulta da ferramenta.
+ */
+final class MetricasJmx implements DynamicMBean {
+
+    private final Metricas metricas;
+
+    MetricasJmx(Metricas metricas) {
+        this.metricas = metricas;
+    }
+
+    @Override
+    public Object getAttribute(String nome) throws AttributeNotFoundException {
+        Number valor = metricas.getValores().get(nome);
+        if (valor == null) {
+            throw new AttributeNotFoundException("Métrica desconhecida: " + nome);
+        }
+        return valor;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] nomes) {
+        SortedMap<String, Number> valores = metricas.getValores();
+        AttributeList atributos = new AttributeList();
+        for (String nome : nomes) {
+            Number valor = valores.get(nome);
+            if (valor != null) {
+                atributos.add(new Attribute(nome, valor));
+            }
+        }
+        return atributos;
+    }
+
+    @Override
+    public void setAttribute(Attribute atributo) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("As métricas são somente leitura: " + atributo.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList atributos) {
+        return new AttributeList(); // Nenhum atributo pode ser alterado.
+    }
+
+    @Override
+    public Object invoke(String operacao, Object[] parametros, String[] assinatura) throws MBeanException, ReflectionException {
+        if ("zerar".equals(operacao)) {
+            metricas.zerar();
+            return null;
+        }
+        if ("gravarEm".equals(operacao) && parametros != null && parametros.length == 1) {
+            try {
+                metricas.gravarEm(String.valueOf(parametros[0]));
+                return null;
+            } catch (IOException e) {
+                throw new MBeanException(e, "Falha ao gravar as métricas: " + e.getMessage());
+            }
+        }
+        throw new ReflectionException(new NoSuchMethodException(operacao), "Operação desconhecida: " + operacao);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        SortedMap<String, Number> valores = metricas.getValores();
+        MBeanAttributeInfo[] atributos = new MBeanAttributeInfo[valores.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> valor : valores.entrySet()) {
+            atributos[i++] = new MBeanAttributeInfo(valor.getKey(), valor.getValue().getClass().getName(),
+                    valor.getKey(), true, false, false);
+        }
+        MBeanOperationInfo[] operacoes = {
+            new MBeanOperationInfo("zerar", "Zera os contadores e os histogramas.",
+                    new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo("gravarEm", "Grava as métricas em um arquivo de texto.",
+                    new MBeanParameterInfo[] { new MBeanParameterInfo("caminhoDoArquivo", String.class.getName(), "O caminho do arquivo.") },
+                    "void", MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(Metricas.class.getName(), "Métricas de funcionamento do Stokos.",
+                atributos, null, operacoes, null);
+    }
+}
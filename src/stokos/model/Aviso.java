@@ -0,0 +1,73 @@
+package stokos.model;
+
+/**
+ * Representa um aviso do painel de alertas: um produto que exige a atenção do
+ * usuário e o motivo (lote vencido, vencimento próximo, estoque zerado ou baixo).
+ * É produzido pelo `MotorDeAlertas`; a forma de exibi-lo fica com a interface.
+ *
+ * CONCEITOS DE POO APLICADOS:
+ * - Imutabilidade: Os atributos são `final`. O aviso descreve a situação no
+ * instante da consulta e não muda com as vendas seguintes.
+ * - Enumeração: O motivo do aviso é um `Tipo`, e não um texto, para que a tela
+ * possa escolher a mensagem (e a ordem) de cada um com segurança.
+ */
+public class Aviso {
+
+    /**
+     * Os motivos de um aviso, do mais para o menos urgente.
+     */
+    public enum Tipo {
+        /** Há pelo menos um lote do produto com a validade vencida. */
+        LOTE_VENCIDO,
+        /** Há um lote do produto que vence nos próximos dias. */
+        VENCIMENTO_PROXIMO,
+        /** O produto não tem mais nenhuma quantidade em estoque. */
+        ESTOQUE_ZERADO,
+        /** A quantidade em estoque chegou ao estoque mínimo do produto. */
+        ESTOQUE_BAIXO
+    }
+
+    private final Tipo tipo;
+    private final Produto produto;
+    private final long quantidadeEmMilesimos;
+    private final int diasAteVencer;
+
+    /**
+     * Construtor do Aviso.
+     *
+     * @param tipo O motivo do aviso.
+     * @param produto O produto envolvido.
+     * @param quantidadeEmMilesimos A quantidade do produto em estoque, em milésimos.
+     * @param diasAteVencer Os dias até o vencimento do lote (só para `VENCIMENTO_PROXIMO`).
+     */
+    Aviso(Tipo tipo, Produto produto, long quantidadeEmMilesimos, int diasAteVencer) {
+        this.tipo = tipo;
+        this.produto = produto;
+        this.quantidadeEmMilesimos = quantidadeEmMilesimos;
+        this.diasAteVencer = diasAteVencer;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public Produto getProduto() {
+        return produto;
+    }
+
+    /**
+     * Retorna a quantidade do produto em estoque quando o aviso foi gerado.
+     * Só é informada nos avisos de estoque (`ESTOQUE_ZERADO` e `ESTOQUE_BAIXO`).
+     */
+    public double getQuantidade() {
+        return PontoFixo.deMilesimos(quantidadeEmMilesimos);
+    }
+
+    /**
+     * Retorna quantos dias faltam para o lote vencer (0 se vence hoje).
+     * Só é informado nos avisos de `VENCIMENTO_PROXIMO`.
+     */
+    public int getDiasAteVencer() {
+        return diasAteVencer;
+    }
+}
@@ -3,9 +3,15 @@ package stokos.model;
 import stokos.exception.ProdutoNaoCadastradoException;
 import stokos.exception.LoteNaoVazioException;
 import stokos.exception.ProdutoJaCadastradoException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import stokos.metricas.HistogramaDeLatencias;
+import stokos.metricas.Metricas;
 
 /**
  * Representa o catálogo central de todos os tipos de produtos que a loja pode comercializar.
@@ -32,6 +38,46 @@ public class CatalogoDeProdutos implements Serializable {
     // Ela é privada para garantir o encapsulamento.
     private ArrayList<Produto> listaDeProdutos;
 
+    // Índices por código de barras e por ID, mantidos em sincronia com `listaDeProdutos`.
+    // Com eles, as buscas feitas a cada venda, entrada de lote e cadastro deixam
+    // de percorrer o catálogo inteiro e passam a ser consultas diretas (hash).
+    // São 'transient' porque são derivados da lista: não são salvos em arquivo e
+    // são reconstruídos ao carregar os dados (ver `readObject`).
+    // São `ConcurrentHashMap`s porque os caixas os consultam a cada venda, sem
+    // trava alguma, enquanto a tela de produtos pode estar cadastrando ou
+    // alterando produtos.
+    private transient ConcurrentHashMap<String, Produto> produtosPorCodigo;
+    private transient ConcurrentHashMap<Integer, Produto> produtosPorId;
+
+    // Índice de trigramas dos nomes, usado pela busca por nome (ver `IndiceDeNomes`).
+    private transient IndiceDeNomes indiceDeNomes;
+
+    // Observador avisado de cada operação concluída (ex: o diário de operações da
+    // camada de persistência). Pode ser nulo. É 'transient' porque é configurado
+    // novamente a cada execução, após o carregamento dos dados.
+    private transient ObservadorDeOperacoes observador;
+
+    // Motor de alertas do estoque ligado a este catálogo (ver `Estoque`), avisado
+    // dos cadastros, alterações e remoções de produtos. Pode ser nulo.
+    private transient MotorDeAlertas alertas;
+
+    // Número de alterações feitas no catálogo desde que ele foi criado ou carregado.
+    // Permite à camada de persistência saber se o catálogo mudou desde o último salvamento.
+    // É atômico porque também é lido pela gravação periódica, em outra thread.
+    private transient AtomicLong contadorDeAlteracoes;
+
+    // Trava das alterações (cadastros, alterações e remoções de produtos). As
+    // consultas não a usam: ela serve para que `bloquearAlteracoes` espere as
+    // alterações em andamento e impeça novas enquanto o catálogo é gravado.
+    private transient ReentrantLock travaDasAlteracoes;
+
+    // Métricas das buscas (ver `Metricas`). A busca por código, muito frequente,
+    // tem o tempo medido por amostragem; as buscas feitas pelo próprio `Estoque`
+    // durante as vendas (`produtoDoCodigo`) fazem parte da venda e não são contadas.
+    private static final HistogramaDeLatencias LATENCIA_DAS_BUSCAS_POR_CODIGO = Metricas.getInstance()
+            .histograma("catalogo.buscarProduto", stokos.Config.AMOSTRAGEM_DAS_OPERACOES_FREQUENTES);
+    private static final HistogramaDeLatencias LATENCIA_DAS_BUSCAS_POR_NOME = Metricas.getInstance().histograma("catalogo.buscarProdutosPorNome");
+
     /**
      * Construtor padrão da classe CatalogoDeProdutos.
      * Inicializa a lista de produtos como um novo ArrayList vazio, preparando
@@ -39,6 +85,130 @@ public class CatalogoDeProdutos implements Serializable {
      */
     public CatalogoDeProdutos() {
         this.listaDeProdutos = new ArrayList<>();
+        this.produtosPorCodigo = new ConcurrentHashMap<>();
+        this.produtosPorId = new ConcurrentHashMap<>();
+        this.contadorDeAlteracoes = new AtomicLong();
+        this.travaDasAlteracoes = new ReentrantLock();
+        this.indiceDeNomes = new IndiceDeNomes();
+    }
+
+    /**
+     * Reconstrói os índices após a desserialização.
+     * O Java chama este método automaticamente ao ler um catálogo do arquivo;
+     * como os índices são 'transient', eles precisam ser recriados a partir da lista.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.produtosPorCodigo = new ConcurrentHashMap<>();
+        this.produtosPorId = new ConcurrentHashMap<>();
+        this.contadorDeAlteracoes = new AtomicLong();
+        this.travaDasAlteracoes = new ReentrantLock();
+        this.indiceDeNomes = new IndiceDeNomes();
+        for (Produto produto : listaDeProdutos) {
+            indexarProduto(produto);
+        }
+    }
+
+    /**
+     * Registra um produto nos índices e o associa a este catálogo, para que
+     * alterações no seu código de barras e no seu nome sejam refletidas aqui.
+     * Em caso de repetição, prevalece o primeiro produto da lista, como nas buscas lineares.
+     */
+    private void indexarProduto(Produto produto) {
+        produtosPorCodigo.putIfAbsent(produto.getCodigoDeBarras(), produto);
+        if (produtosPorId.putIfAbsent(produto.getId(), produto) == null) {
+            indiceDeNomes.adicionar(produto.getId(), produto.getNomeDoProduto());
+        }
+        produto.setCatalogo(this);
+    }
+
+    /**
+     * Define o observador que será avisado das operações realizadas no catálogo.
+     * @param observador O observador, ou `null` para não avisar ninguém.
+     */
+    public void setObservador(ObservadorDeOperacoes observador) {
+        this.observador = observador;
+    }
+
+    /**
+     * Liga a este catálogo o motor de alertas do estoque. É chamado pelo `Estoque`.
+     */
+    void setMotorDeAlertas(MotorDeAlertas alertas) {
+        this.alertas = alertas;
+    }
+
+    /**
+     * Retorna quantas alterações (cadastros, alterações e remoções de produtos)
+     * o catálogo sofreu desde que foi criado ou carregado. Se o valor não mudou
+     * entre duas consultas, o catálogo não mudou.
+     */
+    public long getContadorDeAlteracoes() {
+        return contadorDeAlteracoes.get();
+    }
+
+    /**
+     * Impede qualquer alteração no catálogo (cadastros, alterações e remoções de
+     * produtos) até que `liberarAlteracoes` seja chamado pela mesma thread. As
+     * alterações em andamento terminam antes de este método retornar.
+     * Usado para gravar o catálogo inteiro em um estado consistente (ex: ao salvar
+     * os dados); as buscas continuam funcionando normalmente.
+     */
+    public void bloquearAlteracoes() {
+        travaDasAlteracoes.lock();
+    }
+
+    /**
+     * Libera as alterações bloqueadas por `bloquearAlteracoes`.
+     */
+    public void liberarAlteracoes() {
+        travaDasAlteracoes.unlock();
+    }
+
+    /**
+     * Repassa ao observador a alteração de um produto do catálogo.
+     * É chamado pelos setters de `Produto`, depois que o novo valor é atribuído.
+     */
+    void produtoAlterado(Produto produto) {
+        contadorDeAlteracoes.incrementAndGet();
+        if (alertas != null) {
+            alertas.produtoAlterado(produto);
+        }
+        if (observador != null) {
+            observador.produtoAlterado(produto);
+        }
+    }
+
+    /**
+     * Atualiza o índice por código de barras quando um produto do catálogo tem
+     * o seu código alterado. É chamado por `Produto.setCodigoDeBarras`, antes de
+     * o novo valor ser atribuído.
+     *
+     * @param produto O produto que está sendo alterado.
+     * @param novoCodigo O novo código de barras.
+     * @throws IllegalArgumentException se o novo código já pertencer a outro produto.
+     */
+    void alterarCodigoDeBarras(Produto produto, String novoCodigo) {
+        Produto existente = produtoDoCodigo(novoCodigo);
+        if (existente != null && existente != produto) {
+            throw new IllegalArgumentException("Já existe outro produto com o código de barras: " + novoCodigo);
+        }
+        if (produtoDoCodigo(produto.getCodigoDeBarras()) == produto) {
+            produtosPorCodigo.remove(produto.getCodigoDeBarras());
+        }
+        produtosPorCodigo.put(novoCodigo, produto);
+    }
+
+    /**
+     * Atualiza o índice de nomes quando um produto do catálogo é renomeado.
+     * É chamado por `Produto.setNomeDoProduto`.
+     *
+     * @param produto O produto que está sendo alterado.
+     * @param novoNome O novo nome.
+     */
+    void alterarNomeDoProduto(Produto produto, String novoNome) {
+        if (produtosPorId.get(produto.getId()) == produto) {
+            indiceDeNomes.renomear(produto.getId(), novoNome);
+        }
     }
 
     /**
@@ -50,13 +220,8 @@ public class CatalogoDeProdutos implements Serializable {
      * `false` caso contrário.
      */
     public boolean verificaProdutoCadastrado(String codigoDeBarras) {
-        // Utiliza um loop "for-each" para uma leitura mais limpa e segura do que um loop com índice.
-        for (Produto produto : listaDeProdutos) {
-            if (produto.getCodigoDeBarras().equals(codigoDeBarras)) {
-                return true; // Encerra a busca e retorna true assim que encontra uma correspondência.
-            }
-        }
-        return false; // Retorna false se o loop terminar sem encontrar o produto.
+        // Consulta direta no índice, sem percorrer a lista.
+        return produtoDoCodigo(codigoDeBarras) != null;
     }
 
     /**
@@ -73,13 +238,26 @@ public class CatalogoDeProdutos implements Serializable {
      * @throws ProdutoJaCadastradoException se o código de barras do produto já existir no catálogo.
      */
     public void cadastrarProduto(Produto produto) throws ProdutoJaCadastradoException {
-        if (verificaProdutoCadastrado(produto.getCodigoDeBarras())) {
-            // O uso de uma exceção customizada torna o código mais expressivo e o tratamento
-            // de erros mais específico. Fica claro para o desenvolvedor que o problema
-            // não foi um erro genérico, mas sim uma violação da regra de negócio.
-            throw new ProdutoJaCadastradoException("Produto já cadastrado: " + produto.getCodigoDeBarras());
+        travaDasAlteracoes.lock();
+        try {
+            if (verificaProdutoCadastrado(produto.getCodigoDeBarras())) {
+                // O uso de uma exceção customizada torna o código mais expressivo e o tratamento
+                // de erros mais específico. Fica claro para o desenvolvedor que o problema
+                // não foi um erro genérico, mas sim uma violação da regra de negócio.
+                throw new ProdutoJaCadastradoException("Produto já cadastrado: " + produto.getCodigoDeBarras());
+            }
+            listaDeProdutos.add(produto);
+            indexarProduto(produto);
+            contadorDeAlteracoes.incrementAndGet();
+            if (alertas != null) {
+                alertas.produtoAlterado(produto);
+            }
+            if (observador != null) {
+                observador.produtoCadastrado(produto);
+            }
+        } finally {
+            travaDasAlteracoes.unlock();
         }
-        listaDeProdutos.add(produto);
     }
 
     /**
@@ -98,23 +276,33 @@ public class CatalogoDeProdutos implements Serializable {
             throw new LoteNaoVazioException("Ainda há lotes do produto no estoque!");
         }
         
-        // Primeiro, é necessário encontrar a referência do objeto a ser removido.
-        Produto produtoParaRemover = null;
-        for (Produto p : listaDeProdutos) {
-            if (p.getCodigoDeBarras().equals(codigoDeBarras)) {
-                produtoParaRemover = p;
-                break; // Otimização: para o loop assim que o produto é encontrado.
+        travaDasAlteracoes.lock();
+        try {
+            // Primeiro, é necessário encontrar a referência do objeto a ser removido.
+            Produto produtoParaRemover = produtoDoCodigo(codigoDeBarras);
+
+            // Se a variável 'produtoParaRemover' for nula, o produto não foi encontrado.
+            if (produtoParaRemover == null) {
+                throw new ProdutoNaoCadastradoException("Produto não encontrado: " + codigoDeBarras);
             }
-        }
 
-        // Se, após o loop, a variável 'produtoParaRemover' continuar nula,
-        // significa que o produto não foi encontrado.
-        if (produtoParaRemover == null) {
-            throw new ProdutoNaoCadastradoException("Produto não encontrado: " + codigoDeBarras);
+            // Remove o produto da lista e dos índices usando a referência encontrada.
+            listaDeProdutos.remove(produtoParaRemover);
+            produtosPorCodigo.remove(codigoDeBarras);
+            if (produtosPorId.remove(produtoParaRemover.getId(), produtoParaRemover)) {
+                indiceDeNomes.remover(produtoParaRemover.getId());
+            }
+            produtoParaRemover.setCatalogo(null);
+            contadorDeAlteracoes.incrementAndGet();
+            if (alertas != null) {
+                alertas.produtoRemovido(produtoParaRemover);
+            }
+            if (observador != null) {
+                observador.produtoRemovido(codigoDeBarras);
+            }
+        } finally {
+            travaDasAlteracoes.unlock();
         }
-
-        // Remove o produto da lista usando a referência encontrada.
-        listaDeProdutos.remove(produtoParaRemover);
     }
 
     /**
@@ -126,12 +314,20 @@ public class CatalogoDeProdutos implements Serializable {
      * @return O objeto `Produto` correspondente, se for encontrado. Caso contrário, retorna `null`.
      */
     public Produto buscarProduto(String codigoDeBarras) {
-        for (Produto produto : listaDeProdutos) {
-            if (produto.getCodigoDeBarras().equals(codigoDeBarras)) {
-                return produto; // Retorna a instância do produto encontrado.
-            }
-        }
-        return null; // Retorna null para indicar que a busca não teve sucesso.
+        long inicio = LATENCIA_DAS_BUSCAS_POR_CODIGO.iniciar();
+        Produto produto = produtoDoCodigo(codigoDeBarras);
+        LATENCIA_DAS_BUSCAS_POR_CODIGO.registrarDesde(inicio);
+        return produto;
+    }
+
+    /**
+     * Busca um produto pelo código de barras sem registrar a busca nas métricas.
+     * Usado pelo `Estoque`, cujas operações já são medidas por inteiro.
+     */
+    Produto produtoDoCodigo(String codigoDeBarras) {
+        // `get` retorna null quando não há produto com o código, indicando que a busca não teve sucesso.
+        // O `ConcurrentHashMap` não aceita consultas por null, que também não encontram nada.
+        return codigoDeBarras != null ? produtosPorCodigo.get(codigoDeBarras) : null;
     }
 
     /**
@@ -145,27 +341,42 @@ public class CatalogoDeProdutos implements Serializable {
     // Este método é uma sobrecarga do método buscarProduto, permitindo a busca por ID
 
     public Produto buscarProduto(int id) {
-        for (Produto produto : listaDeProdutos) {
-            if (produto.getId() == id) {
-                return produto;
-            }
-        }
-        return null;
+        return produtosPorId.get(id);
     }
 
     /**
      * Busca e retorna uma lista de produtos cujo nome contém o termo de busca.
-     * A busca é case-insensitive (ignora maiúsculas/minúsculas).
+     * A busca ignora maiúsculas/minúsculas e acentos ("pao" encontra "Pão").
      *
      * @param termoBusca O nome ou parte do nome a ser procurado.
      * @return Uma lista de objetos `Produto` que correspondem ao critério.
      * Retorna uma lista vazia se nenhum produto for encontrado.
      */
     public ArrayList<Produto> buscarProdutosPorNome(String termoBusca) {
-        // Usa a API de Streams do Java para uma busca mais limpa e funcional.
-        return listaDeProdutos.stream()
-                .filter(produto -> produto.getNomeDoProduto().toLowerCase().contains(termoBusca.toLowerCase()))
-                .collect(Collectors.toCollection(ArrayList::new));
+        return buscarProdutosPorNome(termoBusca, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Busca os produtos cujo nome contém o termo de busca, retornando no máximo
+     * `limite` resultados (os primeiros cadastrados). Útil para telas que exibem
+     * apenas os N primeiros resultados.
+     * A consulta usa o índice de trigramas (`IndiceDeNomes`), sem percorrer todo o catálogo.
+     *
+     * @param termoBusca O nome ou parte do nome a ser procurado.
+     * @param limite O número máximo de produtos retornados.
+     * @return Uma lista com até `limite` produtos que correspondem ao critério.
+     */
+    public ArrayList<Produto> buscarProdutosPorNome(String termoBusca, int limite) {
+        long inicio = LATENCIA_DAS_BUSCAS_POR_NOME.iniciar();
+        try {
+            ArrayList<Produto> resultado = new ArrayList<>();
+            for (int id : indiceDeNomes.buscar(termoBusca, limite)) {
+                resultado.add(produtosPorId.get(id));
+            }
+            return resultado;
+        } finally {
+            LATENCIA_DAS_BUSCAS_POR_NOME.registrarDesde(inicio);
+        }
     }
 
     /**
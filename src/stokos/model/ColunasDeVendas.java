@@ -0,0 +1,227 @@
+package stokos.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Guarda as vendas do `HistoricoDeVendas` em colunas de tipos primitivos, em
+ * vez de um objeto `RegistroDeVenda` por venda.
+ *
+ * CONCEITO DE DESIGN: ARMAZENAMENTO EM COLUNAS
+ * Cada `RegistroDeVenda` é um objeto com duas Strings, uma `LocalDate` e quatro
+ * doubles, cerca de uma centena de bytes espalhados pela memória. Aqui, cada
+ * atributo de todas as vendas fica em um vetor próprio: o produto (um número
+ * que aponta para a tabela de códigos e nomes), o dia (`LocalDate.toEpochDay`),
+ * a quantidade (em milésimos), o preço, o custo e o lucro (em centavos; ver
+ * `PontoFixo`). Uma venda passa a ocupar 40 bytes,
+ * e percorrer as vendas é percorrer vetores contíguos, o que o processador faz
+ * muito mais rápido. Quem ainda precisa de um `RegistroDeVenda` o recebe criado
+ * na hora, a partir das colunas (ver `Fotografia.registro`).
+ *
+ * Os vetores são divididos em segmentos de tamanho fixo que nunca mudam de
+ * lugar, como no `HistoricoDeVendas`: uma venda, depois de publicada, nunca é
+ * movida nem alterada, e as consultas leem as colunas sem trava alguma.
+ *
+ * A classe é de uso interno do pacote `model`. As inclusões (`escrever` e
+ * `publicar`) devem ser feitas por uma thread de cada vez.
+ */
+final class ColunasDeVendas {
+
+    // Quantas vendas cabem em cada segmento.
+    static final int TAMANHO_DO_SEGMENTO = 1024;
+
+    /**
+     * As colunas de um bloco de `TAMANHO_DO_SEGMENTO` vendas.
+     */
+    private static final class Segmento {
+        final int[] produto = new int[TAMANHO_DO_SEGMENTO];
+        final int[] dia = new int[TAMANHO_DO_SEGMENTO];
+        final long[] quantidade = new long[TAMANHO_DO_SEGMENTO];
+        final long[] preco = new long[TAMANHO_DO_SEGMENTO];
+        final long[] custo = new long[TAMANHO_DO_SEGMENTO];
+        final long[] lucro = new long[TAMANHO_DO_SEGMENTO];
+    }
+
+    private volatile Segmento[] segmentos = new Segmento[0];
+    // Quantas vendas já estão completas e visíveis às consultas. É gravado por
+    // último em cada inclusão ('volatile'), publicando as vendas.
+    private volatile int quantidade;
+
+    // Tabela de produtos: o código de barras e o nome de cada produto no momento
+    // da venda. Um mesmo código com outro nome (produto renomeado) ganha uma nova posição.
+    private volatile String[] codigos = new String[16];
+    private volatile String[] nomes = new String[16];
+    private int quantidadeDeProdutos;
+    // Posição mais recente de cada código de barras na tabela. Usado só nas
+    // inclusões. A chave é o próprio código do registro, sem montar nenhum
+    // objeto por venda; o nome é conferido com o da posição encontrada.
+    private final HashMap<String, Integer> posicaoDoCodigo = new HashMap<>();
+
+    /**
+     * Quantas vendas já foram publicadas.
+     */
+    int quantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Escreve uma venda na posição informada das colunas, criando o segmento se
+     * preciso. A venda só fica visível às consultas depois de `publicar`.
+     */
+    void escrever(int posicao, RegistroDeVenda registro) {
+        int indice = posicao / TAMANHO_DO_SEGMENTO;
+        Segmento[] atuais = segmentos;
+        if (indice == atuais.length) {
+            atuais = Arrays.copyOf(atuais, Math.max(4, atuais.length * 2));
+        }
+        if (atuais[indice] == null) {
+            atuais[indice] = new Segmento();
+        }
+        Segmento segmento = atuais[indice];
+        int i = posicao % TAMANHO_DO_SEGMENTO;
+        segmento.produto[i] = posicaoDoProduto(registro.getCodigoDeBarrasProduto(), registro.getNomeDoProduto());
+        segmento.dia[i] = (int) registro.getDataDaVenda().toEpochDay();
+        segmento.quantidade[i] = PontoFixo.paraMilesimos(registro.getQuantidadeVendida());
+        segmento.preco[i] = PontoFixo.paraCentavos(registro.getPrecoUnitarioNaVenda());
+        segmento.custo[i] = PontoFixo.paraCentavos(registro.getCustoTotalDaVenda());
+        segmento.lucro[i] = PontoFixo.paraCentavos(registro.getLucroDaVenda());
+        segmentos = atuais;
+    }
+
+    /**
+     * Torna visíveis às consultas as vendas escritas até `novaQuantidade`.
+     */
+    void publicar(int novaQuantidade) {
+        quantidade = novaQuantidade;
+    }
+
+    /**
+     * Retorna a posição de um par (código, nome) na tabela de produtos,
+     * incluindo-o se for novo (um produto novo ou renomeado desde a última venda).
+     */
+    private int posicaoDoProduto(String codigo, String nome) {
+        Integer posicao = posicaoDoCodigo.get(codigo);
+        if (posicao != null && nomes[posicao].equals(nome)) {
+            return posicao;
+        }
+        int nova = quantidadeDeProdutos;
+        if (nova == codigos.length) {
+            // Os vetores novos são publicados já preenchidos, para quem os ler sem trava.
+            String[] novosCodigos = Arrays.copyOf(codigos, nova * 2);
+            String[] novosNomes = Arrays.copyOf(nomes, nova * 2);
+            novosCodigos[nova] = codigo;
+            novosNomes[nova] = nome;
+            codigos = novosCodigos;
+            nomes = novosNomes;
+        } else {
+            codigos[nova] = codigo;
+            nomes[nova] = nome;
+        }
+        quantidadeDeProdutos = nova + 1;
+        posicaoDoCodigo.put(codigo, nova);
+        return nova;
+    }
+
+    /**
+     * Retorna uma fotografia das vendas publicadas até agora. Ela não muda com
+     * as vendas seguintes e não bloqueia ninguém.
+     */
+    Fotografia fotografar() {
+        // A quantidade é lida antes dos vetores: toda venda contada nela já está
+        // nos segmentos e na tabela de produtos lidos em seguida.
+        int publicadas = quantidade;
+        return new Fotografia(segmentos, codigos, nomes, publicadas);
+    }
+
+    /**
+     * Recebe as vendas, coluna a coluna, de `Fotografia.percorrer`.
+     */
+    interface Visitante {
+        void visitar(String codigo, int dia, long quantidadeEmMilesimos, long precoEmCentavos,
+                     long custoEmCentavos, long lucroEmCentavos);
+    }
+
+    /**
+     * As vendas publicadas em um instante, lidas diretamente das colunas.
+     */
+    static final class Fotografia {
+        private final Segmento[] segmentos;
+        private final String[] codigos;
+        private final String[] nomes;
+        private final int quantidade;
+
+        private Fotografia(Segmento[] segmentos, String[] codigos, String[] nomes, int quantidade) {
+            this.segmentos = segmentos;
+            this.codigos = codigos;
+            this.nomes = nomes;
+            this.quantidade = quantidade;
+        }
+
+        int quantidade() {
+            return quantidade;
+        }
+
+        /**
+         * Cria o `RegistroDeVenda` da venda na posição informada.
+         */
+        RegistroDeVenda registro(int posicao) {
+            Segmento segmento = segmentos[posicao / TAMANHO_DO_SEGMENTO];
+            int i = posicao % TAMANHO_DO_SEGMENTO;
+            int produto = segmento.produto[i];
+            return new RegistroDeVenda(codigos[produto], nomes[produto], PontoFixo.deMilesimos(segmento.quantidade[i]),
+                    PontoFixo.deCentavos(segmento.preco[i]), PontoFixo.deCentavos(segmento.custo[i]),
+                    PontoFixo.deCentavos(segmento.lucro[i]), LocalDate.ofEpochDay(segmento.dia[i]));
+        }
+
+        /**
+         * Passa todas as vendas ao visitante, em ordem, sem criar nenhum objeto por venda.
+         */
+        void percorrer(Visitante visitante) {
+            for (int inicio = 0; inicio < quantidade; inicio += TAMANHO_DO_SEGMENTO) {
+                Segmento segmento = segmentos[inicio / TAMANHO_DO_SEGMENTO];
+                int fim = Math.min(TAMANHO_DO_SEGMENTO, quantidade - inicio);
+                for (int i = 0; i < fim; i++) {
+                    visitante.visitar(codigos[segmento.produto[i]], segmento.dia[i], segmento.quantidade[i],
+                            segmento.preco[i], segmento.custo[i], segmento.lucro[i]);
+                }
+            }
+        }
+
+        /**
+         * Retorna as posições das vendas de um produto entre dois dias
+         * (`LocalDate.toEpochDay`), inclusive. A comparação é feita só sobre as
+         * colunas de números; nenhum registro é criado.
+         */
+        int[] posicoesPorPeriodo(String codigo, int primeiroDia, int ultimoDia) {
+            // As posições da tabela de produtos que têm o código procurado.
+            boolean[] doProduto = new boolean[codigos.length];
+            boolean algum = false;
+            for (int p = 0; p < codigos.length && codigos[p] != null; p++) {
+                if (codigos[p].equals(codigo)) {
+                    doProduto[p] = true;
+                    algum = true;
+                }
+            }
+            if (!algum) {
+                return new int[0];
+            }
+            int[] posicoes = new int[16];
+            int encontradas = 0;
+            for (int inicio = 0; inicio < quantidade; inicio += TAMANHO_DO_SEGMENTO) {
+                Segmento segmento = segmentos[inicio / TAMANHO_DO_SEGMENTO];
+                int fim = Math.min(TAMANHO_DO_SEGMENTO, quantidade - inicio);
+                for (int i = 0; i < fim; i++) {
+                    int dia = segmento.dia[i];
+                    if (dia >= primeiroDia && dia <= ultimoDia && doProduto[segmento.produto[i]]) {
+                        if (encontradas == posicoes.length) {
+                            posicoes = Arrays.copyOf(posicoes, encontradas * 2);
+                        }
+                        posicoes[encontradas++] = inicio + i;
+                    }
+                }
+            }
+            return Arrays.copyOf(posicoes, encontradas);
+        }
+    }
+}
@@ -51,6 +51,13 @@ public class DadosDoSistema implements Serializable {
      */
     public HistoricoDeVendas historicoDeVendas;
 
+    /**
+     * Número de sequência da última operação do diário de operações que já está
+     * refletida nestes dados. Ao carregar, apenas as operações do diário com
+     * número maior são reaplicadas, o que evita aplicar a mesma operação duas vezes.
+     */
+    public long ultimaOperacaoAplicada;
+
     /**
      * Construtor da classe DadosDoSistema.
      * Quando um novo conjunto de dados é criado (por exemplo, na primeira vez que
@@ -61,9 +68,21 @@ public class DadosDoSistema implements Serializable {
      */
     public DadosDoSistema() {
         this.catalogo = new CatalogoDeProdutos();
+        // O 'estoque' depende do 'catalogo', por isso é criado logo após ele.
+        // Dados antigos carregados de arquivo ainda podem vir sem estoque; esse caso
+        // é tratado de forma segura no AppContext após o carregamento.
+        this.estoque = new Estoque(this.catalogo);
         this.historicoDeVendas = new HistoricoDeVendas();
-        // Nota: O 'estoque' não é inicializado aqui, pois ele depende do 'catalogo'.
-        // Sua inicialização é tratada de forma segura no AppContext após o carregamento
-        // dos dados para garantir que a referência ao catálogo seja a correta.
+    }
+
+    /**
+     * Define o observador que será avisado das operações realizadas no catálogo
+     * e no estoque destes dados.
+     *
+     * @param observador O observador, ou `null` para não avisar ninguém.
+     */
+    public void setObservador(ObservadorDeOperacoes observador) {
+        if (catalogo != null) catalogo.setObservador(observador);
+        if (estoque != null) estoque.setObservador(observador);
     }
 }
\ No newline at end of file
@@ -1,14 +1,27 @@
 package stokos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import stokos.model.RegistroDeVenda;
 import stokos.exception.*;
+import stokos.metricas.Contador;
+import stokos.metricas.HistogramaDeLatencias;
+import stokos.metricas.Metricas;
 
 /**
  * A classe Estoque é uma das classes centrais do domínio da aplicação.
@@ -28,6 +41,33 @@ import stokos.exception.*;
  * que seus objetos (e todos os objetos que ela contém, como a `listaDeLotes`)
  * sejam convertidos em uma sequência de bytes. Isso é fundamental para o
  * serviço de persistência, que salva o estado do sistema em um arquivo.
+ *
+ * CONCEITO DE DESIGN: UMA TRAVA POR PRODUTO
+ * Vários caixas podem registrar vendas ao mesmo tempo. Cada `EstoqueDoProduto`
+ * funciona como a trava do seu produto: a verificação da quantidade disponível
+ * e a baixa nos lotes acontecem juntas, dentro dela, de modo que duas vendas do
+ * mesmo produto nunca vendem a mesma unidade. Vendas de produtos diferentes usam
+ * travas diferentes e, portanto, são processadas em paralelo.
+ * As operações que percorrem o estoque inteiro (limpeza de lotes vazios,
+ * verificação de consistência, gravação em arquivo) usam a trava de leitura e
+ * escrita `travaDoEstoque` de forma exclusiva e esperam as operações por
+ * produto em andamento, que a usam de forma compartilhada.
+ * A ordem das travas é sempre: `travaDoEstoque`, a trava do produto e, por fim,
+ * a lista completa de lotes (ou o histórico de vendas e, dentro dele, o observador).
+ *
+ * CONCEITO DE DESIGN: LEITURA OTIMISTA (FOTOGRAFIA DO ESTOQUE)
+ * Relatórios e telas que percorrem todos os lotes não precisam parar os caixas.
+ * Toda alteração marca o início (`iniciarAlteracao`) e o fim
+ * (`concluirAlteracao`) e avança a versão do estoque. `fotografarLotes` copia
+ * os lotes sem trava alguma e, ao final, confere se nenhuma alteração começou
+ * ou estava em andamento durante a cópia; se houve, simplesmente tenta de novo.
+ * Só depois de várias tentativas frustradas (um movimento muito intenso) é que
+ * a cópia é feita com as alterações bloqueadas, por um instante curto.
+ *
+ * CONCEITO DE DESIGN: ALERTAS MANTIDOS A CADA ALTERAÇÃO
+ * Cada entrada, venda e descarte também atualiza o `MotorDeAlertas`, ainda
+ * dentro da trava do produto. O painel de avisos consulta o motor
+ * (`getAvisos`) em vez de percorrer o estoque e o catálogo inteiros.
  */
 public class Estoque implements Serializable {
 
@@ -37,6 +77,60 @@ public class Estoque implements Serializable {
     // O uso de ArrayList permite uma coleção dinâmica que pode crescer ou encolher.
     private ArrayList<Lote> listaDeLotes;
 
+    // Índice dos lotes agrupados por produto, mantido em sincronia com `listaDeLotes`.
+    // Permite que vendas e consultas percorram apenas os lotes do produto envolvido,
+    // em vez de todos os lotes do estoque. Cada `EstoqueDoProduto` também mantém a
+    // quantidade total disponível do produto, atualizada a cada entrada e retirada.
+    // A chave é o próprio objeto `Produto` (e não o código de barras), para que a
+    // edição do código de barras de um produto não deixe seus lotes "órfãos" no índice.
+    // É 'transient' porque é derivado de `listaDeLotes`: não é salvo em arquivo e
+    // é reconstruído ao carregar os dados (ver `readObject`).
+    // É um `ConcurrentHashMap` para que caixas diferentes possam consultá-lo e
+    // incluir produtos nele ao mesmo tempo.
+    private transient ConcurrentHashMap<Produto, EstoqueDoProduto> estoquePorProduto;
+
+    // Compartilhada pelas operações de um único produto e exclusiva para as que
+    // percorrem o estoque inteiro (ver `bloquearAlteracoes`).
+    private transient ReentrantReadWriteLock travaDoEstoque;
+
+    // Observador avisado de cada operação concluída (ex: o diário de operações da
+    // camada de persistência). Pode ser nulo. É 'transient' porque é configurado
+    // novamente a cada execução, após o carregamento dos dados.
+    private transient ObservadorDeOperacoes observador;
+
+    // Número de alterações feitas no estoque desde que ele foi criado ou carregado.
+    // Permite à camada de persistência saber se o estoque mudou desde o último salvamento.
+    private transient AtomicLong contadorDeAlteracoes;
+
+    // Versão dos lotes: avança no início de cada alteração (ver `fotografarLotes`).
+    private transient AtomicLong versaoDosLotes;
+    // Quantas alterações dos lotes estão em andamento neste momento.
+    private transient AtomicInteger alteracoesEmAndamento;
+
+    // Quantos lotes esgotados ainda estão em `listaDeLotes`, à espera da próxima
+    // compactação (ver `removerLotesEsgotados`). Protegido pela trava de `listaDeLotes`.
+    private transient int lotesEsgotadosPendentes;
+
+    // Número mínimo de lotes esgotados pendentes para compactar `listaDeLotes`.
+    private static final int MINIMO_DE_LOTES_PARA_COMPACTAR = 32;
+
+    // Lotes por validade e produtos abaixo do mínimo, para o painel de avisos
+    // (ver `MotorDeAlertas`). É derivado dos lotes e do catálogo.
+    private transient MotorDeAlertas alertas;
+
+    // Quantas vezes `fotografarLotes` tenta copiar os lotes sem bloquear nada.
+    private static final int TENTATIVAS_DE_LEITURA_OTIMISTA = 8;
+
+    // Métricas das operações (ver `Metricas`), registradas sem nenhuma trava.
+    // As vendas, muito frequentes, têm o tempo medido por amostragem.
+    private static final HistogramaDeLatencias LATENCIA_DAS_VENDAS = Metricas.getInstance()
+            .histograma("estoque.registrarVenda", stokos.Config.AMOSTRAGEM_DAS_OPERACOES_FREQUENTES);
+    private static final HistogramaDeLatencias LATENCIA_DAS_CESTAS = Metricas.getInstance()
+            .histograma("estoque.registrarVendas", stokos.Config.AMOSTRAGEM_DAS_OPERACOES_FREQUENTES);
+    private static final HistogramaDeLatencias LATENCIA_DOS_DESCARTES = Metricas.getInstance().histograma("estoque.registrarDescarte");
+    private static final HistogramaDeLatencias LATENCIA_DAS_ENTRADAS = Metricas.getInstance().histograma("estoque.adicionarLote");
+    private static final Contador VENDAS_RECUSADAS = Metricas.getInstance().contador("estoque.vendasRecusadas");
+
     // Atributo final para a referência ao catálogo de produtos.
     // 'final' indica que, uma vez que a referência é atribuída no construtor,
     // ela não pode mais ser alterada. Isso garante que o estoque sempre se
@@ -52,14 +146,211 @@ public class Estoque implements Serializable {
     public Estoque(CatalogoDeProdutos catalogo) {
         this.listaDeLotes = new ArrayList<>();
         this.catalogo = catalogo;
+        this.estoquePorProduto = new ConcurrentHashMap<>();
+        this.travaDoEstoque = new ReentrantReadWriteLock();
+        this.contadorDeAlteracoes = new AtomicLong();
+        this.versaoDosLotes = new AtomicLong();
+        this.alteracoesEmAndamento = new AtomicInteger();
+        iniciarAlertas();
+    }
+
+    /**
+     * Reconstrói o índice de lotes por produto após a desserialização.
+     * O Java chama este método automaticamente ao ler um `Estoque` do arquivo;
+     * como o índice é 'transient', ele precisa ser recriado a partir de `listaDeLotes`.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.estoquePorProduto = new ConcurrentHashMap<>();
+        this.travaDoEstoque = new ReentrantReadWriteLock();
+        this.contadorDeAlteracoes = new AtomicLong();
+        this.versaoDosLotes = new AtomicLong();
+        this.alteracoesEmAndamento = new AtomicInteger();
+        for (Lote lote : listaDeLotes) {
+            indexarLote(lote.getProduto(), lote);
+        }
+        iniciarAlertas();
     }
 
     /**
-     * Retorna a lista completa de lotes atualmente no estoque.
-     * @return um `ArrayList<Lote>` contendo todos os lotes.
+     * Cria o motor de alertas a partir dos lotes e dos produtos do catálogo, e
+     * o liga ao catálogo, que passa a avisá-lo dos cadastros e alterações.
      */
-    public ArrayList<Lote> getLotes() {
-        return listaDeLotes;
+    private void iniciarAlertas() {
+        this.alertas = new MotorDeAlertas(this);
+        for (Lote lote : listaDeLotes) {
+            alertas.loteAdicionado(lote);
+        }
+        if (catalogo != null) {
+            for (Produto produto : catalogo.getListaDeProdutos()) {
+                EstoqueDoProduto estoqueDoProduto = estoquePorProduto.get(produto);
+                alertas.quantidadeAlterada(produto, estoqueDoProduto != null ? estoqueDoProduto.getQuantidadeDisponivel() : 0);
+            }
+            catalogo.setMotorDeAlertas(alertas);
+        }
+    }
+
+    /**
+     * Registra um lote no índice, sob o produto informado.
+     */
+    private void indexarLote(Produto produto, Lote lote) {
+        estoquePorProduto.computeIfAbsent(produto, p -> new EstoqueDoProduto()).adicionarLote(lote);
+    }
+
+    /**
+     * Retorna o agrupamento de um produto no estoque, resolvendo o código de
+     * barras por meio do catálogo.
+     *
+     * @param codigoDeBarras O código de barras do produto.
+     * @return O `EstoqueDoProduto` correspondente, ou `null` se não houver lotes.
+     */
+    private EstoqueDoProduto estoqueDoProduto(String codigoDeBarras) {
+        Produto produto = catalogo.produtoDoCodigo(codigoDeBarras);
+        return produto != null ? estoquePorProduto.get(produto) : null;
+    }
+
+    /**
+     * Define o observador que será avisado das operações realizadas no estoque.
+     * @param observador O observador, ou `null` para não avisar ninguém.
+     */
+    public void setObservador(ObservadorDeOperacoes observador) {
+        this.observador = observador;
+    }
+
+    /**
+     * Retorna quantas alterações (entradas de lotes, vendas e descartes) o
+     * estoque sofreu desde que foi criado ou carregado. Se o valor não mudou
+     * entre duas consultas, o estoque não mudou.
+     */
+    public long getContadorDeAlteracoes() {
+        return contadorDeAlteracoes.get();
+    }
+
+    /**
+     * Impede qualquer alteração no estoque (entradas, vendas e descartes) até
+     * que `liberarAlteracoes` seja chamado pela mesma thread. As operações em
+     * andamento terminam antes de este método retornar.
+     * Usado para ler o estoque inteiro em um estado consistente (ex: ao salvar os
+     * dados) enquanto outros caixas continuam em funcionamento.
+     */
+    public void bloquearAlteracoes() {
+        travaDoEstoque.writeLock().lock();
+    }
+
+    /**
+     * Libera as alterações bloqueadas por `bloquearAlteracoes`.
+     */
+    public void liberarAlteracoes() {
+        travaDoEstoque.writeLock().unlock();
+    }
+
+    /**
+     * Marca o início de uma alteração nos lotes, avançando a versão do estoque.
+     * Deve ser sempre seguido de `concluirAlteracao` (em um bloco `finally`).
+     */
+    private void iniciarAlteracao() {
+        // A contagem sobe antes da versão: quem vê a nova versão já vê a alteração em andamento.
+        alteracoesEmAndamento.incrementAndGet();
+        versaoDosLotes.incrementAndGet();
+    }
+
+    /**
+     * Marca o fim de uma alteração iniciada por `iniciarAlteracao`.
+     */
+    private void concluirAlteracao() {
+        alteracoesEmAndamento.decrementAndGet();
+    }
+
+    /**
+     * Retorna uma fotografia de todos os lotes do estoque: cópias (ver
+     * `Lote.copiar`) tiradas em um mesmo instante, que não mudam com as vendas
+     * seguintes. Pode ser percorrida, ordenada e filtrada à vontade, por
+     * quanto tempo for preciso, sem atrapalhar os caixas.
+     *
+     * @return uma nova lista com as cópias dos lotes.
+     */
+    public ArrayList<Lote> fotografarLotes() {
+        for (int tentativa = 0; tentativa < TENTATIVAS_DE_LEITURA_OTIMISTA; tentativa++) {
+            long versao = versaoDosLotes.get();
+            if (alteracoesEmAndamento.get() == 0) {
+                ArrayList<Lote> copia = copiarLotes();
+                // As leituras dos lotes são comuns (sem `volatile`): sem esta barreira,
+                // o processador e o compilador poderiam adiá-las para depois da
+                // conferência da versão abaixo, e uma cópia misturada passaria por boa.
+                VarHandle.acquireFence();
+                // A cópia só vale se nenhuma alteração começou enquanto era feita.
+                if (versaoDosLotes.get() == versao) {
+                    return copia;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        // Movimento intenso demais: copia com as alterações bloqueadas.
+        bloquearAlteracoes();
+        try {
+            return copiarLotes();
+        } finally {
+            liberarAlteracoes();
+        }
+    }
+
+    /**
+     * Copia a lista de lotes. Com alterações em andamento, a cópia pode sair
+     * misturada; cabe a `fotografarLotes` conferir a versão e descartá-la.
+     */
+    private ArrayList<Lote> copiarLotes() {
+        Lote[] lotes;
+        synchronized (listaDeLotes) {
+            lotes = listaDeLotes.toArray(new Lote[0]);
+        }
+        ArrayList<Lote> copia = new ArrayList<>(lotes.length);
+        for (Lote lote : lotes) {
+            Lote copiaDoLote = lote.copiar();
+            // Lotes esgotados que aguardam a compactação não aparecem.
+            if (copiaDoLote.getQuantidadeEmMilesimos() > 0) {
+                copia.add(copiaDoLote);
+            }
+        }
+        return copia;
+    }
+
+    /**
+     * Retorna todos os lotes atualmente no estoque, como uma lista somente
+     * leitura de cópias tiradas em um mesmo instante (ver `fotografarLotes`).
+     * Feita para as telas e relatórios: a lista retornada pode ser percorrida
+     * a qualquer momento, mesmo com os caixas vendendo, e alterar um lote dela
+     * não altera o estoque.
+     * @return uma lista não modificável com os lotes.
+     */
+    public List<Lote> getLotes() {
+        return Collections.unmodifiableList(fotografarLotes());
+    }
+
+    /**
+     * Retorna uma visão somente leitura da própria lista de lotes, sem copiar
+     * nenhum lote. Os esgotados que aguardam a compactação são retirados antes.
+     * Feita para quem só lê o estoque inteiro de uma vez, como a gravação em
+     * arquivo: deve ser usada com as alterações bloqueadas (`bloquearAlteracoes`)
+     * ou antes de o estoque ser compartilhado com outras threads, pois a visão
+     * acompanha as vendas.
+     *
+     * @return uma visão não modificável da lista de lotes.
+     */
+    public List<Lote> getLotesSemCopia() {
+        synchronized (listaDeLotes) {
+            compactarListaDeLotes();
+        }
+        return Collections.unmodifiableList(listaDeLotes);
+    }
+
+    /**
+     * Retorna quantos lotes há no estoque, sem contar os esgotados que aguardam
+     * a compactação, e sem copiar a lista de lotes. Usado pelas métricas do sistema.
+     */
+    public int getQuantidadeDeLotes() {
+        synchronized (listaDeLotes) {
+            return listaDeLotes.size() - Math.max(lotesEsgotadosPendentes, 0);
+        }
     }
 
     /**
@@ -75,10 +366,47 @@ public class Estoque implements Serializable {
      * @throws ProdutoNaoCadastradoException se o produto do lote não for encontrado no catálogo.
      */
     public void adicionarLote(Lote lote) throws ProdutoNaoCadastradoException {
+        long inicio = LATENCIA_DAS_ENTRADAS.iniciar();
+        try {
+            incluirLote(lote);
+        } finally {
+            LATENCIA_DAS_ENTRADAS.registrarDesde(inicio);
+        }
+    }
+
+    private void incluirLote(Lote lote) throws ProdutoNaoCadastradoException {
         // Validação crucial para manter a consistência do sistema.
         // Um lote só pode ser adicionado se seu respectivo produto existir.
-        if (catalogo.verificaProdutoCadastrado(lote.getProduto().getCodigoDeBarras())) {
-            listaDeLotes.add(lote);
+        Produto produto = catalogo.produtoDoCodigo(lote.getProduto().getCodigoDeBarras());
+        if (produto != null) {
+            travaDoEstoque.readLock().lock();
+            try {
+                EstoqueDoProduto estoqueDoProduto = estoquePorProduto.computeIfAbsent(produto, p -> new EstoqueDoProduto());
+                // O lote é avisado ao observador ainda dentro da trava do produto,
+                // antes de qualquer venda que possa consumi-lo.
+                estoqueDoProduto.travar();
+                try {
+                    iniciarAlteracao();
+                    try {
+                        synchronized (listaDeLotes) {
+                            listaDeLotes.add(lote);
+                        }
+                        estoqueDoProduto.adicionarLote(lote);
+                        alertas.loteAdicionado(lote);
+                        alertas.quantidadeAlterada(produto, estoqueDoProduto.getQuantidadeDisponivel());
+                    } finally {
+                        concluirAlteracao();
+                    }
+                    contadorDeAlteracoes.incrementAndGet();
+                    if (observador != null) {
+                        observador.loteAdicionado(lote);
+                    }
+                } finally {
+                    estoqueDoProduto.destravar();
+                }
+            } finally {
+                travaDoEstoque.readLock().unlock();
+            }
         } else {
             // Lançar uma exceção específica torna o tratamento de erros mais claro
             // para quem chama o método.
@@ -93,31 +421,180 @@ public class Estoque implements Serializable {
      * Utiliza um método funcional (lambda) `removeIf`, que é mais conciso e legível.
      */
     public void removerLotesVazios() {
-        listaDeLotes.removeIf(lote -> lote.getQuantidade() == 0);
+        bloquearAlteracoes();
+        iniciarAlteracao();
+        try {
+            boolean removeuAlgum;
+            synchronized (listaDeLotes) {
+                removeuAlgum = compactarListaDeLotes();
+            }
+            if (removeuAlgum) {
+                contadorDeAlteracoes.incrementAndGet();
+            }
+
+            // Mantém o índice em sincronia, descartando também os produtos que ficaram sem lotes.
+            Iterator<EstoqueDoProduto> it = estoquePorProduto.values().iterator();
+            while (it.hasNext()) {
+                EstoqueDoProduto estoqueDoProduto = it.next();
+                estoqueDoProduto.removerLotesVazios();
+                if (estoqueDoProduto.getLotes().isEmpty()) {
+                    it.remove();
+                }
+            }
+        } finally {
+            concluirAlteracao();
+            liberarAlteracoes();
+        }
+    }
+
+    /**
+     * Contabiliza os lotes que uma venda ou descarte esgotou.
+     *
+     * CONCEITO DE DESIGN: COMPACTAÇÃO ADIADA
+     * Os lotes esgotados já saíram do `EstoqueDoProduto` durante o consumo, então
+     * as próximas vendas (FEFO/FIFO) não os veem mais. Retirá-los também da lista
+     * completa a cada venda custaria uma passada pela lista inteira; por isso,
+     * eles ficam nela, com quantidade zero, até que os pendentes somem um quarto
+     * da lista (ou `MINIMO_DE_LOTES_PARA_COMPACTAR`). Aí, uma única passada retira
+     * todos de uma vez, e o custo de cada venda fica constante em média.
+     * Enquanto isso, as consultas não os enxergam: `fotografarLotes` (e
+     * `getLotes`, que a usa) os ignora.
+     * Os lotes esgotados saem na hora, porém, do índice de validades dos alertas.
+     */
+    private void removerLotesEsgotados(List<Lote> esgotados) {
+        if (!esgotados.isEmpty()) {
+            alertas.lotesEsgotados(esgotados);
+            synchronized (listaDeLotes) {
+                lotesEsgotadosPendentes += esgotados.size();
+                if (lotesEsgotadosPendentes >= Math.max(MINIMO_DE_LOTES_PARA_COMPACTAR, listaDeLotes.size() / 4)) {
+                    compactarListaDeLotes();
+                }
+            }
+        }
     }
 
     /**
-     * Calcula e retorna a quantidade total disponível de um produto específico,
-     * somando as quantidades de todos os seus lotes no estoque.
+     * Retira de `listaDeLotes`, em uma única passada, todos os lotes sem quantidade.
+     * Deve ser chamado com a trava de `listaDeLotes` (ou com as alterações bloqueadas).
+     *
+     * @return `true` se algum lote foi retirado.
+     */
+    private boolean compactarListaDeLotes() {
+        int antes = listaDeLotes.size();
+        boolean retirou = listaDeLotes.removeIf(lote -> lote.getQuantidadeEmMilesimos() == 0);
+        // Desconta só o que saiu de fato. Um lote zerado por uma venda que ainda
+        // não chegou a `removerLotesEsgotados` sai aqui antes de ser contado: o
+        // contador fica negativo até a venda somar a sua parte, e volta ao certo.
+        lotesEsgotadosPendentes -= antes - listaDeLotes.size();
+        return retirou;
+    }
+
+    /**
+     * Retorna os avisos atuais do estoque (lotes vencidos ou perto de vencer e
+     * produtos com estoque zerado ou baixo), com a data de hoje do `RelogioDoNegocio`.
+     * A consulta não percorre o estoque: lê o que o `MotorDeAlertas` já mantém.
+     *
+     * @return uma nova lista com os avisos.
+     */
+    public List<Aviso> getAvisos() {
+        return getAvisos(RelogioDoNegocio.getInstance().getHoje());
+    }
+
+    /**
+     * Retorna os avisos atuais do estoque, tomando `hoje` como a data de referência
+     * para os vencimentos.
+     *
+     * @param hoje A data de referência.
+     * @return uma nova lista com os avisos.
+     */
+    public List<Aviso> getAvisos(LocalDate hoje) {
+        return alertas.getAvisos(hoje);
+    }
+
+    /**
+     * Reavalia a situação de um produto no motor de alertas, com a trava do
+     * produto. Chamado quando o catálogo cadastra ou altera um produto.
+     */
+    void reavaliarAlertas(Produto produto) {
+        travaDoEstoque.readLock().lock();
+        try {
+            EstoqueDoProduto estoqueDoProduto = estoquePorProduto.computeIfAbsent(produto, p -> new EstoqueDoProduto());
+            estoqueDoProduto.travar();
+            try {
+                alertas.quantidadeAlterada(produto, estoqueDoProduto.getQuantidadeDisponivel());
+            } finally {
+                estoqueDoProduto.destravar();
+            }
+        } finally {
+            travaDoEstoque.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a quantidade total disponível de um produto específico, isto é,
+     * a soma das quantidades de todos os seus lotes no estoque.
+     * O total é mantido a cada entrada e retirada de lotes, então a consulta
+     * não precisa percorrer nenhum lote.
      *
      * @param codigoDeBarra O código de barras do produto a ser consultado.
      * @return A quantidade total disponível do produto (double).
      */
     public double getQuantidadeDisponivel(String codigoDeBarra) {
-        double quantidadeTotal = 0;
-        for (Lote lote : this.listaDeLotes) {
-            // Percorre todos os lotes e acumula a quantidade se o código de barras corresponder.
-            if (lote.getProduto().getCodigoDeBarras().equals(codigoDeBarra)) {
-                quantidadeTotal += lote.getQuantidade();
+        EstoqueDoProduto estoqueDoProduto = estoqueDoProduto(codigoDeBarra);
+        return estoqueDoProduto != null ? PontoFixo.deMilesimos(estoqueDoProduto.getQuantidadeDisponivel()) : 0;
+    }
+
+    /**
+     * Verifica se os totais mantidos para cada produto conferem com a soma
+     * recalculada das quantidades dos lotes. Útil para testes e diagnóstico,
+     * pois percorre o estoque inteiro.
+     *
+     * @return `true` se todos os totais estiverem consistentes, `false` caso contrário.
+     */
+    public boolean verificarConsistencia() {
+        bloquearAlteracoes();
+        try {
+            return verificarConsistenciaBloqueado();
+        } finally {
+            liberarAlteracoes();
+        }
+    }
+
+    private boolean verificarConsistenciaBloqueado() {
+        // Soma, a partir da lista completa, a quantidade de cada produto.
+        Map<Produto, Long> recalculado = new HashMap<>();
+        for (Lote lote : listaDeLotes) {
+            if (lote.getQuantidadeEmMilesimos() == 0) {
+                continue; // Esgotado, aguardando a compactação.
+            }
+            recalculado.merge(lote.getProduto(), lote.getQuantidadeEmMilesimos(), Long::sum);
+        }
+        // Produtos cujos lotes se esgotaram continuam no índice, vazios, até a
+        // próxima limpeza; os demais precisam aparecer na lista completa.
+        for (Map.Entry<Produto, EstoqueDoProduto> entrada : estoquePorProduto.entrySet()) {
+            if (!entrada.getValue().getLotes().isEmpty() && !recalculado.containsKey(entrada.getKey())) {
+                return false;
+            }
+        }
+        for (Map.Entry<Produto, Long> entrada : recalculado.entrySet()) {
+            EstoqueDoProduto estoqueDoProduto = estoquePorProduto.get(entrada.getKey());
+            if (estoqueDoProduto == null) {
+                return false;
+            }
+            // As quantidades são inteiras (milésimos), então a comparação é exata.
+            long mantido = estoqueDoProduto.getQuantidadeDisponivel();
+            if (mantido != entrada.getValue() || mantido != estoqueDoProduto.recalcularQuantidadeDisponivel()) {
+                return false;
             }
         }
-        return quantidadeTotal;
+        return true;
     }
 
     /**
      * Processa a baixa de uma determinada quantidade de um produto do estoque.
-     * Este é um dos métodos mais complexos e importantes, pois implementa a
-     * lógica de negócio de FIFO (First-In, First-Out) e FEFO (First-Expire, First-Out).
+     * Este é um dos métodos mais importantes, pois aplica a lógica de negócio de
+     * FIFO (First-In, First-Out) e FEFO (First-Expire, First-Out), delegando ao
+     * `EstoqueDoProduto`, que mantém os lotes sempre nessa ordem.
      *
      * @param codigoDeBarras O código do produto vendido.
      * @param quantidadeParaRemover A quantidade a ser retirada do estoque.
@@ -127,78 +604,242 @@ public class Estoque implements Serializable {
      */
     public void registrarVenda(String codigoDeBarras, double quantidadeParaRemover, HistoricoDeVendas historico)
             throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
+        registrarVenda(codigoDeBarras, quantidadeParaRemover, historico, RelogioDoNegocio.getInstance().getHoje());
+    }
+
+    /**
+     * Processa a baixa de uma venda registrando-a com a data informada.
+     * Usado ao reaplicar vendas do diário de operações, para preservar a data original.
+     *
+     * @param codigoDeBarras O código do produto vendido.
+     * @param quantidadeParaRemover A quantidade a ser retirada do estoque.
+     * @param historico A referência ao histórico de vendas para registrar a transação.
+     * @param dataDaVenda A data a ser registrada para a venda.
+     * @throws ProdutoNaoCadastradoException Se o produto não for encontrado.
+     * @throws QuantidadeInsuficienteException Se a quantidade em estoque for menor que a solicitada.
+     * @throws IllegalArgumentException Se a quantidade não for de pelo menos um milésimo.
+     */
+    public void registrarVenda(String codigoDeBarras, double quantidadeParaRemover, HistoricoDeVendas historico, LocalDate dataDaVenda)
+            throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
+        long inicio = LATENCIA_DAS_VENDAS.iniciar();
+        try {
+            efetuarVenda(codigoDeBarras, quantidadeParaRemover, historico, dataDaVenda);
+        } catch (QuantidadeInsuficienteException e) {
+            VENDAS_RECUSADAS.incrementar();
+            throw e;
+        } finally {
+            LATENCIA_DAS_VENDAS.registrarDesde(inicio);
+        }
+    }
+
+    private void efetuarVenda(String codigoDeBarras, double quantidadeParaRemover, HistoricoDeVendas historico, LocalDate dataDaVenda)
+            throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
 
         // 1. Validar e buscar o produto no catálogo.
-        Produto produto = catalogo.buscarProduto(codigoDeBarras);
+        Produto produto = catalogo.produtoDoCodigo(codigoDeBarras);
         if (produto == null) {
             throw new ProdutoNaoCadastradoException("Produto não cadastrado");
         }
-        
-        // Validação de estoque antes de iniciar o processo de baixa
-        if (getQuantidadeDisponivel(codigoDeBarras) < quantidadeParaRemover) {
-            throw new QuantidadeInsuficienteException("Quantidade em estoque insuficiente para o produto: " + produto.getNomeDoProduto());
+        // A validação é feita sobre o valor já convertido: uma quantidade como
+        // 0,0004 arredonda para zero milésimos e não retiraria nada do estoque.
+        long milesimos = PontoFixo.paraMilesimos(quantidadeParaRemover);
+        if (milesimos <= 0) {
+            throw new IllegalArgumentException("Quantidade vendida deve ser maior que zero.");
+        }
+
+        travaDoEstoque.readLock().lock();
+        try {
+            EstoqueDoProduto estoqueDoProduto = estoquePorProduto.computeIfAbsent(produto, p -> new EstoqueDoProduto());
+            List<Lote> esgotados = new ArrayList<>();
+
+            // A verificação e a baixa acontecem juntas, dentro da trava do produto:
+            // nenhuma outra venda do mesmo produto pode consumir a quantidade
+            // entre uma e outra.
+            estoqueDoProduto.travar();
+            try {
+                // Validação de estoque antes de iniciar o processo de baixa
+                if (estoqueDoProduto.getQuantidadeDisponivel() < milesimos) {
+                    throw new QuantidadeInsuficienteException("Quantidade em estoque insuficiente para o produto: " + produto.getNomeDoProduto());
+                }
+
+                // 2. Dar baixa da quantidade nos lotes do produto e calcular o custo.
+                // Os lotes de cada produto já ficam guardados na ordem de consumo
+                // (FEFO para perecíveis, FIFO para não perecíveis; ver `EstoqueDoProduto`),
+                // então basta consumir a partir do primeiro, sem filtrar nem ordenar nada aqui.
+                long custoTotalDaVenda;
+                iniciarAlteracao();
+                try {
+                    custoTotalDaVenda = estoqueDoProduto.consumir(milesimos, esgotados);
+                    removerLotesEsgotados(esgotados);
+                    alertas.quantidadeAlterada(produto, estoqueDoProduto.getQuantidadeDisponivel());
+                } finally {
+                    concluirAlteracao();
+                }
+
+                // 3. Atualizar os registros do produto.
+                produto.registrarVenda(quantidadeParaRemover);
+
+                // 4. Criar e adicionar o registro da venda ao histórico.
+                // A criação do RegistroDeVenda também demonstra polimorfismo, pois ele
+                // delega o cálculo do lucro para o objeto 'produto', que pode ser
+                // de diferentes tipos (Comum ou ComImposto).
+                RegistroDeVenda registro = new RegistroDeVenda(produto, quantidadeParaRemover, PontoFixo.deCentavos(custoTotalDaVenda), dataDaVenda);
+                contadorDeAlteracoes.incrementAndGet();
+                // O registro e o aviso acontecem juntos, sob a trava do histórico:
+                // o diário de operações recebe as vendas (de todos os produtos) na
+                // mesma ordem em que elas entram no histórico.
+                synchronized (historico) {
+                    historico.adicionarRegistro(registro);
+                    if (observador != null) {
+                        observador.vendaRegistrada(codigoDeBarras, quantidadeParaRemover, dataDaVenda);
+                    }
+                }
+            } finally {
+                estoqueDoProduto.destravar();
+            }
+        } finally {
+            travaDoEstoque.readLock().unlock();
+        }
+    }
+
+    /**
+     * Registra de uma só vez todas as linhas de uma cesta de compras, com a data atual.
+     *
+     * @param itens As linhas da cesta, na ordem em que foram passadas no caixa.
+     * @param historico A referência ao histórico de vendas para registrar as transações.
+     * @throws ProdutoNaoCadastradoException Se algum produto não for encontrado.
+     * @throws QuantidadeInsuficienteException Se faltar estoque para alguma linha.
+     * @see #registrarVendas(List, HistoricoDeVendas, LocalDate)
+     */
+    public void registrarVendas(List<ItemVenda> itens, HistoricoDeVendas historico)
+            throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
+        registrarVendas(itens, historico, RelogioDoNegocio.getInstance().getHoje());
+    }
+
+    /**
+     * Registra de uma só vez todas as linhas de uma cesta de compras.
+     *
+     * CONCEITO DE DESIGN: TUDO OU NADA
+     * Todas as linhas são validadas antes de qualquer baixa: se um produto não
+     * estiver cadastrado ou se faltar estoque para qualquer um deles (somando as
+     * linhas repetidas do mesmo produto), a exceção é lançada e nada muda.
+     * Para isso, as travas de todos os produtos da cesta são obtidas juntas,
+     * sempre em ordem crescente de ID do produto: dois caixas com cestas que
+     * têm produtos em comum pegam as travas na mesma ordem e nunca ficam
+     * esperando um pelo outro (deadlock).
+     * Os registros de venda entram no histórico todos juntos, e os lotes
+     * esgotados saem da lista completa uma única vez por cesta.
+     *
+     * @param itens As linhas da cesta, na ordem em que foram passadas no caixa.
+     * @param historico A referência ao histórico de vendas para registrar as transações.
+     * @param dataDaVenda A data a ser registrada para as vendas.
+     * @throws ProdutoNaoCadastradoException Se algum produto não for encontrado.
+     * @throws QuantidadeInsuficienteException Se faltar estoque para alguma linha.
+     */
+    public void registrarVendas(List<ItemVenda> itens, HistoricoDeVendas historico, LocalDate dataDaVenda)
+            throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
+        long inicio = LATENCIA_DAS_CESTAS.iniciar();
+        try {
+            efetuarVendas(itens, historico, dataDaVenda);
+        } catch (QuantidadeInsuficienteException e) {
+            VENDAS_RECUSADAS.incrementar();
+            throw e;
+        } finally {
+            LATENCIA_DAS_CESTAS.registrarDesde(inicio);
         }
+    }
 
-        // 2. Filtrar todos os lotes correspondentes ao produto vendido.
-        List<Lote> lotesDoProduto = new ArrayList<>();
-        for (Lote lote : this.listaDeLotes) {
-            if (lote.getProduto().getCodigoDeBarras().equals(codigoDeBarras)) {
-                lotesDoProduto.add(lote);
+    private void efetuarVendas(List<ItemVenda> itens, HistoricoDeVendas historico, LocalDate dataDaVenda)
+            throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
+
+        // 1. Validar todas as linhas e somar as quantidades pedidas de cada produto.
+        Produto[] produtos = new Produto[itens.size()];
+        TreeMap<Produto, Long> quantidadePorProduto = new TreeMap<>(Comparator.comparingInt(Produto::getId));
+        for (int i = 0; i < itens.size(); i++) {
+            ItemVenda item = itens.get(i);
+            Produto produto = catalogo.produtoDoCodigo(item.getCodigoDeBarras());
+            if (produto == null) {
+                throw new ProdutoNaoCadastradoException("Produto não cadastrado: " + item.getCodigoDeBarras());
+            }
+            long milesimos = PontoFixo.paraMilesimos(item.getQuantidade());
+            if (milesimos <= 0) {
+                throw new IllegalArgumentException("Quantidade vendida deve ser maior que zero.");
             }
+            produtos[i] = produto;
+            quantidadePorProduto.merge(produto, milesimos, Long::sum);
         }
 
-        // 3. Ordenar a lista de lotes de acordo com a estratégia (FIFO ou FEFO).
-        // Este bloco é um exemplo excelente de polimorfismo e verificação de tipo (instanceof).
-        if (!lotesDoProduto.isEmpty()) {
-            // Verifica o tipo do primeiro lote para decidir a estratégia de ordenação.
-            // O operador 'instanceof' permite verificar se um objeto é de uma subclasse específica.
-            boolean ehPerecivel = lotesDoProduto.get(0) instanceof LotePerecivel;
-
-            if (ehPerecivel) {
-                // ESTRATÉGIA FEFO (First-Expire, First-Out): para produtos perecíveis.
-                // Ordena os lotes pela data de validade, do mais próximo ao mais distante.
-                // O casting `(LotePerecivel)` é necessário para acessar o método `getDataDeValidade()`,
-                // que só existe na subclasse `LotePerecivel`.
-                Collections.sort(lotesDoProduto, Comparator.comparing(lote -> ((LotePerecivel) lote).getDataDeValidade()));
-            } else {
-                // ESTRATÉGIA FIFO (First-In, First-Out): para produtos não-perecíveis.
-                // Ordena os lotes pelo ID, garantindo que o lote mais antigo (menor ID) seja consumido primeiro.
-                Collections.sort(lotesDoProduto, Comparator.comparingInt(Lote::getId));
+        travaDoEstoque.readLock().lock();
+        try {
+            ArrayList<EstoqueDoProduto> estoques = new ArrayList<>();
+            for (Produto produto : quantidadePorProduto.keySet()) {
+                estoques.add(estoquePorProduto.computeIfAbsent(produto, p -> new EstoqueDoProduto()));
             }
+            // As travas são obtidas na ordem do `TreeMap` (ID crescente) e liberadas
+            // na ordem inversa; se algo falhar no meio, só as já obtidas são liberadas.
+            int travadas = 0;
+            try {
+                for (EstoqueDoProduto estoqueDoProduto : estoques) {
+                    estoqueDoProduto.travar();
+                    travadas++;
+                }
+                registrarVendasComTravas(itens, produtos, quantidadePorProduto, estoques, historico, dataDaVenda);
+            } finally {
+                for (int i = travadas - 1; i >= 0; i--) {
+                    estoques.get(i).destravar();
+                }
+            }
+        } finally {
+            travaDoEstoque.readLock().unlock();
         }
+    }
 
-        // 4. Dar baixa da quantidade nos lotes ordenados e calcular o custo.
-        double custoTotalDaVenda = 0.0;
-        double quantidadeRestante = quantidadeParaRemover;
-        for (Lote lote : lotesDoProduto) {
-            if (quantidadeRestante <= 0) break; // Encerra se a quantidade já foi totalmente removida.
-
-            double qtdNoLote = lote.getQuantidade();
-            double custoUnitarioDoLote = lote.getCustoDoLote() / lote.getQuantidadeInicial();
-
-            if (qtdNoLote >= quantidadeRestante) {
-                // O lote atual tem quantidade suficiente para suprir o restante da venda.
-                custoTotalDaVenda += quantidadeRestante * custoUnitarioDoLote;
-                lote.removeQuantidade(quantidadeRestante);
-                quantidadeRestante = 0;
-            } else {
-                // O lote atual será totalmente consumido.
-                custoTotalDaVenda += qtdNoLote * custoUnitarioDoLote;
-                lote.removeQuantidade(qtdNoLote);
-                quantidadeRestante -= qtdNoLote; // Atualiza a quantidade que ainda precisa ser removida.
+    /**
+     * Processa a cesta. Deve ser chamado com as travas de todos os produtos da
+     * cesta (`estoques`, na mesma ordem das chaves de `quantidadePorProduto`).
+     */
+    private void registrarVendasComTravas(List<ItemVenda> itens, Produto[] produtos, TreeMap<Produto, Long> quantidadePorProduto,
+                                          List<EstoqueDoProduto> estoques, HistoricoDeVendas historico, LocalDate dataDaVenda)
+            throws QuantidadeInsuficienteException {
+        // 2. Com todas as travas, conferir o estoque de cada produto antes de qualquer baixa.
+        int posicao = 0;
+        for (Map.Entry<Produto, Long> pedido : quantidadePorProduto.entrySet()) {
+            if (estoques.get(posicao++).getQuantidadeDisponivel() < pedido.getValue()) {
+                throw new QuantidadeInsuficienteException("Quantidade em estoque insuficiente para o produto: " + pedido.getKey().getNomeDoProduto());
             }
         }
 
-        // 5. Atualizar registros e limpar o sistema.
-        produto.registrarVenda(quantidadeParaRemover);
-        removerLotesVazios();
+        // 3. Dar baixa em cada linha, na ordem da cesta, e montar os registros.
+        ArrayList<RegistroDeVenda> registros = new ArrayList<>(itens.size());
+        List<Lote> esgotados = new ArrayList<>();
+        iniciarAlteracao();
+        try {
+            for (int i = 0; i < itens.size(); i++) {
+                Produto produto = produtos[i];
+                double quantidade = itens.get(i).getQuantidade();
+                long custoTotalDaVenda = estoquePorProduto.get(produto).consumir(PontoFixo.paraMilesimos(quantidade), esgotados);
+                produto.registrarVenda(quantidade);
+                registros.add(new RegistroDeVenda(produto, quantidade, PontoFixo.deCentavos(custoTotalDaVenda), dataDaVenda));
+            }
+            removerLotesEsgotados(esgotados);
+            posicao = 0;
+            for (Produto produto : quantidadePorProduto.keySet()) {
+                alertas.quantidadeAlterada(produto, estoques.get(posicao++).getQuantidadeDisponivel());
+            }
+        } finally {
+            concluirAlteracao();
+        }
 
-        // 6. Criar e adicionar o registro da venda ao histórico.
-        // A criação do RegistroDeVenda também demonstra polimorfismo, pois ele
-        // delega o cálculo do lucro para o objeto 'produto', que pode ser
-        // de diferentes tipos (Comum ou ComImposto).
-        RegistroDeVenda registro = new RegistroDeVenda(produto, quantidadeParaRemover, custoTotalDaVenda);
-        historico.adicionarRegistro(registro);
+        // 4. Registrar a cesta inteira no histórico e avisar o observador, também
+        // de uma só vez: uma queda não deixa no diário só parte da cesta. Como na
+        // venda avulsa, os dois acontecem juntos, sob a trava do histórico.
+        contadorDeAlteracoes.incrementAndGet();
+        synchronized (historico) {
+            historico.adicionarRegistros(registros);
+            if (observador != null) {
+                observador.cestaRegistrada(itens, dataDaVenda);
+            }
+        }
     }
 
     /**
@@ -209,54 +850,65 @@ public class Estoque implements Serializable {
      * @param quantidadeParaDescartar A quantidade a ser retirada do estoque.
      * @throws ProdutoNaoCadastradoException Se o produto não for encontrado.
      * @throws QuantidadeInsuficienteException Se a quantidade em estoque for menor que a solicitada.
+     * @throws IllegalArgumentException Se a quantidade não for de pelo menos um milésimo.
      */
     public void registrarDescarte(String codigoDeBarras, double quantidadeParaDescartar)
             throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
+        long inicio = LATENCIA_DOS_DESCARTES.iniciar();
+        try {
+            efetuarDescarte(codigoDeBarras, quantidadeParaDescartar);
+        } finally {
+            LATENCIA_DOS_DESCARTES.registrarDesde(inicio);
+        }
+    }
+
+    private void efetuarDescarte(String codigoDeBarras, double quantidadeParaDescartar)
+            throws ProdutoNaoCadastradoException, QuantidadeInsuficienteException {
 
         // 1. Validar e buscar o produto no catálogo.
-        Produto produto = catalogo.buscarProduto(codigoDeBarras);
+        Produto produto = catalogo.produtoDoCodigo(codigoDeBarras);
         if (produto == null) {
             throw new ProdutoNaoCadastradoException("Produto não cadastrado");
         }
-        
-        // Validação de estoque antes de iniciar o processo de baixa
-        if (getQuantidadeDisponivel(codigoDeBarras) < quantidadeParaDescartar) {
-            throw new QuantidadeInsuficienteException("Quantidade em estoque insuficiente para o descarte: " + produto.getNomeDoProduto());
-        }
-
-        // 2. Filtrar e ordenar os lotes do produto (lógica idêntica à de venda)
-        List<Lote> lotesDoProduto = this.listaDeLotes.stream()
-                .filter(lote -> lote.getProduto().getCodigoDeBarras().equals(codigoDeBarras))
-                .collect(Collectors.toList());
-
-        if (!lotesDoProduto.isEmpty()) {
-            boolean ehPerecivel = lotesDoProduto.get(0) instanceof LotePerecivel;
-            if (ehPerecivel) {
-                // Estratégia FEFO (First-Expire, First-Out)
-                Collections.sort(lotesDoProduto, Comparator.comparing(lote -> ((LotePerecivel) lote).getDataDeValidade()));
-            } else {
-                // Estratégia FIFO (First-In, First-Out)
-                Collections.sort(lotesDoProduto, Comparator.comparingInt(Lote::getId));
-            }
+        long milesimos = PontoFixo.paraMilesimos(quantidadeParaDescartar);
+        if (milesimos <= 0) {
+            throw new IllegalArgumentException("Quantidade descartada deve ser maior que zero.");
         }
 
-        // 3. Dar baixa da quantidade nos lotes ordenados.
-        double quantidadeRestante = quantidadeParaDescartar;
-        for (Lote lote : lotesDoProduto) {
-            if (quantidadeRestante <= 0) break;
+        travaDoEstoque.readLock().lock();
+        try {
+            EstoqueDoProduto estoqueDoProduto = estoquePorProduto.computeIfAbsent(produto, p -> new EstoqueDoProduto());
+            List<Lote> esgotados = new ArrayList<>();
+
+            estoqueDoProduto.travar();
+            try {
+                // Validação de estoque antes de iniciar o processo de baixa
+                if (estoqueDoProduto.getQuantidadeDisponivel() < milesimos) {
+                    throw new QuantidadeInsuficienteException("Quantidade em estoque insuficiente para o descarte: " + produto.getNomeDoProduto());
+                }
 
-            double qtdNoLote = lote.getQuantidade();
-            if (qtdNoLote >= quantidadeRestante) {
-                lote.removeQuantidade(quantidadeRestante);
-                quantidadeRestante = 0;
-            } else {
-                lote.removeQuantidade(qtdNoLote);
-                quantidadeRestante -= qtdNoLote;
+                // 2. Dar baixa da quantidade nos lotes, na mesma ordem de consumo da venda.
+                iniciarAlteracao();
+                try {
+                    estoqueDoProduto.consumir(milesimos, esgotados);
+                    removerLotesEsgotados(esgotados);
+                    alertas.quantidadeAlterada(produto, estoqueDoProduto.getQuantidadeDisponivel());
+                } finally {
+                    concluirAlteracao();
+                }
+
+                // 3. Atualizar o registro de descarte no produto.
+                produto.registrarDescarte(quantidadeParaDescartar);
+
+                contadorDeAlteracoes.incrementAndGet();
+                if (observador != null) {
+                    observador.descarteRegistrado(codigoDeBarras, quantidadeParaDescartar);
+                }
+            } finally {
+                estoqueDoProduto.destravar();
             }
+        } finally {
+            travaDoEstoque.readLock().unlock();
         }
-
-        // 4. Atualizar o registro de descarte no produto e limpar lotes vazios.
-        produto.registrarDescarte(quantidadeParaDescartar);
-        removerLotesVazios();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package stokos.model;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A classe `EstoqueDoProduto` agrupa, dentro do `Estoque`, tudo o que se refere
+ * a um único produto: os seus lotes e a quantidade total disponível deles.
+ *
+ * CONCEITO DE DESIGN: ESTADO DERIVADO MANTIDO INCREMENTALMENTE
+ * Em vez de somar as quantidades de todos os lotes a cada consulta, o total é
+ * atualizado no momento em que cada lote entra no estoque ou tem quantidade
+ * retirada (`consumir`). A consulta passa a ser uma simples leitura.
+ * Toda retirada de um lote em estoque passa por `consumir`, que também entrega
+ * os lotes esgotados ao `Estoque`.
+ * Da mesma forma, os lotes são guardados já na ordem em que devem ser consumidos
+ * (FEFO/FIFO), de modo que uma venda nunca precisa ordenar a lista.
+ *
+ * Cada objeto também guarda a trava do produto: o `Estoque` só o altera entre
+ * `travar` e `destravar` (ver `Estoque`). É uma trava explícita, e não um bloco
+ * `synchronized`, para que a venda de uma cesta possa obter as travas de todos
+ * os seus produtos em um laço.
+ *
+ * A classe é de uso interno do pacote `model` (sem modificador 'public'): o
+ * restante do sistema continua conversando apenas com o `Estoque`.
+ */
+class EstoqueDoProduto {
+
+    /**
+     * A ordem de consumo dos lotes:
+     * - FEFO (First-Expire, First-Out): lotes perecíveis saem pela data de validade,
+     * da mais próxima para a mais distante.
+     * - FIFO (First-In, First-Out): lotes não perecíveis não têm validade e saem
+     * pela ordem de entrada (menor ID primeiro).
+     * Se um produto tiver lotes dos dois tipos, os perecíveis são consumidos antes.
+     * O ID, único para cada lote, desempata e garante uma ordem total.
+     */
+    static final Comparator<Lote> ORDEM_DE_CONSUMO =
+            Comparator.comparing(EstoqueDoProduto::validadeParaConsumo).thenComparingInt(Lote::getId);
+
+    // Os lotes do produto que estão no estoque, sempre mantidos na ordem de consumo.
+    // A `TreeSet` reposiciona cada lote no momento da inserção, então o primeiro
+    // elemento é sempre o próximo lote a ser consumido.
+    private final TreeSet<Lote> lotes;
+    // A soma das quantidades atuais de todos os lotes da lista acima, em
+    // milésimos (ver `PontoFixo`), o que mantém a soma exata.
+    // É 'volatile' para que as consultas, feitas sem a trava do produto, vejam
+    // sempre o valor mais recente.
+    private volatile long quantidadeDisponivel;
+
+    private final ReentrantLock trava = new ReentrantLock();
+
+    EstoqueDoProduto() {
+        this.lotes = new TreeSet<>(ORDEM_DE_CONSUMO);
+        this.quantidadeDisponivel = 0;
+    }
+
+    /**
+     * Obtém a trava do produto. Deve ser sempre seguido de `destravar` (em um bloco `finally`).
+     */
+    void travar() {
+        trava.lock();
+    }
+
+    /**
+     * Libera a trava obtida por `travar`.
+     */
+    void destravar() {
+        trava.unlock();
+    }
+
+    TreeSet<Lote> getLotes() {
+        return lotes;
+    }
+
+    /**
+     * Data usada para ordenar um lote no consumo. Lotes não perecíveis não
+     * vencem, então são tratados como se vencessem no fim dos tempos.
+     */
+    private static LocalDate validadeParaConsumo(Lote lote) {
+        if (lote instanceof LotePerecivel) {
+            return ((LotePerecivel) lote).getDataDeValidade();
+        }
+        return LocalDate.MAX;
+    }
+
+    /**
+     * Retorna a quantidade disponível do produto, em milésimos.
+     */
+    long getQuantidadeDisponivel() {
+        return quantidadeDisponivel;
+    }
+
+    /**
+     * Adiciona um lote a este produto, somando sua quantidade ao total.
+     */
+    void adicionarLote(Lote lote) {
+        lotes.add(lote);
+        quantidadeDisponivel += lote.getQuantidadeEmMilesimos();
+    }
+
+    /**
+     * Retira uma quantidade dos lotes deste produto, começando pelo primeiro na
+     * ordem de consumo, e calcula o custo correspondente ao que foi retirado.
+     * Lotes esgotados saem do início da fila, de modo que o próximo lote a
+     * consumir continua sendo sempre o primeiro.
+     * Quem chama deve ter verificado antes que há quantidade suficiente.
+     *
+     * O custo de cada retirada é a diferença entre o custo de tudo o que já saiu
+     * do lote depois e antes dela (ver `custoConsumido`). Assim, as retiradas de
+     * um lote somam, centavo por centavo, exatamente o custo do lote.
+     *
+     * @param milesimos A quantidade total a retirar, em milésimos.
+     * @param esgotados Recebe os lotes que ficaram sem quantidade e saíram da fila.
+     * @return O custo da quantidade retirada, em centavos.
+     */
+    long consumir(long milesimos, List<Lote> esgotados) {
+        long custoTotal = 0;
+        long quantidadeRestante = milesimos;
+        while (quantidadeRestante > 0 && !lotes.isEmpty()) {
+            Lote lote = lotes.first();
+            // O lote atual supre o restante ou é totalmente consumido.
+            long retirada = Math.min(lote.getQuantidadeEmMilesimos(), quantidadeRestante);
+            if (retirada > 0) {
+                long custoAntes = custoConsumido(lote);
+                lote.removerMilesimos(retirada);
+                quantidadeDisponivel -= retirada;
+                custoTotal += custoConsumido(lote) - custoAntes;
+                quantidadeRestante -= retirada;
+            }
+            if (lote.getQuantidadeEmMilesimos() == 0) {
+                esgotados.add(lotes.pollFirst());
+            }
+        }
+        return custoTotal;
+    }
+
+    /**
+     * O custo, em centavos, da parte do lote que já foi retirada.
+     */
+    private static long custoConsumido(Lote lote) {
+        long inicial = lote.getQuantidadeInicialEmMilesimos();
+        return PontoFixo.proporcao(lote.getCustoDoLoteEmCentavos(), inicial - lote.getQuantidadeEmMilesimos(), inicial);
+    }
+
+    /**
+     * Remove da lista os lotes que ficaram sem quantidade.
+     */
+    void removerLotesVazios() {
+        lotes.removeIf(lote -> lote.getQuantidadeEmMilesimos() == 0);
+    }
+
+    /**
+     * Recalcula o total somando os lotes um a um, sem usar o valor mantido.
+     * Serve de referência para a verificação de consistência do `Estoque`.
+     */
+    long recalcularQuantidadeDisponivel() {
+        long total = 0;
+        for (Lote lote : lotes) {
+            total += lote.getQuantidadeEmMilesimos();
+        }
+        return total;
+    }
+}
@@ -1,7 +1,17 @@
 package stokos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
 import stokos.model.RegistroDeVenda;
 
 /**
@@ -11,12 +21,9 @@ import stokos.model.RegistroDeVenda;
  * geração de relatórios.
  *
  * CONCEITOS DE POO APLICADOS:
- * - Encapsulamento: A lista de registros (`registros`) é privada e final.
- * - 'private' garante que a lista só pode ser acessada e modificada através
+ * - Encapsulamento: Os registros são privados e só podem ser incluídos através
  * dos métodos desta classe (como `adicionarRegistro`), protegendo sua integridade.
- * - 'final' significa que a referência para o objeto `ArrayList` não pode ser
- * alterada após a sua inicialização no construtor, o que torna o estado da
- * classe mais estável e previsível.
+ * Nenhum registro pode ser alterado ou removido depois de incluído.
  * - Agregação: A classe "tem uma" coleção de objetos `RegistroDeVenda`,
  * demonstrando uma relação de agregação. Ela agrupa e gerencia esses objetos.
  * - Coesão: A classe é altamente coesa, pois todos os seus métodos estão
@@ -29,18 +36,88 @@ public class HistoricoDeVendas implements Serializable {
     // Identificador de versão para a serialização.
     private static final long serialVersionUID = 1L;
 
-    // A lista que armazena todos os registros de venda. É 'final' para
-    // garantir que a instância da lista nunca seja trocada.
+    // Forma serializada dos registros de venda, mantida por compatibilidade com
+    // os arquivos antigos. Em memória, os registros ficam em `colunas`; esta
+    // lista só é preenchida durante a serialização (ver `writeObject` e `readObject`).
     private final ArrayList<RegistroDeVenda> registros;
 
+    // Vendas já gravadas no arquivo de dados, quando ele é lido sob demanda
+    // (ver `ArmazenamentoMapeado`). Elas vêm antes das vendas de `colunas`.
+    // É 'transient' porque pertence ao arquivo que está aberto; nunca é nulo
+    // depois da construção (ver `readObject`).
+    private transient List<RegistroDeVenda> registrosGravados;
+
+    // CONCEITO DE DESIGN: SEGMENTOS QUE NUNCA MUDAM DE LUGAR
+    // As vendas registradas em memória ficam em colunas de números (ver
+    // `ColunasDeVendas`), divididas em segmentos de tamanho fixo. Uma venda,
+    // depois de escrita, nunca é movida nem alterada (ao contrário do
+    // `ArrayList`, que copia tudo para um vetor maior quando enche). Por isso, uma
+    // consulta pode ler as vendas já publicadas sem nenhuma trava, mesmo enquanto
+    // os caixas registram novas vendas: ela simplesmente não enxerga as que
+    // vierem depois.
+    private transient ColunasDeVendas colunas;
+
+    // CONCEITO DE DESIGN: TOTAIS PRÉ-CALCULADOS
+    // Totais acumulados das vendas de cada produto, pelo código de barras do
+    // registro: o total geral e os totais por dia, semana e mês (ver
+    // `TotaisPorPeriodo`). São atualizados a cada registro incluído, então os
+    // relatórios consultam os totais de um produto sem percorrer o histórico.
+    // São 'transient' porque derivam dos registros: depois de carregar os dados,
+    // são recalculados uma única vez, na primeira consulta (ver `agregados`), para
+    // não forçar a leitura de todas as vendas gravadas logo na abertura.
+    // Enquanto forem nulos, ninguém os consultou ainda.
+    private transient volatile Agregados agregados;
+
     /**
      * Construtor da classe `HistoricoDeVendas`.
-     * Inicializa a lista de registros como um `ArrayList` vazio. Isso é
+     * Inicializa o histórico vazio, pronto para receber registros. Isso é
      * fundamental para evitar `NullPointerException` quando métodos como
      * `adicionarRegistro` forem chamados.
      */
     public HistoricoDeVendas() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * Construtor usado pela camada de persistência quando as vendas já gravadas
+     * são lidas sob demanda. A lista recebida não é copiada: cada registro só é
+     * obtido dela quando for consultado. Novas vendas são acrescentadas depois dela.
+     *
+     * @param registrosGravados As vendas gravadas, em ordem cronológica.
+     */
+    public HistoricoDeVendas(List<RegistroDeVenda> registrosGravados) {
         this.registros = new ArrayList<>();
+        this.registrosGravados = registrosGravados;
+        this.colunas = new ColunasDeVendas();
+    }
+
+    /**
+     * Método especial chamado pela serialização Java ao carregar arquivos antigos.
+     * Os registros lidos passam da forma serializada para as colunas.
+     * Os registros gravados sob demanda não fazem parte da serialização.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.registrosGravados = Collections.emptyList();
+        this.colunas = new ColunasDeVendas();
+        for (RegistroDeVenda registro : registros) {
+            adicionarRegistro(registro);
+        }
+        registros.clear();
+    }
+
+    /**
+     * Método especial chamado pela serialização Java ao gravar o histórico.
+     * Preenche a forma serializada com todos os registros, inclusive os gravados
+     * sob demanda, e a esvazia em seguida.
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        registros.addAll(getRegistros());
+        try {
+            out.defaultWriteObject();
+        } finally {
+            registros.clear();
+        }
     }
 
     /**
@@ -48,50 +125,254 @@ public class HistoricoDeVendas implements Serializable {
      * Este é o único método que permite a inserção de novos dados, centralizando
      * o controle sobre o crescimento do histórico.
      *
+     * É 'synchronized' porque caixas diferentes podem registrar vendas ao mesmo
+     * tempo; as consultas, por outro lado, não esperam por ele.
+     *
      * @param registro O objeto `RegistroDeVenda` a ser adicionado.
      */
-    public void adicionarRegistro(RegistroDeVenda registro) {
-        this.registros.add(registro);
+    public synchronized void adicionarRegistro(RegistroDeVenda registro) {
+        int quantidade = colunas.quantidade();
+        colunas.escrever(quantidade, registro);
+        // Só agora o registro passa a ser visível às consultas.
+        colunas.publicar(quantidade + 1);
+        acumularTotais(registro);
+    }
+
+    /**
+     * Adiciona de uma só vez todos os registros de uma cesta de compras (ver
+     * `Estoque.registrarVendas`). As consultas passam a ver todos eles juntos,
+     * nunca apenas uma parte da cesta.
+     *
+     * @param novosRegistros Os registros a serem adicionados, na ordem da cesta.
+     */
+    public synchronized void adicionarRegistros(List<RegistroDeVenda> novosRegistros) {
+        int quantidade = colunas.quantidade();
+        for (RegistroDeVenda registro : novosRegistros) {
+            colunas.escrever(quantidade++, registro);
+        }
+        colunas.publicar(quantidade);
+        for (RegistroDeVenda registro : novosRegistros) {
+            acumularTotais(registro);
+        }
+    }
+
+    /**
+     * Soma um registro aos totais do seu produto, se os totais já estiverem
+     * calculados. Chamado com a trava do histórico.
+     */
+    private void acumularTotais(RegistroDeVenda registro) {
+        Agregados atuais = agregados;
+        if (atuais != null) {
+            atuais.acumular(registro);
+        }
+    }
+
+    /**
+     * Retorna os totais de todos os produtos, calculando-os na primeira chamada.
+     */
+    private Agregados agregados() {
+        Agregados atuais = agregados;
+        if (atuais == null) {
+            synchronized (this) {
+                atuais = agregados;
+                if (atuais == null) {
+                    atuais = somarRegistros();
+                    agregados = atuais;
+                }
+            }
+        }
+        return atuais;
+    }
+
+    /**
+     * Calcula os totais de cada produto percorrendo todos os registros.
+     */
+    private Agregados somarRegistros() {
+        Agregados novos = new Agregados();
+        for (RegistroDeVenda registro : registrosGravados) {
+            novos.acumular(registro);
+        }
+        // As vendas em memória são somadas direto das colunas, sem criar registros.
+        colunas.fotografar().percorrer(novos::acumular);
+        return novos;
     }
 
     /**
-     * Calcula e retorna o lucro total acumulado para um produto específico.
-     * Este método percorre todo o histórico de vendas, somando o lucro de cada
-     * transação que envolve o produto especificado.
+     * Retorna os totais acumulados das vendas de um produto (quantidade,
+     * receita, custo e lucro), sem percorrer o histórico.
+     *
+     * @param codigoDeBarras O código de barras do produto.
+     * @return Os totais do produto, ou `TotaisDeVendas.ZERO` se ele nunca foi vendido.
+     */
+    public TotaisDeVendas getTotaisPorProduto(String codigoDeBarras) {
+        return agregados().totaisPorProduto.getOrDefault(codigoDeBarras, TotaisDeVendas.ZERO);
+    }
+
+    /**
+     * Retorna os totais das vendas de um produto entre duas datas, inclusive
+     * (ex: as vendas da semana passada). A soma combina poucos totais por mês,
+     * semana e dia (ver `TotaisPorPeriodo`), sem percorrer os registros; para
+     * ver as vendas individuais do período, use `getRegistrosPorPeriodo`.
+     *
+     * @param codigoDeBarras O código de barras do produto.
+     * @param inicio A primeira data do período.
+     * @param fim A última data do período.
+     * @return Os totais do período, ou `TotaisDeVendas.ZERO` se não houve vendas.
+     */
+    public TotaisDeVendas getTotaisPorPeriodo(String codigoDeBarras, LocalDate inicio, LocalDate fim) {
+        TotaisPorPeriodo periodos = agregados().periodosPorProduto.get(codigoDeBarras);
+        return periodos != null ? periodos.somar(inicio, fim) : TotaisDeVendas.ZERO;
+    }
+
+    /**
+     * Retorna as vendas individuais de um produto entre duas datas, inclusive,
+     * para detalhar os totais de `getTotaisPorPeriodo`. Percorre todo o histórico.
+     *
+     * @param codigoDeBarras O código de barras do produto.
+     * @param inicio A primeira data do período.
+     * @param fim A última data do período.
+     * @return Os registros do período, na ordem em que foram adicionados.
+     */
+    public List<RegistroDeVenda> getRegistrosPorPeriodo(String codigoDeBarras, LocalDate inicio, LocalDate fim) {
+        List<RegistroDeVenda> resultado = new ArrayList<>();
+        for (RegistroDeVenda registro : registrosGravados) {
+            LocalDate data = registro.getDataDaVenda();
+            if (registro.getCodigoDeBarrasProduto().equals(codigoDeBarras)
+                    && !data.isBefore(inicio) && !data.isAfter(fim)) {
+                resultado.add(registro);
+            }
+        }
+        // Nas colunas, o filtro compara apenas números; só as vendas encontradas viram registros.
+        ColunasDeVendas.Fotografia fotografia = colunas.fotografar();
+        for (int posicao : fotografia.posicoesPorPeriodo(codigoDeBarras, (int) inicio.toEpochDay(), (int) fim.toEpochDay())) {
+            resultado.add(fotografia.registro(posicao));
+        }
+        return resultado;
+    }
+
+    /**
+     * Confere os totais mantidos de cada produto com uma nova soma de todos os
+     * registros. Útil para testes e diagnóstico, pois percorre o histórico inteiro.
+     *
+     * @return `true` se todos os totais estiverem consistentes, `false` caso contrário.
+     */
+    public synchronized boolean verificarTotais() {
+        ConcurrentHashMap<String, TotaisDeVendas> mantidos = agregados().totaisPorProduto;
+        ConcurrentHashMap<String, TotaisDeVendas> recalculados = somarRegistros().totaisPorProduto;
+        if (!mantidos.keySet().equals(recalculados.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, TotaisDeVendas> entrada : recalculados.entrySet()) {
+            if (!entrada.getValue().confere(mantidos.get(entrada.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retorna uma fotografia de todos os registros de venda, na ordem em que
+     * foram adicionados. A lista retornada é somente leitura e não muda: vendas
+     * registradas depois da chamada não aparecem nela. Obtê-la não copia nenhum
+     * registro e não bloqueia os caixas, então ela pode ser percorrida por
+     * quanto tempo for preciso (ex: em um relatório longo).
+     * Cada `RegistroDeVenda` é criado no momento em que é obtido da lista, a
+     * partir das colunas; para somas e filtros sobre muitas vendas, prefira os
+     * métodos desta classe, que percorrem as colunas diretamente.
+     *
+     * @return uma visão não modificável e estável dos registros.
+     */
+    public List<RegistroDeVenda> getRegistros() {
+        return new FotografiaDosRegistros(registrosGravados, colunas.fotografar());
+    }
+
+    /**
+     * Retorna quantas vendas há no histórico, sem criar a visão dos registros.
+     * Usado pelas métricas do sistema.
+     */
+    public int getQuantidadeDeVendas() {
+        return registrosGravados.size() + colunas.quantidade();
+    }
+
+    /**
+     * Retorna o lucro total acumulado para um produto específico.
+     * O total é mantido a cada venda registrada (ver `getTotaisPorProduto`),
+     * então a consulta não percorre o histórico.
      *
      * @param codigoDeBarras O código de barras do produto para o qual o lucro será calculado.
      * @return O valor (double) do lucro total para o produto.
      */
     public double getLucroTotalPorProduto(String codigoDeBarras) {
-        double lucroTotal = 0.0;
-        // O loop 'for-each' itera sobre a lista encapsulada 'registros'.
-        for (RegistroDeVenda registro : registros) {
-            // Para cada registro, verifica se pertence ao produto desejado.
-            if (registro.getCodigoDeBarrasProduto().equals(codigoDeBarras)) {
-                // Se pertencer, acumula o valor do lucro daquela venda específica.
-                // Note que a responsabilidade de saber o lucro de uma venda individual
-                // é do objeto 'RegistroDeVenda', demonstrando boa separação de responsabilidades.
-                lucroTotal += registro.getLucroDaVenda();
-            }
-        }
-        return lucroTotal;
+        return getTotaisPorProduto(codigoDeBarras).getLucro();
     }
 
     /**
-     * Calcula e retorna a quantidade total vendida de um produto específico.
-     * Similar ao método de lucro, este método agrega dados do histórico para
-     * fornecer uma informação consolidada, útil para relatórios de vendas.
+     * Retorna a quantidade total vendida de um produto específico.
+     * Assim como o lucro, a quantidade é mantida a cada venda registrada,
+     * fornecendo uma informação consolidada, útil para relatórios de vendas.
      *
      * @param codigoDeBarras O código de barras do produto a ser consultado.
      * @return A quantidade total (double) vendida do produto.
      */
     public double getQuantidadeTotalVendida(String codigoDeBarras) {
-        double quantidadeTotal = 0.0;
-        for (RegistroDeVenda registro : registros) {
-            if (registro.getCodigoDeBarrasProduto().equals(codigoDeBarras)) {
-                quantidadeTotal += registro.getQuantidadeVendida();
+        return getTotaisPorProduto(codigoDeBarras).getQuantidade();
+    }
+
+    /**
+     * Visão somente leitura das vendas gravadas seguidas das vendas de uma
+     * fotografia das colunas.
+     */
+    private static final class FotografiaDosRegistros extends AbstractList<RegistroDeVenda> implements RandomAccess {
+        private final List<RegistroDeVenda> gravados;
+        private final ColunasDeVendas.Fotografia colunas;
+        private final int quantidadeDeGravados;
+
+        FotografiaDosRegistros(List<RegistroDeVenda> gravados, ColunasDeVendas.Fotografia colunas) {
+            this.gravados = gravados;
+            this.colunas = colunas;
+            this.quantidadeDeGravados = gravados.size();
+        }
+
+        @Override
+        public RegistroDeVenda get(int indice) {
+            if (indice < 0 || indice >= size()) {
+                throw new IndexOutOfBoundsException("Registro " + indice + " de " + size());
+            }
+            if (indice < quantidadeDeGravados) {
+                return gravados.get(indice);
             }
+            return colunas.registro(indice - quantidadeDeGravados);
+        }
+
+        @Override
+        public int size() {
+            return quantidadeDeGravados + colunas.quantidade();
+        }
+    }
+
+    /**
+     * Os totais de todos os produtos: o total geral e os totais por período.
+     */
+    private static final class Agregados {
+        final ConcurrentHashMap<String, TotaisDeVendas> totaisPorProduto = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, TotaisPorPeriodo> periodosPorProduto = new ConcurrentHashMap<>();
+        // A última data convertida em `acumular`: vendas seguidas costumam ser do mesmo dia.
+        private LocalDate ultimaData = LocalDate.MIN;
+
+        void acumular(RegistroDeVenda registro) {
+            acumular(registro.getCodigoDeBarrasProduto(), registro.getDataDaVenda(), TotaisDeVendas.de(registro));
+        }
+
+        void acumular(String codigo, int dia, long quantidade, long preco, long custo, long lucro) {
+            if (ultimaData.toEpochDay() != dia) {
+                ultimaData = LocalDate.ofEpochDay(dia);
+            }
+            acumular(codigo, ultimaData, TotaisDeVendas.de(quantidade, preco, custo, lucro));
+        }
+
+        private void acumular(String codigo, LocalDate data, TotaisDeVendas daVenda) {
+            totaisPorProduto.merge(codigo, daVenda, TotaisDeVendas::somar);
+            periodosPorProduto.computeIfAbsent(codigo, c -> new TotaisPorPeriodo()).acumular(data, daVenda);
         }
-        return quantidadeTotal;
     }
-}
\ No newline at end of file
+}
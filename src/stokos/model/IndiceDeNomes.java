@@ -0,0 +1,216 @@
+package stokos.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A classe `IndiceDeNomes` é um índice de busca textual sobre os nomes dos
+ * produtos do catálogo, usado pela busca por nome (`buscarProdutosPorNome`).
+ *
+ * CONCEITO DE DESIGN: ÍNDICE DE TRIGRAMAS
+ * Cada nome é normalizado (minúsculas e sem acentos) e quebrado em todos os seus
+ * pedaços de 3 caracteres consecutivos (trigramas). Para cada trigrama, o índice
+ * guarda a lista ordenada dos IDs dos produtos cujo nome o contém.
+ * Um termo de busca só pode estar contido em um nome se TODOS os trigramas do
+ * termo estiverem no nome; por isso, basta cruzar as listas desses trigramas
+ * (começando pela menor) e confirmar os candidatos, em vez de examinar o
+ * catálogo inteiro a cada tecla digitada.
+ *
+ * Termos com menos de 3 caracteres não formam trigramas; nesse caso a busca
+ * percorre os nomes já normalizados, interrompendo-se ao atingir o limite de resultados.
+ *
+ * A classe é de uso interno do pacote `model`: quem a mantém atualizada é o
+ * `CatalogoDeProdutos`, a cada cadastro, renomeação e remoção.
+ */
+class IndiceDeNomes {
+
+    private static final int TAMANHO_DO_GRAMA = 3;
+
+    // Para cada trigrama, os IDs dos produtos que o contêm, em ordem crescente.
+    private final HashMap<String, ListaDeIds> idsPorTrigrama;
+    // O nome normalizado de cada produto indexado, em ordem de ID.
+    // Usado para confirmar candidatos, remover trigramas antigos e nas buscas curtas.
+    private final TreeMap<Integer, String> nomesNormalizados;
+
+    IndiceDeNomes() {
+        this.idsPorTrigrama = new HashMap<>();
+        this.nomesNormalizados = new TreeMap<>();
+    }
+
+    /**
+     * Normaliza um texto para comparação: remove acentos e converte para minúsculas.
+     * Ex: "Pão Francês" vira "pao frances".
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String semAcentos = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return semAcentos.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexa o nome de um produto.
+     */
+    void adicionar(int id, String nome) {
+        String normalizado = normalizar(nome);
+        nomesNormalizados.put(id, normalizado);
+        for (String trigrama : trigramas(normalizado)) {
+            idsPorTrigrama.computeIfAbsent(trigrama, t -> new ListaDeIds()).adicionar(id);
+        }
+    }
+
+    /**
+     * Remove um produto do índice.
+     */
+    void remover(int id) {
+        String normalizado = nomesNormalizados.remove(id);
+        if (normalizado == null) {
+            return;
+        }
+        for (String trigrama : trigramas(normalizado)) {
+            ListaDeIds ids = idsPorTrigrama.get(trigrama);
+            if (ids != null) {
+                ids.remover(id);
+                if (ids.tamanho() == 0) {
+                    idsPorTrigrama.remove(trigrama);
+                }
+            }
+        }
+    }
+
+    /**
+     * Atualiza o nome de um produto já indexado.
+     */
+    void renomear(int id, String novoNome) {
+        remover(id);
+        adicionar(id, novoNome);
+    }
+
+    /**
+     * Busca os produtos cujo nome contém o termo (ignorando maiúsculas e acentos).
+     *
+     * @param termo O termo de busca.
+     * @param limite O número máximo de resultados.
+     * @return Os IDs encontrados, em ordem crescente, no máximo `limite`.
+     */
+    ArrayList<Integer> buscar(String termo, int limite) {
+        String consulta = normalizar(termo);
+        ArrayList<Integer> resultado = new ArrayList<>();
+        if (limite <= 0) {
+            return resultado;
+        }
+
+        // Termos curtos: percorre os nomes normalizados, parando ao atingir o limite.
+        if (consulta.length() < TAMANHO_DO_GRAMA) {
+            for (Map.Entry<Integer, String> entrada : nomesNormalizados.entrySet()) {
+                if (entrada.getValue().contains(consulta)) {
+                    resultado.add(entrada.getKey());
+                    if (resultado.size() >= limite) {
+                        break;
+                    }
+                }
+            }
+            return resultado;
+        }
+
+        // Reúne as listas de todos os trigramas do termo. Se algum trigrama não
+        // existir no índice, nenhum nome pode conter o termo.
+        ArrayList<ListaDeIds> listas = new ArrayList<>();
+        for (String trigrama : trigramas(consulta)) {
+            ListaDeIds ids = idsPorTrigrama.get(trigrama);
+            if (ids == null) {
+                return resultado;
+            }
+            listas.add(ids);
+        }
+
+        // Percorre a menor lista e mantém apenas os IDs presentes em todas as outras.
+        ListaDeIds menor = listas.get(0);
+        for (ListaDeIds ids : listas) {
+            if (ids.tamanho() < menor.tamanho()) {
+                menor = ids;
+            }
+        }
+        for (int i = 0; i < menor.tamanho() && resultado.size() < limite; i++) {
+            int id = menor.get(i);
+            boolean emTodas = true;
+            for (ListaDeIds ids : listas) {
+                if (ids != menor && !ids.contem(id)) {
+                    emTodas = false;
+                    break;
+                }
+            }
+            // Confirma o candidato: ter todos os trigramas não garante que eles
+            // apareçam juntos e na ordem do termo.
+            if (emTodas && nomesNormalizados.get(id).contains(consulta)) {
+                resultado.add(id);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Retorna os trigramas distintos de um texto já normalizado.
+     */
+    private static ArrayList<String> trigramas(String texto) {
+        ArrayList<String> resultado = new ArrayList<>();
+        for (int i = 0; i + TAMANHO_DO_GRAMA <= texto.length(); i++) {
+            String trigrama = texto.substring(i, i + TAMANHO_DO_GRAMA);
+            if (!resultado.contains(trigrama)) {
+                resultado.add(trigrama);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Lista de IDs em ordem crescente guardada em um vetor de `int`.
+     * Ocupa bem menos memória do que uma coleção de `Integer` e, como os produtos
+     * novos recebem IDs crescentes, a inserção normalmente é feita no final.
+     */
+    private static final class ListaDeIds {
+        private int[] ids = new int[4];
+        private int tamanho = 0;
+
+        int tamanho() {
+            return tamanho;
+        }
+
+        int get(int indice) {
+            return ids[indice];
+        }
+
+        boolean contem(int id) {
+            return Arrays.binarySearch(ids, 0, tamanho, id) >= 0;
+        }
+
+        void adicionar(int id) {
+            int posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao >= 0) {
+                return; // Já presente.
+            }
+            posicao = -(posicao + 1);
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, tamanho * 2);
+            }
+            System.arraycopy(ids, posicao, ids, posicao + 1, tamanho - posicao);
+            ids[posicao] = id;
+            tamanho++;
+        }
+
+        void remover(int id) {
+            int posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao < 0) {
+                return;
+            }
+            System.arraycopy(ids, posicao + 1, ids, posicao, tamanho - posicao - 1);
+            tamanho--;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package stokos.model;
+
+/**
+ * Representa uma linha de uma cesta de compras: um produto (pelo seu código de
+ * barras) e a quantidade levada pelo cliente. É a unidade de entrada da venda
+ * em lote (`Estoque.registrarVendas`).
+ *
+ * CONCEITOS DE POO APLICADOS:
+ * - Imutabilidade: Os atributos são `final`. Uma vez montada a cesta, nenhuma
+ * linha pode ser alterada enquanto a venda é processada.
+ * - Coesão: A classe apenas agrupa os dois dados que descrevem uma linha; toda
+ * a validação (produto cadastrado, quantidade disponível) fica no `Estoque`.
+ */
+public class ItemVenda {
+
+    private final String codigoDeBarras;
+    private final double quantidade;
+
+    /**
+     * Construtor do ItemVenda.
+     *
+     * @param codigoDeBarras O código de barras do produto vendido.
+     * @param quantidade A quantidade vendida do produto.
+     */
+    public ItemVenda(String codigoDeBarras, double quantidade) {
+        this.codigoDeBarras = codigoDeBarras;
+        this.quantidade = quantidade;
+    }
+
+    public String getCodigoDeBarras() {
+        return codigoDeBarras;
+    }
+
+    public double getQuantidade() {
+        return quantidade;
+    }
+}
@@ -1,6 +1,11 @@
 package stokos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A classe Lote é uma classe ABSTRATA que serve como modelo base para
@@ -22,27 +27,45 @@ import java.io.Serializable;
  * um comportamento polimórfico.
  * - Serializable: Implementa a interface para que os lotes possam ser salvos
  * juntamente com o resto dos dados do sistema.
+ *
+ * As quantidades são guardadas em milésimos e o custo em centavos (ver
+ * `PontoFixo`); os métodos que recebem e retornam `double` fazem a conversão.
  */
 public abstract class Lote implements Serializable {
 
     // Identificador de versão para a serialização.
     private static final long serialVersionUID = 1L;
 
-    // Atributo 'final' porque um lote sempre se refere ao mesmo produto.
-    private final Produto produto;
-    // A quantidade atual do lote, que diminui com as vendas.
-    private double quantidade;
-    // ID único para cada lote, 'final' para garantir que não mude após a criação.
-    private final int id;
+    // O produto do lote. Só é atribuído na criação (ou na leitura do arquivo):
+    // um lote sempre se refere ao mesmo produto.
+    private Produto produto;
+    // A quantidade atual do lote, em milésimos, que diminui com as vendas.
+    private long quantidadeEmMilesimos;
+    // ID único para cada lote. Também só é atribuído na criação.
+    private int id;
     // Informações adicionais do lote.
     private String fornecedor;
-    private double custoDoLote;
-    // 'final' pois a quantidade inicial é usada como base para cálculos de custo.
-    private final double quantidadeInicial;
+    private long custoDoLoteEmCentavos;
+    // A quantidade com que o lote entrou no estoque, em milésimos; é a base
+    // para o cálculo do custo de cada retirada. Não muda depois da criação.
+    private long quantidadeInicialEmMilesimos;
+
+    // Forma serializada do lote, mantida por compatibilidade com os arquivos
+    // antigos, em que as quantidades e o custo eram gravados como `double`
+    // (ver `writeObject` e `readObject`).
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("produto", Produto.class),
+        new ObjectStreamField("quantidade", double.class),
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("fornecedor", String.class),
+        new ObjectStreamField("custoDoLote", double.class),
+        new ObjectStreamField("quantidadeInicial", double.class),
+    };
 
     // Atributo 'static' para gerar IDs únicos para cada lote criado.
     // Sendo 'static', este contador é compartilhado por todas as instâncias da classe Lote.
-    static int quantidadeDeLotes = 0;
+    // É atômico porque vários caixas podem receber lotes ao mesmo tempo.
+    static final AtomicInteger quantidadeDeLotes = new AtomicInteger();
 
     /**
      * Construtor da classe abstrata Lote.
@@ -54,15 +77,74 @@ public abstract class Lote implements Serializable {
     public Lote(Produto produto, double quantidade) {
         // Incrementa o contador estático e atribui o novo valor como ID do lote.
         // Isso garante que cada lote terá um ID sequencial e único.
-        this.id = ++quantidadeDeLotes;
+        this.id = quantidadeDeLotes.incrementAndGet();
 
         this.produto = produto;
-        this.quantidade = quantidade;
-        this.quantidadeInicial = quantidade; // Guarda a quantidade original.
+        this.quantidadeEmMilesimos = PontoFixo.paraMilesimos(quantidade);
+        this.quantidadeInicialEmMilesimos = this.quantidadeEmMilesimos; // Guarda a quantidade original.
 
         // Define valores padrão para os atributos opcionais.
         this.fornecedor = "Não informado";
-        this.custoDoLote = 0.0;
+        this.custoDoLoteEmCentavos = 0;
+    }
+
+    /**
+     * Construtor usado na reconstrução de um lote já existente a partir dos dados
+     * persistidos. Mantém o ID informado em vez de gerar um novo, e não altera o
+     * contador estático.
+     *
+     * @param id O ID original do lote.
+     * @param produto A referência para o objeto Produto ao qual este lote pertence.
+     * @param quantidade A quantidade inicial de itens neste lote.
+     */
+    protected Lote(int id, Produto produto, double quantidade) {
+        this(id, produto, quantidade, quantidade);
+    }
+
+    /**
+     * Construtor de reconstrução de um lote que já teve parte da quantidade retirada.
+     *
+     * @param id O ID original do lote.
+     * @param produto A referência para o objeto Produto ao qual este lote pertence.
+     * @param quantidadeInicial A quantidade de itens com que o lote entrou no estoque.
+     * @param quantidade A quantidade de itens que ainda resta no lote.
+     */
+    protected Lote(int id, Produto produto, double quantidadeInicial, double quantidade) {
+        this.id = id;
+        this.produto = produto;
+        this.quantidadeEmMilesimos = PontoFixo.paraMilesimos(quantidade);
+        this.quantidadeInicialEmMilesimos = PontoFixo.paraMilesimos(quantidadeInicial);
+        this.fornecedor = "Não informado";
+        this.custoDoLoteEmCentavos = 0;
+    }
+
+    /**
+     * Método especial chamado pela serialização Java ao carregar um lote,
+     * convertendo os valores da forma serializada para milésimos e centavos.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        this.produto = (Produto) campos.get("produto", null);
+        this.id = campos.get("id", 0);
+        this.fornecedor = (String) campos.get("fornecedor", null);
+        this.quantidadeEmMilesimos = PontoFixo.paraMilesimos(campos.get("quantidade", 0.0));
+        this.quantidadeInicialEmMilesimos = PontoFixo.paraMilesimos(campos.get("quantidadeInicial", 0.0));
+        this.custoDoLoteEmCentavos = PontoFixo.paraCentavos(campos.get("custoDoLote", 0.0));
+    }
+
+    /**
+     * Método especial chamado pela serialização Java ao gravar um lote na
+     * forma serializada antiga.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campos = out.putFields();
+        campos.put("produto", produto);
+        campos.put("quantidade", getQuantidade());
+        campos.put("id", id);
+        campos.put("fornecedor", fornecedor);
+        campos.put("custoDoLote", getCustoDoLote());
+        campos.put("quantidadeInicial", getQuantidadeInicial());
+        out.writeFields();
     }
 
     // --- MÉTODOS GETTERS ---
@@ -73,7 +155,14 @@ public abstract class Lote implements Serializable {
     }
 
     public double getQuantidade() {
-        return quantidade;
+        return PontoFixo.deMilesimos(quantidadeEmMilesimos);
+    }
+
+    /**
+     * Retorna a quantidade atual do lote, em milésimos (ver `PontoFixo`).
+     */
+    public long getQuantidadeEmMilesimos() {
+        return quantidadeEmMilesimos;
     }
 
     public int getId() {
@@ -85,12 +174,19 @@ public abstract class Lote implements Serializable {
     }
 
     public double getCustoDoLote() {
-        return custoDoLote;
+        return PontoFixo.deCentavos(custoDoLoteEmCentavos);
     }
 
+    public long getCustoDoLoteEmCentavos() {
+        return custoDoLoteEmCentavos;
+    }
 
     public double getQuantidadeInicial() {
-        return this.quantidadeInicial;
+        return PontoFixo.deMilesimos(this.quantidadeInicialEmMilesimos);
+    }
+
+    public long getQuantidadeInicialEmMilesimos() {
+        return quantidadeInicialEmMilesimos;
     }
 
     // --- MÉTODOS SETTERS ---
@@ -101,45 +197,95 @@ public abstract class Lote implements Serializable {
     }
 
     public void setCustoDoLote(double custoDoLote) {
-        this.custoDoLote = custoDoLote;
+        this.custoDoLoteEmCentavos = PontoFixo.paraCentavos(custoDoLote);
+    }
+
+    /**
+     * Verifica se o lote está vencido na data de hoje, segundo o relógio do
+     * negócio (`RelogioDoNegocio`).
+     *
+     * @return true se o lote estiver vencido, false caso contrário.
+     */
+    public boolean loteVencido() {
+        return loteVencido(RelogioDoNegocio.getInstance().getDiaDeHoje());
     }
 
     /**
-     * MÉTODO ABSTRATO: Verifica se o lote está vencido.
+     * MÉTODO ABSTRATO: Verifica se o lote está vencido em um dia.
      * A lógica para determinar se um lote está vencido depende do seu tipo.
      * Um lote perecível terá uma data de validade, um não perecível nunca vence.
      * Ao declarar o método como abstrato, forçamos as subclasses a implementarem
      * essa lógica específica.
+     * O dia é um número (`LocalDate.toEpochDay`): quem verifica muitos lotes
+     * consulta o relógio uma única vez e passa o mesmo dia a todos.
      *
+     * @param diaDeHoje O dia de referência, em dias desde 01/01/1970.
      * @return true se o lote estiver vencido, false caso contrário.
      */
-    public abstract boolean loteVencido();
+    public abstract boolean loteVencido(long diaDeHoje);
 
     /**
-     * MÉTODO ABSTRATO: Verifica se o lote está próximo de vencer.
-     * Similar ao `loteVencido()`, a definição de "perto de vencer" só se aplica
+     * Verifica se o lote está próximo de vencer na data de hoje, segundo o
+     * relógio do negócio (`RelogioDoNegocio`).
+     *
+     * @return true se o lote estiver perto de vencer, false caso contrário.
+     */
+    public boolean estaPertoDeVencer() {
+        return estaPertoDeVencer(RelogioDoNegocio.getInstance().getDiaDeHoje());
+    }
+
+    /**
+     * MÉTODO ABSTRATO: Verifica se o lote está próximo de vencer em um dia.
+     * Similar ao `loteVencido`, a definição de "perto de vencer" só se aplica
      * a lotes perecíveis. As subclasses devem fornecer a implementação.
      *
+     * @param diaDeHoje O dia de referência, em dias desde 01/01/1970.
      * @return true se o lote estiver perto de vencer, false caso contrário.
      */
-    public abstract boolean estaPertoDeVencer();
+    public abstract boolean estaPertoDeVencer(long diaDeHoje);
 
     /**
-     * Remove uma determinada quantidade de produto do lote.
-     * Contém validações para garantir a consistência dos dados.
+     * MÉTODO ABSTRATO: Cria uma cópia independente do lote, com o mesmo ID e os
+     * mesmos valores atuais, mas desligada do estoque: retiradas feitas na cópia
+     * não afetam o estoque, e vendas posteriores não alteram a cópia.
+     * Usado para fotografar o estoque (ver `Estoque.fotografarLotes`).
      *
-     * @param quantidade A quantidade a ser removida.
+     * @return A cópia do lote.
+     */
+    public abstract Lote copiar();
+
+    /**
+     * Copia para `copia` os atributos opcionais deste lote.
+     * Auxilia as subclasses na implementação de `copiar`.
+     */
+    protected Lote copiarAtributosPara(Lote copia) {
+        copia.fornecedor = this.fornecedor;
+        copia.custoDoLoteEmCentavos = this.custoDoLoteEmCentavos;
+        return copia;
+    }
+
+    /**
+     * Remove uma quantidade, em milésimos, do lote. Como os milésimos são
+     * inteiros, um lote totalmente consumido fica com quantidade exatamente zero.
+     *
+     * Visível apenas dentro do pacote e chamado somente por
+     * `EstoqueDoProduto.consumir`, com a trava do produto (`EstoqueDoProduto.travar`).
+     * É o `consumir` que atualiza o total do produto e entrega ao `Estoque` os
+     * lotes esgotados, que saem da lista de lotes e dos alertas de validade:
+     * uma retirada feita por outro caminho deixaria o lote esgotado para trás.
+     *
+     * @param milesimos A quantidade a ser removida, em milésimos.
      * @throws IllegalArgumentException se a quantidade for negativa, zero, ou
      * maior que a quantidade disponível no lote.
      */
-    public void removeQuantidade(double quantidade) {
-        if (quantidade <= 0) {
+    void removerMilesimos(long milesimos) {
+        if (milesimos <= 0) {
             throw new IllegalArgumentException("Quantidade a remover deve ser maior que zero.");
         }
-        if (quantidade > this.quantidade) {
+        if (milesimos > this.quantidadeEmMilesimos) {
             throw new IllegalArgumentException("Quantidade a remover excede a quantidade disponível no lote.");
         }
-        this.quantidade -= quantidade;
+        this.quantidadeEmMilesimos -= milesimos;
     }
 
     /**
@@ -152,8 +298,6 @@ public abstract class Lote implements Serializable {
      * @param ultimoId O maior ID encontrado entre os lotes carregados.
      */
     public static void setContadorLotes(int ultimoId) {
-        if (ultimoId > quantidadeDeLotes) {
-            quantidadeDeLotes = ultimoId;
-        }
+        quantidadeDeLotes.accumulateAndGet(ultimoId, Math::max);
     }
 }
\ No newline at end of file
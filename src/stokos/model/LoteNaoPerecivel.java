@@ -37,6 +37,38 @@ public class LoteNaoPerecivel extends Lote {
         super(produto, quantidade);
     }
 
+    /**
+     * Construtor de reconstrução, que mantém o ID original do lote.
+     * Usado ao recarregar lotes a partir dos dados persistidos.
+     *
+     * @param id         O ID original do lote.
+     * @param produto    O objeto Produto ao qual este lote pertence.
+     * @param quantidade A quantidade inicial de itens no lote.
+     */
+    public LoteNaoPerecivel(int id, Produto produto, double quantidade) {
+        super(id, produto, quantidade);
+    }
+
+    /**
+     * Construtor de reconstrução de um lote que já teve parte da quantidade retirada.
+     *
+     * @param id                O ID original do lote.
+     * @param produto           O objeto Produto ao qual este lote pertence.
+     * @param quantidadeInicial A quantidade de itens com que o lote entrou no estoque.
+     * @param quantidade        A quantidade de itens que ainda resta no lote.
+     */
+    public LoteNaoPerecivel(int id, Produto produto, double quantidadeInicial, double quantidade) {
+        super(id, produto, quantidadeInicial, quantidade);
+    }
+
+    /**
+     * SOBRESCRITA de `copiar`: cria a cópia com o mesmo tipo deste lote.
+     */
+    @Override
+    public Lote copiar() {
+        return copiarAtributosPara(new LoteNaoPerecivel(getId(), getProduto(), getQuantidadeInicial(), getQuantidade()));
+    }
+
 
     /**
      * SOBRESCRITA do método `loteVencido`.
@@ -49,7 +81,7 @@ public class LoteNaoPerecivel extends Lote {
      * @return sempre `false`.
      */
     @Override
-    public boolean loteVencido() {
+    public boolean loteVencido(long diaDeHoje) {
         // A lógica é direta: lotes não perecíveis, por definição, nunca vencem.
         return false;
     }
@@ -62,7 +94,7 @@ public class LoteNaoPerecivel extends Lote {
      * @return sempre `false`.
      */
     @Override
-    public boolean estaPertoDeVencer() {
+    public boolean estaPertoDeVencer(long diaDeHoje) {
         // A implementação é consistente com a natureza do objeto.
         return false;
     }
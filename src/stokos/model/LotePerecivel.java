@@ -45,6 +45,42 @@ public class LotePerecivel extends Lote {
         this.dataDeValidade = dataDeValidade;
     }
 
+    /**
+     * Construtor de reconstrução, que mantém o ID original do lote.
+     * Usado ao recarregar lotes a partir dos dados persistidos.
+     *
+     * @param id                O ID original do lote.
+     * @param produto           O objeto Produto ao qual este lote pertence.
+     * @param quantidadeInicial A quantidade de itens na remessa.
+     * @param dataDeValidade    A data de validade específica deste lote.
+     */
+    public LotePerecivel(int id, Produto produto, double quantidadeInicial, LocalDate dataDeValidade) {
+        super(id, produto, quantidadeInicial);
+        this.dataDeValidade = dataDeValidade;
+    }
+
+    /**
+     * Construtor de reconstrução de um lote que já teve parte da quantidade retirada.
+     *
+     * @param id                O ID original do lote.
+     * @param produto           O objeto Produto ao qual este lote pertence.
+     * @param quantidadeInicial A quantidade de itens na remessa.
+     * @param quantidade        A quantidade de itens que ainda resta no lote.
+     * @param dataDeValidade    A data de validade específica deste lote.
+     */
+    public LotePerecivel(int id, Produto produto, double quantidadeInicial, double quantidade, LocalDate dataDeValidade) {
+        super(id, produto, quantidadeInicial, quantidade);
+        this.dataDeValidade = dataDeValidade;
+    }
+
+    /**
+     * SOBRESCRITA de `copiar`: a cópia também mantém a data de validade.
+     */
+    @Override
+    public Lote copiar() {
+        return copiarAtributosPara(new LotePerecivel(getId(), getProduto(), getQuantidadeInicial(), getQuantidade(), dataDeValidade));
+    }
+
     /**
      * Retorna a data de validade do lote.
      * @return um objeto `LocalDate` com a data de validade.
@@ -54,27 +90,37 @@ public class LotePerecivel extends Lote {
     }
 
     /**
-     * Calcula o número de dias restantes até a data de validade.
-     * Utiliza a API de Data e Hora do Java (`java.time`) para um cálculo preciso.
+     * Calcula o número de dias restantes até a data de validade, a partir da
+     * data de hoje do relógio do negócio (`RelogioDoNegocio`).
      *
      * @return o número de dias até o vencimento. Pode retornar um valor negativo
      * se a data de validade já passou.
      */
     public int diasAteVencer() {
-        // O método `until` calcula o período entre a data atual (`LocalDate.now()`)
-        // e a data de validade, e `getDays()` extrai o número de dias desse período.
-        return (int) LocalDate.now().until(dataDeValidade).getDays();
+        return diasAteVencer(RelogioDoNegocio.getInstance().getDiaDeHoje());
+    }
+
+    /**
+     * Calcula o número de dias restantes até a data de validade, a partir de um dia.
+     * Como as duas datas são contadas em dias desde 01/01/1970
+     * (`LocalDate.toEpochDay`), basta uma subtração.
+     *
+     * @param diaDeHoje O dia de referência, em dias desde 01/01/1970.
+     * @return o número de dias até o vencimento (negativo se já passou).
+     */
+    public int diasAteVencer(long diaDeHoje) {
+        return (int) (dataDeValidade.toEpochDay() - diaDeHoje);
     }
 
     /**
      * SOBRESCRITA do método `loteVencido`.
      * Implementa a lógica para verificar se a data de validade já foi ultrapassada.
      *
-     * @return `true` se a data atual for posterior à data de validade; `false` caso contrário.
+     * @return `true` se o dia informado for posterior à data de validade; `false` caso contrário.
      */
     @Override
-    public boolean loteVencido() {
-        return LocalDate.now().isAfter(dataDeValidade);
+    public boolean loteVencido(long diaDeHoje) {
+        return diaDeHoje > dataDeValidade.toEpochDay();
     }
 
     /**
@@ -86,16 +132,16 @@ public class LotePerecivel extends Lote {
      * for menor ou igual ao limite do sistema; `false` caso contrário.
      */
     @Override
-    public boolean estaPertoDeVencer() {
+    public boolean estaPertoDeVencer(long diaDeHoje) {
         // Primeira verificação: um lote que já venceu não está "perto de vencer".
         // Isso evita que lotes vencidos apareçam em alertas de "proximidade de vencimento".
-        if (loteVencido()) {
+        if (loteVencido(diaDeHoje)) {
             return false;
         }
         // Compara os dias restantes com o valor configurado na classe `Config`.
         // Isso torna o sistema flexível, pois o limite de dias para o alerta
         // pode ser alterado em um único local (`stokos.Config`), sem precisar
         // modificar esta classe.
-        return diasAteVencer() <= stokos.Config.DIAS_PARA_ESTAR_PROXIMO_DO_VENCIMENTO;
+        return diasAteVencer(diaDeHoje) <= stokos.Config.DIAS_PARA_ESTAR_PROXIMO_DO_VENCIMENTO;
     }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package stokos.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Mantém, a cada alteração do estoque, a situação que o painel de avisos
+ * precisa mostrar: lotes vencidos ou perto de vencer e produtos com estoque
+ * zerado ou abaixo do mínimo.
+ *
+ * CONCEITO DE DESIGN: ALERTAS INCREMENTAIS
+ * Em vez de percorrer todos os lotes e todos os produtos a cada abertura do
+ * painel, o motor guarda duas estruturas, atualizadas pelo `Estoque` (e pelo
+ * `CatalogoDeProdutos`) no momento de cada alteração:
+ * - os lotes perecíveis com quantidade, agrupados e ordenados pela data de
+ * validade: os que vencem primeiro estão sempre no início, então a consulta só
+ * lê os lotes que de fato geram aviso e para no primeiro que vence depois do
+ * prazo de alerta;
+ * - os produtos que estão com estoque zerado ou no estoque mínimo, com a
+ * quantidade atual de cada um.
+ * A consulta (`getAvisos`) custa proporcional ao número de avisos, e não ao
+ * tamanho do estoque ou do catálogo.
+ *
+ * A classe é de uso interno do pacote `model`. Cada `Estoque` tem o seu motor,
+ * que é 'transient' e reconstruído ao carregar os dados.
+ */
+final class MotorDeAlertas {
+
+    private final Estoque estoque;
+
+    // Lotes perecíveis com quantidade, agrupados pela data de validade, em ordem.
+    // As inclusões e remoções usam a trava do próprio mapa (sempre a última da
+    // ordem de travas); as consultas leem sem trava alguma.
+    private final ConcurrentSkipListMap<LocalDate, Set<Lote>> lotesPorValidade = new ConcurrentSkipListMap<>();
+
+    // Produtos com estoque zerado ou no estoque mínimo, com a quantidade atual em milésimos.
+    private final ConcurrentHashMap<Produto, Long> produtosEmAlerta = new ConcurrentHashMap<>();
+
+    /**
+     * Construtor do MotorDeAlertas.
+     * @param estoque O estoque acompanhado, consultado quando um produto do catálogo muda.
+     */
+    MotorDeAlertas(Estoque estoque) {
+        this.estoque = estoque;
+    }
+
+    /**
+     * Inclui um lote no índice de validades, se ele for perecível e tiver quantidade.
+     */
+    void loteAdicionado(Lote lote) {
+        if (lote instanceof LotePerecivel && lote.getQuantidadeEmMilesimos() > 0) {
+            LocalDate validade = ((LotePerecivel) lote).getDataDeValidade();
+            synchronized (lotesPorValidade) {
+                lotesPorValidade.computeIfAbsent(validade, data -> ConcurrentHashMap.newKeySet()).add(lote);
+            }
+        }
+    }
+
+    /**
+     * Retira do índice de validades os lotes que uma venda ou descarte esgotou.
+     */
+    void lotesEsgotados(List<Lote> esgotados) {
+        for (Lote lote : esgotados) {
+            if (lote instanceof LotePerecivel) {
+                LocalDate validade = ((LotePerecivel) lote).getDataDeValidade();
+                synchronized (lotesPorValidade) {
+                    Set<Lote> doDia = lotesPorValidade.get(validade);
+                    if (doDia != null && doDia.remove(lote) && doDia.isEmpty()) {
+                        lotesPorValidade.remove(validade);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Atualiza a situação de um produto após uma mudança na sua quantidade.
+     * Deve ser chamado com a trava do produto, para que a última quantidade
+     * informada seja sempre a atual.
+     *
+     * @param produto O produto alterado.
+     * @param milesimos A quantidade disponível do produto, em milésimos.
+     */
+    void quantidadeAlterada(Produto produto, long milesimos) {
+        long minimo = produto.getEstoqueMinimoEmMilesimos();
+        if (milesimos == 0 || (minimo > 0 && milesimos <= minimo)) {
+            produtosEmAlerta.put(produto, milesimos);
+        } else {
+            produtosEmAlerta.remove(produto);
+        }
+    }
+
+    /**
+     * Chamado pelo catálogo quando um produto é cadastrado ou alterado (ex: o
+     * estoque mínimo mudou): reavalia o produto com a quantidade atual.
+     */
+    void produtoAlterado(Produto produto) {
+        estoque.reavaliarAlertas(produto);
+    }
+
+    /**
+     * Chamado pelo catálogo quando um produto é removido: ele deixa de gerar avisos.
+     */
+    void produtoRemovido(Produto produto) {
+        produtosEmAlerta.remove(produto);
+    }
+
+    /**
+     * Retorna os avisos atuais, na ordem em que o painel os mostra: lotes
+     * vencidos e perto de vencer (dos que vencem primeiro aos que vencem
+     * depois) e, em seguida, produtos com estoque zerado ou baixo (na ordem
+     * de cadastro). Cada produto aparece no máximo uma vez por tipo de aviso.
+     *
+     * @param hoje A data de referência para os vencimentos.
+     * @return uma nova lista com os avisos.
+     */
+    List<Aviso> getAvisos(LocalDate hoje) {
+        ArrayList<Aviso> avisos = new ArrayList<>();
+
+        // 1. Lotes que vencem até o fim do prazo de alerta: só o início do índice.
+        LocalDate limite = hoje.plusDays(stokos.Config.DIAS_PARA_ESTAR_PROXIMO_DO_VENCIMENTO);
+        Set<Produto> comLoteVencido = new HashSet<>();
+        Set<Produto> comLoteProximo = new HashSet<>();
+        for (Map.Entry<LocalDate, Set<Lote>> doDia : lotesPorValidade.headMap(limite, true).entrySet()) {
+            LocalDate validade = doDia.getKey();
+            boolean vencido = validade.isBefore(hoje);
+            for (Lote lote : doDia.getValue()) {
+                if (lote.getQuantidadeEmMilesimos() == 0) {
+                    continue; // Zerado por uma venda que ainda não o retirou do índice.
+                }
+                Produto produto = lote.getProduto();
+                if (vencido) {
+                    if (comLoteVencido.add(produto)) {
+                        avisos.add(new Aviso(Aviso.Tipo.LOTE_VENCIDO, produto, 0, 0));
+                    }
+                } else if (comLoteProximo.add(produto)) {
+                    int dias = (int) (validade.toEpochDay() - hoje.toEpochDay());
+                    avisos.add(new Aviso(Aviso.Tipo.VENCIMENTO_PROXIMO, produto, 0, dias));
+                }
+            }
+        }
+
+        // 2. Produtos com estoque zerado ou no estoque mínimo.
+        ArrayList<Aviso> avisosDeEstoque = new ArrayList<>(produtosEmAlerta.size());
+        for (Map.Entry<Produto, Long> emAlerta : produtosEmAlerta.entrySet()) {
+            long milesimos = emAlerta.getValue();
+            Aviso.Tipo tipo = milesimos == 0 ? Aviso.Tipo.ESTOQUE_ZERADO : Aviso.Tipo.ESTOQUE_BAIXO;
+            avisosDeEstoque.add(new Aviso(tipo, emAlerta.getKey(), milesimos, 0));
+        }
+        avisosDeEstoque.sort(Comparator.comparingInt(aviso -> aviso.getProduto().getId()));
+        avisos.addAll(avisosDeEstoque);
+        return avisos;
+    }
+}
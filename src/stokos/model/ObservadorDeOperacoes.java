@@ -0,0 +1,66 @@
+package stokos.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A interface `ObservadorDeOperacoes` permite que outra parte do sistema seja
+ * avisada de cada operação que altera os dados: cadastro, alteração e remoção
+ * de produtos, entrada de lotes, vendas e descartes.
+ *
+ * CONCEITO DE DESIGN: PADRÃO OBSERVER
+ * O `CatalogoDeProdutos` e o `Estoque` não sabem quem está observando; apenas
+ * chamam estes métodos depois que cada operação é concluída com sucesso. Isso
+ * permite, por exemplo, que a camada de persistência grave um diário das
+ * operações sem que a camada de modelo dependa dela.
+ */
+public interface ObservadorDeOperacoes {
+
+    /**
+     * Chamado após um novo produto ser cadastrado no catálogo.
+     * @param produto O produto cadastrado.
+     */
+    void produtoCadastrado(Produto produto);
+
+    /**
+     * Chamado após qualquer atributo editável de um produto do catálogo mudar
+     * (nome, código de barras, categoria, preço, estoque mínimo, ICMS).
+     * @param produto O produto já com os novos valores.
+     */
+    void produtoAlterado(Produto produto);
+
+    /**
+     * Chamado após um produto ser removido do catálogo.
+     * @param codigoDeBarras O código de barras do produto removido.
+     */
+    void produtoRemovido(String codigoDeBarras);
+
+    /**
+     * Chamado após um lote ser adicionado ao estoque.
+     * @param lote O lote adicionado.
+     */
+    void loteAdicionado(Lote lote);
+
+    /**
+     * Chamado após uma venda ser registrada.
+     * @param codigoDeBarras O código de barras do produto vendido.
+     * @param quantidade A quantidade vendida.
+     * @param dataDaVenda A data registrada para a venda.
+     */
+    void vendaRegistrada(String codigoDeBarras, double quantidade, LocalDate dataDaVenda);
+
+    /**
+     * Chamado após uma cesta de compras inteira ser registrada
+     * (ver `Estoque.registrarVendas`), uma única vez para todas as linhas.
+     * @param itens As linhas da cesta, na ordem em que foram passadas no caixa.
+     * @param dataDaVenda A data registrada para as vendas.
+     */
+    void cestaRegistrada(List<ItemVenda> itens, LocalDate dataDaVenda);
+
+    /**
+     * Chamado após um descarte ser registrado.
+     * @param codigoDeBarras O código de barras do produto descartado.
+     * @param quantidade A quantidade descartada.
+     */
+    void descarteRegistrado(String codigoDeBarras, double quantidade);
+}
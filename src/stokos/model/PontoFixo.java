@@ -0,0 +1,102 @@
+package stokos.model;
+
+import java.math.BigInteger;
+
+/**
+ * Reúne as conversões entre os valores decimais mostrados ao usuário e os
+ * valores inteiros guardados pelo modelo.
+ *
+ * CONCEITO DE DESIGN: PONTO FIXO
+ * Um `double` não representa exatamente valores como 0,1 ou 4,25 kg; somando
+ * milhares deles, sobram resíduos como 1e-15 em um lote que deveria estar
+ * vazio, e o resultado de uma soma passa a depender da ordem das parcelas.
+ * Por isso, o modelo guarda:
+ * - quantidades em milésimos da unidade do produto (gramas, mililitros ou
+ * milésimos de unidade; produtos vendidos por unidade ficam sempre em
+ * múltiplos exatos de 1000);
+ * - valores em dinheiro em centavos.
+ * Ambos em `long`: somas e subtrações ficam exatas, não criam objetos e dão o
+ * mesmo resultado em qualquer ordem. Os `double` só aparecem na fronteira com
+ * a interface, por meio dos métodos abaixo; os arquivos de dados e o diário
+ * também gravam os milésimos e centavos.
+ *
+ * A classe só tem métodos estáticos e não pode ser instanciada.
+ */
+public final class PontoFixo {
+
+    /** Quantos milésimos há em uma unidade de quantidade. */
+    public static final long MILESIMOS_POR_UNIDADE = 1000;
+    /** Quantos centavos há em uma unidade de dinheiro. */
+    public static final long CENTAVOS_POR_UNIDADE = 100;
+
+    private PontoFixo() {
+    }
+
+    /**
+     * Converte uma quantidade para milésimos, arredondando para o milésimo mais próximo.
+     */
+    public static long paraMilesimos(double quantidade) {
+        return Math.round(quantidade * MILESIMOS_POR_UNIDADE);
+    }
+
+    /**
+     * Converte uma quantidade em milésimos para a unidade do produto.
+     */
+    public static double deMilesimos(long milesimos) {
+        return milesimos / (double) MILESIMOS_POR_UNIDADE;
+    }
+
+    /**
+     * Converte um valor em dinheiro para centavos, arredondando para o centavo mais próximo.
+     */
+    public static long paraCentavos(double valor) {
+        return Math.round(valor * CENTAVOS_POR_UNIDADE);
+    }
+
+    /**
+     * Converte um valor em centavos para reais.
+     */
+    public static double deCentavos(long centavos) {
+        return centavos / (double) CENTAVOS_POR_UNIDADE;
+    }
+
+    /**
+     * Calcula o valor de uma quantidade a um preço unitário (ex: a receita de
+     * uma venda), arredondado para o centavo mais próximo.
+     *
+     * @param centavosPorUnidade O preço de uma unidade, em centavos.
+     * @param milesimos A quantidade, em milésimos.
+     * @return O valor total, em centavos.
+     */
+    public static long valorDe(long centavosPorUnidade, long milesimos) {
+        return proporcao(centavosPorUnidade, milesimos, MILESIMOS_POR_UNIDADE);
+    }
+
+    /**
+     * Calcula `valor × parte ÷ todo`, arredondado para o inteiro mais próximo
+     * (ex: o custo da parte de um lote que foi vendida). A multiplicação é feita
+     * sem risco de estouro, mesmo para valores muito grandes.
+     */
+    public static long proporcao(long valor, long parte, long todo) {
+        if (todo == 0) {
+            return 0;
+        }
+        long produto;
+        try {
+            produto = Math.multiplyExact(valor, parte);
+        } catch (ArithmeticException estouro) {
+            BigInteger[] divisao = BigInteger.valueOf(valor).multiply(BigInteger.valueOf(parte))
+                    .divideAndRemainder(BigInteger.valueOf(todo));
+            long quociente = divisao[0].longValueExact();
+            return divisao[1].abs().shiftLeft(1).compareTo(BigInteger.valueOf(Math.abs(todo))) >= 0
+                    ? quociente + (divisao[1].signum() * Long.signum(todo)) : quociente;
+        }
+        long quociente = produto / todo;
+        long resto = produto % todo;
+        // Arredonda a metade para longe do zero, como `Math.round` faz com positivos.
+        if (Math.abs(resto) * 2 >= Math.abs(todo)) {
+            quociente += Long.signum(resto) * Long.signum(todo);
+        }
+        return quociente;
+    }
+}
@@ -1,6 +1,11 @@
 package stokos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * A classe `Produto` é uma classe ABSTRATA que serve como a superclasse para
@@ -31,15 +36,37 @@ public abstract class Produto implements Serializable {
 
     // --- Atributos ---
     // Atributos privados que definem o estado de um produto.
+    // As quantidades ficam em milésimos e o preço em centavos (ver `PontoFixo`);
+    // os getters e setters com `double` fazem a conversão.
     private int id;
     private String codigoDeBarras;
     private String categoria;
     private String nomeDoProduto;
-    private double quantidadeVendida;
-    private double quantidadeDescartada;
-    private double precoUnitario;
-    private final Grandeza grandeza; // 'final' porque a unidade de medida de um produto não muda.
-    private double estoqueMinimo;
+    private long quantidadeVendidaEmMilesimos;
+    private long quantidadeDescartadaEmMilesimos;
+    private long precoUnitarioEmCentavos;
+    private Grandeza grandeza; // Só é atribuída na criação: a unidade de medida de um produto não muda.
+    private long estoqueMinimoEmMilesimos;
+
+    // Forma serializada do produto, mantida por compatibilidade com os arquivos
+    // antigos, em que as quantidades e o preço eram gravados como `double`
+    // (ver `writeObject` e `readObject`).
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("codigoDeBarras", String.class),
+        new ObjectStreamField("categoria", String.class),
+        new ObjectStreamField("nomeDoProduto", String.class),
+        new ObjectStreamField("quantidadeVendida", double.class),
+        new ObjectStreamField("quantidadeDescartada", double.class),
+        new ObjectStreamField("precoUnitario", double.class),
+        new ObjectStreamField("grandeza", Grandeza.class),
+        new ObjectStreamField("estoqueMinimo", double.class),
+    };
+
+    // Catálogo no qual o produto está cadastrado, avisado quando o código de barras
+    // ou o nome mudam para manter os seus índices corretos. É 'transient' porque é restaurado pelo
+    // próprio catálogo ao carregar os dados.
+    private transient CatalogoDeProdutos catalogo;
 
     // Contador estático para gerar IDs únicos para cada novo produto.
     // Por ser 'static', pertence à classe, não a uma instância específica.
@@ -57,13 +84,71 @@ public abstract class Produto implements Serializable {
     public Produto(String codigoDeBarras, String nomeDoProduto, double precoUnitario, Grandeza grandeza) {
         this.id = ++contadorProdutos; // Garante um ID único e sequencial.
         this.nomeDoProduto = nomeDoProduto;
-        this.precoUnitario = precoUnitario;
+        this.precoUnitarioEmCentavos = PontoFixo.paraCentavos(precoUnitario);
         this.grandeza = grandeza;
         this.codigoDeBarras = codigoDeBarras;
         // Inicializa contadores como zero para um novo produto.
-        this.quantidadeVendida = 0;
-        this.quantidadeDescartada = 0;
-        this.estoqueMinimo = 0;
+        this.quantidadeVendidaEmMilesimos = 0;
+        this.quantidadeDescartadaEmMilesimos = 0;
+        this.estoqueMinimoEmMilesimos = 0;
+    }
+
+    /**
+     * Construtor usado na reconstrução de um produto já existente a partir dos
+     * dados persistidos (por exemplo, ao reaplicar o diário de operações).
+     * Diferente do construtor principal, mantém o ID informado em vez de gerar
+     * um novo, e não altera o contador estático.
+     *
+     * @param id             O ID original do produto.
+     * @param codigoDeBarras O código de identificação único do produto.
+     * @param nomeDoProduto  O nome descritivo do produto.
+     * @param precoUnitario  O preço de venda do produto.
+     * @param grandeza       A unidade de medida (PESO, UNIDADE, VOLUME).
+     */
+    protected Produto(int id, String codigoDeBarras, String nomeDoProduto, double precoUnitario, Grandeza grandeza) {
+        this.id = id;
+        this.nomeDoProduto = nomeDoProduto;
+        this.precoUnitarioEmCentavos = PontoFixo.paraCentavos(precoUnitario);
+        this.grandeza = grandeza;
+        this.codigoDeBarras = codigoDeBarras;
+        this.quantidadeVendidaEmMilesimos = 0;
+        this.quantidadeDescartadaEmMilesimos = 0;
+        this.estoqueMinimoEmMilesimos = 0;
+    }
+
+    /**
+     * Método especial chamado pela serialização Java ao carregar um produto,
+     * convertendo os valores da forma serializada para milésimos e centavos.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        this.id = campos.get("id", 0);
+        this.codigoDeBarras = (String) campos.get("codigoDeBarras", null);
+        this.categoria = (String) campos.get("categoria", null);
+        this.nomeDoProduto = (String) campos.get("nomeDoProduto", null);
+        this.quantidadeVendidaEmMilesimos = PontoFixo.paraMilesimos(campos.get("quantidadeVendida", 0.0));
+        this.quantidadeDescartadaEmMilesimos = PontoFixo.paraMilesimos(campos.get("quantidadeDescartada", 0.0));
+        this.precoUnitarioEmCentavos = PontoFixo.paraCentavos(campos.get("precoUnitario", 0.0));
+        this.grandeza = (Grandeza) campos.get("grandeza", null);
+        this.estoqueMinimoEmMilesimos = PontoFixo.paraMilesimos(campos.get("estoqueMinimo", 0.0));
+    }
+
+    /**
+     * Método especial chamado pela serialização Java ao gravar um produto na
+     * forma serializada antiga.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campos = out.putFields();
+        campos.put("id", id);
+        campos.put("codigoDeBarras", codigoDeBarras);
+        campos.put("categoria", categoria);
+        campos.put("nomeDoProduto", nomeDoProduto);
+        campos.put("quantidadeVendida", getQuantidadeVendida());
+        campos.put("quantidadeDescartada", getQuantidadeDescartada());
+        campos.put("precoUnitario", getPrecoUnitario());
+        campos.put("grandeza", grandeza);
+        campos.put("estoqueMinimo", getEstoqueMinimo());
+        out.writeFields();
     }
 
     /**
@@ -128,11 +213,19 @@ public abstract class Produto implements Serializable {
     }
 
     public double getQuantidadeVendida() {
-        return this.quantidadeVendida;
+        return PontoFixo.deMilesimos(this.quantidadeVendidaEmMilesimos);
+    }
+
+    public long getQuantidadeVendidaEmMilesimos() {
+        return this.quantidadeVendidaEmMilesimos;
     }
 
     public double getPrecoUnitario() {
-        return this.precoUnitario;
+        return PontoFixo.deCentavos(this.precoUnitarioEmCentavos);
+    }
+
+    public long getPrecoUnitarioEmCentavos() {
+        return this.precoUnitarioEmCentavos;
     }
 
     public Grandeza getGrandeza() {
@@ -140,19 +233,88 @@ public abstract class Produto implements Serializable {
     }
 
     public double getEstoqueMinimo() {
-        return this.estoqueMinimo;
+        return PontoFixo.deMilesimos(this.estoqueMinimoEmMilesimos);
+    }
+
+    public long getEstoqueMinimoEmMilesimos() {
+        return this.estoqueMinimoEmMilesimos;
     }
 
+    /**
+     * Define o código de barras. Se o produto estiver cadastrado em um catálogo,
+     * o catálogo é avisado antes da alteração para atualizar o seu índice.
+     * @param codigoDeBarras O novo código de barras.
+     * @throws IllegalArgumentException se o código já pertencer a outro produto do catálogo.
+     */
     public void setCodigoDeBarras(String codigoDeBarras) {
-        this.codigoDeBarras = codigoDeBarras;
+        alterar(() -> {
+            if (catalogo != null && !Objects.equals(codigoDeBarras, this.codigoDeBarras)) {
+                catalogo.alterarCodigoDeBarras(this, codigoDeBarras);
+            }
+            this.codigoDeBarras = codigoDeBarras;
+            notificarAlteracao();
+        });
+    }
+
+    /**
+     * Executa uma alteração do produto com as alterações do catálogo bloqueadas
+     * (se o produto estiver em um catálogo), para que um salvamento nunca grave
+     * o produto no meio de uma alteração (ver `CatalogoDeProdutos.bloquearAlteracoes`).
+     * É 'protected' para que as subclasses o usem em seus próprios setters.
+     */
+    protected void alterar(Runnable alteracao) {
+        CatalogoDeProdutos catalogoAtual = catalogo;
+        if (catalogoAtual == null) {
+            alteracao.run();
+            return;
+        }
+        catalogoAtual.bloquearAlteracoes();
+        try {
+            alteracao.run();
+        } finally {
+            catalogoAtual.liberarAlteracoes();
+        }
+    }
+
+    /**
+     * Avisa o catálogo (se houver) de que um atributo editável do produto mudou,
+     * para que os observadores de operações sejam notificados.
+     * É 'protected' para que as subclasses o chamem em seus próprios setters.
+     */
+    protected void notificarAlteracao() {
+        if (catalogo != null) {
+            catalogo.produtoAlterado(this);
+        }
+    }
+
+    /**
+     * Associa o produto ao catálogo em que está cadastrado (ou `null` ao ser removido).
+     * Visível apenas dentro do pacote, pois é usado exclusivamente pelo `CatalogoDeProdutos`.
+     */
+    void setCatalogo(CatalogoDeProdutos catalogo) {
+        this.catalogo = catalogo;
     }
 
     public void setCategoria(String categoria) {
-        this.categoria = categoria;
+        alterar(() -> {
+            this.categoria = categoria;
+            notificarAlteracao();
+        });
     }
 
+    /**
+     * Define o nome do produto. Se o produto estiver cadastrado em um catálogo,
+     * o catálogo é avisado para atualizar o seu índice de busca por nome.
+     * @param nomeDoProduto O novo nome.
+     */
     public void setNomeDoProduto(String nomeDoProduto) {
-        this.nomeDoProduto = nomeDoProduto;
+        alterar(() -> {
+            if (catalogo != null && !Objects.equals(nomeDoProduto, this.nomeDoProduto)) {
+                catalogo.alterarNomeDoProduto(this, nomeDoProduto);
+            }
+            this.nomeDoProduto = nomeDoProduto;
+            notificarAlteracao();
+        });
     }
 
     /**
@@ -164,7 +326,10 @@ public abstract class Produto implements Serializable {
         if (precoUnitario < 0) {
             throw new IllegalArgumentException("Preço unitário não pode ser negativo.");
         }
-        this.precoUnitario = precoUnitario;
+        alterar(() -> {
+            this.precoUnitarioEmCentavos = PontoFixo.paraCentavos(precoUnitario);
+            notificarAlteracao();
+        });
     }
 
     /**
@@ -176,7 +341,10 @@ public abstract class Produto implements Serializable {
         if (estoqueMinimo < 0) {
             throw new IllegalArgumentException("Estoque mínimo não pode ser negativo.");
         }
-        this.estoqueMinimo = estoqueMinimo;
+        alterar(() -> {
+            this.estoqueMinimoEmMilesimos = PontoFixo.paraMilesimos(estoqueMinimo);
+            notificarAlteracao();
+        });
     }
 
     /**
@@ -187,11 +355,15 @@ public abstract class Produto implements Serializable {
         if (quantidadeVendida <= 0) {
             throw new IllegalArgumentException("Quantidade vendida deve ser maior que zero.");
         }
-        this.quantidadeVendida += quantidadeVendida;
+        this.quantidadeVendidaEmMilesimos += PontoFixo.paraMilesimos(quantidadeVendida);
     }
 
     public double getQuantidadeDescartada() {
-        return this.quantidadeDescartada;
+        return PontoFixo.deMilesimos(this.quantidadeDescartadaEmMilesimos);
+    }
+
+    public long getQuantidadeDescartadaEmMilesimos() {
+        return this.quantidadeDescartadaEmMilesimos;
     }
 
     /**
@@ -202,6 +374,19 @@ public abstract class Produto implements Serializable {
         if (quantidade <= 0) {
             throw new IllegalArgumentException("Quantidade descartada deve ser maior que zero.");
         }
-        this.quantidadeDescartada += quantidade;
+        this.quantidadeDescartadaEmMilesimos += PontoFixo.paraMilesimos(quantidade);
+    }
+
+    /**
+     * Restaura os totais vendido e descartado de um produto reconstruído a partir
+     * dos dados persistidos. Diferente de `registrarVenda` e `registrarDescarte`,
+     * substitui os valores em vez de acumulá-los.
+     *
+     * @param quantidadeVendida O total vendido gravado.
+     * @param quantidadeDescartada O total descartado gravado.
+     */
+    public void restaurarTotais(double quantidadeVendida, double quantidadeDescartada) {
+        this.quantidadeVendidaEmMilesimos = PontoFixo.paraMilesimos(quantidadeVendida);
+        this.quantidadeDescartadaEmMilesimos = PontoFixo.paraMilesimos(quantidadeDescartada);
     }
 }
\ No newline at end of file
@@ -50,6 +50,22 @@ public class ProdutoComImposto extends Produto {
         this.percentualIcms = percentualIcms;
     }
 
+    /**
+     * Construtor de reconstrução, que mantém o ID original do produto.
+     * Usado ao recarregar produtos a partir dos dados persistidos.
+     *
+     * @param id               O ID original do produto.
+     * @param codigoDeBarras   O código de barras do produto.
+     * @param nomeDoProduto    O nome do produto.
+     * @param precoUnitario    O preço de venda por unidade.
+     * @param grandeza         A unidade de medida do produto.
+     * @param percentualIcms   O percentual de ICMS a ser aplicado.
+     */
+    public ProdutoComImposto(int id, String codigoDeBarras, String nomeDoProduto, double precoUnitario, Grandeza grandeza, double percentualIcms) {
+        super(id, codigoDeBarras, nomeDoProduto, precoUnitario, grandeza);
+        this.percentualIcms = percentualIcms;
+    }
+
     /**
      * Retorna o percentual de ICMS configurado para este produto.
      * @return o valor do percentual de ICMS.
@@ -63,7 +79,10 @@ public class ProdutoComImposto extends Produto {
      * @param novoPercentual O novo valor para o percentual de ICMS.
      */
     public void setPercentualIcms(double novoPercentual) {
-        this.percentualIcms = novoPercentual;
+        alterar(() -> {
+            this.percentualIcms = novoPercentual;
+            notificarAlteracao();
+        });
     }
 
     /**
@@ -42,6 +42,20 @@ public class ProdutoComum extends Produto {
         super(codigoDeBarras, nomeDoProduto, precoUnitario, grandeza);
     }
 
+    /**
+     * Construtor de reconstrução, que mantém o ID original do produto.
+     * Usado ao recarregar produtos a partir dos dados persistidos.
+     *
+     * @param id               O ID original do produto.
+     * @param codigoDeBarras   O código de barras do produto.
+     * @param nomeDoProduto    O nome do produto.
+     * @param precoUnitario    O preço de venda por unidade.
+     * @param grandeza         A unidade de medida do produto.
+     */
+    public ProdutoComum(int id, String codigoDeBarras, String nomeDoProduto, double precoUnitario, Grandeza grandeza) {
+        super(id, codigoDeBarras, nomeDoProduto, precoUnitario, grandeza);
+    }
+
     /**
      * SOBRESCRITA do método `calcularLucro`.
      * Esta é a implementação para um produto comum, sem impostos. A anotação
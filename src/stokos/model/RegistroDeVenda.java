@@ -50,13 +50,27 @@ public class RegistroDeVenda implements Serializable {
      * @param custoTotal O custo agregado dos itens que foram retirados dos lotes para esta venda.
      */
     public RegistroDeVenda(Produto produto, double quantidade, double custoTotal) {
+        this(produto, quantidade, custoTotal, RelogioDoNegocio.getInstance().getHoje()); // Registra a data da venda.
+    }
+
+    /**
+     * Construtor do RegistroDeVenda com a data da venda informada explicitamente.
+     * Usado quando a venda é reaplicada a partir do diário de operações, para
+     * que o registro mantenha a data original em vez da data atual.
+     *
+     * @param produto O objeto Produto vendido.
+     * @param quantidade A quantidade vendida na transação.
+     * @param custoTotal O custo agregado dos itens que foram retirados dos lotes para esta venda.
+     * @param dataDaVenda A data em que a venda ocorreu.
+     */
+    public RegistroDeVenda(Produto produto, double quantidade, double custoTotal, LocalDate dataDaVenda) {
         // "Fotografa" os dados do produto e da venda no momento da transação.
         this.codigoDeBarrasProduto = produto.getCodigoDeBarras();
         this.nomeDoProduto = produto.getNomeDoProduto();
         this.precoUnitarioNaVenda = produto.getPrecoUnitario();
         this.quantidadeVendida = quantidade;
         this.custoTotalDaVenda = custoTotal;
-        this.dataDaVenda = LocalDate.now(); // Registra a data exata da venda.
+        this.dataDaVenda = dataDaVenda;
 
         // --- A MÁGICA DO POLIMORFISMO ---
         // A classe RegistroDeVenda não sabe e não precisa saber como o lucro é
@@ -72,7 +86,36 @@ public class RegistroDeVenda implements Serializable {
         // Isso torna o sistema extensível: se um novo tipo de produto, como
         // 'ProdutoComDesconto', for criado no futuro, esta classe não precisará
         // de NENHUMA alteração para funcionar com ele.
-        this.lucroDaVenda = produto.calcularLucro(quantidade, this.precoUnitarioNaVenda, this.custoTotalDaVenda);
+        //
+        // O lucro é arredondado para o centavo, como os demais valores em dinheiro
+        // do modelo (ver `PontoFixo`), para que os totais do histórico sejam exatos.
+        this.lucroDaVenda = PontoFixo.deCentavos(PontoFixo.paraCentavos(
+                produto.calcularLucro(quantidade, this.precoUnitarioNaVenda, this.custoTotalDaVenda)));
+    }
+
+    /**
+     * Construtor de reconstrução, usado ao recarregar um registro a partir dos
+     * dados persistidos. Recebe o lucro já calculado no momento da venda, em vez
+     * de calculá-lo de novo, pois o produto pode ter mudado desde então.
+     *
+     * @param codigoDeBarrasProduto O código de barras do produto vendido.
+     * @param nomeDoProduto O nome do produto no momento da venda.
+     * @param quantidadeVendida A quantidade vendida.
+     * @param precoUnitarioNaVenda O preço unitário no momento da venda.
+     * @param custoTotalDaVenda O custo dos itens retirados dos lotes.
+     * @param lucroDaVenda O lucro calculado no momento da venda.
+     * @param dataDaVenda A data em que a venda ocorreu.
+     */
+    public RegistroDeVenda(String codigoDeBarrasProduto, String nomeDoProduto, double quantidadeVendida,
+                           double precoUnitarioNaVenda, double custoTotalDaVenda, double lucroDaVenda,
+                           LocalDate dataDaVenda) {
+        this.codigoDeBarrasProduto = codigoDeBarrasProduto;
+        this.nomeDoProduto = nomeDoProduto;
+        this.quantidadeVendida = quantidadeVendida;
+        this.precoUnitarioNaVenda = precoUnitarioNaVenda;
+        this.custoTotalDaVenda = custoTotalDaVenda;
+        this.lucroDaVenda = lucroDaVenda;
+        this.dataDaVenda = dataDaVenda;
     }
 
     // --- MÉTODOS GETTERS ---
@@ -93,4 +136,20 @@ public class RegistroDeVenda implements Serializable {
     public double getQuantidadeVendida() {
         return quantidadeVendida;
     }
+
+    public String getNomeDoProduto() {
+        return nomeDoProduto;
+    }
+
+    public double getPrecoUnitarioNaVenda() {
+        return precoUnitarioNaVenda;
+    }
+
+    public double getCustoTotalDaVenda() {
+        return custoTotalDaVenda;
+    }
+
+    public LocalDate getDataDaVenda() {
+        return dataDaVenda;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package stokos.model;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Informa a data de hoje para as regras de negócio (validade dos lotes, data
+ * das vendas e dos avisos).
+ *
+ * CONCEITO DE DESIGN: DATA EM CACHE
+ * `LocalDate.now()` consulta o relógio do sistema e as regras do fuso horário
+ * a cada chamada; chamado uma vez por lote, em um estoque grande, o custo
+ * aparece. O relógio do negócio calcula a data uma única vez e a guarda junto
+ * com o instante em que o dia começa e o instante em que o próximo começa.
+ * Enquanto o relógio do sistema estiver dentro desse intervalo, a data em cache
+ * é devolvida sem cálculo algum; à meia-noite, a data é recalculada.
+ * A data também é oferecida como número de dias (`LocalDate.toEpochDay`), para
+ * que a validade de um lote seja comparada com um simples `long`.
+ *
+ * CONCEITO DE DESIGN: RELÓGIO SUBSTITUÍVEL
+ * Como o `AppContext`, o relógio tem uma instância única (`getInstance`), mas
+ * ela pode ser trocada (`setInstance`). Os testes fixam a data com
+ * `RelogioDoNegocio.fixo(...)` para verificar vencimentos sem esperar o tempo passar.
+ */
+public final class RelogioDoNegocio {
+
+    private static volatile RelogioDoNegocio instance = new RelogioDoNegocio(Clock.systemDefaultZone());
+
+    /**
+     * Um dia já calculado: a data e o intervalo de instantes (em milissegundos)
+     * em que ela vale. Imutável, para ser lido sem trava por várias threads.
+     */
+    private static final class Dia {
+        final LocalDate data;
+        final long diaDoCalendario;
+        final long inicioEmMilissegundos;
+        final long fimEmMilissegundos;
+
+        Dia(LocalDate data, long inicioEmMilissegundos, long fimEmMilissegundos) {
+            this.data = data;
+            this.diaDoCalendario = data.toEpochDay();
+            this.inicioEmMilissegundos = inicioEmMilissegundos;
+            this.fimEmMilissegundos = fimEmMilissegundos;
+        }
+    }
+
+    private final Clock relogio;
+    private volatile Dia diaAtual;
+
+    /**
+     * Construtor do RelogioDoNegocio.
+     * @param relogio O relógio de onde vêm o instante atual e o fuso horário.
+     */
+    public RelogioDoNegocio(Clock relogio) {
+        this.relogio = relogio;
+        this.diaAtual = calcularDia(relogio.millis());
+    }
+
+    /**
+     * Retorna um relógio parado na data informada (meio-dia, no fuso do sistema).
+     * Útil para testes.
+     */
+    public static RelogioDoNegocio fixo(LocalDate data) {
+        ZoneId fuso = ZoneId.systemDefault();
+        return new RelogioDoNegocio(Clock.fixed(data.atTime(12, 0).atZone(fuso).toInstant(), fuso));
+    }
+
+    /**
+     * Retorna o relógio usado pelo sistema.
+     */
+    public static RelogioDoNegocio getInstance() {
+        return instance;
+    }
+
+    /**
+     * Substitui o relógio usado pelo sistema (ex: por um relógio fixo, nos testes).
+     */
+    public static void setInstance(RelogioDoNegocio relogio) {
+        instance = relogio;
+    }
+
+    /**
+     * Retorna a data de hoje.
+     */
+    public LocalDate getHoje() {
+        return diaCorrente().data;
+    }
+
+    /**
+     * Retorna a data de hoje como número de dias desde 01/01/1970 (`LocalDate.toEpochDay`).
+     */
+    public long getDiaDeHoje() {
+        return diaCorrente().diaDoCalendario;
+    }
+
+    /**
+     * Retorna o dia em cache, recalculando-o se o relógio já saiu do seu intervalo
+     * (virada da meia-noite ou ajuste do relógio do sistema).
+     */
+    private Dia diaCorrente() {
+        Dia dia = diaAtual;
+        long agora = relogio.millis();
+        if (agora < dia.inicioEmMilissegundos || agora >= dia.fimEmMilissegundos) {
+            dia = calcularDia(agora);
+            diaAtual = dia;
+        }
+        return dia;
+    }
+
+    private Dia calcularDia(long agora) {
+        ZoneId fuso = relogio.getZone();
+        LocalDate data = Instant.ofEpochMilli(agora).atZone(fuso).toLocalDate();
+        // O início de cada dia vem das regras do fuso (que tratam o horário de verão).
+        ZonedDateTime inicio = data.atStartOfDay(fuso);
+        ZonedDateTime fim = data.plusDays(1).atStartOfDay(fuso);
+        return new Dia(data, inicio.toInstant().toEpochMilli(), fim.toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,112 @@
+package stokos.model;
+
+/**
+ * Reúne os totais acumulados das vendas de um produto: quantidade vendida,
+ * receita, custo e lucro. É mantida pelo `HistoricoDeVendas` a cada venda
+ * registrada, para que os relatórios não precisem percorrer o histórico inteiro.
+ *
+ * CONCEITOS DE POO APLICADOS:
+ * - Imutabilidade: Os atributos são `final`. Cada nova venda gera um novo objeto
+ * com os totais somados (ver `somar`), em vez de alterar o existente. Assim, quem
+ * consulta os totais enquanto outra venda é registrada sempre recebe os quatro
+ * valores coerentes entre si, sem precisar de trava alguma.
+ */
+public class TotaisDeVendas {
+
+    /** Totais de um produto que ainda não foi vendido. */
+    public static final TotaisDeVendas ZERO = new TotaisDeVendas(0, 0, 0, 0);
+
+    // A quantidade em milésimos e os valores em centavos (ver `PontoFixo`): as
+    // somas são exatas e não dependem da ordem em que as vendas são somadas.
+    private final long quantidadeEmMilesimos;
+    private final long receitaEmCentavos;
+    private final long custoEmCentavos;
+    private final long lucroEmCentavos;
+
+    /**
+     * Construtor do TotaisDeVendas.
+     *
+     * @param quantidadeEmMilesimos A quantidade total vendida, em milésimos.
+     * @param receitaEmCentavos O valor total recebido (preço unitário na venda × quantidade).
+     * @param custoEmCentavos O custo total dos itens retirados dos lotes.
+     * @param lucroEmCentavos O lucro total, como calculado por cada produto.
+     */
+    public TotaisDeVendas(long quantidadeEmMilesimos, long receitaEmCentavos, long custoEmCentavos, long lucroEmCentavos) {
+        this.quantidadeEmMilesimos = quantidadeEmMilesimos;
+        this.receitaEmCentavos = receitaEmCentavos;
+        this.custoEmCentavos = custoEmCentavos;
+        this.lucroEmCentavos = lucroEmCentavos;
+    }
+
+    /**
+     * Retorna os totais de uma única venda.
+     */
+    static TotaisDeVendas de(RegistroDeVenda registro) {
+        return de(PontoFixo.paraMilesimos(registro.getQuantidadeVendida()),
+                PontoFixo.paraCentavos(registro.getPrecoUnitarioNaVenda()),
+                PontoFixo.paraCentavos(registro.getCustoTotalDaVenda()),
+                PontoFixo.paraCentavos(registro.getLucroDaVenda()));
+    }
+
+    /**
+     * Retorna os totais de uma única venda, a partir dos seus valores em
+     * milésimos e centavos. A receita é arredondada para o centavo.
+     */
+    static TotaisDeVendas de(long quantidadeEmMilesimos, long precoEmCentavos, long custoEmCentavos, long lucroEmCentavos) {
+        return new TotaisDeVendas(quantidadeEmMilesimos, PontoFixo.valorDe(precoEmCentavos, quantidadeEmMilesimos),
+                custoEmCentavos, lucroEmCentavos);
+    }
+
+    /**
+     * Retorna novos totais, com os valores deste objeto somados aos de `outros`.
+     */
+    TotaisDeVendas somar(TotaisDeVendas outros) {
+        return new TotaisDeVendas(quantidadeEmMilesimos + outros.quantidadeEmMilesimos,
+                receitaEmCentavos + outros.receitaEmCentavos,
+                custoEmCentavos + outros.custoEmCentavos,
+                lucroEmCentavos + outros.lucroEmCentavos);
+    }
+
+    /**
+     * Compara com outros totais. Como as somas são exatas, os valores precisam
+     * ser idênticos, qualquer que seja a ordem em que as vendas foram somadas.
+     */
+    boolean confere(TotaisDeVendas outros) {
+        return quantidadeEmMilesimos == outros.quantidadeEmMilesimos
+                && receitaEmCentavos == outros.receitaEmCentavos
+                && custoEmCentavos == outros.custoEmCentavos
+                && lucroEmCentavos == outros.lucroEmCentavos;
+    }
+
+    public double getQuantidade() {
+        return PontoFixo.deMilesimos(quantidadeEmMilesimos);
+    }
+
+    public double getReceita() {
+        return PontoFixo.deCentavos(receitaEmCentavos);
+    }
+
+    public double getCusto() {
+        return PontoFixo.deCentavos(custoEmCentavos);
+    }
+
+    public double getLucro() {
+        return PontoFixo.deCentavos(lucroEmCentavos);
+    }
+
+    public long getQuantidadeEmMilesimos() {
+        return quantidadeEmMilesimos;
+    }
+
+    public long getReceitaEmCentavos() {
+        return receitaEmCentavos;
+    }
+
+    public long getCustoEmCentavos() {
+        return custoEmCentavos;
+    }
+
+    public long getLucroEmCentavos() {
+        return lucroEmCentavos;
+    }
+}
@@ -0,0 +1,113 @@
+package stokos.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Guarda os totais de vendas de um produto agrupados por dia, por semana e por
+ * mês. É mantida pelo `HistoricoDeVendas` a cada venda registrada e permite
+ * responder perguntas como "quanto o produto X vendeu na semana passada?" sem
+ * percorrer os registros de venda.
+ *
+ * CONCEITO DE DESIGN: PERÍODOS EM VÁRIAS ESCALAS
+ * Cada venda é somada a três totais: o do seu dia, o da sua semana (de segunda
+ * a domingo) e o do seu mês. Para somar um intervalo de datas, o intervalo é
+ * coberto pelos maiores períodos que cabem inteiros dentro dele: meses
+ * completos, depois semanas completas e, nas pontas, dias avulsos. Um
+ * intervalo de um ano, por exemplo, é respondido com cerca de 12 meses e
+ * alguns dias, em vez de centenas de milhares de registros.
+ *
+ * A classe é de uso interno do pacote `model`.
+ */
+class TotaisPorPeriodo {
+
+    // Chave: o dia (`LocalDate.toEpochDay`).
+    private final ConcurrentHashMap<Long, TotaisDeVendas> porDia = new ConcurrentHashMap<>();
+    // Chave: a segunda-feira que inicia a semana (`LocalDate.toEpochDay`).
+    private final ConcurrentHashMap<Long, TotaisDeVendas> porSemana = new ConcurrentHashMap<>();
+    // Chave: o mês, contado em meses desde o ano zero (ver `chaveDoMes`).
+    private final ConcurrentHashMap<Long, TotaisDeVendas> porMes = new ConcurrentHashMap<>();
+    // O primeiro e o último dia com vendas (`LocalDate.toEpochDay`). Limitam os
+    // intervalos consultados, que podem ser muito maiores que o histórico.
+    private volatile long primeiroDia = Long.MAX_VALUE;
+    private volatile long ultimoDia = Long.MIN_VALUE;
+
+    /**
+     * Soma os totais de uma venda aos períodos da data informada.
+     * Deve ser chamado por uma thread de cada vez (com a trava do histórico).
+     */
+    void acumular(LocalDate data, TotaisDeVendas totais) {
+        // Os limites são ampliados antes dos totais, para que uma consulta
+        // simultânea nunca deixe de fora um dia que já tem vendas.
+        long dia = data.toEpochDay();
+        if (dia < primeiroDia) {
+            primeiroDia = dia;
+        }
+        if (dia > ultimoDia) {
+            ultimoDia = dia;
+        }
+        porDia.merge(data.toEpochDay(), totais, TotaisDeVendas::somar);
+        porSemana.merge(inicioDaSemana(data).toEpochDay(), totais, TotaisDeVendas::somar);
+        porMes.merge(chaveDoMes(data), totais, TotaisDeVendas::somar);
+    }
+
+    /**
+     * Soma os totais das vendas entre as duas datas, inclusive. O intervalo é
+     * antes reduzido aos dias que têm vendas, de modo que um intervalo aberto
+     * (ex: `LocalDate.MIN` a `LocalDate.MAX`) custa o mesmo que o histórico inteiro.
+     *
+     * @param inicio A primeira data do intervalo.
+     * @param fim A última data do intervalo.
+     * @return Os totais do intervalo (`TotaisDeVendas.ZERO` se não houve vendas).
+     */
+    TotaisDeVendas somar(LocalDate inicio, LocalDate fim) {
+        TotaisDeVendas resultado = TotaisDeVendas.ZERO;
+        long primeiro = primeiroDia;
+        long ultimo = ultimoDia;
+        if (primeiro > ultimo) {
+            return resultado; // Nenhuma venda.
+        }
+        if (inicio.toEpochDay() < primeiro) {
+            inicio = LocalDate.ofEpochDay(primeiro);
+        }
+        if (fim.toEpochDay() > ultimo) {
+            fim = LocalDate.ofEpochDay(ultimo);
+        }
+        // Cada passo cobre os dias de `data` até o fim do período escolhido e
+        // avança para o dia seguinte a ele; assim, nenhum dia é contado duas vezes.
+        LocalDate data = inicio;
+        while (!data.isAfter(fim)) {
+            LocalDate fimDoMes = data.withDayOfMonth(data.lengthOfMonth());
+            LocalDate fimDoProximoMes = fimDoMes.plusMonths(1).withDayOfMonth(fimDoMes.plusMonths(1).lengthOfMonth());
+            // Uma semana só pode atravessar a virada do mês se o mês seguinte não
+            // couber inteiro no intervalo; do contrário, os passos seguintes se
+            // desalinhariam dos meses e o intervalo seria coberto só por semanas.
+            LocalDate limiteDaSemana = fimDoProximoMes.isAfter(fim) ? fim : fimDoMes;
+            if (data.getDayOfMonth() == 1 && !fimDoMes.isAfter(fim)) {
+                // O mês inteiro cabe no intervalo.
+                resultado = somarSeHouver(resultado, porMes.get(chaveDoMes(data)));
+                data = fimDoMes.plusDays(1);
+            } else if (data.equals(inicioDaSemana(data)) && !data.plusDays(6).isAfter(limiteDaSemana)) {
+                // A semana inteira cabe no intervalo.
+                resultado = somarSeHouver(resultado, porSemana.get(data.toEpochDay()));
+                data = data.plusDays(7);
+            } else {
+                resultado = somarSeHouver(resultado, porDia.get(data.toEpochDay()));
+                data = data.plusDays(1);
+            }
+        }
+        return resultado;
+    }
+
+    private static TotaisDeVendas somarSeHouver(TotaisDeVendas resultado, TotaisDeVendas periodo) {
+        return periodo != null ? resultado.somar(periodo) : resultado;
+    }
+
+    private static LocalDate inicioDaSemana(LocalDate data) {
+        return data.minusDays(data.getDayOfWeek().getValue() - 1);
+    }
+
+    private static long chaveDoMes(LocalDate data) {
+        return data.getYear() * 12L + data.getMonthValue() - 1;
+    }
+}
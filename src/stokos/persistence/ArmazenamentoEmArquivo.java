@@ -1,24 +1,126 @@
 package stokos.persistence;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import stokos.Config;
+import stokos.metricas.Contador;
+import stokos.metricas.HistogramaDeLatencias;
+import stokos.metricas.Metricas;
+import stokos.model.CatalogoDeProdutos;
 import stokos.model.DadosDoSistema;
+import stokos.model.Estoque;
+import stokos.model.HistoricoDeVendas;
+import stokos.model.RegistroDeVenda;
 import stokos.service.ServicoDeArmazenamento;
 
 /**
  * A classe `ArmazenamentoEmArquivo` é uma implementação concreta da interface
  * `ServicoDeArmazenamento`. Sua responsabilidade é salvar e carregar o objeto
- * `DadosDoSistema` utilizando a serialização de objetos Java em um arquivo binário.
+ * `DadosDoSistema` em um arquivo binário, no formato próprio definido pela classe
+ * `FormatoBinario`. Arquivos antigos, gravados com a serialização de objetos
+ * Java, continuam sendo lidos; eles passam para o novo formato no próximo salvamento.
  *
  * CONCEITO DE DESIGN: SEPARAÇÃO DE RESPONSABILIDADES
  * Esta classe lida exclusivamente com a lógica de I/O (Input/Output) de arquivos.
  * Ela não conhece as regras de negócio, apenas sabe como pegar um objeto de dados
  * e gravá-lo em disco, e vice-versa. Isso a torna uma classe coesa e desacoplada.
+ *
+ * Além do arquivo principal, a classe mantém um diário de operações
+ * (`DiarioDeOperacoes`, no arquivo `<caminho>.diario`), onde cada alteração é
+ * gravada assim que acontece. O arquivo principal continua sendo gravado
+ * inteiro apenas ao salvar; ao carregar, as operações do diário posteriores a
+ * ele são reaplicadas, de modo que nada se perde se o programa for encerrado
+ * sem salvar.
+ *
+ * CONCEITO DE DESIGN: COMPACTAÇÃO EM SEGUNDO PLANO
+ * Para que o diário não cresça indefinidamente (e o carregamento não fique cada
+ * vez mais lento), uma thread em segundo plano grava periodicamente uma nova
+ * fotografia. Ela não usa os objetos em memória, que estão sendo alterados pela
+ * interface gráfica: lê do disco o catálogo e o estoque da fotografia anterior,
+ * reaplica sobre eles o diário e grava o resultado, apenas acrescentando ao
+ * histórico as vendas do diário. Assim, a interface nunca espera por ela, e o
+ * custo da compactação acompanha o tamanho do diário, e não o do histórico.
+ *
+ * CONCEITO DE DESIGN: SALVAMENTO INCREMENTAL
+ * O histórico de vendas fica em um arquivo separado (`<caminho>.vendas`), ao
+ * qual cada salvamento apenas acrescenta as vendas novas; o arquivo principal
+ * (catálogo e lotes) só é regravado se o catálogo, o estoque ou o histórico
+ * mudaram desde o último salvamento. Assim, o custo de salvar acompanha o
+ * volume de alterações, e não o tamanho de todo o histórico.
+ * Catálogo e estoque continuam juntos em um único arquivo porque quase toda
+ * operação altera os dois ao mesmo tempo (uma venda muda os totais do produto e
+ * a quantidade dos lotes), e ambos crescem com o estoque atual, não com o tempo.
+ *
+ * Opcionalmente, os arquivos podem ser gravados comprimidos por um
+ * `CodecDeCompressao` (ex: `CodecDeflate`), informado no construtor. A compressão
+ * é feita em blocos, durante a própria gravação; arquivos gravados com ou sem
+ * compressão são sempre lidos, independentemente da configuração atual.
+ *
+ * O arquivo principal é sempre gravado primeiro em um arquivo temporário, que
+ * substitui o anterior de uma só vez (renomeação atômica). Uma queda durante a
+ * gravação, portanto, nunca deixa um arquivo principal pela metade. As vendas
+ * acrescentadas ao histórico só passam a valer quando o novo arquivo principal,
+ * que informa quantas vendas existem, substitui o anterior.
  */
 public class ArmazenamentoEmArquivo implements ServicoDeArmazenamento {
 
     // O caminho do arquivo é final, pois não deve ser alterado após a
     // criação do serviço de armazenamento.
     private final String caminhoDoArquivo;
+    // Diário das operações realizadas desde o último salvamento completo.
+    private final DiarioDeOperacoes diario;
+
+    // Arquivo do histórico de vendas, ao qual os salvamentos apenas acrescentam.
+    private final Path caminhoDoHistorico;
+    // Codec usado para comprimir os arquivos gravados, ou `null` para não comprimir.
+    private final CodecDeCompressao codec;
+
+    // Métricas dos salvamentos e carregamentos (ver `Metricas`), somadas de todas as instâncias.
+    private static final HistogramaDeLatencias LATENCIA_DOS_SALVAMENTOS = Metricas.getInstance().histograma("armazenamento.salvarDados");
+    private static final HistogramaDeLatencias LATENCIA_DOS_CARREGAMENTOS = Metricas.getInstance().histograma("armazenamento.carregarDados");
+    private static final Contador BYTES_GRAVADOS = Metricas.getInstance().contador("armazenamento.bytesGravados");
+    private static final Contador BYTES_CARREGADOS = Metricas.getInstance().contador("armazenamento.bytesCarregados");
+
+    // Garante que apenas um salvamento ou compactação grave o arquivo principal por vez.
+    private final Object travaDoArquivoPrincipal = new Object();
+
+    // O que está gravado em disco no momento (tabela de textos e vendas do histórico).
+    // Os campos abaixo são protegidos pela `travaDoArquivoPrincipal`.
+    private FormatoBinario.EstadoGravado estadoGravado = new FormatoBinario.EstadoGravado();
+    // Os históricos em memória cujas primeiras vendas são as do arquivo de histórico.
+    // Apenas a eles é possível acrescentar as vendas novas; qualquer outro (ex: um
+    // histórico novo, criado ao limpar os dados) faz o histórico ser regravado.
+    // As referências são fracas para não manter na memória dados já descartados.
+    private final Set<HistoricoDeVendas> historicosDoArquivo = Collections.newSetFromMap(new WeakHashMap<>());
+    // Catálogo e estoque refletidos no arquivo principal, com os seus contadores de
+    // alterações naquele momento. Usados para saber se ele precisa ser regravado.
+    private CatalogoDeProdutos catalogoGravado;
+    private long alteracoesDoCatalogoGravado;
+    private Estoque estoqueGravado;
+    private long alteracoesDoEstoqueGravado;
+    private long ultimaOperacaoGravada;
+    // Thread das compactações em segundo plano (criada apenas se forem iniciadas).
+    private volatile ScheduledExecutorService agendador;
+    // Evita acumular pedidos de compactação enquanto uma ainda não começou.
+    private final AtomicBoolean compactacaoPendente = new AtomicBoolean(false);
+    // Operações do diário que o último carregamento não conseguiu reaplicar.
+    private volatile int operacoesNaoReaplicadas;
 
     /**
      * Construtor da classe.
@@ -26,7 +128,20 @@ public class ArmazenamentoEmArquivo implements ServicoDeArmazenamento {
      * @param caminhoDoArquivo O caminho para o arquivo .stk.
      */
     public ArmazenamentoEmArquivo(String caminhoDoArquivo) {
+        this(caminhoDoArquivo, null);
+    }
+
+    /**
+     * Construtor da classe, com compressão dos arquivos gravados.
+     * @param caminhoDoArquivo O caminho para o arquivo .stk.
+     * @param codec O codec de compressão, ou `null` para gravar sem compressão.
+     */
+    public ArmazenamentoEmArquivo(String caminhoDoArquivo, CodecDeCompressao codec) {
         this.caminhoDoArquivo = caminhoDoArquivo;
+        this.codec = codec;
+        this.caminhoDoHistorico = Paths.get(caminhoDoArquivo + ".vendas");
+        this.diario = new DiarioDeOperacoes(caminhoDoArquivo + ".diario",
+                Config.SINCRONIZAR_DIARIO_A_CADA_OPERACAO);
     }
 
     /**
@@ -38,20 +153,292 @@ public class ArmazenamentoEmArquivo implements ServicoDeArmazenamento {
      */
     @Override
     public void salvarDados(DadosDoSistema dados) throws Exception {
+        long inicio = LATENCIA_DOS_SALVAMENTOS.iniciar();
+        // O diário fica bloqueado durante o salvamento para que nenhuma operação
+        // seja gravada nele entre a fotografia e o esvaziamento do diário.
+        // As vendas dos caixas também esperam: elas alteram o estoque antes de
+        // serem gravadas no diário, e a fotografia não pode conter uma venda que
+        // ainda vai aparecer no diário. O mesmo vale para os cadastros e as
+        // alterações de produtos. (O catálogo é sempre bloqueado antes do estoque,
+        // e o estoque antes do diário, na mesma ordem usada pelas operações.)
+        try {
+            synchronized (travaDoArquivoPrincipal) {
+                dados.catalogo.bloquearAlteracoes();
+                try {
+                    dados.estoque.bloquearAlteracoes();
+                    try {
+                        synchronized (diario) {
+                            dados.ultimaOperacaoAplicada = Math.max(dados.ultimaOperacaoAplicada, diario.getUltimaSequencia());
+                            gravarDados(dados);
+                            // Tudo o que estava no diário agora está no arquivo principal.
+                            diario.esvaziar();
+                        }
+                    } finally {
+                        dados.estoque.liberarAlteracoes();
+                    }
+                } finally {
+                    dados.catalogo.liberarAlteracoes();
+                }
+            }
+        } finally {
+            // Salvamentos que falham também entram na medição.
+            LATENCIA_DOS_SALVAMENTOS.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Grava os dados em disco: primeiro as vendas novas no histórico, depois,
+     * se algo mudou, o arquivo principal.
+     * O arquivo principal é gravado em um arquivo temporário, a gravação física
+     * no disco é forçada e só então ele é renomeado sobre o arquivo principal.
+     * Deve ser chamado com a `travaDoArquivoPrincipal`.
+     */
+    private void gravarDados(DadosDoSistema dados) throws Exception {
+        HistoricoDeVendas historico = dados.historicoDeVendas;
+        List<RegistroDeVenda> vendas = historico.getRegistros();
+        FormatoBinario.EstadoGravado anterior = estadoGravado;
+
+        // Só é possível acrescentar se as vendas já gravadas são o início deste
+        // histórico e se ele foi gravado com o mesmo codec.
+        boolean acrescentar = anterior.quantidadeDeVendas > 0
+                && anterior.codecDoHistorico == FormatoBinario.identificadorDoCodec(codec)
+                && historicosDoArquivo.contains(historico)
+                && vendas.size() >= anterior.quantidadeDeVendas;
+
+        FormatoBinario.EstadoGravado novo = new FormatoBinario.EstadoGravado();
+        novo.quantidadeDeVendas = vendas.size();
+        novo.codecDoHistorico = FormatoBinario.identificadorDoCodec(codec);
+        Path historicoTemporario = FormatoBinario.caminhoDoTemporario(caminhoDoHistorico);
+
         // BOA PRÁTICA: TRY-WITH-RESOURCES
-        // A estrutura `try-with-resources` garante que o `ObjectOutputStream`
-        // (e os streams que ele encapsula) seja fechado automaticamente no final,
-        // prevenindo vazamento de recursos (resource leaks).
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(this.caminhoDoArquivo))) {
-            // O método `writeObject` realiza a serialização: converte o objeto 'dados'
-            // e todos os objetos que ele contém em uma sequência de bytes e os
-            // escreve no arquivo.
-            oos.writeObject(dados);
+        // A estrutura `try-with-resources` garante que os canais dos arquivos sejam
+        // fechados automaticamente no final, prevenindo vazamento de recursos
+        // (resource leaks).
+        try {
+            if (acrescentar) {
+                // As posições dos textos já gravados não podem mudar.
+                novo.textos = anterior.textos.copia();
+                novo.identificadorDoHistorico = anterior.identificadorDoHistorico;
+                if (novo.quantidadeDeVendas > anterior.quantidadeDeVendas) {
+                    acrescentarAoHistorico(anterior.quantidadeDeVendas,
+                            vendas.subList(anterior.quantidadeDeVendas, vendas.size()), novo.textos);
+                }
+            } else {
+                // Histórico novo: gravado à parte, substitui o atual depois do arquivo principal.
+                novo.identificadorDoHistorico = novoIdentificador();
+                try (FileChannel canal = FileChannel.open(historicoTemporario, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    FormatoBinario.gravarHistorico(canal, novo.identificadorDoHistorico, vendas, novo.textos, codec);
+                    canal.force(true);
+                    BYTES_GRAVADOS.somar(canal.size());
+                }
+            }
+
+            boolean arquivoPrincipalMudou = !acrescentar
+                    || novo.quantidadeDeVendas != anterior.quantidadeDeVendas
+                    || dados.catalogo != catalogoGravado
+                    || dados.catalogo.getContadorDeAlteracoes() != alteracoesDoCatalogoGravado
+                    || dados.estoque != estoqueGravado
+                    || dados.estoque.getContadorDeAlteracoes() != alteracoesDoEstoqueGravado
+                    || dados.ultimaOperacaoAplicada != ultimaOperacaoGravada;
+            if (arquivoPrincipalMudou) {
+                gravarArquivoPrincipal(dados, novo);
+            } else {
+                novo.textos = anterior.textos;
+            }
+
+            if (!acrescentar) {
+                // Se o programa cair antes desta linha, a próxima leitura conclui a troca.
+                Files.move(historicoTemporario, caminhoDoHistorico,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
         } catch (IOException e) {
             // Captura uma exceção de I/O e a relança como uma exceção genérica
             // com uma mensagem mais clara para o contexto da aplicação.
             throw new Exception("Erro ao salvar os dados no arquivo: " + e.getMessage());
         }
+
+        if (!acrescentar) {
+            historicosDoArquivo.clear();
+        }
+        registrarEstadoGravado(dados, novo);
+    }
+
+    /**
+     * Acrescenta vendas novas ao final do arquivo de histórico, logo após as
+     * `vendasJaGravadas` primeiras. Os textos delas são acrescentados a `textos`.
+     */
+    private void acrescentarAoHistorico(int vendasJaGravadas, List<RegistroDeVenda> novasVendas,
+                                        FormatoBinario.TabelaDeTextos textos) throws IOException {
+        try (FileChannel canal = FileChannel.open(caminhoDoHistorico,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamanhoAnterior = canal.size();
+            FormatoBinario.acrescentarVendas(canal, vendasJaGravadas, novasVendas, textos, codec);
+            canal.force(false);
+            BYTES_GRAVADOS.somar(Math.max(0, canal.size() - tamanhoAnterior));
+        }
+    }
+
+    /**
+     * Grava o arquivo principal em um arquivo temporário, força a gravação
+     * física no disco e só então o renomeia sobre o arquivo principal.
+     */
+    private void gravarArquivoPrincipal(DadosDoSistema dados, FormatoBinario.EstadoGravado novo) throws IOException {
+        File temporario = new File(this.caminhoDoArquivo + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            FormatoBinario.gravarCadastro(dados, canal, novo.textos,
+                    novo.quantidadeDeVendas, novo.identificadorDoHistorico, codec);
+            canal.force(true);
+            BYTES_GRAVADOS.somar(canal.size());
+        }
+        Files.move(temporario.toPath(), Paths.get(this.caminhoDoArquivo),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Anota que os dados recebidos são exatamente o que está gravado em disco.
+     */
+    private void registrarEstadoGravado(DadosDoSistema dados, FormatoBinario.EstadoGravado estado) {
+        estadoGravado = estado;
+        historicosDoArquivo.add(dados.historicoDeVendas);
+        catalogoGravado = dados.catalogo;
+        alteracoesDoCatalogoGravado = dados.catalogo.getContadorDeAlteracoes();
+        estoqueGravado = dados.estoque;
+        alteracoesDoEstoqueGravado = dados.estoque.getContadorDeAlteracoes();
+        ultimaOperacaoGravada = dados.ultimaOperacaoAplicada;
+    }
+
+    /**
+     * Gera o identificador de um histórico novo (nunca zero).
+     */
+    private static long novoIdentificador() {
+        long identificador;
+        do {
+            identificador = ThreadLocalRandom.current().nextLong();
+        } while (identificador == 0);
+        return identificador;
+    }
+
+    /**
+     * Grava uma nova fotografia a partir do arquivo principal e do diário, e
+     * remove do diário as operações que passaram a fazer parte dela.
+     * Não lê nem bloqueia os dados em memória; as gravações no diário ficam
+     * bloqueadas apenas por instantes, no início e no final.
+     * O histórico gravado não é lido: só o catálogo e o estoque são montados,
+     * e as vendas do diário são acrescentadas ao final do arquivo de histórico.
+     *
+     * @throws Exception Se ocorrer um erro de leitura ou de gravação.
+     */
+    public void compactarDiario() throws Exception {
+        synchronized (travaDoArquivoPrincipal) {
+            // Ponto de corte: tudo o que estiver no diário até aqui entra na fotografia.
+            long ultimaSequencia;
+            long tamanhoDoDiario;
+            synchronized (diario) {
+                if (diario.isComFalha()) {
+                    // Falta alguma operação no diário: a fotografia montada a partir
+                    // dele ficaria incompleta. Só um salvamento completo resolve.
+                    throw new IOException("O diário de operações está com falha; a compactação aguarda um salvamento completo.");
+                }
+                ultimaSequencia = diario.getUltimaSequencia();
+                tamanhoDoDiario = diario.getTamanhoEmBytes();
+            }
+            if (tamanhoDoDiario == 0) {
+                return;
+            }
+
+            FormatoBinario.EstadoGravado anterior = estadoGravado;
+            if (anterior.quantidadeDeVendas == 0
+                    || anterior.codecDoHistorico != FormatoBinario.identificadorDoCodec(codec)) {
+                // Sem um histórico que possa ser continuado (nenhuma venda gravada, um
+                // histórico no formato antigo ou com outro codec): a fotografia é
+                // montada com os dados completos, como em um salvamento. Isso só
+                // acontece uma vez; as compactações seguintes apenas acrescentam.
+                List<HistoricoDeVendas> historicosEmMemoria = new ArrayList<>(historicosDoArquivo);
+                DadosDoSistema copia = lerArquivoPrincipal();
+                diario.reaplicarAte(copia, tamanhoDoDiario);
+                copia.ultimaOperacaoAplicada = Math.max(copia.ultimaOperacaoAplicada, ultimaSequencia);
+                gravarDados(copia);
+                // O histórico regravado tem as mesmas vendas, na mesma ordem (ver abaixo).
+                historicosDoArquivo.addAll(historicosEmMemoria);
+            } else {
+                // Catálogo e estoque vêm do disco, com um histórico vazio: ao reaplicar
+                // o diário, ele recebe exatamente as vendas que faltam no arquivo.
+                DadosDoSistema copia;
+                try (FileChannel canal = FileChannel.open(Paths.get(caminhoDoArquivo), StandardOpenOption.READ)) {
+                    copia = FormatoBinario.lerCadastro(canal, new FormatoBinario.EstadoGravado());
+                }
+                diario.reaplicarAte(copia, tamanhoDoDiario);
+                copia.ultimaOperacaoAplicada = Math.max(copia.ultimaOperacaoAplicada, ultimaSequencia);
+                List<RegistroDeVenda> vendasDoDiario = copia.historicoDeVendas.getRegistros();
+
+                // As posições dos textos já gravados não podem mudar.
+                FormatoBinario.EstadoGravado novo = new FormatoBinario.EstadoGravado();
+                novo.textos = anterior.textos.copia();
+                novo.quantidadeDeVendas = anterior.quantidadeDeVendas + vendasDoDiario.size();
+                novo.identificadorDoHistorico = anterior.identificadorDoHistorico;
+                novo.codecDoHistorico = anterior.codecDoHistorico;
+                if (!vendasDoDiario.isEmpty()) {
+                    acrescentarAoHistorico(anterior.quantidadeDeVendas, vendasDoDiario, novo.textos);
+                }
+                gravarArquivoPrincipal(copia, novo);
+                // Os dados em memória não mudaram: só o que está em disco.
+                estadoGravado = novo;
+                ultimaOperacaoGravada = copia.ultimaOperacaoAplicada;
+            }
+
+            // As vendas do diário foram gravadas na ordem do diário, que é a mesma do
+            // histórico em memória: cada venda entra nos dois ao mesmo tempo, sob a
+            // trava do histórico (ver `Estoque.registrarVenda`). Por isso o histórico
+            // em memória continua começando pelas vendas do arquivo, e o próximo
+            // salvamento só acrescenta as vendas feitas depois desta compactação.
+
+            // Se o programa cair antes desta linha, nada se perde: ao carregar, as
+            // operações já contidas na fotografia são ignoradas pelo número de sequência.
+            diario.descartarAte(ultimaSequencia);
+        }
+    }
+
+    /**
+     * Inicia as compactações periódicas em segundo plano. Uma compactação é
+     * feita a cada `intervaloEmSegundos` (se houver operações no diário) e também
+     * sempre que o diário atingir `tamanhoMaximoDoDiario` bytes.
+     *
+     * @param intervaloEmSegundos O intervalo entre as compactações periódicas.
+     * @param tamanhoMaximoDoDiario O tamanho do diário que antecipa uma compactação.
+     */
+    public synchronized void iniciarCompactacaoPeriodica(long intervaloEmSegundos, long tamanhoMaximoDoDiario) {
+        if (agendador != null) {
+            return;
+        }
+        // Thread 'daemon': não impede o encerramento do programa.
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "stokos-compactacao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::solicitarCompactacao,
+                intervaloEmSegundos, intervaloEmSegundos, TimeUnit.SECONDS);
+        diario.aoAtingirTamanhoMaximo(tamanhoMaximoDoDiario, this::solicitarCompactacao);
+    }
+
+    /**
+     * Agenda uma compactação na thread de segundo plano, sem esperar por ela.
+     */
+    private void solicitarCompactacao() {
+        ScheduledExecutorService agendadorAtual = agendador;
+        if (agendadorAtual == null || !compactacaoPendente.compareAndSet(false, true)) {
+            return; // Compactações não iniciadas, ou já há uma na fila.
+        }
+        agendadorAtual.execute(() -> {
+            compactacaoPendente.set(false);
+            try {
+                compactarDiario();
+            } catch (Exception e) {
+                System.err.println("Falha na compactação do diário de operações: " + e.getMessage());
+            }
+        });
     }
 
     /**
@@ -64,17 +451,87 @@ public class ArmazenamentoEmArquivo implements ServicoDeArmazenamento {
      */
     @Override
     public DadosDoSistema carregarDados() throws Exception {
+        long inicio = LATENCIA_DOS_CARREGAMENTOS.iniciar();
+        try {
+            DadosDoSistema dados;
+            synchronized (travaDoArquivoPrincipal) {
+                BYTES_CARREGADOS.somar(tamanhoDe(Paths.get(caminhoDoArquivo)) + tamanhoDe(caminhoDoHistorico)
+                        + tamanhoDe(Paths.get(caminhoDoArquivo + ".diario")));
+                dados = lerArquivoPrincipal();
+            }
+
+            // Reaplica as operações gravadas no diário depois do último salvamento e,
+            // a partir daí, passa a gravar nele cada nova operação.
+            operacoesNaoReaplicadas = diario.reaplicar(dados);
+            dados.setObservador(diario);
+            return dados;
+        } finally {
+            LATENCIA_DOS_CARREGAMENTOS.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Retorna quantas operações do diário o último `carregarDados` não conseguiu
+     * reaplicar. Se for mais que zero, os dados carregados estão incompletos em
+     * relação ao que foi feito na sessão anterior, e o usuário deve ser avisado.
+     */
+    public int getOperacoesNaoReaplicadas() {
+        return operacoesNaoReaplicadas;
+    }
+
+    /**
+     * Retorna o tamanho de um arquivo em bytes, ou 0 se ele não existir.
+     */
+    private static long tamanhoDe(Path arquivo) throws IOException {
+        return Files.exists(arquivo) ? Files.size(arquivo) : 0;
+    }
+
+    /**
+     * Lê o arquivo principal, ou cria dados vazios se ele ainda não existir.
+     * Deve ser chamado com a `travaDoArquivoPrincipal`.
+     */
+    private DadosDoSistema lerArquivoPrincipal() throws Exception {
         File arquivo = new File(caminhoDoArquivo);
+        // Sem um arquivo no formato binário, não há histórico de vendas gravado.
+        estadoGravado = new FormatoBinario.EstadoGravado();
 
         // Verifica se o arquivo de dados já existe no caminho especificado.
         if (arquivo.exists()) {
-            // Se o arquivo existe, prossegue com a leitura.
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(arquivo))) {
+            // Se o arquivo existe, a assinatura no início indica o formato.
+            try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer assinatura = ByteBuffer.allocate(4);
+                while (assinatura.hasRemaining() && canal.read(assinatura) >= 0) {
+                    // Lê até completar os 4 bytes ou chegar ao fim do arquivo.
+                }
+                assinatura.flip();
+                int tipo = assinatura.remaining() == 4 ? assinatura.getInt() : 0;
+                if (tipo == FormatoBinario.ASSINATURA || tipo == FormatoBinario.ASSINATURA_COMPRIMIDA) {
+                    FormatoBinario.EstadoGravado estado = new FormatoBinario.EstadoGravado();
+                    DadosDoSistema dados = lerFormatoBinario(canal, caminhoDoHistorico, estado);
+                    registrarEstadoGravado(dados, estado);
+                    return dados;
+                }
+            }
+
+            // Formato antigo: serialização de objetos Java.
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(arquivo)))) {
                 // O método `readObject` realiza a desserialização: lê a sequência de
                 // bytes do arquivo e a reconstrói como um objeto em memória.
                 // É necessário fazer um "cast" `(DadosDoSistema)` para que o tipo
                 // do objeto retornado seja o correto.
-                return (DadosDoSistema) ois.readObject();
+                DadosDoSistema dados = (DadosDoSistema) ois.readObject();
+                // Arquivos gravados por versões antigas podem não ter todos os
+                // componentes; eles precisam existir antes de reaplicar o diário.
+                if (dados.catalogo == null) {
+                    dados.catalogo = new CatalogoDeProdutos();
+                }
+                if (dados.historicoDeVendas == null) {
+                    dados.historicoDeVendas = new HistoricoDeVendas();
+                }
+                if (dados.estoque == null) {
+                    dados.estoque = new Estoque(dados.catalogo);
+                }
+                return dados;
             }
         } else {
             // Se o arquivo não for encontrado (ex: primeira vez que o programa é executado),
@@ -83,4 +540,40 @@ public class ArmazenamentoEmArquivo implements ServicoDeArmazenamento {
             return new DadosDoSistema();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Lê um arquivo principal no formato binário (ver `FormatoBinario`), junto
+     * com o seu histórico de vendas.
+     * É 'protected' para que subclasses possam mudar a forma de leitura, como
+     * faz o `ArmazenamentoMapeado`.
+     *
+     * @param canal O canal do arquivo principal, já aberto para leitura.
+     * @param caminhoDoHistorico O caminho do arquivo de histórico de vendas.
+     * @param estado Recebe o que foi lido dos arquivos, para os próximos salvamentos.
+     * @return Os dados lidos.
+     * @throws IOException Se ocorrer um erro de leitura ou o arquivo for inválido.
+     */
+    protected DadosDoSistema lerFormatoBinario(FileChannel canal, Path caminhoDoHistorico,
+                                               FormatoBinario.EstadoGravado estado) throws IOException {
+        canal.position(0);
+        return FormatoBinario.ler(canal, caminhoDoHistorico, estado);
+    }
+
+    /**
+     * Encerra as compactações em segundo plano e fecha o arquivo do diário de
+     * operações. As operações já gravadas nele continuam válidas e serão
+     * reaplicadas no próximo carregamento.
+     *
+     * @throws IOException Se ocorrer um erro ao fechar o arquivo.
+     */
+    public void fechar() throws IOException {
+        synchronized (this) {
+            if (agendador != null) {
+                agendador.shutdownNow();
+                agendador = null;
+            }
+        }
+        diario.aoAtingirTamanhoMaximo(0, null);
+        diario.fechar();
+    }
+}
@@ -0,0 +1,58 @@
+package stokos.persistence;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import stokos.model.DadosDoSistema;
+
+/**
+ * A classe `ArmazenamentoMapeado` é uma variação do `ArmazenamentoEmArquivo`
+ * para bases de dados grandes. Em vez de ler o arquivo principal inteiro ao
+ * iniciar, ela o mapeia em memória (`FileChannel.map`): o sistema operacional
+ * passa a trazer do disco apenas as partes do arquivo que forem realmente
+ * acessadas.
+ *
+ * CONCEITO DE DESIGN: LEITURA SOB DEMANDA
+ * O catálogo e os lotes em estoque são montados normalmente, pois a aplicação
+ * precisa deles logo ao iniciar (quantidades disponíveis, alertas) e eles
+ * crescem com o tamanho do estoque atual, não com o tempo de uso. Já o
+ * histórico de vendas, que cresce sem parar, não é lido: o arquivo de histórico
+ * também é mapeado, e cada venda é decodificada diretamente dele quando é consultada. Assim, o
+ * tempo de inicialização deixa de depender do tamanho do histórico.
+ *
+ * CONCEITO DE POO: HERANÇA E SOBRESCRITA
+ * Toda a lógica de gravação, diário de operações e compactação é herdada; esta
+ * classe apenas sobrescreve o método que lê o formato binário.
+ *
+ * Os arquivos mapeados continuam em uso enquanto o histórico existir. Por isso, esta
+ * classe só deve ser usada em sistemas que permitem substituir um arquivo
+ * mapeado (Linux, macOS); no Windows, use o `ArmazenamentoEmArquivo`.
+ */
+public class ArmazenamentoMapeado extends ArmazenamentoEmArquivo {
+
+    /**
+     * Construtor da classe.
+     * @param caminhoDoArquivo O caminho para o arquivo .stk.
+     */
+    public ArmazenamentoMapeado(String caminhoDoArquivo) {
+        super(caminhoDoArquivo);
+    }
+
+    /**
+     * Mapeia o arquivo principal e o histórico em memória e os lê sem decodificar
+     * as vendas. Um único mapeamento é limitado a 2 GB; arquivos maiores são lidos
+     * da forma tradicional, assim como os arquivos comprimidos.
+     */
+    @Override
+    protected DadosDoSistema lerFormatoBinario(FileChannel canal, Path caminhoDoHistorico,
+                                               FormatoBinario.EstadoGravado estado) throws IOException {
+        long tamanho = canal.size();
+        if (tamanho > Integer.MAX_VALUE || FormatoBinario.estaComprimido(canal)) {
+            return super.lerFormatoBinario(canal, caminhoDoHistorico, estado);
+        }
+        // O mapeamento continua válido depois que o canal é fechado.
+        MappedByteBuffer arquivoMapeado = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+        return FormatoBinario.lerMapeado(arquivoMapeado, caminhoDoHistorico, estado);
+    }
+}
@@ -0,0 +1,50 @@
+package stokos.persistence;
+
+import java.io.IOException;
+
+/**
+ * A interface `CodecDeCompressao` define um algoritmo de compressão que pode ser
+ * usado pelo `ArmazenamentoEmArquivo` para gravar os arquivos de dados comprimidos.
+ *
+ * CONCEITO DE DESIGN: PONTO DE EXTENSÃO (PADRÃO STRATEGY)
+ * Os arquivos são comprimidos em blocos independentes, e o armazenamento não
+ * sabe como cada bloco é comprimido: apenas entrega os bytes ao codec. Um novo
+ * algoritmo pode ser usado implementando esta interface e registrando-o em
+ * `CodecsDeCompressao`, sem nenhuma alteração no formato dos arquivos.
+ *
+ * O identificador do codec é gravado no arquivo, para que a leitura saiba qual
+ * codec usar mesmo que a configuração tenha mudado desde a gravação.
+ * As implementações devem poder ser usadas por várias threads ao mesmo tempo.
+ */
+public interface CodecDeCompressao {
+
+    /**
+     * Retorna o identificador do codec gravado nos arquivos.
+     * Deve ser único e maior que zero (zero indica um arquivo sem compressão).
+     * @return O identificador do codec.
+     */
+    byte getIdentificador();
+
+    /**
+     * Comprime um bloco de bytes.
+     *
+     * @param origem O vetor com os bytes a comprimir, a partir da posição 0.
+     * @param tamanho Quantos bytes de `origem` devem ser comprimidos.
+     * @return Os bytes comprimidos.
+     * @throws IOException Se ocorrer um erro na compressão.
+     */
+    byte[] comprimir(byte[] origem, int tamanho) throws IOException;
+
+    /**
+     * Descomprime um bloco comprimido por `comprimir`.
+     *
+     * @param origem O vetor com os bytes comprimidos, a partir da posição 0.
+     * @param tamanho Quantos bytes de `origem` devem ser descomprimidos.
+     * @param destino O vetor que recebe os bytes originais.
+     * @param inicio A posição de `destino` onde o primeiro byte deve ser escrito.
+     * @param tamanhoOriginal Quantos bytes o bloco tinha antes da compressão.
+     * @throws IOException Se o bloco estiver corrompido.
+     */
+    void descomprimir(byte[] origem, int tamanho, byte[] destino, int inicio, int tamanhoOriginal)
+            throws IOException;
+}
@@ -0,0 +1,92 @@
+package stokos.persistence;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A classe `CodecDeflate` comprime os blocos dos arquivos de dados com o
+ * algoritmo Deflate (o mesmo do formato ZIP), disponível no próprio JDK em
+ * `java.util.zip`.
+ *
+ * Os registros dos arquivos de dados são muito repetitivos (as mesmas posições
+ * de textos, datas próximas, valores parecidos), e por isso se comprimem bem.
+ *
+ * Cada bloco usa um `Deflater` (ou `Inflater`) próprio, liberado logo em seguida
+ * com `end()`, pois eles ocupam memória fora do heap do Java. Assim, a mesma
+ * instância pode ser usada por várias threads.
+ */
+public class CodecDeflate implements CodecDeCompressao {
+
+    /** Identificador gravado nos arquivos comprimidos com este codec. */
+    public static final byte IDENTIFICADOR = 1;
+
+    private final int nivel;
+
+    /**
+     * Cria o codec com o nível de compressão padrão do Deflate.
+     */
+    public CodecDeflate() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Cria o codec com um nível de compressão específico.
+     * @param nivel De `Deflater.BEST_SPEED` (1) a `Deflater.BEST_COMPRESSION` (9).
+     */
+    public CodecDeflate(int nivel) {
+        this.nivel = nivel;
+    }
+
+    @Override
+    public byte getIdentificador() {
+        return IDENTIFICADOR;
+    }
+
+    @Override
+    public byte[] comprimir(byte[] origem, int tamanho) throws IOException {
+        Deflater deflater = new Deflater(nivel);
+        try {
+            deflater.setInput(origem, 0, tamanho);
+            deflater.finish();
+            // Dados que não se comprimem podem crescer um pouco; o vetor cresce se preciso.
+            byte[] destino = new byte[Math.max(64, tamanho / 2)];
+            int escritos = 0;
+            while (!deflater.finished()) {
+                if (escritos == destino.length) {
+                    destino = Arrays.copyOf(destino, destino.length * 2);
+                }
+                escritos += deflater.deflate(destino, escritos, destino.length - escritos);
+            }
+            return Arrays.copyOf(destino, escritos);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void descomprimir(byte[] origem, int tamanho, byte[] destino, int inicio, int tamanhoOriginal)
+            throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(origem, 0, tamanho);
+            int lidos = 0;
+            while (lidos < tamanhoOriginal && !inflater.finished()) {
+                int n = inflater.inflate(destino, inicio + lidos, tamanhoOriginal - lidos);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                lidos += n;
+            }
+            if (lidos != tamanhoOriginal) {
+                throw new IOException("Bloco comprimido incompleto.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco comprimido corrompido: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
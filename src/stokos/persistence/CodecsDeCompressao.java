@@ -0,0 +1,42 @@
+package stokos.persistence;
+
+import java.util.HashMap;
+
+/**
+ * A classe `CodecsDeCompressao` mantém os codecs de compressão conhecidos, pelo
+ * seu identificador. É consultada ao ler um arquivo comprimido, para encontrar o
+ * codec que o gravou.
+ *
+ * O `CodecDeflate` já vem registrado. Outros codecs (ex: de uma biblioteca
+ * externa) devem ser registrados antes de carregar os dados.
+ */
+public final class CodecsDeCompressao {
+
+    private static final HashMap<Byte, CodecDeCompressao> codecs = new HashMap<>();
+
+    static {
+        registrar(new CodecDeflate());
+    }
+
+    private CodecsDeCompressao() {}
+
+    /**
+     * Registra um codec, substituindo o que tiver o mesmo identificador.
+     * @param codec O codec a registrar.
+     */
+    public static synchronized void registrar(CodecDeCompressao codec) {
+        if (codec.getIdentificador() <= 0) {
+            throw new IllegalArgumentException("O identificador do codec deve ser maior que zero.");
+        }
+        codecs.put(codec.getIdentificador(), codec);
+    }
+
+    /**
+     * Busca um codec pelo seu identificador.
+     * @param identificador O identificador gravado no arquivo.
+     * @return O codec, ou `null` se nenhum codec com esse identificador foi registrado.
+     */
+    public static synchronized CodecDeCompressao buscar(byte identificador) {
+        return codecs.get(identificador);
+    }
+}
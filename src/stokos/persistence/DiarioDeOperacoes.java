@@ -0,0 +1,610 @@
+package stokos.persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import stokos.metricas.Contador;
+import stokos.metricas.Metricas;
+import stokos.model.*;
+
+/**
+ * A classe `DiarioDeOperacoes` implementa um diário (journal) de escrita
+ * antecipada para os dados do sistema. Cada operação que altera os dados
+ * (cadastro, alteração e remoção de produtos, entrada de lotes, vendas,
+ * cestas de compras e descartes) é gravada no final de um arquivo, como um registro compacto,
+ * assim que é concluída.
+ *
+ * CONCEITO DE DESIGN: SNAPSHOT + DIÁRIO
+ * O arquivo principal (`.stk`) guarda uma "fotografia" completa dos dados, que
+ * é cara de gravar. O diário guarda apenas o que mudou desde essa fotografia,
+ * e gravar nele custa apenas o tamanho de uma operação. Ao iniciar, o sistema
+ * carrega a fotografia e reaplica as operações do diário por cima dela; assim,
+ * uma queda do programa não perde as vendas do dia.
+ *
+ * FORMATO DE CADA REGISTRO
+ * [tamanho do corpo (int)] [corpo] [CRC32 do corpo (int)]
+ * O corpo começa com o número de sequência (long) e o tipo da operação (byte),
+ * seguidos dos campos da operação. Quantidades e valores em dinheiro são
+ * gravados em milésimos e centavos (`long`, ver `PontoFixo`), o que é indicado
+ * pelo bit `EM_PONTO_FIXO` do tipo; os registros gravados antes, em `double`,
+ * não têm esse bit e continuam sendo lidos. O CRC permite detectar um registro gravado
+ * pela metade (por exemplo, em uma queda durante a escrita): a leitura para
+ * no primeiro registro inválido e o restante do arquivo é descartado.
+ *
+ * Esta classe implementa `ObservadorDeOperacoes`, sendo registrada como
+ * observadora do catálogo e do estoque após o carregamento dos dados.
+ */
+public class DiarioDeOperacoes implements ObservadorDeOperacoes {
+
+    // Tipos de operação gravados no diário.
+    private static final byte PRODUTO_CADASTRADO = 1;
+    private static final byte PRODUTO_ALTERADO = 2;
+    private static final byte PRODUTO_REMOVIDO = 3;
+    private static final byte LOTE_ADICIONADO = 4;
+    private static final byte VENDA_REGISTRADA = 5;
+    private static final byte DESCARTE_REGISTRADO = 6;
+    private static final byte CESTA_REGISTRADA = 7;
+    // Marca, no tipo da operação, os registros com quantidades e valores em ponto fixo.
+    private static final byte EM_PONTO_FIXO = 0x40;
+
+    // Tamanho máximo aceito para o corpo de um registro; valores maiores indicam arquivo corrompido.
+    private static final int TAMANHO_MAXIMO_DO_REGISTRO = 1 << 20;
+
+    private static final Contador FALHAS_DE_GRAVACAO = Metricas.getInstance().contador("diario.falhasDeGravacao");
+    private static final Contador FALHAS_DE_REAPLICACAO = Metricas.getInstance().contador("diario.falhasDeReaplicacao");
+
+    private final Path caminhoDoDiario;
+    private final boolean sincronizarACadaOperacao;
+
+    // Canal de escrita, aberto na primeira gravação e mantido aberto.
+    private FileChannel canal;
+    // Número de sequência da última operação gravada.
+    private long ultimaSequencia;
+    // Tamanho atual do arquivo, contando apenas registros válidos.
+    private long tamanhoEmBytes;
+    // Indica que o diário deixou de refletir os dados em memória: uma operação não
+    // pôde ser gravada ou uma operação gravada não pôde ser reaplicada (ver `isComFalha`).
+    private volatile boolean comFalha;
+
+    // Ação executada quando o diário atinge o tamanho máximo (ex: agendar uma compactação).
+    private Runnable aoAtingirTamanhoMaximo;
+    private long tamanhoMaximoEmBytes;
+
+    /**
+     * Construtor do diário.
+     *
+     * @param caminhoDoDiario O caminho do arquivo do diário.
+     * @param sincronizarACadaOperacao Se `true`, força a gravação física no disco
+     * (fsync) a cada operação; se `false`, a operação fica no cache do sistema
+     * operacional, o que sobrevive a uma queda do programa, mas não do computador.
+     */
+    public DiarioDeOperacoes(String caminhoDoDiario, boolean sincronizarACadaOperacao) {
+        this.caminhoDoDiario = Paths.get(caminhoDoDiario);
+        this.sincronizarACadaOperacao = sincronizarACadaOperacao;
+        this.ultimaSequencia = 0;
+    }
+
+    /**
+     * Retorna o número de sequência da última operação gravada ou reaplicada.
+     */
+    public synchronized long getUltimaSequencia() {
+        return ultimaSequencia;
+    }
+
+    /**
+     * Retorna o tamanho atual do diário, em bytes.
+     */
+    public synchronized long getTamanhoEmBytes() {
+        return tamanhoEmBytes;
+    }
+
+    /**
+     * Indica se o diário está com falha: alguma operação feita em memória não
+     * chegou ao arquivo, ou alguma operação do arquivo não pôde ser reaplicada.
+     * Nesse estado o diário não serve para reconstruir os dados (a compactação é
+     * recusada) até que um salvamento completo o esvazie (ver `esvaziar`).
+     */
+    public boolean isComFalha() {
+        return comFalha;
+    }
+
+    /**
+     * Define uma ação a ser executada sempre que uma gravação deixar o diário
+     * com `tamanhoMaximoEmBytes` ou mais. A ação é executada pela mesma thread
+     * que gravou a operação, por isso deve apenas agendar o trabalho pesado.
+     *
+     * @param tamanhoMaximoEmBytes O tamanho a partir do qual a ação é executada.
+     * @param acao A ação, ou `null` para não executar nada.
+     */
+    public synchronized void aoAtingirTamanhoMaximo(long tamanhoMaximoEmBytes, Runnable acao) {
+        this.tamanhoMaximoEmBytes = tamanhoMaximoEmBytes;
+        this.aoAtingirTamanhoMaximo = acao;
+    }
+
+    // --- REAPLICAÇÃO ---
+
+    /**
+     * Reaplica sobre os dados carregados todas as operações do diário que ainda
+     * não estão refletidas neles (número de sequência maior que
+     * `dados.ultimaOperacaoAplicada`). Se o final do arquivo estiver incompleto
+     * ou corrompido, ele é descartado. Uma operação que não puder ser reaplicada
+     * é ignorada para que as demais ainda sejam recuperadas, o diário fica marcado
+     * como com falha (ver `isComFalha`) e a quantidade dessas operações é
+     * retornada, para que quem carregou os dados avise o usuário.
+     * Deve ser chamado ANTES de o diário ser registrado como observador dos dados,
+     * para que as operações reaplicadas não sejam gravadas de novo.
+     *
+     * @param dados Os dados carregados da última fotografia.
+     * @return Quantas operações do diário não puderam ser reaplicadas (zero se todas foram).
+     * @throws IOException Se ocorrer um erro de leitura do diário.
+     */
+    public synchronized int reaplicar(DadosDoSistema dados) throws IOException {
+        this.ultimaSequencia = Math.max(this.ultimaSequencia, dados.ultimaOperacaoAplicada);
+        File arquivo = caminhoDoDiario.toFile();
+        if (!arquivo.exists()) {
+            return 0;
+        }
+
+        int[] naoReaplicadas = {0};
+        long posicaoValida = percorrer(Long.MAX_VALUE, (sequencia, registro, corpo) -> {
+            if (sequencia > dados.ultimaOperacaoAplicada) {
+                if (!aplicar(registro, dados)) {
+                    comFalha = true;
+                    naoReaplicadas[0]++;
+                }
+                dados.ultimaOperacaoAplicada = sequencia;
+            }
+            ultimaSequencia = Math.max(ultimaSequencia, sequencia);
+        });
+
+        // Descarta o trecho final inválido, para que as próximas gravações
+        // fiquem logo após o último registro válido.
+        if (posicaoValida < arquivo.length()) {
+            System.err.println("Diário de operações com final incompleto; descartando "
+                    + (arquivo.length() - posicaoValida) + " bytes.");
+            try (FileChannel ch = FileChannel.open(caminhoDoDiario, StandardOpenOption.WRITE)) {
+                ch.truncate(posicaoValida);
+            }
+        }
+        this.tamanhoEmBytes = posicaoValida;
+        return naoReaplicadas[0];
+    }
+
+    /**
+     * Reaplica sobre uma cópia dos dados (carregada do arquivo principal) as
+     * operações contidas nos primeiros `limiteDeBytes` bytes do diário.
+     * Usado pela compactação em segundo plano. Não bloqueia as gravações: o diário
+     * só cresce no final, então o trecho inicial pode ser lido enquanto novas
+     * operações são acrescentadas.
+     *
+     * @param dados A cópia dos dados sobre a qual as operações serão reaplicadas.
+     * @param limiteDeBytes O tamanho do diário no momento em que a compactação começou.
+     * @throws IOException Se ocorrer um erro de leitura do diário ou se alguma
+     * operação não puder ser reaplicada (a cópia ficaria incompleta).
+     */
+    void reaplicarAte(DadosDoSistema dados, long limiteDeBytes) throws IOException {
+        if (!caminhoDoDiario.toFile().exists()) {
+            return;
+        }
+        percorrer(limiteDeBytes, (sequencia, registro, corpo) -> {
+            if (sequencia > dados.ultimaOperacaoAplicada) {
+                if (!aplicar(registro, dados)) {
+                    throw new IOException("A operação " + sequencia + " do diário não pôde ser reaplicada.");
+                }
+                dados.ultimaOperacaoAplicada = sequencia;
+            }
+        });
+    }
+
+    /**
+     * Remove do diário as operações com número de sequência até `sequencia`,
+     * que já estão refletidas no arquivo principal. As operações posteriores
+     * (gravadas durante a compactação) são copiadas para um novo arquivo, que
+     * substitui o antigo de uma só vez.
+     * As gravações ficam bloqueadas apenas durante essa cópia, que é pequena.
+     *
+     * @param sequencia A última operação contida no arquivo principal.
+     * @throws IOException Se ocorrer um erro ao reescrever o diário.
+     */
+    synchronized void descartarAte(long sequencia) throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+        if (!caminhoDoDiario.toFile().exists()) {
+            return;
+        }
+        Path temporario = Paths.get(caminhoDoDiario + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporario.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            percorrer(Long.MAX_VALUE, (seq, registro, corpo) -> {
+                if (seq > sequencia) {
+                    escreverRegistro(out, corpo);
+                }
+            });
+            out.flush();
+            fos.getChannel().force(true);
+        }
+        Files.move(temporario, caminhoDoDiario, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.tamanhoEmBytes = Files.size(caminhoDoDiario);
+    }
+
+    /**
+     * Interface funcional que recebe cada registro válido lido do diário.
+     */
+    private interface ConsumidorDeRegistros {
+        void aceitar(long sequencia, DataInputStream registro, byte[] corpo) throws IOException;
+    }
+
+    /**
+     * Percorre os registros do diário, do início até o primeiro registro
+     * incompleto ou corrompido, ou até `limiteDeBytes`.
+     *
+     * @return A posição do arquivo logo após o último registro válido.
+     */
+    private long percorrer(long limiteDeBytes, ConsumidorDeRegistros consumidor) throws IOException {
+        long posicaoValida = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(caminhoDoDiario.toFile())))) {
+            CRC32 crc = new CRC32();
+            while (posicaoValida < limiteDeBytes) {
+                byte[] corpo;
+                try {
+                    int tamanho = in.readInt();
+                    if (tamanho <= 0 || tamanho > TAMANHO_MAXIMO_DO_REGISTRO) {
+                        break;
+                    }
+                    corpo = new byte[tamanho];
+                    in.readFully(corpo);
+                    int crcGravado = in.readInt();
+                    crc.reset();
+                    crc.update(corpo, 0, corpo.length);
+                    if ((int) crc.getValue() != crcGravado) {
+                        break;
+                    }
+                    posicaoValida += 4 + tamanho + 4;
+                } catch (EOFException e) {
+                    break; // Fim do arquivo (ou registro gravado pela metade).
+                }
+
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(corpo));
+                consumidor.aceitar(registro.readLong(), registro, corpo);
+            }
+        }
+        return posicaoValida;
+    }
+
+    /**
+     * Aplica uma única operação lida do diário sobre os dados.
+     * Usa as mesmas operações do modelo que a aplicação usa, de modo que as regras
+     * de negócio (FEFO/FIFO, custos, lucro) produzam exatamente o mesmo resultado.
+     *
+     * @return `false` se a operação foi lida, mas não pôde ser aplicada.
+     * @throws IOException Se o registro não puder ser lido.
+     */
+    private boolean aplicar(DataInputStream in, DadosDoSistema dados) throws IOException {
+        byte tipo = in.readByte();
+        boolean emPontoFixo = (tipo & EM_PONTO_FIXO) != 0;
+        tipo &= ~EM_PONTO_FIXO;
+        try {
+            switch (tipo) {
+                case PRODUTO_CADASTRADO: {
+                    Produto produto = lerProduto(in, emPontoFixo);
+                    dados.catalogo.cadastrarProduto(produto);
+                    Produto.setContadorProdutos(produto.getId());
+                    break;
+                }
+                case PRODUTO_ALTERADO: {
+                    int id = in.readInt();
+                    Produto produto = dados.catalogo.buscarProduto(id);
+                    if (produto == null) {
+                        throw new IllegalStateException("Produto de ID " + id + " não encontrado.");
+                    }
+                    lerAlteracao(in, produto, emPontoFixo);
+                    break;
+                }
+                case PRODUTO_REMOVIDO:
+                    dados.catalogo.removerProduto(in.readUTF(), dados.estoque);
+                    break;
+                case LOTE_ADICIONADO: {
+                    int id = in.readInt();
+                    String codigo = in.readUTF();
+                    boolean perecivel = in.readBoolean();
+                    long diaDeValidade = in.readLong();
+                    double quantidade = lerQuantidade(in, emPontoFixo);
+                    String fornecedor = lerTextoOpcional(in);
+                    double custo = lerValor(in, emPontoFixo);
+                    Produto produto = dados.catalogo.buscarProduto(codigo);
+                    if (produto == null) {
+                        throw new IllegalStateException("Produto não cadastrado: " + codigo);
+                    }
+                    Lote lote = perecivel
+                            ? new LotePerecivel(id, produto, quantidade, LocalDate.ofEpochDay(diaDeValidade))
+                            : new LoteNaoPerecivel(id, produto, quantidade);
+                    lote.setFornecedor(fornecedor);
+                    lote.setCustoDoLote(custo);
+                    dados.estoque.adicionarLote(lote);
+                    Lote.setContadorLotes(id);
+                    break;
+                }
+                case VENDA_REGISTRADA: {
+                    String codigo = in.readUTF();
+                    double quantidade = lerQuantidade(in, emPontoFixo);
+                    LocalDate data = LocalDate.ofEpochDay(in.readLong());
+                    dados.estoque.registrarVenda(codigo, quantidade, dados.historicoDeVendas, data);
+                    break;
+                }
+                case CESTA_REGISTRADA: {
+                    int quantidadeDeItens = in.readInt();
+                    List<ItemVenda> itens = new ArrayList<>(quantidadeDeItens);
+                    for (int i = 0; i < quantidadeDeItens; i++) {
+                        itens.add(new ItemVenda(in.readUTF(), lerQuantidade(in, emPontoFixo)));
+                    }
+                    LocalDate data = LocalDate.ofEpochDay(in.readLong());
+                    dados.estoque.registrarVendas(itens, dados.historicoDeVendas, data);
+                    break;
+                }
+                case DESCARTE_REGISTRADO: {
+                    String codigo = in.readUTF();
+                    double quantidade = lerQuantidade(in, emPontoFixo);
+                    dados.estoque.registrarDescarte(codigo, quantidade);
+                    break;
+                }
+                default:
+                    throw new IOException("Tipo de operação desconhecido no diário: " + tipo);
+            }
+            return true;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // As operações só são gravadas depois de concluídas com sucesso, então
+            // uma falha aqui indica que a fotografia e o diário não combinam.
+            // Quem chamou decide se ignora a operação ou desiste da reaplicação.
+            FALHAS_DE_REAPLICACAO.incrementar();
+            System.err.println("Falha ao reaplicar operação do diário (tipo " + tipo + "): " + e.getMessage());
+            return false;
+        }
+    }
+
+    // --- GRAVAÇÃO (ObservadorDeOperacoes) ---
+
+    @Override
+    public void produtoCadastrado(Produto produto) {
+        gravar(PRODUTO_CADASTRADO, out -> escreverProduto(out, produto));
+    }
+
+    @Override
+    public void produtoAlterado(Produto produto) {
+        gravar(PRODUTO_ALTERADO, out -> {
+            out.writeInt(produto.getId());
+            escreverAlteracao(out, produto);
+        });
+    }
+
+    @Override
+    public void produtoRemovido(String codigoDeBarras) {
+        gravar(PRODUTO_REMOVIDO, out -> out.writeUTF(codigoDeBarras));
+    }
+
+    @Override
+    public void loteAdicionado(Lote lote) {
+        gravar(LOTE_ADICIONADO, out -> {
+            out.writeInt(lote.getId());
+            out.writeUTF(lote.getProduto().getCodigoDeBarras());
+            boolean perecivel = lote instanceof LotePerecivel;
+            out.writeBoolean(perecivel);
+            out.writeLong(perecivel ? ((LotePerecivel) lote).getDataDeValidade().toEpochDay() : 0);
+            out.writeLong(lote.getQuantidadeInicialEmMilesimos());
+            escreverTextoOpcional(out, lote.getFornecedor());
+            out.writeLong(lote.getCustoDoLoteEmCentavos());
+        });
+    }
+
+    @Override
+    public void vendaRegistrada(String codigoDeBarras, double quantidade, LocalDate dataDaVenda) {
+        gravar(VENDA_REGISTRADA, out -> {
+            out.writeUTF(codigoDeBarras);
+            out.writeLong(PontoFixo.paraMilesimos(quantidade));
+            out.writeLong(dataDaVenda.toEpochDay());
+        });
+    }
+
+    @Override
+    public void cestaRegistrada(List<ItemVenda> itens, LocalDate dataDaVenda) {
+        gravar(CESTA_REGISTRADA, out -> {
+            out.writeInt(itens.size());
+            for (ItemVenda item : itens) {
+                out.writeUTF(item.getCodigoDeBarras());
+                out.writeLong(PontoFixo.paraMilesimos(item.getQuantidade()));
+            }
+            out.writeLong(dataDaVenda.toEpochDay());
+        });
+    }
+
+    @Override
+    public void descarteRegistrado(String codigoDeBarras, double quantidade) {
+        gravar(DESCARTE_REGISTRADO, out -> {
+            out.writeUTF(codigoDeBarras);
+            out.writeLong(PontoFixo.paraMilesimos(quantidade));
+        });
+    }
+
+    /**
+     * Interface funcional para escrever os campos de uma operação.
+     */
+    private interface EscritorDeCampos {
+        void escrever(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Monta um registro completo (tamanho, corpo e CRC) e o acrescenta ao final do arquivo.
+     * Uma falha de gravação não interrompe a operação já realizada em memória:
+     * ela é contada nas métricas, informada no console e deixa o diário marcado
+     * como com falha até o próximo salvamento completo (ver `isComFalha`).
+     */
+    private synchronized void gravar(byte tipo, EscritorDeCampos campos) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream corpo = new DataOutputStream(bytes);
+            corpo.writeLong(ultimaSequencia + 1);
+            corpo.writeByte(tipo | EM_PONTO_FIXO);
+            campos.escrever(corpo);
+            corpo.flush();
+            byte[] dadosDoCorpo = bytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(dadosDoCorpo, 0, dadosDoCorpo.length);
+            ByteBuffer registro = ByteBuffer.allocate(4 + dadosDoCorpo.length + 4);
+            registro.putInt(dadosDoCorpo.length).put(dadosDoCorpo).putInt((int) crc.getValue());
+            registro.flip();
+
+            if (canal == null) {
+                canal = FileChannel.open(caminhoDoDiario, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (registro.hasRemaining()) {
+                canal.write(registro);
+            }
+            if (sincronizarACadaOperacao) {
+                canal.force(false);
+            }
+            tamanhoEmBytes += registro.limit();
+            ultimaSequencia++;
+            if (aoAtingirTamanhoMaximo != null && tamanhoEmBytes >= tamanhoMaximoEmBytes) {
+                aoAtingirTamanhoMaximo.run();
+            }
+        } catch (IOException e) {
+            comFalha = true;
+            FALHAS_DE_GRAVACAO.incrementar();
+            System.err.println("Falha ao gravar operação no diário: " + e.getMessage());
+        }
+    }
+
+    // --- MANUTENÇÃO ---
+
+    /**
+     * Esvazia o diário. Deve ser chamado logo após uma fotografia completa dos
+     * dados ter sido salva com sucesso, pois a partir daí as operações gravadas
+     * já estão refletidas nela. O número de sequência continua de onde parou.
+     * Como a fotografia contém tudo o que está em memória, uma falha anterior do
+     * diário deixa de importar e a marcação de falha é retirada.
+     *
+     * @throws IOException Se ocorrer um erro ao truncar o arquivo.
+     */
+    public synchronized void esvaziar() throws IOException {
+        if (canal != null) {
+            canal.truncate(0);
+            canal.force(true);
+        } else if (caminhoDoDiario.toFile().exists()) {
+            try (FileChannel ch = FileChannel.open(caminhoDoDiario, StandardOpenOption.WRITE)) {
+                ch.truncate(0);
+            }
+        }
+        tamanhoEmBytes = 0;
+        comFalha = false;
+    }
+
+    /**
+     * Fecha o arquivo do diário, se estiver aberto.
+     *
+     * @throws IOException Se ocorrer um erro ao fechar o arquivo.
+     */
+    public synchronized void fechar() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    /**
+     * Escreve um registro completo (tamanho, corpo e CRC) a partir do corpo já montado.
+     */
+    private static void escreverRegistro(DataOutputStream out, byte[] corpo) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(corpo, 0, corpo.length);
+        out.writeInt(corpo.length);
+        out.write(corpo);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // --- CODIFICAÇÃO DE PRODUTOS ---
+
+    private static void escreverProduto(DataOutputStream out, Produto produto) throws IOException {
+        out.writeInt(produto.getId());
+        out.writeBoolean(produto instanceof ProdutoComImposto);
+        out.writeUTF(produto.getGrandeza().name());
+        escreverAlteracao(out, produto);
+    }
+
+    private static Produto lerProduto(DataInputStream in, boolean emPontoFixo) throws IOException {
+        int id = in.readInt();
+        boolean comImposto = in.readBoolean();
+        Grandeza grandeza = Grandeza.valueOf(in.readUTF());
+        // Cria o produto com valores provisórios; os atributos são preenchidos a seguir.
+        Produto produto = comImposto
+                ? new ProdutoComImposto(id, "", "", 0, grandeza, 0)
+                : new ProdutoComum(id, "", "", 0, grandeza);
+        lerAlteracao(in, produto, emPontoFixo);
+        return produto;
+    }
+
+    /**
+     * Escreve os atributos editáveis de um produto.
+     */
+    private static void escreverAlteracao(DataOutputStream out, Produto produto) throws IOException {
+        out.writeUTF(produto.getCodigoDeBarras());
+        out.writeUTF(produto.getNomeDoProduto());
+        escreverTextoOpcional(out, produto.getCategoria());
+        out.writeLong(produto.getPrecoUnitarioEmCentavos());
+        out.writeLong(produto.getEstoqueMinimoEmMilesimos());
+        out.writeDouble(produto instanceof ProdutoComImposto ? ((ProdutoComImposto) produto).getPercentualIcms() : 0);
+    }
+
+    /**
+     * Lê os atributos editáveis de um produto e os aplica por meio dos setters.
+     */
+    private static void lerAlteracao(DataInputStream in, Produto produto, boolean emPontoFixo) throws IOException {
+        produto.setCodigoDeBarras(in.readUTF());
+        produto.setNomeDoProduto(in.readUTF());
+        produto.setCategoria(lerTextoOpcional(in));
+        produto.setPrecoUnitario(lerValor(in, emPontoFixo));
+        produto.setEstoqueMinimo(lerQuantidade(in, emPontoFixo));
+        double percentualIcms = in.readDouble();
+        if (produto instanceof ProdutoComImposto) {
+            ((ProdutoComImposto) produto).setPercentualIcms(percentualIcms);
+        }
+    }
+
+    /**
+     * Lê uma quantidade, gravada em milésimos ou, nos registros antigos, em `double`.
+     */
+    private static double lerQuantidade(DataInputStream in, boolean emPontoFixo) throws IOException {
+        return emPontoFixo ? PontoFixo.deMilesimos(in.readLong()) : in.readDouble();
+    }
+
+    /**
+     * Lê um valor em dinheiro, gravado em centavos ou, nos registros antigos, em `double`.
+     */
+    private static double lerValor(DataInputStream in, boolean emPontoFixo) throws IOException {
+        return emPontoFixo ? PontoFixo.deCentavos(in.readLong()) : in.readDouble();
+    }
+
+    private static void escreverTextoOpcional(DataOutputStream out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String lerTextoOpcional(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
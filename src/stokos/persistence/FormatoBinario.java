@@ -0,0 +1,991 @@
+package stokos.persistence;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import stokos.exception.ProdutoJaCadastradoException;
+import stokos.exception.ProdutoNaoCadastradoException;
+import stokos.model.*;
+
+/**
+ * A classe `FormatoBinario` grava e lê os arquivos de dados em um formato
+ * binário próprio, compacto e versionado, em substituição à serialização de
+ * objetos Java.
+ *
+ * CONCEITO DE DESIGN: REGISTROS DE TAMANHO FIXO
+ * A serialização Java grava, junto com os dados, a descrição das classes e um
+ * cabeçalho para cada objeto, e usa reflexão para ler e escrever cada atributo.
+ * Aqui, cada produto, lote e venda é gravado como uma sequência fixa de números,
+ * sempre com o mesmo tamanho, e os textos (códigos, nomes, categorias,
+ * fornecedores) ficam uma única vez em uma tabela no início do arquivo; os
+ * registros guardam apenas a posição do texto nessa tabela. Os lotes, por sua
+ * vez, apontam para o produto pela sua posição na seção de produtos.
+ *
+ * CONCEITO DE DESIGN: SEÇÕES E HISTÓRICO SOMENTE DE ACRÉSCIMO
+ * Os dados ficam em dois arquivos:
+ * - O arquivo principal (cadastro): catálogo, lotes em estoque e tabela de textos.
+ * Seu tamanho acompanha o estoque atual, e ele é regravado por inteiro quando muda.
+ * - O histórico de vendas (`<arquivo>.vendas`): as vendas nunca mudam depois de
+ * registradas, então cada salvamento apenas acrescenta ao final as vendas novas.
+ * O arquivo principal informa quantas vendas do histórico fazem parte dos dados;
+ * registros além dessa quantidade (de um salvamento interrompido) são ignorados.
+ * Quando o histórico precisa ser regravado desde o início (ex: na conversão de
+ * um arquivo antigo), ele é gravado em `<arquivo>.vendas.tmp` com um novo
+ * identificador, que também vai no arquivo principal. Se o programa cair entre a
+ * troca do arquivo principal e a do histórico, a leitura percebe a diferença de
+ * identificador e conclui a troca.
+ * Para que as vendas já gravadas continuem válidas, a tabela de textos nunca
+ * muda a posição de um texto: textos novos são sempre acrescentados no final.
+ *
+ * ESTRUTURA DO ARQUIVO PRINCIPAL
+ * - Cabeçalho: assinatura "STKB", versão, tamanho de cada tipo de registro,
+ * número da última operação do diário aplicada, quantidade de cada seção e
+ * identificador do histórico.
+ * - Tabela de textos: [tamanho em bytes (int)] [texto em UTF-8] para cada texto.
+ * - Produtos e lotes: registros de tamanho fixo. (Na versão 1, as vendas
+ * também ficavam aqui; esses arquivos continuam sendo lidos.)
+ * Desde a versão 3 (do arquivo principal e do histórico), quantidades e valores
+ * em dinheiro são gravados como o modelo os guarda: milésimos e centavos em
+ * `long` (ver `PontoFixo`). Até a versão 2 eram `double`, do mesmo tamanho;
+ * esses arquivos continuam sendo lidos, e o histórico antigo é regravado por
+ * inteiro no salvamento seguinte. O percentual de ICMS, que não é quantidade
+ * nem dinheiro, continua em `double`.
+ * Como o cabeçalho informa o tamanho de cada registro, uma versão futura pode
+ * acrescentar campos no final deles sem impedir a leitura pelas versões atuais.
+ *
+ * ESTRUTURA DO HISTÓRICO
+ * - Cabeçalho: assinatura "STKV", versão, tamanho do registro de venda,
+ * identificador e codec de compressão (zero se não houver compressão).
+ * - Vendas: registros de tamanho fixo, em ordem cronológica.
+ *
+ * CONCEITO DE DESIGN: COMPRESSÃO EM BLOCOS
+ * Opcionalmente, os dois arquivos podem ser gravados comprimidos por um
+ * `CodecDeCompressao`. Os bytes (exceto os cabeçalhos do histórico e um pequeno
+ * prefixo "STKZ" no arquivo principal, que identifica o codec) passam pelo
+ * buffer de gravação como sempre; cada vez que o buffer é descarregado, o seu
+ * conteúdo é comprimido como um bloco independente:
+ * [tamanho original (int)] [tamanho comprimido (int)] [bytes comprimidos].
+ * Assim, nem a gravação nem a leitura precisam manter o arquivo inteiro na
+ * memória, e novas vendas podem ser acrescentadas ao histórico em novos blocos.
+ * Um arquivo comprimido não pode ser mapeado em memória; ele é sempre lido da
+ * forma tradicional.
+ *
+ * A classe é de uso interno da camada de persistência.
+ */
+final class FormatoBinario {
+
+    // "STKB" em ASCII. Os arquivos da serialização Java começam com 0xACED.
+    static final int ASSINATURA = 0x53544B42;
+    // "STKZ" em ASCII: arquivo principal comprimido.
+    static final int ASSINATURA_COMPRIMIDA = 0x53544B5A;
+    // "STKV" em ASCII.
+    private static final int ASSINATURA_DO_HISTORICO = 0x53544B56;
+    // Versão 1: vendas no arquivo principal. Versão 2: vendas no histórico separado.
+    // Versão 3: quantidades e valores em ponto fixo.
+    private static final short VERSAO = 3;
+    private static final short VERSAO_COM_VENDAS_NO_ARQUIVO_PRINCIPAL = 1;
+    private static final short VERSAO_EM_PONTO_FIXO = 3;
+    // Versão 1 do histórico: sem compressão. Versão 2: com o identificador do codec.
+    // Versão 3: quantidades e valores em ponto fixo.
+    private static final short VERSAO_DO_HISTORICO = 3;
+    private static final short VERSAO_DO_HISTORICO_SEM_CODEC = 1;
+    private static final short VERSAO_DO_HISTORICO_EM_PONTO_FIXO = 3;
+    private static final short VERSAO_DA_COMPRESSAO = 1;
+
+    // Tamanho, em bytes, de cada tipo de registro nesta versão.
+    private static final short TAMANHO_DO_PRODUTO = 4 + 1 + 4 + 4 + 4 + 4 + 8 * 5;
+    private static final short TAMANHO_DO_LOTE = 4 + 4 + 1 + 4 + 8 + 8 + 4 + 8;
+    private static final short TAMANHO_DA_VENDA = 4 + 4 + 8 * 4 + 4;
+
+    private static final int TAMANHO_DO_CABECALHO_V1 = 4 + 2 * 4 + 8 + 4 * 4;
+    private static final int TAMANHO_DO_CABECALHO = TAMANHO_DO_CABECALHO_V1 + 8;
+    private static final int TAMANHO_DO_CABECALHO_DO_HISTORICO_V1 = 4 + 2 + 2 + 8;
+    private static final int TAMANHO_DO_CABECALHO_DO_HISTORICO = TAMANHO_DO_CABECALHO_DO_HISTORICO_V1 + 4;
+    private static final int TAMANHO_DO_PREFIXO_COMPRIMIDO = 4 + 2 + 1 + 1;
+    private static final int TAMANHO_DO_CABECALHO_DO_BLOCO = 4 + 4;
+
+    // Posição usada no lugar de um texto nulo.
+    private static final int SEM_TEXTO = -1;
+
+    private static final byte PRODUTO_COMUM = 0;
+    private static final byte PRODUTO_COM_IMPOSTO = 1;
+
+    // Identificador de codec usado nos arquivos sem compressão.
+    private static final byte SEM_COMPRESSAO = 0;
+
+    private static final int TAMANHO_DO_BUFFER = 1 << 20;
+
+    private FormatoBinario() {}
+
+    /**
+     * O que está gravado em disco no momento: a tabela de textos do arquivo
+     * principal e quantas vendas do histórico fazem parte dos dados. É
+     * atualizado a cada leitura e a cada gravação bem-sucedida, e usado para
+     * decidir o que a próxima gravação precisa acrescentar.
+     */
+    static final class EstadoGravado {
+        TabelaDeTextos textos = new TabelaDeTextos();
+        int quantidadeDeVendas = 0;
+        // Zero quando não há um histórico separado (arquivo inexistente ou na versão 1).
+        long identificadorDoHistorico = 0;
+        byte codecDoHistorico = SEM_COMPRESSAO;
+    }
+
+    /**
+     * Retorna o identificador gravado nos arquivos para o codec (zero se for `null`).
+     */
+    static byte identificadorDoCodec(CodecDeCompressao codec) {
+        return codec == null ? SEM_COMPRESSAO : codec.getIdentificador();
+    }
+
+    // --- GRAVAÇÃO ---
+
+    /**
+     * Grava um histórico novo, com todas as vendas, no canal (vazio) recebido.
+     * Os textos das vendas são acrescentados à tabela `textos`, que deve ser
+     * gravada em seguida no arquivo principal.
+     *
+     * @param canal O canal do novo arquivo de histórico.
+     * @param identificador O identificador do novo histórico (diferente de zero).
+     * @param vendas A lista completa de vendas.
+     * @param textos A tabela de textos a ser usada (e completada).
+     * @param codec O codec de compressão, ou `null` para gravar sem compressão.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    static void gravarHistorico(FileChannel canal, long identificador, List<RegistroDeVenda> vendas,
+                                TabelaDeTextos textos, CodecDeCompressao codec) throws IOException {
+        // O cabeçalho nunca é comprimido: a leitura precisa dele para saber o codec.
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_DO_CABECALHO_DO_HISTORICO);
+        cabecalho.putInt(ASSINATURA_DO_HISTORICO)
+                .putShort(VERSAO_DO_HISTORICO)
+                .putShort(TAMANHO_DA_VENDA)
+                .putLong(identificador)
+                .put(identificadorDoCodec(codec));
+        cabecalho.clear();
+        escreverTudo(canal, cabecalho);
+
+        Escritor out = new Escritor(canal, codec);
+        escreverVendas(out, vendas, textos);
+        out.descarregar();
+    }
+
+    /**
+     * Acrescenta as vendas novas ao final do histórico existente, logo após as
+     * `vendasJaGravadas` primeiras. Antes, descarta do final do arquivo qualquer
+     * registro além delas (restos de um salvamento interrompido).
+     *
+     * @param canal O canal do arquivo de histórico, aberto para leitura e escrita.
+     * @param vendasJaGravadas Quantas vendas do arquivo fazem parte dos dados.
+     * @param novasVendas Apenas as vendas a acrescentar, na ordem do histórico.
+     * @param textos A tabela de textos a ser usada (e completada).
+     * @param codec O codec com que o histórico foi gravado, ou `null`.
+     * @throws IOException Se ocorrer um erro de escrita ou o histórico estiver incompleto.
+     */
+    static void acrescentarVendas(FileChannel canal, int vendasJaGravadas, List<RegistroDeVenda> novasVendas,
+                                  TabelaDeTextos textos, CodecDeCompressao codec) throws IOException {
+        CabecalhoDoHistorico cabecalho = CabecalhoDoHistorico.ler(canal);
+        if (cabecalho == null || cabecalho.versao != VERSAO_DO_HISTORICO
+                || cabecalho.tamanhoDaVenda != TAMANHO_DA_VENDA
+                || cabecalho.codec != identificadorDoCodec(codec)) {
+            throw new IOException("O histórico de vendas não pode ser continuado neste formato.");
+        }
+        long tamanhoMantido = fimDasVendas(canal, cabecalho, (long) vendasJaGravadas * TAMANHO_DA_VENDA);
+        canal.truncate(tamanhoMantido);
+        canal.position(tamanhoMantido);
+        Escritor out = new Escritor(canal, codec);
+        escreverVendas(out, novasVendas, textos);
+        out.descarregar();
+    }
+
+    /**
+     * Retorna a posição do arquivo de histórico onde terminam os primeiros
+     * `bytesDeVendas` bytes de registros. Em um histórico comprimido, percorre
+     * apenas os cabeçalhos dos blocos, sem descomprimi-los.
+     */
+    private static long fimDasVendas(FileChannel canal, CabecalhoDoHistorico cabecalho, long bytesDeVendas)
+            throws IOException {
+        long posicao = cabecalho.tamanho;
+        if (cabecalho.codec == SEM_COMPRESSAO) {
+            posicao += bytesDeVendas;
+        } else {
+            ByteBuffer bloco = ByteBuffer.allocate(TAMANHO_DO_CABECALHO_DO_BLOCO);
+            long bytesPercorridos = 0;
+            while (bytesPercorridos < bytesDeVendas) {
+                bloco.clear();
+                if (!lerTudo(canal, bloco, posicao)) {
+                    throw new IOException("O histórico de vendas está incompleto.");
+                }
+                bytesPercorridos += bloco.getInt(0);
+                posicao += TAMANHO_DO_CABECALHO_DO_BLOCO + bloco.getInt(4);
+            }
+            if (bytesPercorridos != bytesDeVendas) {
+                throw new IOException("O histórico de vendas está inconsistente.");
+            }
+        }
+        if (canal.size() < posicao) {
+            throw new IOException("O histórico de vendas está incompleto.");
+        }
+        return posicao;
+    }
+
+    private static void escreverVendas(Escritor out, List<RegistroDeVenda> vendas,
+                                       TabelaDeTextos textos) throws IOException {
+        for (RegistroDeVenda venda : vendas) {
+            textos.adicionar(venda.getCodigoDeBarrasProduto());
+            textos.adicionar(venda.getNomeDoProduto());
+            out.garantir(TAMANHO_DA_VENDA);
+            out.buffer.putInt(textos.posicao(venda.getCodigoDeBarrasProduto()))
+                    .putInt(textos.posicao(venda.getNomeDoProduto()))
+                    .putLong(PontoFixo.paraMilesimos(venda.getQuantidadeVendida()))
+                    .putLong(PontoFixo.paraCentavos(venda.getPrecoUnitarioNaVenda()))
+                    .putLong(PontoFixo.paraCentavos(venda.getCustoTotalDaVenda()))
+                    .putLong(PontoFixo.paraCentavos(venda.getLucroDaVenda()))
+                    .putInt((int) venda.getDataDaVenda().toEpochDay());
+        }
+    }
+
+    /**
+     * Grava o arquivo principal (tabela de textos, produtos e lotes) no canal.
+     *
+     * @param dados Os dados a serem gravados.
+     * @param canal O canal do arquivo de destino.
+     * @param textos A tabela de textos, já com os textos do histórico; os textos
+     * de produtos e lotes são acrescentados a ela.
+     * @param quantidadeDeVendas Quantas vendas do histórico fazem parte dos dados.
+     * @param identificadorDoHistorico O identificador do histórico que contém essas vendas.
+     * @param codec O codec de compressão, ou `null` para gravar sem compressão.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    static void gravarCadastro(DadosDoSistema dados, FileChannel canal, TabelaDeTextos textos,
+                               int quantidadeDeVendas, long identificadorDoHistorico,
+                               CodecDeCompressao codec) throws IOException {
+        List<Produto> produtos = dados.catalogo.getListaDeProdutos();
+        // Quem grava bloqueia as alterações do estoque (ou grava dados que só ele
+        // usa, como a compactação do diário): os lotes não precisam ser copiados.
+        List<Lote> lotes = dados.estoque.getLotesSemCopia();
+
+        // Completa a tabela de textos e monta a posição de cada produto na seção de produtos.
+        HashMap<Integer, Integer> posicaoPorIdDeProduto = new HashMap<>();
+        for (Produto produto : produtos) {
+            posicaoPorIdDeProduto.put(produto.getId(), posicaoPorIdDeProduto.size());
+            textos.adicionar(produto.getCodigoDeBarras());
+            textos.adicionar(produto.getNomeDoProduto());
+            textos.adicionar(produto.getCategoria());
+            textos.adicionar(produto.getGrandeza().name());
+        }
+        for (Lote lote : lotes) {
+            textos.adicionar(lote.getFornecedor());
+        }
+
+        if (codec != null) {
+            ByteBuffer prefixo = ByteBuffer.allocate(TAMANHO_DO_PREFIXO_COMPRIMIDO);
+            prefixo.putInt(ASSINATURA_COMPRIMIDA).putShort(VERSAO_DA_COMPRESSAO).put(codec.getIdentificador());
+            prefixo.clear();
+            escreverTudo(canal, prefixo);
+        }
+        Escritor out = new Escritor(canal, codec);
+
+        // Cabeçalho
+        out.garantir(TAMANHO_DO_CABECALHO);
+        out.buffer.putInt(ASSINATURA)
+                .putShort(VERSAO)
+                .putShort(TAMANHO_DO_PRODUTO)
+                .putShort(TAMANHO_DO_LOTE)
+                .putShort(TAMANHO_DA_VENDA)
+                .putLong(dados.ultimaOperacaoAplicada)
+                .putInt(textos.lista.size())
+                .putInt(produtos.size())
+                .putInt(lotes.size())
+                .putInt(quantidadeDeVendas)
+                .putLong(identificadorDoHistorico);
+
+        // Tabela de textos
+        for (String texto : textos.lista) {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            out.garantir(4);
+            out.buffer.putInt(bytes.length);
+            out.escreverBytes(bytes);
+        }
+
+        // Produtos
+        for (Produto produto : produtos) {
+            boolean comImposto = produto instanceof ProdutoComImposto;
+            out.garantir(TAMANHO_DO_PRODUTO);
+            out.buffer.putInt(produto.getId())
+                    .put(comImposto ? PRODUTO_COM_IMPOSTO : PRODUTO_COMUM)
+                    .putInt(textos.posicao(produto.getCodigoDeBarras()))
+                    .putInt(textos.posicao(produto.getNomeDoProduto()))
+                    .putInt(textos.posicao(produto.getCategoria()))
+                    .putInt(textos.posicao(produto.getGrandeza().name()))
+                    .putLong(produto.getPrecoUnitarioEmCentavos())
+                    .putLong(produto.getEstoqueMinimoEmMilesimos())
+                    .putLong(produto.getQuantidadeVendidaEmMilesimos())
+                    .putLong(produto.getQuantidadeDescartadaEmMilesimos())
+                    .putDouble(comImposto ? ((ProdutoComImposto) produto).getPercentualIcms() : 0);
+        }
+
+        // Lotes
+        for (Lote lote : lotes) {
+            Integer posicaoDoProduto = posicaoPorIdDeProduto.get(lote.getProduto().getId());
+            if (posicaoDoProduto == null) {
+                throw new IOException("Lote " + lote.getId() + " pertence a um produto que não está no catálogo.");
+            }
+            boolean perecivel = lote instanceof LotePerecivel;
+            out.garantir(TAMANHO_DO_LOTE);
+            out.buffer.putInt(lote.getId())
+                    .putInt(posicaoDoProduto)
+                    .put(perecivel ? (byte) 1 : (byte) 0)
+                    .putInt(perecivel ? (int) ((LotePerecivel) lote).getDataDeValidade().toEpochDay() : 0)
+                    .putLong(lote.getQuantidadeInicialEmMilesimos())
+                    .putLong(lote.getQuantidadeEmMilesimos())
+                    .putInt(textos.posicao(lote.getFornecedor()))
+                    .putLong(lote.getCustoDoLoteEmCentavos());
+        }
+
+        out.descarregar();
+    }
+
+    // --- LEITURA ---
+
+    /**
+     * Lê os dados do sistema a partir do arquivo principal e do histórico.
+     *
+     * @param canal O canal do arquivo principal, na posição 0.
+     * @param caminhoDoHistorico O caminho do arquivo de histórico de vendas.
+     * @param estado Recebe a tabela de textos e a quantidade de vendas gravadas.
+     * @return Os dados lidos, com catálogo, estoque e histórico já montados.
+     * @throws IOException Se um arquivo estiver incompleto, corrompido ou em uma versão não suportada.
+     */
+    static DadosDoSistema ler(FileChannel canal, Path caminhoDoHistorico, EstadoGravado estado) throws IOException {
+        return ler(abrirArquivoPrincipal(canal), caminhoDoHistorico, estado, false);
+    }
+
+    /**
+     * Lê apenas o catálogo e o estoque do arquivo principal, sem abrir o
+     * histórico: os dados retornados têm um histórico de vendas vazio. Usado pela
+     * compactação do diário, que só acrescenta vendas ao histórico gravado.
+     *
+     * @param canal O canal do arquivo principal, na posição 0.
+     * @param estado Recebe a tabela de textos e a quantidade de vendas gravadas.
+     * @return Os dados lidos, sem as vendas do histórico.
+     * @throws IOException Se o arquivo estiver incompleto, corrompido ou em uma versão não suportada.
+     */
+    static DadosDoSistema lerCadastro(FileChannel canal, EstadoGravado estado) throws IOException {
+        return ler(abrirArquivoPrincipal(canal), null, estado, false);
+    }
+
+    /**
+     * Prepara a leitura do arquivo principal, descomprimido se ele tiver o prefixo de compressão.
+     */
+    private static Leitor abrirArquivoPrincipal(FileChannel canal) throws IOException {
+        CodecDeCompressao codec = null;
+        ByteBuffer prefixo = ByteBuffer.allocate(TAMANHO_DO_PREFIXO_COMPRIMIDO);
+        if (lerTudo(canal, prefixo, 0) && prefixo.getInt(0) == ASSINATURA_COMPRIMIDA) {
+            if (prefixo.getShort(4) > VERSAO_DA_COMPRESSAO) {
+                throw new IOException("Versão de compressão não suportada: " + prefixo.getShort(4));
+            }
+            codec = buscarCodec(prefixo.get(6));
+            canal.position(TAMANHO_DO_PREFIXO_COMPRIMIDO);
+        } else {
+            canal.position(0);
+        }
+        return new Leitor(canal, codec);
+    }
+
+    /**
+     * Indica se o arquivo principal está comprimido (e, portanto, não pode ser
+     * lido diretamente de um mapeamento em memória).
+     */
+    static boolean estaComprimido(FileChannel canal) throws IOException {
+        ByteBuffer assinatura = ByteBuffer.allocate(4);
+        return lerTudo(canal, assinatura, 0) && assinatura.getInt(0) == ASSINATURA_COMPRIMIDA;
+    }
+
+    private static CodecDeCompressao buscarCodec(byte identificador) throws IOException {
+        CodecDeCompressao codec = CodecsDeCompressao.buscar(identificador);
+        if (codec == null) {
+            throw new IOException("Codec de compressão desconhecido: " + identificador);
+        }
+        return codec;
+    }
+
+    /**
+     * Lê os dados do sistema a partir de um arquivo principal mapeado em memória.
+     * Catálogo e estoque são montados normalmente, mas as vendas não são lidas:
+     * o histórico também é mapeado, e cada venda é decodificada diretamente dele
+     * apenas quando é acessada.
+     *
+     * @param arquivoMapeado O conteúdo completo do arquivo principal, a partir da posição 0.
+     * @param caminhoDoHistorico O caminho do arquivo de histórico de vendas.
+     * @param estado Recebe a tabela de textos e a quantidade de vendas gravadas.
+     * @return Os dados lidos.
+     * @throws IOException Se um arquivo estiver incompleto, corrompido ou em uma versão não suportada.
+     */
+    static DadosDoSistema lerMapeado(ByteBuffer arquivoMapeado, Path caminhoDoHistorico, EstadoGravado estado)
+            throws IOException {
+        return ler(new Leitor(arquivoMapeado), caminhoDoHistorico, estado, true);
+    }
+
+    private static DadosDoSistema ler(Leitor in, Path caminhoDoHistorico, EstadoGravado estado,
+                                      boolean vendasSobDemanda) throws IOException {
+        in.garantir(TAMANHO_DO_CABECALHO_V1);
+        if (in.buffer.getInt() != ASSINATURA) {
+            throw new IOException("O arquivo não está no formato binário do Stokos.");
+        }
+        short versao = in.buffer.getShort();
+        if (versao > VERSAO) {
+            throw new IOException("Versão do arquivo de dados não suportada: " + versao);
+        }
+        short tamanhoDoProduto = in.buffer.getShort();
+        short tamanhoDoLote = in.buffer.getShort();
+        short tamanhoDaVenda = in.buffer.getShort();
+        if (tamanhoDoProduto < TAMANHO_DO_PRODUTO || tamanhoDoLote < TAMANHO_DO_LOTE
+                || tamanhoDaVenda < TAMANHO_DA_VENDA) {
+            throw new IOException("Cabeçalho do arquivo de dados inválido.");
+        }
+        long ultimaOperacaoAplicada = in.buffer.getLong();
+        int quantidadeDeTextos = in.buffer.getInt();
+        int quantidadeDeProdutos = in.buffer.getInt();
+        int quantidadeDeLotes = in.buffer.getInt();
+        int quantidadeDeVendas = in.buffer.getInt();
+        long identificadorDoHistorico = 0;
+        if (versao > VERSAO_COM_VENDAS_NO_ARQUIVO_PRINCIPAL) {
+            in.garantir(8);
+            identificadorDoHistorico = in.buffer.getLong();
+        }
+
+        boolean emPontoFixo = versao >= VERSAO_EM_PONTO_FIXO;
+
+        DadosDoSistema dados = new DadosDoSistema();
+        dados.ultimaOperacaoAplicada = ultimaOperacaoAplicada;
+
+        // Tabela de textos
+        String[] textos = new String[quantidadeDeTextos];
+        for (int i = 0; i < quantidadeDeTextos; i++) {
+            in.garantir(4);
+            byte[] bytes = new byte[in.buffer.getInt()];
+            in.lerBytes(bytes);
+            textos[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        try {
+            // Produtos
+            Produto[] produtos = new Produto[quantidadeDeProdutos];
+            for (int i = 0; i < quantidadeDeProdutos; i++) {
+                in.garantir(tamanhoDoProduto);
+                ByteBuffer b = in.buffer;
+                int id = b.getInt();
+                byte tipo = b.get();
+                String codigo = texto(textos, b.getInt());
+                String nome = texto(textos, b.getInt());
+                String categoria = texto(textos, b.getInt());
+                Grandeza grandeza = Grandeza.valueOf(texto(textos, b.getInt()));
+                double preco = lerValor(b, emPontoFixo);
+                double estoqueMinimo = lerQuantidade(b, emPontoFixo);
+                double quantidadeVendida = lerQuantidade(b, emPontoFixo);
+                double quantidadeDescartada = lerQuantidade(b, emPontoFixo);
+                double percentualIcms = b.getDouble();
+                in.pular(tamanhoDoProduto - TAMANHO_DO_PRODUTO);
+
+                Produto produto = tipo == PRODUTO_COM_IMPOSTO
+                        ? new ProdutoComImposto(id, codigo, nome, preco, grandeza, percentualIcms)
+                        : new ProdutoComum(id, codigo, nome, preco, grandeza);
+                produto.setCategoria(categoria);
+                produto.setEstoqueMinimo(estoqueMinimo);
+                produto.restaurarTotais(quantidadeVendida, quantidadeDescartada);
+                dados.catalogo.cadastrarProduto(produto);
+                produtos[i] = produto;
+            }
+
+            // Lotes
+            for (int i = 0; i < quantidadeDeLotes; i++) {
+                in.garantir(tamanhoDoLote);
+                ByteBuffer b = in.buffer;
+                int id = b.getInt();
+                Produto produto = produtos[b.getInt()];
+                boolean perecivel = b.get() != 0;
+                int diaDeValidade = b.getInt();
+                double quantidadeInicial = lerQuantidade(b, emPontoFixo);
+                double quantidade = lerQuantidade(b, emPontoFixo);
+                String fornecedor = texto(textos, b.getInt());
+                double custo = lerValor(b, emPontoFixo);
+                in.pular(tamanhoDoLote - TAMANHO_DO_LOTE);
+
+                Lote lote = perecivel
+                        ? new LotePerecivel(id, produto, quantidadeInicial, quantidade, LocalDate.ofEpochDay(diaDeValidade))
+                        : new LoteNaoPerecivel(id, produto, quantidadeInicial, quantidade);
+                lote.setFornecedor(fornecedor);
+                lote.setCustoDoLote(custo);
+                dados.estoque.adicionarLote(lote);
+            }
+        } catch (ProdutoJaCadastradoException | ProdutoNaoCadastradoException e) {
+            throw new IOException("Arquivo de dados inconsistente: " + e.getMessage());
+        }
+
+        estado.textos = new TabelaDeTextos(textos);
+
+        // Vendas
+        if (versao == VERSAO_COM_VENDAS_NO_ARQUIVO_PRINCIPAL) {
+            // Formato antigo: as vendas estão logo após os lotes. Elas passam para
+            // o histórico separado no próximo salvamento.
+            estado.quantidadeDeVendas = 0;
+            if (vendasSobDemanda) {
+                dados.historicoDeVendas = new HistoricoDeVendas(
+                        vendasMapeadas(in.buffer.slice(), textos, quantidadeDeVendas, tamanhoDaVenda, false));
+            } else {
+                lerVendas(in, textos, quantidadeDeVendas, tamanhoDaVenda, false, dados.historicoDeVendas);
+            }
+            return dados;
+        }
+
+        estado.quantidadeDeVendas = quantidadeDeVendas;
+        estado.identificadorDoHistorico = identificadorDoHistorico;
+        if (quantidadeDeVendas == 0 || caminhoDoHistorico == null) {
+            // Sem o caminho do histórico (ver `lerCadastro`), as vendas não são lidas.
+            return dados;
+        }
+        concluirTrocaDoHistorico(caminhoDoHistorico, identificadorDoHistorico);
+        try (FileChannel historico = FileChannel.open(caminhoDoHistorico, StandardOpenOption.READ)) {
+            CabecalhoDoHistorico cabecalho = CabecalhoDoHistorico.ler(historico);
+            if (cabecalho == null || cabecalho.identificador != identificadorDoHistorico) {
+                throw new IOException("O histórico de vendas não corresponde ao arquivo de dados.");
+            }
+            if (cabecalho.versao > VERSAO_DO_HISTORICO || cabecalho.tamanhoDaVenda < TAMANHO_DA_VENDA) {
+                throw new IOException("O histórico de vendas é inválido.");
+            }
+            estado.codecDoHistorico = cabecalho.codec;
+            boolean vendasEmPontoFixo = cabecalho.versao >= VERSAO_DO_HISTORICO_EM_PONTO_FIXO;
+            if (!vendasEmPontoFixo) {
+                // Histórico em `double`: é lido normalmente, mas o próximo salvamento
+                // o regrava por inteiro no formato atual, em vez de acrescentar a ele.
+                estado.quantidadeDeVendas = 0;
+            }
+
+            if (cabecalho.codec != SEM_COMPRESSAO) {
+                // Histórico comprimido: os blocos são lidos e descomprimidos em sequência.
+                historico.position(cabecalho.tamanho);
+                lerVendas(new Leitor(historico, buscarCodec(cabecalho.codec)), textos, quantidadeDeVendas,
+                        cabecalho.tamanhoDaVenda, vendasEmPontoFixo, dados.historicoDeVendas);
+                return dados;
+            }
+
+            long tamanhoUsado = cabecalho.tamanho + (long) quantidadeDeVendas * cabecalho.tamanhoDaVenda;
+            if (historico.size() < tamanhoUsado) {
+                throw new IOException("O histórico de vendas está incompleto.");
+            }
+            if (vendasSobDemanda && tamanhoUsado <= Integer.MAX_VALUE) {
+                // Mapeia apenas a parte que pertence aos dados. O histórico só
+                // cresce a partir daí, então o trecho mapeado continua válido.
+                ByteBuffer mapeado = historico.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoUsado);
+                mapeado.position(cabecalho.tamanho);
+                dados.historicoDeVendas = new HistoricoDeVendas(
+                        vendasMapeadas(mapeado.slice(), textos, quantidadeDeVendas, cabecalho.tamanhoDaVenda,
+                                vendasEmPontoFixo));
+            } else {
+                historico.position(cabecalho.tamanho);
+                lerVendas(new Leitor(historico, null), textos, quantidadeDeVendas, cabecalho.tamanhoDaVenda,
+                        vendasEmPontoFixo, dados.historicoDeVendas);
+            }
+        }
+        return dados;
+    }
+
+    /**
+     * Se o histórico não tiver o identificador esperado, mas o histórico
+     * temporário tiver, o programa caiu entre a troca do arquivo principal e a
+     * do histórico: a troca é concluída agora.
+     */
+    private static void concluirTrocaDoHistorico(Path caminhoDoHistorico, long identificador) throws IOException {
+        Path temporario = caminhoDoTemporario(caminhoDoHistorico);
+        if (identificadorDoHistorico(caminhoDoHistorico) != identificador
+                && identificadorDoHistorico(temporario) == identificador) {
+            Files.move(temporario, caminhoDoHistorico,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Retorna o identificador gravado em um arquivo de histórico, ou zero se o
+     * arquivo não existir ou não for um histórico válido.
+     */
+    private static long identificadorDoHistorico(Path caminho) throws IOException {
+        if (!Files.exists(caminho)) {
+            return 0;
+        }
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.READ)) {
+            CabecalhoDoHistorico cabecalho = CabecalhoDoHistorico.ler(canal);
+            return cabecalho == null ? 0 : cabecalho.identificador;
+        }
+    }
+
+    /**
+     * Lê do canal, a partir de `posicao`, até encher o buffer.
+     * @return `false` se o arquivo terminar antes.
+     */
+    private static boolean lerTudo(FileChannel canal, ByteBuffer destino, long posicao) throws IOException {
+        while (destino.hasRemaining()) {
+            if (canal.read(destino, posicao + destino.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void escreverTudo(FileChannel canal, ByteBuffer origem) throws IOException {
+        while (origem.hasRemaining()) {
+            canal.write(origem);
+        }
+    }
+
+    /**
+     * O caminho onde um histórico novo é gravado antes de substituir o atual.
+     */
+    static Path caminhoDoTemporario(Path caminhoDoHistorico) {
+        return caminhoDoHistorico.resolveSibling(caminhoDoHistorico.getFileName() + ".tmp");
+    }
+
+    private static VendasMapeadas vendasMapeadas(ByteBuffer secao, String[] textos, int quantidade,
+                                                 int tamanhoDaVenda, boolean emPontoFixo) throws IOException {
+        if (secao.remaining() < (long) quantidade * tamanhoDaVenda) {
+            throw new EOFException("Arquivo de dados incompleto.");
+        }
+        return new VendasMapeadas(secao, textos, quantidade, tamanhoDaVenda, emPontoFixo);
+    }
+
+    /**
+     * Lê `quantidade` registros de venda e os acrescenta ao histórico.
+     * `emPontoFixo` indica se os números estão em milésimos e centavos (versão 3)
+     * ou em `double` (versões anteriores).
+     */
+    private static void lerVendas(Leitor in, String[] textos, int quantidade, int tamanhoDaVenda,
+                                  boolean emPontoFixo, HistoricoDeVendas historico) throws IOException {
+        // As vendas vêm em ordem cronológica, então muitas seguidas têm a mesma
+        // data; o mesmo objeto `LocalDate` (imutável) é reaproveitado entre elas.
+        int diaAnterior = Integer.MIN_VALUE;
+        LocalDate dataAnterior = null;
+        for (int i = 0; i < quantidade; i++) {
+            in.garantir(tamanhoDaVenda);
+            ByteBuffer b = in.buffer;
+            String codigo = texto(textos, b.getInt());
+            String nome = texto(textos, b.getInt());
+            double quantidadeVendida = lerQuantidade(b, emPontoFixo);
+            double preco = lerValor(b, emPontoFixo);
+            double custo = lerValor(b, emPontoFixo);
+            double lucro = lerValor(b, emPontoFixo);
+            int dia = b.getInt();
+            if (dia != diaAnterior) {
+                diaAnterior = dia;
+                dataAnterior = LocalDate.ofEpochDay(dia);
+            }
+            in.pular(tamanhoDaVenda - TAMANHO_DA_VENDA);
+            historico.adicionarRegistro(
+                    new RegistroDeVenda(codigo, nome, quantidadeVendida, preco, custo, lucro, dataAnterior));
+        }
+    }
+
+    /**
+     * Lê uma quantidade, gravada em milésimos ou, nos arquivos antigos, em `double`.
+     */
+    private static double lerQuantidade(ByteBuffer b, boolean emPontoFixo) {
+        return emPontoFixo ? PontoFixo.deMilesimos(b.getLong()) : b.getDouble();
+    }
+
+    /**
+     * Lê um valor em dinheiro, gravado em centavos ou, nos arquivos antigos, em `double`.
+     */
+    private static double lerValor(ByteBuffer b, boolean emPontoFixo) {
+        return emPontoFixo ? PontoFixo.deCentavos(b.getLong()) : b.getDouble();
+    }
+
+    private static String texto(String[] textos, int posicao) throws IOException {
+        if (posicao == SEM_TEXTO) {
+            return null;
+        }
+        if (posicao < 0 || posicao >= textos.length) {
+            throw new IOException("Referência inválida à tabela de textos: " + posicao);
+        }
+        return textos[posicao];
+    }
+
+    // --- CLASSES AUXILIARES ---
+
+    /**
+     * O cabeçalho de um arquivo de histórico.
+     */
+    private static final class CabecalhoDoHistorico {
+        short versao;
+        short tamanhoDaVenda;
+        long identificador;
+        byte codec;
+        // Tamanho do próprio cabeçalho, ou seja, onde começam os registros.
+        int tamanho;
+
+        /**
+         * Lê o cabeçalho, ou retorna `null` se o arquivo não for um histórico.
+         */
+        static CabecalhoDoHistorico ler(FileChannel canal) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(TAMANHO_DO_CABECALHO_DO_HISTORICO);
+            bytes.limit(TAMANHO_DO_CABECALHO_DO_HISTORICO_V1);
+            if (!lerTudo(canal, bytes, 0) || bytes.getInt(0) != ASSINATURA_DO_HISTORICO) {
+                return null;
+            }
+            CabecalhoDoHistorico cabecalho = new CabecalhoDoHistorico();
+            cabecalho.versao = bytes.getShort(4);
+            cabecalho.tamanhoDaVenda = bytes.getShort(6);
+            cabecalho.identificador = bytes.getLong(8);
+            cabecalho.codec = SEM_COMPRESSAO;
+            cabecalho.tamanho = TAMANHO_DO_CABECALHO_DO_HISTORICO_V1;
+            if (cabecalho.versao > VERSAO_DO_HISTORICO_SEM_CODEC) {
+                bytes.limit(TAMANHO_DO_CABECALHO_DO_HISTORICO);
+                if (!lerTudo(canal, bytes, 0)) {
+                    return null;
+                }
+                cabecalho.codec = bytes.get(TAMANHO_DO_CABECALHO_DO_HISTORICO_V1);
+                cabecalho.tamanho = TAMANHO_DO_CABECALHO_DO_HISTORICO;
+            }
+            return cabecalho;
+        }
+    }
+
+    /**
+     * Lista somente leitura das vendas gravadas no arquivo, que decodifica cada
+     * registro diretamente do arquivo mapeado em memória no momento do acesso.
+     * Como os registros têm tamanho fixo, o registro `i` começa sempre na posição
+     * `i * tamanhoDaVenda`, sem precisar percorrer os anteriores.
+     * Usa apenas leituras com posição explícita, que não alteram o estado do
+     * buffer; por isso pode ser consultada por várias threads ao mesmo tempo.
+     */
+    private static final class VendasMapeadas extends AbstractList<RegistroDeVenda> implements RandomAccess {
+        private final ByteBuffer secao;
+        private final String[] textos;
+        private final int quantidade;
+        private final int tamanhoDaVenda;
+        private final boolean emPontoFixo;
+
+        VendasMapeadas(ByteBuffer secao, String[] textos, int quantidade, int tamanhoDaVenda, boolean emPontoFixo) {
+            this.secao = secao;
+            this.textos = textos;
+            this.quantidade = quantidade;
+            this.tamanhoDaVenda = tamanhoDaVenda;
+            this.emPontoFixo = emPontoFixo;
+        }
+
+        @Override
+        public int size() {
+            return quantidade;
+        }
+
+        @Override
+        public RegistroDeVenda get(int indice) {
+            if (indice < 0 || indice >= quantidade) {
+                throw new IndexOutOfBoundsException("Venda " + indice + " de " + quantidade);
+            }
+            int inicio = indice * tamanhoDaVenda;
+            return new RegistroDeVenda(
+                    textoGravado(secao.getInt(inicio)),
+                    textoGravado(secao.getInt(inicio + 4)),
+                    quantidadeGravada(inicio + 8),
+                    valorGravado(inicio + 16),
+                    valorGravado(inicio + 24),
+                    valorGravado(inicio + 32),
+                    LocalDate.ofEpochDay(secao.getInt(inicio + 40)));
+        }
+
+        private double quantidadeGravada(int posicao) {
+            return emPontoFixo ? PontoFixo.deMilesimos(secao.getLong(posicao)) : secao.getDouble(posicao);
+        }
+
+        private double valorGravado(int posicao) {
+            return emPontoFixo ? PontoFixo.deCentavos(secao.getLong(posicao)) : secao.getDouble(posicao);
+        }
+
+        private String textoGravado(int posicao) {
+            return posicao == SEM_TEXTO ? null : textos[posicao];
+        }
+    }
+
+    /**
+     * Tabela de textos distintos, cada um com a sua posição.
+     * Textos repetidos (ex: o mesmo código de barras em milhares de vendas) são
+     * guardados uma única vez. Um texto nunca muda de posição.
+     */
+    static final class TabelaDeTextos {
+        private final ArrayList<String> lista = new ArrayList<>();
+        private final HashMap<String, Integer> posicoes = new HashMap<>();
+
+        TabelaDeTextos() {
+        }
+
+        TabelaDeTextos(String[] textos) {
+            for (String texto : textos) {
+                adicionar(texto);
+            }
+        }
+
+        /** Cria uma cópia independente, que pode ser completada sem alterar esta. */
+        TabelaDeTextos copia() {
+            TabelaDeTextos copia = new TabelaDeTextos();
+            copia.lista.addAll(lista);
+            copia.posicoes.putAll(posicoes);
+            return copia;
+        }
+
+        void adicionar(String texto) {
+            if (texto != null && !posicoes.containsKey(texto)) {
+                posicoes.put(texto, lista.size());
+                lista.add(texto);
+            }
+        }
+
+        int posicao(String texto) {
+            return texto == null ? SEM_TEXTO : posicoes.get(texto);
+        }
+    }
+
+    /**
+     * Escreve no canal por meio de um buffer grande, para que cada registro seja
+     * copiado para a memória e só blocos inteiros cheguem ao sistema operacional.
+     * Com um codec, cada bloco é comprimido antes de ser escrito.
+     */
+    private static final class Escritor {
+        private final FileChannel canal;
+        private final CodecDeCompressao codec;
+        private final ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_DO_BUFFER);
+
+        Escritor(FileChannel canal, CodecDeCompressao codec) {
+            this.canal = canal;
+            this.codec = codec;
+        }
+
+        /** Garante espaço no buffer para os próximos `bytes` bytes. */
+        void garantir(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                descarregar();
+            }
+        }
+
+        void escreverBytes(byte[] bytes) throws IOException {
+            int escritos = 0;
+            while (escritos < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    descarregar();
+                }
+                int pedaco = Math.min(buffer.remaining(), bytes.length - escritos);
+                buffer.put(bytes, escritos, pedaco);
+                escritos += pedaco;
+            }
+        }
+
+        void descarregar() throws IOException {
+            buffer.flip();
+            if (codec == null) {
+                escreverTudo(canal, buffer);
+            } else if (buffer.hasRemaining()) {
+                byte[] comprimido = codec.comprimir(buffer.array(), buffer.limit());
+                ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_DO_CABECALHO_DO_BLOCO);
+                cabecalho.putInt(buffer.limit()).putInt(comprimido.length).flip();
+                escreverTudo(canal, cabecalho);
+                escreverTudo(canal, ByteBuffer.wrap(comprimido));
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Lê do canal em blocos grandes; cada registro é então lido diretamente do buffer.
+     * Com um codec, cada bloco comprimido é descomprimido diretamente no buffer.
+     */
+    private static final class Leitor {
+        private final FileChannel canal;
+        private final CodecDeCompressao codec;
+        private final ByteBuffer buffer;
+        // Bytes comprimidos do bloco sendo lido (apenas com codec).
+        private byte[] comprimido = new byte[0];
+
+        Leitor(FileChannel canal, CodecDeCompressao codec) {
+            this.canal = canal;
+            this.codec = codec;
+            // Com compressão, cabe um bloco inteiro além do que sobrou do anterior.
+            this.buffer = ByteBuffer.allocate(codec == null ? TAMANHO_DO_BUFFER : 2 * TAMANHO_DO_BUFFER);
+            buffer.flip(); // Começa vazio.
+        }
+
+        /** Lê de um buffer que já contém o arquivo inteiro (ex: arquivo mapeado). */
+        Leitor(ByteBuffer arquivoCompleto) {
+            this.canal = null;
+            this.codec = null;
+            this.buffer = arquivoCompleto;
+        }
+
+        /** Garante que os próximos `bytes` bytes já estejam no buffer. */
+        void garantir(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (canal == null) {
+                throw new EOFException("Arquivo de dados incompleto.");
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (codec != null) {
+                    lerBloco();
+                } else if (canal.read(buffer) < 0) {
+                    throw new EOFException("Arquivo de dados incompleto.");
+                }
+            }
+            buffer.flip();
+        }
+
+        /** Lê o próximo bloco comprimido e o descomprime no final do buffer. */
+        private void lerBloco() throws IOException {
+            ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_DO_CABECALHO_DO_BLOCO);
+            lerDoCanal(cabecalho);
+            int tamanhoOriginal = cabecalho.getInt(0);
+            int tamanhoComprimido = cabecalho.getInt(4);
+            if (tamanhoOriginal <= 0 || tamanhoOriginal > buffer.remaining() || tamanhoComprimido < 0) {
+                throw new IOException("Bloco comprimido inválido no arquivo de dados.");
+            }
+            if (comprimido.length < tamanhoComprimido) {
+                comprimido = new byte[tamanhoComprimido];
+            }
+            lerDoCanal(ByteBuffer.wrap(comprimido, 0, tamanhoComprimido));
+            codec.descomprimir(comprimido, tamanhoComprimido, buffer.array(), buffer.position(), tamanhoOriginal);
+            buffer.position(buffer.position() + tamanhoOriginal);
+        }
+
+        private void lerDoCanal(ByteBuffer destino) throws IOException {
+            while (destino.hasRemaining()) {
+                if (canal.read(destino) < 0) {
+                    throw new EOFException("Arquivo de dados incompleto.");
+                }
+            }
+        }
+
+        void lerBytes(byte[] destino) throws IOException {
+            int lidos = 0;
+            while (lidos < destino.length) {
+                garantir(1);
+                int pedaco = Math.min(buffer.remaining(), destino.length - lidos);
+                buffer.get(destino, lidos, pedaco);
+                lidos += pedaco;
+            }
+        }
+
+        /** Ignora campos acrescentados ao registro por versões mais novas. */
+        void pular(int bytes) {
+            buffer.position(buffer.position() + bytes);
+        }
+    }
+}